@@ -0,0 +1,160 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.aggregator;
+
+import org.springframework.util.Assert;
+
+/**
+ * An immutable description of the windows a {@link WindowingMessageHandler} builds.
+ * Instances are created via the static factory methods.
+ * <p>
+ * Time-based windows are measured in milliseconds of processing time and aligned
+ * to the epoch, e.g. one second tumbling windows always start on a whole second.
+ *
+ * @since 5.1
+ */
+public final class WindowDefinition {
+
+	/**
+	 * The kind of window.
+	 */
+	public enum Type {
+
+		/**
+		 * Fixed-size, non-overlapping windows.
+		 */
+		TUMBLING,
+
+		/**
+		 * Fixed-size windows advancing by a slide; a message may belong to several windows.
+		 */
+		SLIDING,
+
+		/**
+		 * Windows closed after a gap of inactivity for the correlation key.
+		 */
+		SESSION
+
+	}
+
+	private final Type type;
+
+	private final boolean countBased;
+
+	private final long size;
+
+	private final long slide;
+
+	private WindowDefinition(Type type, boolean countBased, long size, long slide) {
+		this.type = type;
+		this.countBased = countBased;
+		this.size = size;
+		this.slide = slide;
+	}
+
+	/**
+	 * Create a definition for time-based tumbling windows.
+	 * @param size the window size in milliseconds.
+	 * @return the window definition.
+	 */
+	public static WindowDefinition tumbling(long size) {
+		Assert.isTrue(size > 0, "'size' must be greater than 0");
+		return new WindowDefinition(Type.TUMBLING, false, size, size);
+	}
+
+	/**
+	 * Create a definition for count-based tumbling windows.
+	 * @param count the number of messages in each window.
+	 * @return the window definition.
+	 */
+	public static WindowDefinition tumblingCount(int count) {
+		Assert.isTrue(count > 0, "'count' must be greater than 0");
+		return new WindowDefinition(Type.TUMBLING, true, count, count);
+	}
+
+	/**
+	 * Create a definition for time-based sliding windows.
+	 * The {@code size} must be a multiple of the {@code slide}, so each message is
+	 * stored once, in a pane of {@code slide} milliseconds, and shared by all the
+	 * windows covering that pane.
+	 * @param size the window size in milliseconds.
+	 * @param slide the interval in milliseconds between the starts of two windows.
+	 * @return the window definition.
+	 */
+	public static WindowDefinition sliding(long size, long slide) {
+		Assert.isTrue(slide > 0, "'slide' must be greater than 0");
+		Assert.isTrue(size >= slide, "'size' must not be less than 'slide'");
+		Assert.isTrue(size % slide == 0, "'size' must be a multiple of 'slide'");
+		return new WindowDefinition(size == slide ? Type.TUMBLING : Type.SLIDING, false, size, slide);
+	}
+
+	/**
+	 * Create a definition for count-based sliding windows: a window with (up to)
+	 * the last {@code count} messages is emitted after every {@code slide} messages.
+	 * @param count the maximum number of messages in each window.
+	 * @param slide the number of messages between two windows.
+	 * @return the window definition.
+	 */
+	public static WindowDefinition slidingCount(int count, int slide) {
+		Assert.isTrue(count > 0, "'count' must be greater than 0");
+		Assert.isTrue(slide > 0, "'slide' must be greater than 0");
+		return new WindowDefinition(count == slide ? Type.TUMBLING : Type.SLIDING, true, count, slide);
+	}
+
+	/**
+	 * Create a definition for session windows.
+	 * @param gap the inactivity gap in milliseconds after which a session window is closed.
+	 * @return the window definition.
+	 */
+	public static WindowDefinition session(long gap) {
+		Assert.isTrue(gap > 0, "'gap' must be greater than 0");
+		return new WindowDefinition(Type.SESSION, false, gap, gap);
+	}
+
+	public Type getType() {
+		return this.type;
+	}
+
+	/**
+	 * @return true if the window is measured in messages rather than milliseconds.
+	 */
+	public boolean isCountBased() {
+		return this.countBased;
+	}
+
+	/**
+	 * @return the window size (messages or milliseconds); the gap for session windows.
+	 */
+	public long getSize() {
+		return this.size;
+	}
+
+	/**
+	 * @return the window slide (messages or milliseconds); equal to the size for
+	 * tumbling and session windows.
+	 */
+	public long getSlide() {
+		return this.slide;
+	}
+
+	@Override
+	public String toString() {
+		return "WindowDefinition{type=" + this.type + ", countBased=" + this.countBased
+				+ ", size=" + this.size + ", slide=" + this.slide + "}";
+	}
+
+}
@@ -0,0 +1,669 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.aggregator;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.context.Lifecycle;
+import org.springframework.integration.handler.AbstractMessageProducingHandler;
+import org.springframework.integration.store.MessageGroup;
+import org.springframework.integration.store.MessageGroupStore;
+import org.springframework.integration.store.SimpleMessageGroup;
+import org.springframework.integration.support.AbstractIntegrationMessageBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.util.Assert;
+
+/**
+ * A {@link org.springframework.messaging.MessageHandler} that buffers correlated
+ * messages into tumbling, sliding or session windows (see {@link WindowDefinition})
+ * and emits the content of each window, once it is closed, through a
+ * {@link MessageGroupProcessor} - by default a {@link DefaultAggregatingMessageGroupProcessor},
+ * producing a message with the list of payloads.
+ * <p>
+ * Windows are maintained independently for each key returned by the
+ * {@link CorrelationStrategy}; by default all messages share a single key.
+ * The state lives in memory, guarded by one monitor per key; a message is stored
+ * only once, even when it contributes to several sliding windows.
+ * Count-based windows are emitted on the sending thread; time-based and session
+ * windows are closed by tasks on the {@link TaskScheduler}.
+ * Windows without messages are never emitted.
+ * For time-based and session windows the {@link #WINDOW_START} and {@link #WINDOW_END}
+ * headers are added to the output message.
+ * <p>
+ * When a {@link MessageGroupStore} is provided, each message is added to the group with the
+ * {@code checkpointGroupId} before being buffered and is removed once the last window
+ * containing it has been emitted. Any messages found in that group on the first
+ * {@link #start()} (e.g. after a crash) are replayed into newly opened windows.
+ *
+ * @since 5.1
+ */
+public class WindowingMessageHandler extends AbstractMessageProducingHandler
+		implements DisposableBean, Lifecycle {
+
+	/**
+	 * The header for the start (epoch millis) of an emitted time-based or session window.
+	 */
+	public static final String WINDOW_START = "windowStart";
+
+	/**
+	 * The header for the end (epoch millis, exclusive) of an emitted time-based or session window.
+	 */
+	public static final String WINDOW_END = "windowEnd";
+
+	private static final Object GLOBAL_KEY = WindowingMessageHandler.class.getName() + ".global";
+
+	private final Map<Object, WindowState> windows = new ConcurrentHashMap<>();
+
+	private final AtomicBoolean recovered = new AtomicBoolean();
+
+	private final WindowDefinition window;
+
+	private CorrelationStrategy correlationStrategy = message -> GLOBAL_KEY;
+
+	private MessageGroupProcessor outputProcessor = new DefaultAggregatingMessageGroupProcessor();
+
+	private MessageGroupStore messageStore;
+
+	private Object checkpointGroupId;
+
+	private boolean flushOnStop;
+
+	private volatile ScheduledFuture<?> sweepFuture;
+
+	private volatile boolean running;
+
+	public WindowingMessageHandler(WindowDefinition window) {
+		Assert.notNull(window, "'window' must not be null");
+		this.window = window;
+	}
+
+	public void setCorrelationStrategy(CorrelationStrategy correlationStrategy) {
+		Assert.notNull(correlationStrategy, "'correlationStrategy' must not be null");
+		this.correlationStrategy = correlationStrategy;
+	}
+
+	/**
+	 * Specify a {@link MessageGroupProcessor} to build the output from the window content.
+	 * The processor is invoked with a {@link MessageGroup} which group id is the correlation key.
+	 * @param outputProcessor the {@link MessageGroupProcessor} to use.
+	 */
+	public void setOutputProcessor(MessageGroupProcessor outputProcessor) {
+		Assert.notNull(outputProcessor, "'outputProcessor' must not be null");
+		this.outputProcessor = outputProcessor;
+	}
+
+	/**
+	 * Specify a {@link MessageGroupStore} to checkpoint the buffered messages to.
+	 * @param messageStore the message store.
+	 * @see #setCheckpointGroupId(Object)
+	 */
+	public void setMessageStore(MessageGroupStore messageStore) {
+		Assert.notNull(messageStore, "'messageStore' must not be null");
+		this.messageStore = messageStore;
+	}
+
+	/**
+	 * Set the group id for checkpointed messages in the {@link MessageGroupStore}.
+	 * Defaults to the bean name of this handler.
+	 * @param checkpointGroupId the group id.
+	 */
+	public void setCheckpointGroupId(Object checkpointGroupId) {
+		Assert.notNull(checkpointGroupId, "'checkpointGroupId' must not be null");
+		this.checkpointGroupId = checkpointGroupId;
+	}
+
+	/**
+	 * Set to true to emit all open (partial) windows when the handler is stopped.
+	 * Otherwise they are kept (in memory and in the message store, if any) until
+	 * the handler is started again. Default false.
+	 * @param flushOnStop true to emit open windows on stop.
+	 */
+	public void setFlushOnStop(boolean flushOnStop) {
+		this.flushOnStop = flushOnStop;
+	}
+
+	@Override
+	public void setTaskScheduler(TaskScheduler taskScheduler) {
+		super.setTaskScheduler(taskScheduler);
+	}
+
+	@Override
+	public String getComponentType() {
+		return "window";
+	}
+
+	public WindowDefinition getWindow() {
+		return this.window;
+	}
+
+	/**
+	 * @return the number of correlation keys with buffered messages.
+	 */
+	public int getOpenWindowCount() {
+		return this.windows.size();
+	}
+
+	/**
+	 * @return the number of messages currently buffered over all keys.
+	 */
+	public int getBufferedMessageCount() {
+		int count = 0;
+		for (WindowState state : this.windows.values()) {
+			synchronized (state) {
+				count += state.size();
+			}
+		}
+		return count;
+	}
+
+	@Override
+	protected void onInit() throws Exception {
+		super.onInit();
+		BeanFactory beanFactory = getBeanFactory();
+		if (beanFactory != null) {
+			if (this.outputProcessor instanceof BeanFactoryAware) {
+				((BeanFactoryAware) this.outputProcessor).setBeanFactory(beanFactory);
+			}
+			if (this.correlationStrategy instanceof BeanFactoryAware) {
+				((BeanFactoryAware) this.correlationStrategy).setBeanFactory(beanFactory);
+			}
+		}
+		if (this.messageStore != null && this.checkpointGroupId == null) {
+			this.checkpointGroupId = getComponentName();
+			Assert.state(this.checkpointGroupId != null,
+					"A 'checkpointGroupId' must be provided when a 'messageStore' is configured");
+		}
+		if (!this.window.isCountBased()) {
+			Assert.state(getTaskScheduler() != null, "A 'taskScheduler' is required for time-based windows");
+		}
+	}
+
+	@Override
+	protected void handleMessageInternal(Message<?> message) throws Exception {
+		if (this.messageStore != null) {
+			this.messageStore.addMessagesToGroup(this.checkpointGroupId, message);
+		}
+		bufferMessage(message);
+	}
+
+	private void bufferMessage(Message<?> message) {
+		Object key = this.correlationStrategy.getCorrelationKey(message);
+		Assert.state(key != null, "Null correlation not allowed.  Maybe the CorrelationStrategy is failing?");
+		long now = System.currentTimeMillis();
+		List<ClosedWindow> closed = null;
+		while (closed == null) {
+			WindowState state = this.windows.computeIfAbsent(key, this::createWindowState);
+			synchronized (state) {
+				if (!state.removed) {
+					closed = state.add(message, now);
+					if (state.size() == 0) {
+						removeState(state);
+					}
+				}
+			}
+		}
+		for (ClosedWindow closedWindow : closed) {
+			emit(closedWindow, false);
+		}
+	}
+
+	private WindowState createWindowState(Object key) {
+		if (this.window.isCountBased()) {
+			return new CountWindowState(key);
+		}
+		else if (WindowDefinition.Type.SESSION.equals(this.window.getType())) {
+			return new SessionWindowState(key);
+		}
+		else {
+			return new TimeWindowState(key);
+		}
+	}
+
+	private void removeState(WindowState state) {
+		state.removed = true;
+		this.windows.remove(state.key, state);
+	}
+
+	private void sweep() {
+		try {
+			long now = System.currentTimeMillis();
+			for (WindowState state : this.windows.values()) {
+				closeWindows(state, now, false);
+			}
+		}
+		finally {
+			if (this.running) {
+				scheduleSweep();
+			}
+		}
+	}
+
+	private void scheduleSweep() {
+		long slide = this.window.getSlide();
+		long now = System.currentTimeMillis();
+		this.sweepFuture = getTaskScheduler().schedule(this::sweep, new Date(now - (now % slide) + slide));
+	}
+
+	private void closeWindows(WindowState state, long now, boolean force) {
+		List<ClosedWindow> closed;
+		synchronized (state) {
+			if (state.removed) {
+				return;
+			}
+			closed = state.close(now, force);
+			if (state.size() == 0) {
+				removeState(state);
+			}
+		}
+		for (ClosedWindow closedWindow : closed) {
+			emit(closedWindow, !force);
+		}
+	}
+
+	private void emit(ClosedWindow closedWindow, boolean async) {
+		try {
+			if (!closedWindow.messages.isEmpty()) {
+				MessageGroup group = new SimpleMessageGroup(closedWindow.messages, Collections.emptyList(),
+						closedWindow.key, closedWindow.start, true, true);
+				Object result = this.outputProcessor.processMessageGroup(group);
+				sendOutputs(addWindowHeaders(result, closedWindow), closedWindow.lastMessage());
+			}
+			if (this.messageStore != null && !closedWindow.evicted.isEmpty()) {
+				this.messageStore.removeMessagesFromGroup(this.checkpointGroupId, closedWindow.evicted);
+			}
+		}
+		catch (RuntimeException e) {
+			if (!async) {
+				throw e;
+			}
+			sendErrorMessage(closedWindow.lastMessage(), e);
+		}
+	}
+
+	private Object addWindowHeaders(Object result, ClosedWindow closedWindow) {
+		if (closedWindow.end < 0) {
+			return result;
+		}
+		AbstractIntegrationMessageBuilder<?> builder;
+		if (result instanceof Message<?>) {
+			builder = getMessageBuilderFactory().fromMessage((Message<?>) result);
+		}
+		else if (result instanceof AbstractIntegrationMessageBuilder) {
+			builder = (AbstractIntegrationMessageBuilder<?>) result;
+		}
+		else if (result instanceof Iterable<?> && shouldSplitOutput((Iterable<?>) result)) {
+			return result;
+		}
+		else if (result != null) {
+			builder = getMessageBuilderFactory().withPayload(result);
+		}
+		else {
+			return null;
+		}
+		return builder.setHeader(WINDOW_START, closedWindow.start)
+				.setHeader(WINDOW_END, closedWindow.end)
+				.build();
+	}
+
+	private void recover() {
+		if (this.messageStore != null && !this.recovered.getAndSet(true)) {
+			MessageGroup group = this.messageStore.getMessageGroup(this.checkpointGroupId);
+			if (logger.isDebugEnabled() && group.size() > 0) {
+				logger.debug("Replaying " + group.size() + " checkpointed messages from group ["
+						+ this.checkpointGroupId + "]");
+			}
+			for (Message<?> message : group.getMessages()) {
+				bufferMessage(message);
+			}
+		}
+	}
+
+	@Override
+	public void start() {
+		if (!this.running) {
+			this.running = true;
+			recover();
+			if (!this.window.isCountBased() && !WindowDefinition.Type.SESSION.equals(this.window.getType())) {
+				scheduleSweep();
+			}
+		}
+	}
+
+	@Override
+	public void stop() {
+		if (this.running) {
+			this.running = false;
+			ScheduledFuture<?> future = this.sweepFuture;
+			if (future != null) {
+				future.cancel(false);
+			}
+			if (this.flushOnStop) {
+				for (WindowState state : this.windows.values()) {
+					closeWindows(state, System.currentTimeMillis(), true);
+				}
+			}
+		}
+	}
+
+	@Override
+	public boolean isRunning() {
+		return this.running;
+	}
+
+	@Override
+	public void destroy() throws Exception {
+		stop();
+		for (WindowState state : this.windows.values()) {
+			synchronized (state) {
+				state.cancel();
+			}
+		}
+	}
+
+
+	/**
+	 * The buffered messages for one correlation key; all access is synchronized on the instance.
+	 */
+	private abstract class WindowState {
+
+		protected final Object key;
+
+		protected boolean removed;
+
+		WindowState(Object key) {
+			this.key = key;
+		}
+
+		abstract List<ClosedWindow> add(Message<?> message, long now);
+
+		abstract List<ClosedWindow> close(long now, boolean force);
+
+		abstract int size();
+
+		void cancel() {
+		}
+
+	}
+
+	/**
+	 * Tumbling and sliding time windows: messages are kept in panes of {@code slide}
+	 * millis and each window is the union of the {@code size / slide} panes it covers.
+	 */
+	private final class TimeWindowState extends WindowState {
+
+		private final Deque<Pane> panes = new ArrayDeque<>();
+
+		private final long size = WindowingMessageHandler.this.window.getSize();
+
+		private final long slide = WindowingMessageHandler.this.window.getSlide();
+
+		private long nextWindowEnd = -1;
+
+		private int count;
+
+		TimeWindowState(Object key) {
+			super(key);
+		}
+
+		@Override
+		List<ClosedWindow> add(Message<?> message, long now) {
+			long paneStart = now - (now % this.slide);
+			Pane last = this.panes.peekLast();
+			if (last == null || last.start < paneStart) {
+				last = new Pane(paneStart);
+				this.panes.addLast(last);
+			}
+			last.messages.add(message);
+			this.count++;
+			if (this.nextWindowEnd < 0) {
+				this.nextWindowEnd = last.start + this.slide;
+			}
+			return Collections.emptyList();
+		}
+
+		@Override
+		List<ClosedWindow> close(long now, boolean force) {
+			List<ClosedWindow> closed = null;
+			while (!this.panes.isEmpty() && (force || this.nextWindowEnd <= now)) {
+				long end = this.nextWindowEnd;
+				long start = end - this.size;
+				List<Message<?>> messages;
+				List<Message<?>> evicted;
+				if (this.size == this.slide) {
+					messages = this.panes.peekFirst().start < end
+							? this.panes.pollFirst().messages
+							: Collections.emptyList();
+					evicted = messages;
+				}
+				else {
+					messages = new ArrayList<>();
+					for (Pane pane : this.panes) {
+						if (pane.start >= end) {
+							break;
+						}
+						messages.addAll(pane.messages);
+					}
+					evicted = new ArrayList<>();
+					while (!this.panes.isEmpty() && this.panes.peekFirst().start < start + this.slide) {
+						evicted.addAll(this.panes.pollFirst().messages);
+					}
+				}
+				this.count -= evicted.size();
+				if (!messages.isEmpty()) {
+					if (closed == null) {
+						closed = new ArrayList<>();
+					}
+					closed.add(new ClosedWindow(this.key, messages, evicted, start, end));
+				}
+				Pane first = this.panes.peekFirst();
+				this.nextWindowEnd = first == null
+						? -1
+						: Math.max(end + this.slide, first.start + this.slide);
+			}
+			return closed == null ? Collections.emptyList() : closed;
+		}
+
+		@Override
+		int size() {
+			return this.count;
+		}
+
+	}
+
+	/**
+	 * Tumbling and sliding count windows: a window with (up to) the last
+	 * {@code size} messages is emitted every {@code slide} messages.
+	 */
+	private final class CountWindowState extends WindowState {
+
+		private final Deque<Message<?>> buffer = new ArrayDeque<>();
+
+		private final int size = (int) WindowingMessageHandler.this.window.getSize();
+
+		private final int slide = (int) WindowingMessageHandler.this.window.getSlide();
+
+		private int sinceLastWindow;
+
+		CountWindowState(Object key) {
+			super(key);
+		}
+
+		@Override
+		List<ClosedWindow> add(Message<?> message, long now) {
+			this.buffer.addLast(message);
+			List<Message<?>> evicted = Collections.emptyList();
+			if (this.buffer.size() > this.size) {
+				evicted = Collections.singletonList(this.buffer.pollFirst());
+			}
+			if (++this.sinceLastWindow >= this.slide) {
+				this.sinceLastWindow = 0;
+				List<Message<?>> messages = new ArrayList<>(this.buffer);
+				if (this.size == this.slide) {
+					this.buffer.clear();
+					evicted = messages;
+				}
+				return Collections.singletonList(new ClosedWindow(this.key, messages, evicted, -1, -1));
+			}
+			else if (!evicted.isEmpty()) {
+				return Collections.singletonList(new ClosedWindow(this.key, Collections.emptyList(), evicted, -1, -1));
+			}
+			return Collections.emptyList();
+		}
+
+		@Override
+		List<ClosedWindow> close(long now, boolean force) {
+			if (!force || this.buffer.isEmpty()) {
+				return Collections.emptyList();
+			}
+			List<Message<?>> messages = new ArrayList<>(this.buffer);
+			this.buffer.clear();
+			this.sinceLastWindow = 0;
+			return Collections.singletonList(new ClosedWindow(this.key, messages, messages, -1, -1));
+		}
+
+		@Override
+		int size() {
+			return this.buffer.size();
+		}
+
+	}
+
+	/**
+	 * Session windows: closed by a task scheduled for the end of the inactivity gap;
+	 * the task reschedules itself if more messages arrived meanwhile.
+	 */
+	private final class SessionWindowState extends WindowState {
+
+		private final List<Message<?>> messages = new ArrayList<>();
+
+		private final long gap = WindowingMessageHandler.this.window.getSize();
+
+		private long start;
+
+		private long lastActivity;
+
+		private ScheduledFuture<?> future;
+
+		SessionWindowState(Object key) {
+			super(key);
+		}
+
+		@Override
+		List<ClosedWindow> add(Message<?> message, long now) {
+			if (this.messages.isEmpty()) {
+				this.start = now;
+			}
+			this.messages.add(message);
+			this.lastActivity = now;
+			if (this.future == null) {
+				schedule();
+			}
+			return Collections.emptyList();
+		}
+
+		private void schedule() {
+			this.future = getTaskScheduler().schedule(
+					() -> closeWindows(this, System.currentTimeMillis(), false),
+					new Date(this.lastActivity + this.gap));
+		}
+
+		@Override
+		List<ClosedWindow> close(long now, boolean force) {
+			if (this.messages.isEmpty()) {
+				cancel();
+				return Collections.emptyList();
+			}
+			if (!force && now - this.lastActivity < this.gap) {
+				schedule();
+				return Collections.emptyList();
+			}
+			cancel();
+			List<Message<?>> closed = new ArrayList<>(this.messages);
+			this.messages.clear();
+			return Collections.singletonList(
+					new ClosedWindow(this.key, closed, closed, this.start, this.lastActivity + this.gap));
+		}
+
+		@Override
+		int size() {
+			return this.messages.size();
+		}
+
+		@Override
+		void cancel() {
+			if (this.future != null) {
+				this.future.cancel(false);
+				this.future = null;
+			}
+		}
+
+	}
+
+	private static final class Pane {
+
+		private final long start;
+
+		private final List<Message<?>> messages = new ArrayList<>();
+
+		Pane(long start) {
+			this.start = start;
+		}
+
+	}
+
+	private static final class ClosedWindow {
+
+		private final Object key;
+
+		private final List<Message<?>> messages;
+
+		private final List<Message<?>> evicted;
+
+		private final long start;
+
+		private final long end;
+
+		ClosedWindow(Object key, List<Message<?>> messages, List<Message<?>> evicted, long start, long end) {
+			this.key = key;
+			this.messages = messages;
+			this.evicted = evicted;
+			this.start = start;
+			this.end = end;
+		}
+
+		Message<?> lastMessage() {
+			return this.messages.isEmpty()
+					? this.evicted.get(this.evicted.size() - 1)
+					: this.messages.get(this.messages.size() - 1);
+		}
+
+	}
+
+}
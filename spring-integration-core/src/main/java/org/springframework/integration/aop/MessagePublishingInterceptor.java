@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2016 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,6 +19,7 @@ package org.springframework.integration.aop;
 import java.lang.reflect.Method;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.aopalliance.intercept.MethodInterceptor;
 import org.aopalliance.intercept.MethodInvocation;
@@ -29,6 +30,7 @@ import org.springframework.beans.factory.BeanFactory;
 import org.springframework.beans.factory.BeanFactoryAware;
 import org.springframework.core.LocalVariableTableParameterNameDiscoverer;
 import org.springframework.core.ParameterNameDiscoverer;
+import org.springframework.expression.EvaluationContext;
 import org.springframework.expression.EvaluationException;
 import org.springframework.expression.Expression;
 import org.springframework.expression.ExpressionParser;
@@ -36,6 +38,7 @@ import org.springframework.expression.ParseException;
 import org.springframework.expression.spel.standard.SpelExpressionParser;
 import org.springframework.expression.spel.support.StandardEvaluationContext;
 import org.springframework.integration.core.MessagingTemplate;
+import org.springframework.integration.expression.DelegatingEvaluationContext;
 import org.springframework.integration.expression.ExpressionUtils;
 import org.springframework.integration.support.AbstractIntegrationMessageBuilder;
 import org.springframework.integration.support.DefaultMessageBuilderFactory;
@@ -64,6 +67,8 @@ public class MessagePublishingInterceptor implements MethodInterceptor, BeanFact
 
 	private final ExpressionParser parser = new SpelExpressionParser();
 
+	private final Map<String, Expression> expressions = new ConcurrentHashMap<>();
+
 	private volatile PublisherMetadataSource metadataSource;
 
 	private volatile DestinationResolver<MessageChannel> channelResolver;
@@ -78,6 +83,8 @@ public class MessagePublishingInterceptor implements MethodInterceptor, BeanFact
 
 	private volatile String defaultChannelName;
 
+	private volatile StandardEvaluationContext evaluationContext;
+
 	public MessagePublishingInterceptor(PublisherMetadataSource metadataSource) {
 		Assert.notNull(metadataSource, "metadataSource must not be null");
 		this.metadataSource = metadataSource;
@@ -120,7 +127,10 @@ public class MessagePublishingInterceptor implements MethodInterceptor, BeanFact
 	@Override
 	public final Object invoke(final MethodInvocation invocation) throws Throwable {
 		Assert.notNull(this.metadataSource, "PublisherMetadataSource is required.");
-		final StandardEvaluationContext context = ExpressionUtils.createStandardEvaluationContext(this.beanFactory);
+		if (this.evaluationContext == null) {
+			this.evaluationContext = ExpressionUtils.createStandardEvaluationContext(this.beanFactory);
+		}
+		final EvaluationContext context = new DelegatingEvaluationContext(this.evaluationContext);
 		Class<?> targetClass = AopUtils.getTargetClass(invocation.getThis());
 		final Method method = AopUtils.getMostSpecificMethod(invocation.getMethod(), targetClass);
 		String[] argumentNames = this.resolveArgumentNames(method);
@@ -155,12 +165,12 @@ public class MessagePublishingInterceptor implements MethodInterceptor, BeanFact
 		return this.parameterNameDiscoverer.getParameterNames(method);
 	}
 
-	private void publishMessage(Method method, StandardEvaluationContext context) throws Exception {
+	private void publishMessage(Method method, EvaluationContext context) throws Exception {
 		String payloadExpressionString = this.metadataSource.getPayloadExpression(method);
 		if (!StringUtils.hasText(payloadExpressionString)) {
 			payloadExpressionString = "#" + PublisherMetadataSource.RETURN_VALUE_VARIABLE_NAME;
 		}
-		Expression expression = this.parser.parseExpression(payloadExpressionString);
+		Expression expression = this.expressions.computeIfAbsent(payloadExpressionString, this.parser::parseExpression);
 		Object result = expression.getValue(context);
 		if (result != null) {
 			AbstractIntegrationMessageBuilder<?> builder = (result instanceof Message<?>)
@@ -197,7 +207,7 @@ public class MessagePublishingInterceptor implements MethodInterceptor, BeanFact
 		}
 	}
 
-	private Map<String, Object> evaluateHeaders(Method method, StandardEvaluationContext context)
+	private Map<String, Object> evaluateHeaders(Method method, EvaluationContext context)
 			throws ParseException, EvaluationException {
 
 		Map<String, String> headerExpressionMap = this.metadataSource.getHeaderExpressions(method);
@@ -206,7 +216,8 @@ public class MessagePublishingInterceptor implements MethodInterceptor, BeanFact
 			for (Map.Entry<String, String> headerExpressionEntry : headerExpressionMap.entrySet()) {
 				String headerExpression = headerExpressionEntry.getValue();
 				if (StringUtils.hasText(headerExpression)) {
-					Expression expression = this.parser.parseExpression(headerExpression);
+					Expression expression = this.expressions.computeIfAbsent(headerExpression,
+							this.parser::parseExpression);
 					Object result = expression.getValue(context);
 					if (result != null) {
 						headers.put(headerExpressionEntry.getKey(), result);
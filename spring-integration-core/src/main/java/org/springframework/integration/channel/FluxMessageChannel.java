@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,24 +16,42 @@
 
 package org.springframework.integration.channel;
 
-import java.util.ArrayList;
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.reactivestreams.Publisher;
 import org.reactivestreams.Subscriber;
 
 import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageDeliveryException;
 import org.springframework.util.Assert;
 
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.BufferOverflowStrategy;
 import reactor.core.publisher.ConnectableFlux;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.FluxSink;
+import reactor.util.concurrent.Queues;
 
 /**
  * The {@link AbstractMessageChannel} implementation for the
  * Reactive Streams {@link Publisher} based on the Project Reactor {@link Flux}.
+ * <p>
+ * By default, messages are emitted to the subscribers without buffering; sending to a
+ * channel whose subscribers can't keep up fails. Starting with version 5.1, a
+ * {@link #setBufferSize(int) bufferSize} can be configured to hold up to that many
+ * messages for slow subscribers, with an {@link OverflowPolicy} applied when the buffer
+ * is full. The {@link #setPrefetch(int) prefetch} and {@link #setLimitRate(int) limitRate}
+ * options control the demand requested from the buffer, and
+ * {@link #setBatchSize(int) batchSize} with {@link #setBatchTimeout(Duration) batchTimeout}
+ * emit messages in batches: a message with a {@code List<Message<?>>} payload.
+ * These options must be configured before the first subscription.
  *
  * @author Artem Bilan
  * @author Gary Russell
@@ -43,40 +61,298 @@ import reactor.core.publisher.FluxSink;
 public class FluxMessageChannel extends AbstractMessageChannel
 		implements Publisher<Message<?>>, ReactiveStreamsSubscribableChannel {
 
-	private final List<Subscriber<? super Message<?>>> subscribers = new ArrayList<>();
+	private final List<Subscriber<? super Message<?>>> subscribers = new CopyOnWriteArrayList<>();
 
 	private final Map<Publisher<Message<?>>, ConnectableFlux<Message<?>>> publishers = new ConcurrentHashMap<>();
 
-	private final Flux<Message<?>> flux;
+	private final AtomicLong emitted = new AtomicLong();
 
-	private FluxSink<Message<?>> sink;
+	private final AtomicLong delivered = new AtomicLong();
+
+	private final AtomicLong dropped = new AtomicLong();
+
+	private final AtomicInteger blockedSenders = new AtomicInteger();
+
+	private final Object capacityMonitor = new Object();
+
+	private int bufferSize;
+
+	private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+
+	private int prefetch = Queues.SMALL_BUFFER_SIZE;
+
+	private int limitRate;
+
+	private int batchSize;
+
+	private Duration batchTimeout;
+
+	private volatile Flux<Message<?>> flux;
+
+	private volatile FluxSink<Message<?>> sink;
 
 	public FluxMessageChannel() {
-		this.flux =
-				Flux.<Message<?>>create(emitter -> this.sink = emitter, FluxSink.OverflowStrategy.IGNORE)
-						.publish()
-						.autoConnect();
+		super();
+	}
+
+	/**
+	 * Create a channel buffering up to {@code bufferSize} messages for slow subscribers.
+	 * @param bufferSize the buffer size.
+	 * @param overflowPolicy the policy applied when the buffer is full.
+	 * @since 5.1
+	 */
+	public FluxMessageChannel(int bufferSize, OverflowPolicy overflowPolicy) {
+		setBufferSize(bufferSize);
+		setOverflowPolicy(overflowPolicy);
+	}
+
+	/**
+	 * Set the maximum number of messages buffered for slow subscribers, in addition
+	 * to the {@link #setPrefetch(int) prefetch} queue. By default, there is no buffer.
+	 * @param bufferSize the buffer size.
+	 * @since 5.1
+	 */
+	public void setBufferSize(int bufferSize) {
+		Assert.isTrue(bufferSize > 0, "'bufferSize' must be greater than 0");
+		assertNotSubscribed();
+		this.bufferSize = bufferSize;
+	}
+
+	/**
+	 * Set the policy applied when a message is sent and the buffer is full;
+	 * {@link OverflowPolicy#BLOCK} by default.
+	 * The counts are approximate under concurrent sends.
+	 * @param overflowPolicy the policy.
+	 * @since 5.1
+	 */
+	public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+		Assert.notNull(overflowPolicy, "'overflowPolicy' must not be null");
+		assertNotSubscribed();
+		this.overflowPolicy = overflowPolicy;
+	}
+
+	/**
+	 * Set the number of messages requested in advance (and queued) for the subscribers;
+	 * 256 by default.
+	 * @param prefetch the prefetch.
+	 * @since 5.1
+	 */
+	public void setPrefetch(int prefetch) {
+		Assert.isTrue(prefetch > 0, "'prefetch' must be greater than 0");
+		assertNotSubscribed();
+		this.prefetch = prefetch;
+	}
+
+	/**
+	 * Split the demand of each subscriber into requests of at most {@code limitRate}
+	 * messages, replenished when 75% of them have been delivered.
+	 * @param limitRate the limit rate.
+	 * @since 5.1
+	 */
+	public void setLimitRate(int limitRate) {
+		Assert.isTrue(limitRate > 0, "'limitRate' must be greater than 0");
+		assertNotSubscribed();
+		this.limitRate = limitRate;
+	}
+
+	/**
+	 * Emit messages in batches of up to {@code batchSize} messages; each batch is
+	 * a message with the {@code List<Message<?>>} as its payload.
+	 * @param batchSize the batch size.
+	 * @since 5.1
+	 * @see #setBatchTimeout(Duration)
+	 */
+	public void setBatchSize(int batchSize) {
+		Assert.isTrue(batchSize > 0, "'batchSize' must be greater than 0");
+		assertNotSubscribed();
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Set the maximum time to wait for a batch to fill before emitting it;
+	 * ignored unless a {@link #setBatchSize(int) batchSize} is provided.
+	 * Defaults to one second.
+	 * @param batchTimeout the batch timeout.
+	 * @since 5.1
+	 */
+	public void setBatchTimeout(Duration batchTimeout) {
+		Assert.notNull(batchTimeout, "'batchTimeout' must not be null");
+		assertNotSubscribed();
+		this.batchTimeout = batchTimeout;
+	}
+
+	/**
+	 * Return the number of messages sent to the channel but not yet passed to the
+	 * subscribers' prefetch queue.
+	 * @return the buffer depth.
+	 * @since 5.1
+	 */
+	public long getBufferDepth() {
+		return this.emitted.get() - this.delivered.get() - this.dropped.get();
+	}
+
+	/**
+	 * Return the number of messages dropped because of the {@link OverflowPolicy}.
+	 * @return the dropped count.
+	 * @since 5.1
+	 */
+	public long getDroppedCount() {
+		return this.dropped.get();
+	}
+
+	/**
+	 * Return the current demand from the subscribers, or 0 if there are no subscribers.
+	 * @return the outstanding demand.
+	 * @since 5.1
+	 */
+	public long getDemand() {
+		FluxSink<Message<?>> sink = this.sink;
+		return sink != null ? sink.requestedFromDownstream() : 0;
+	}
+
+	@Override
+	public void registerMeterRegistry(MeterRegistry registry) {
+		super.registerMeterRegistry(registry);
+		String name = getComponentName() == null ? "unknown" : getComponentName();
+		Gauge.builder(METER_PREFIX + "channel.buffer.depth", this, FluxMessageChannel::getBufferDepth)
+				.tag("type", "channel")
+				.tag("name", name)
+				.description("Messages buffered for the subscribers")
+				.register(registry);
+		Gauge.builder(METER_PREFIX + "channel.demand", this, FluxMessageChannel::getDemand)
+				.tag("type", "channel")
+				.tag("name", name)
+				.description("Messages requested by the subscribers")
+				.register(registry);
+		Gauge.builder(METER_PREFIX + "channel.dropped", this, FluxMessageChannel::getDroppedCount)
+				.tag("type", "channel")
+				.tag("name", name)
+				.description("Messages dropped because of a full buffer")
+				.register(registry);
 	}
 
 	@Override
 	protected boolean doSend(Message<?> message, long timeout) {
 		Assert.state(this.subscribers.size() > 0,
 				() -> "The [" + this + "] doesn't have subscribers to accept messages");
+		if (this.bufferSize > 0
+				&& (OverflowPolicy.BLOCK.equals(this.overflowPolicy) || OverflowPolicy.ERROR.equals(this.overflowPolicy))) {
+
+			if (!reserve(message, timeout)) {
+				return false;
+			}
+		}
+		else {
+			this.emitted.incrementAndGet();
+		}
 		this.sink.next(message);
 		return true;
 	}
 
+	private boolean reserve(Message<?> message, long timeout) {
+		if (this.emitted.incrementAndGet() - this.delivered.get() <= this.bufferSize) {
+			return true;
+		}
+		this.emitted.decrementAndGet();
+		if (OverflowPolicy.ERROR.equals(this.overflowPolicy)) {
+			throw new MessageDeliveryException(message,
+					"The buffer of [" + this + "] is full (" + this.bufferSize + " messages)");
+		}
+		long deadline = timeout < 0 ? Long.MAX_VALUE : System.currentTimeMillis() + timeout;
+		this.blockedSenders.incrementAndGet();
+		try {
+			synchronized (this.capacityMonitor) {
+				while (true) {
+					if (this.emitted.incrementAndGet() - this.delivered.get() <= this.bufferSize) {
+						return true;
+					}
+					this.emitted.decrementAndGet();
+					long remaining = deadline - System.currentTimeMillis();
+					if (remaining <= 0) {
+						return false;
+					}
+					this.capacityMonitor.wait(remaining);
+				}
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+		finally {
+			this.blockedSenders.decrementAndGet();
+		}
+	}
+
+	private void delivered(Message<?> message) {
+		this.delivered.incrementAndGet();
+		if (this.blockedSenders.get() > 0) {
+			synchronized (this.capacityMonitor) {
+				this.capacityMonitor.notifyAll();
+			}
+		}
+	}
+
+	private void dropped(Message<?> message) {
+		this.dropped.incrementAndGet();
+		if (logger.isDebugEnabled()) {
+			logger.debug("The buffer of [" + this + "] is full; dropped " + message);
+		}
+	}
+
 	@Override
 	public void subscribe(Subscriber<? super Message<?>> subscriber) {
 		this.subscribers.add(subscriber);
 
-		this.flux.doOnCancel(() -> this.subscribers.remove(subscriber))
-				.retry()
+		Flux<Message<?>> flux = getFlux().doOnCancel(() -> this.subscribers.remove(subscriber));
+		if (this.limitRate > 0) {
+			flux = flux.limitRate(this.limitRate);
+		}
+		flux.retry()
 				.subscribe(subscriber);
 
 		this.publishers.values().forEach(ConnectableFlux::connect);
 	}
 
+	private Flux<Message<?>> getFlux() {
+		if (this.flux == null) {
+			synchronized (this.subscribers) {
+				if (this.flux == null) {
+					this.flux = buildFlux();
+				}
+			}
+		}
+		return this.flux;
+	}
+
+	private Flux<Message<?>> buildFlux() {
+		Flux<Message<?>> flux;
+		if (this.bufferSize > 0) {
+			flux = Flux.create(emitter -> this.sink = emitter, FluxSink.OverflowStrategy.BUFFER);
+			if (OverflowPolicy.DROP.equals(this.overflowPolicy)) {
+				flux = flux.onBackpressureBuffer(this.bufferSize, this::dropped, BufferOverflowStrategy.DROP_LATEST);
+			}
+			else if (OverflowPolicy.LATEST.equals(this.overflowPolicy)) {
+				flux = flux.onBackpressureBuffer(this.bufferSize, this::dropped, BufferOverflowStrategy.DROP_OLDEST);
+			}
+		}
+		else {
+			flux = Flux.create(emitter -> this.sink = emitter, FluxSink.OverflowStrategy.IGNORE);
+		}
+		flux = flux.doOnNext(this::delivered);
+		if (this.batchSize > 0) {
+			flux = flux.bufferTimeout(this.batchSize,
+					this.batchTimeout != null ? this.batchTimeout : Duration.ofSeconds(1))
+					.map(batch -> getMessageBuilderFactory().withPayload(batch).build());
+		}
+		return flux.publish(this.prefetch)
+				.autoConnect();
+	}
+
+	private void assertNotSubscribed() {
+		Assert.state(this.flux == null, "The channel options can't be changed after subscription");
+	}
+
 	@Override
 	public void subscribeTo(Publisher<Message<?>> publisher) {
 		ConnectableFlux<Message<?>> connectableFlux =
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.channel;
+
+import org.springframework.messaging.MessageDeliveryException;
+
+/**
+ * The policy applied when a message is handed to a full buffer or queue; for example,
+ * the buffer of a {@link FluxMessageChannel}.
+ *
+ * @since 5.1
+ */
+public enum OverflowPolicy {
+
+	/**
+	 * Block the sending thread until there is room in the buffer,
+	 * or the send timeout (if any) elapses.
+	 */
+	BLOCK,
+
+	/**
+	 * Drop the message being sent.
+	 */
+	DROP,
+
+	/**
+	 * Buffer the message being sent and drop the oldest buffered message.
+	 */
+	LATEST,
+
+	/**
+	 * Reject the message being sent with a {@link MessageDeliveryException}.
+	 */
+	ERROR
+
+}
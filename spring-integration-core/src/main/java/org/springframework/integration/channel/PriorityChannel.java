@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2016 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -119,13 +119,19 @@ public class PriorityChannel extends QueueChannel {
 
 	@Override
 	protected boolean doSend(Message<?> message, long timeout) {
+		long start = System.currentTimeMillis();
 		if (!this.upperBound.tryAcquire(timeout)) {
 			return false;
 		}
 		if (!this.useMessageStore) {
 			message = new MessageWrapper(message);
 		}
-		return super.doSend(message, 0);
+		long remaining = timeout > 0 ? Math.max(0, timeout - (System.currentTimeMillis() - start)) : timeout;
+		if (!enqueue(message, remaining, 0)) {
+			this.upperBound.release();
+			return false;
+		}
+		return true;
 	}
 
 	@Override
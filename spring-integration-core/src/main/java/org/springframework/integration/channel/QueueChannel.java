@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2014 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -26,6 +26,9 @@ import java.util.concurrent.TimeUnit;
 
 import org.springframework.integration.core.MessageSelector;
 import org.springframework.integration.support.management.QueueChannelManagement;
+import org.springframework.integration.util.ByteUpperBound;
+import org.springframework.integration.util.DefaultMessageSizeEstimator;
+import org.springframework.integration.util.MessageSizeEstimator;
 import org.springframework.messaging.Message;
 import org.springframework.util.Assert;
 
@@ -35,6 +38,9 @@ import org.springframework.util.Assert;
  * The capacity must be a positive integer value. For a zero-capacity version
  * based upon a {@link java.util.concurrent.SynchronousQueue}, consider the
  * {@link RendezvousChannel}.
+ * <p>
+ * The channel can also be bounded by the total estimated size of the queued messages;
+ * see {@link #setByteCapacity(long)}.
  *
  * @author Mark Fisher
  * @author Oleg Zhurakousky
@@ -48,6 +54,16 @@ public class QueueChannel extends AbstractPollableChannel implements QueueChanne
 
 	protected final Semaphore queueSemaphore = new Semaphore(0);
 
+	private final Object byteUpperBoundMonitor = new Object();
+
+	private volatile MessageSizeEstimator messageSizeEstimator = new DefaultMessageSizeEstimator();
+
+	private volatile boolean byteCapacitySet;
+
+	private volatile long byteCapacity;
+
+	private volatile ByteUpperBound byteUpperBound;
+
 	/**
 	 * Create a channel with the specified queue.
 	 *
@@ -78,9 +94,75 @@ public class QueueChannel extends AbstractPollableChannel implements QueueChanne
 		this(new LinkedBlockingQueue<Message<?>>());
 	}
 
+	/**
+	 * Set the maximum total size of the queued messages, as estimated by the
+	 * {@link #setMessageSizeEstimator(MessageSizeEstimator) message size estimator};
+	 * senders wait for space with the send timeout semantics, as for the message count
+	 * capacity. A message larger than the byte capacity is accepted when the channel
+	 * is empty. A value less than 1 does not bound the channel, but maintains the
+	 * {@link #getQueueBytes() queue bytes} statistic.
+	 * <p>
+	 * The bound is initialized on first use with the size of the messages already in the
+	 * queue, for example the messages of a persistent
+	 * {@link org.springframework.integration.store.MessageGroupQueue}.
+	 * @param byteCapacity the byte capacity.
+	 * @since 5.1
+	 */
+	public void setByteCapacity(long byteCapacity) {
+		this.byteCapacity = byteCapacity;
+		this.byteCapacitySet = true;
+		this.byteUpperBound = null;
+	}
+
+	/**
+	 * Set the {@link MessageSizeEstimator} used with the
+	 * {@link #setByteCapacity(long) byte capacity}; default
+	 * {@link DefaultMessageSizeEstimator}.
+	 * @param messageSizeEstimator the estimator.
+	 * @since 5.1
+	 */
+	public void setMessageSizeEstimator(MessageSizeEstimator messageSizeEstimator) {
+		Assert.notNull(messageSizeEstimator, "'messageSizeEstimator' must not be null");
+		this.messageSizeEstimator = messageSizeEstimator;
+		this.byteUpperBound = null;
+	}
+
 	@Override
 	protected boolean doSend(Message<?> message, long timeout) {
+		return enqueue(message, timeout, timeout);
+	}
+
+	/*
+	 * Acquire the byte capacity (if any) within the byteTimeout, then offer to the
+	 * queue within what remains of the offerTimeout.
+	 */
+	boolean enqueue(Message<?> message, long byteTimeout, long offerTimeout) {
 		Assert.notNull(message, "'message' must not be null");
+		ByteUpperBound byteUpperBound = obtainByteUpperBound();
+		if (byteUpperBound == null) {
+			return doOffer(message, offerTimeout);
+		}
+		long size = this.messageSizeEstimator.estimateSize(message);
+		long start = System.currentTimeMillis();
+		if (!byteUpperBound.tryAcquire(size, byteTimeout)) {
+			return false;
+		}
+		boolean sent = false;
+		try {
+			long remaining = offerTimeout > 0
+					? Math.max(0, offerTimeout - (System.currentTimeMillis() - start))
+					: offerTimeout;
+			sent = doOffer(message, remaining);
+			return sent;
+		}
+		finally {
+			if (!sent) {
+				byteUpperBound.release(size);
+			}
+		}
+	}
+
+	private boolean doOffer(Message<?> message, long timeout) {
 		try {
 			if (this.queue instanceof BlockingQueue) {
 				BlockingQueue<Message<?>> blockingQueue = (BlockingQueue<Message<?>>) this.queue;
@@ -110,6 +192,46 @@ public class QueueChannel extends AbstractPollableChannel implements QueueChanne
 
 	@Override
 	protected Message<?> doReceive(long timeout) {
+		Message<?> message = doPoll(timeout);
+		if (message != null) {
+			released(message);
+		}
+		return message;
+	}
+
+	private void released(Message<?> message) {
+		ByteUpperBound byteUpperBound = obtainByteUpperBound();
+		if (byteUpperBound != null) {
+			byteUpperBound.release(this.messageSizeEstimator.estimateSize(message));
+		}
+	}
+
+	/*
+	 * Create the bound on first use, holding the size of the messages already queued,
+	 * which have not been acquired through this channel.
+	 */
+	private ByteUpperBound obtainByteUpperBound() {
+		if (!this.byteCapacitySet) {
+			return null;
+		}
+		ByteUpperBound byteUpperBound = this.byteUpperBound;
+		if (byteUpperBound == null) {
+			synchronized (this.byteUpperBoundMonitor) {
+				byteUpperBound = this.byteUpperBound;
+				if (byteUpperBound == null) {
+					long queued = 0;
+					for (Message<?> message : this.queue) {
+						queued += this.messageSizeEstimator.estimateSize(message);
+					}
+					byteUpperBound = new ByteUpperBound(this.byteCapacity, queued);
+					this.byteUpperBound = byteUpperBound;
+				}
+			}
+		}
+		return byteUpperBound;
+	}
+
+	private Message<?> doPoll(long timeout) {
 		try {
 			if (timeout > 0) {
 				if (this.queue instanceof BlockingQueue) {
@@ -157,6 +279,7 @@ public class QueueChannel extends AbstractPollableChannel implements QueueChanne
 				clearedMessages.add(message);
 			}
 		}
+		clearedMessages.forEach(this::released);
 		return clearedMessages;
 	}
 
@@ -171,6 +294,7 @@ public class QueueChannel extends AbstractPollableChannel implements QueueChanne
 			Message<?> message = (Message<?>) o;
 			if (!selector.accept(message) && this.queue.remove(message)) {
 				purgedMessages.add(message);
+				released(message);
 			}
 		}
 		return purgedMessages;
@@ -192,4 +316,16 @@ public class QueueChannel extends AbstractPollableChannel implements QueueChanne
 		}
 	}
 
+	@Override
+	public long getQueueBytes() {
+		ByteUpperBound byteUpperBound = obtainByteUpperBound();
+		return byteUpperBound != null ? byteUpperBound.getUsedBytes() : 0;
+	}
+
+	@Override
+	public long getRemainingByteCapacity() {
+		ByteUpperBound byteUpperBound = obtainByteUpperBound();
+		return byteUpperBound != null ? byteUpperBound.getAvailableBytes() : Long.MAX_VALUE;
+	}
+
 }
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.codec;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectStreamConstants;
+import java.io.OutputStream;
+
+import org.springframework.core.serializer.Deserializer;
+import org.springframework.core.serializer.Serializer;
+import org.springframework.integration.message.AdviceMessage;
+import org.springframework.integration.support.MutableMessage;
+import org.springframework.messaging.support.ErrorMessage;
+import org.springframework.messaging.support.GenericMessage;
+import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
+
+/**
+ * A {@link Serializer} and {@link Deserializer} that delegates to a {@link Codec},
+ * for example a {@link org.springframework.integration.codec.kryo.MessageCodec},
+ * for use by message stores instead of Java serialization.
+ * <p>
+ * Each record starts with a header: a two byte marker ({@code 0x5349}, which can't be
+ * confused with the Java serialization stream magic number), a format version byte and
+ * the type of the object; the common message types are written as a one byte id, others
+ * as the class name. The codec encoded object follows.
+ * <p>
+ * Use a {@link org.springframework.integration.support.converter.WhiteListDeserializingConverter}
+ * with {@code javaSerializationFallback} to read records previously written with Java
+ * serialization as well.
+ *
+ * @since 5.1
+ */
+public class CodecSerializer implements Serializer<Object>, Deserializer<Object> {
+
+	/**
+	 * The marker at the start of each record.
+	 */
+	public static final int MAGIC = 0x5349;
+
+	/**
+	 * The current format version.
+	 */
+	public static final int FORMAT_VERSION = 1;
+
+	private static final Class<?>[] WELL_KNOWN_TYPES =
+			{ null, GenericMessage.class, ErrorMessage.class, MutableMessage.class, AdviceMessage.class };
+
+	private final Codec codec;
+
+	private final ClassLoader classLoader;
+
+	public CodecSerializer(Codec codec) {
+		this(codec, ClassUtils.getDefaultClassLoader());
+	}
+
+	public CodecSerializer(Codec codec, ClassLoader classLoader) {
+		Assert.notNull(codec, "'codec' cannot be null");
+		this.codec = codec;
+		this.classLoader = classLoader;
+	}
+
+	@Override
+	public void serialize(Object object, OutputStream outputStream) throws IOException {
+		Assert.notNull(object, "cannot serialize a null object");
+		DataOutputStream dataOutput = new DataOutputStream(outputStream);
+		dataOutput.writeShort(MAGIC);
+		dataOutput.writeByte(FORMAT_VERSION);
+		int typeId = typeIdFor(object.getClass());
+		dataOutput.writeByte(typeId);
+		if (typeId == 0) {
+			dataOutput.writeUTF(object.getClass().getName());
+		}
+		dataOutput.flush();
+		this.codec.encode(object, outputStream);
+	}
+
+	@Override
+	public Object deserialize(InputStream inputStream) throws IOException {
+		DataInputStream dataInput = new DataInputStream(inputStream);
+		int magic = dataInput.readUnsignedShort();
+		if (magic != MAGIC) {
+			if (magic == (ObjectStreamConstants.STREAM_MAGIC & 0xFFFF)) {
+				throw new IOException("The data is Java serialized; use a WhiteListDeserializingConverter "
+						+ "with 'javaSerializationFallback' to read it");
+			}
+			throw new IOException("Unknown record format: " + Integer.toHexString(magic));
+		}
+		int version = dataInput.readUnsignedByte();
+		if (version > FORMAT_VERSION) {
+			throw new IOException("Unsupported record format version: " + version);
+		}
+		int typeId = dataInput.readUnsignedByte();
+		Class<?> type;
+		if (typeId == 0) {
+			String className = dataInput.readUTF();
+			try {
+				type = ClassUtils.forName(className, this.classLoader);
+			}
+			catch (ClassNotFoundException e) {
+				throw new IOException("Failed to resolve the record type " + className, e);
+			}
+		}
+		else if (typeId < WELL_KNOWN_TYPES.length) {
+			type = WELL_KNOWN_TYPES[typeId];
+		}
+		else {
+			throw new IOException("Unknown record type id: " + typeId);
+		}
+		return this.codec.decode(inputStream, type);
+	}
+
+	private static int typeIdFor(Class<?> type) {
+		for (int i = 1; i < WELL_KNOWN_TYPES.length; i++) {
+			if (WELL_KNOWN_TYPES[i].equals(type)) {
+				return i;
+			}
+		}
+		return 0;
+	}
+
+}
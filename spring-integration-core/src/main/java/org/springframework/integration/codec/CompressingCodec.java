@@ -0,0 +1,299 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.codec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import org.springframework.util.Assert;
+import org.springframework.util.StreamUtils;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * A {@link Codec} decorator that compresses (using deflate) the data encoded by its
+ * delegate when it is at least as large as a threshold.
+ * <p>
+ * The data is prefixed by a two byte marker and a format byte, indicating whether the
+ * data that follows is compressed or not. Data without the marker, i.e. encoded by the
+ * delegate alone (for example with {@link org.springframework.integration.codec.kryo.MessageCodec},
+ * which starts its data with {@code 0x01}), is passed to the delegate as is, so that
+ * existing data remains readable after introducing this codec.
+ * <p>
+ * Statistics about the compression ratio and time spent are maintained and can be
+ * exported to a {@link MeterRegistry}.
+ *
+ * @since 5.1
+ */
+public class CompressingCodec implements Codec {
+
+	/**
+	 * The default threshold.
+	 */
+	public static final int DEFAULT_THRESHOLD = 1024;
+
+	private static final int MARKER_0 = 0xC7;
+
+	private static final int MARKER_1 = 0x5A;
+
+	private static final int UNCOMPRESSED = 0;
+
+	private static final int DEFLATED = 1;
+
+	private static final String METER_PREFIX = "spring.integration.codec.";
+
+	private final Codec delegate;
+
+	private final int threshold;
+
+	private final AtomicLong compressedCount = new AtomicLong();
+
+	private final AtomicLong uncompressedCount = new AtomicLong();
+
+	private final AtomicLong bytesBeforeCompression = new AtomicLong();
+
+	private final AtomicLong bytesAfterCompression = new AtomicLong();
+
+	private final AtomicLong compressionAttempts = new AtomicLong();
+
+	private final AtomicLong compressionNanos = new AtomicLong();
+
+	private final AtomicLong decompressedCount = new AtomicLong();
+
+	private final AtomicLong decompressionNanos = new AtomicLong();
+
+	private volatile int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+
+	/**
+	 * Construct an instance with the {@link #DEFAULT_THRESHOLD}.
+	 * @param delegate the codec to encode and decode the objects.
+	 */
+	public CompressingCodec(Codec delegate) {
+		this(delegate, DEFAULT_THRESHOLD);
+	}
+
+	/**
+	 * Construct an instance with the provided threshold.
+	 * @param delegate the codec to encode and decode the objects.
+	 * @param threshold the minimum size of the encoded data to compress it.
+	 */
+	public CompressingCodec(Codec delegate, int threshold) {
+		Assert.notNull(delegate, "'delegate' cannot be null");
+		Assert.isTrue(threshold >= 0, "'threshold' cannot be negative");
+		this.delegate = delegate;
+		this.threshold = threshold;
+	}
+
+	/**
+	 * Set the deflate compression level (0-9 or -1 for the default).
+	 * @param compressionLevel the level.
+	 * @see Deflater#setLevel(int)
+	 */
+	public void setCompressionLevel(int compressionLevel) {
+		Assert.isTrue(compressionLevel >= Deflater.DEFAULT_COMPRESSION && compressionLevel <= Deflater.BEST_COMPRESSION,
+				"'compressionLevel' must be between -1 and 9");
+		this.compressionLevel = compressionLevel;
+	}
+
+	/**
+	 * Return the number of objects written compressed.
+	 * @return the count.
+	 */
+	public long getCompressedCount() {
+		return this.compressedCount.get();
+	}
+
+	/**
+	 * Return the number of objects written uncompressed, because they are smaller than
+	 * the threshold or don't compress.
+	 * @return the count.
+	 */
+	public long getUncompressedCount() {
+		return this.uncompressedCount.get();
+	}
+
+	/**
+	 * Return the ratio of compressed to original size, for the data that was compressed.
+	 * @return the ratio, 1.0 if nothing has been compressed yet.
+	 */
+	public double getCompressionRatio() {
+		long before = this.bytesBeforeCompression.get();
+		return before == 0 ? 1.0 : (double) this.bytesAfterCompression.get() / before;
+	}
+
+	/**
+	 * Return the total time spent compressing.
+	 * @param unit the time unit.
+	 * @return the time.
+	 */
+	public long getCompressionTime(TimeUnit unit) {
+		return unit.convert(this.compressionNanos.get(), TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Return the total time spent decompressing.
+	 * @param unit the time unit.
+	 * @return the time.
+	 */
+	public long getDecompressionTime(TimeUnit unit) {
+		return unit.convert(this.decompressionNanos.get(), TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Register meters for the compression statistics.
+	 * @param registry the registry.
+	 * @param name the value of the {@code name} tag of the meters.
+	 */
+	public void registerMeterRegistry(MeterRegistry registry, String name) {
+		Gauge.builder(METER_PREFIX + "compression.ratio", this, CompressingCodec::getCompressionRatio)
+				.tag("name", name)
+				.description("The ratio of compressed to original size")
+				.register(registry);
+		FunctionCounter.builder(METER_PREFIX + "compressed", this, CompressingCodec::getCompressedCount)
+				.tag("name", name)
+				.description("Objects written compressed")
+				.register(registry);
+		FunctionCounter.builder(METER_PREFIX + "uncompressed", this, CompressingCodec::getUncompressedCount)
+				.tag("name", name)
+				.description("Objects written uncompressed")
+				.register(registry);
+		FunctionTimer.builder(METER_PREFIX + "compression", this, c -> c.compressionAttempts.get(),
+				c -> c.compressionNanos.get(), TimeUnit.NANOSECONDS)
+				.tag("name", name)
+				.description("Time spent compressing")
+				.register(registry);
+		FunctionTimer.builder(METER_PREFIX + "decompression", this, c -> c.decompressedCount.get(),
+				c -> c.decompressionNanos.get(), TimeUnit.NANOSECONDS)
+				.tag("name", name)
+				.description("Time spent decompressing")
+				.register(registry);
+	}
+
+	@Override
+	public void encode(Object object, OutputStream outputStream) throws IOException {
+		Assert.notNull(outputStream, "'outputStream' cannot be null");
+		outputStream.write(encode(object));
+	}
+
+	@Override
+	public byte[] encode(Object object) throws IOException {
+		Assert.notNull(object, "cannot encode a null object");
+		byte[] bytes = this.delegate.encode(object);
+		if (bytes.length >= this.threshold) {
+			long start = System.nanoTime();
+			byte[] compressed = deflate(bytes);
+			this.compressionAttempts.incrementAndGet();
+			this.compressionNanos.addAndGet(System.nanoTime() - start);
+			if (compressed.length < bytes.length + 3) {
+				this.compressedCount.incrementAndGet();
+				this.bytesBeforeCompression.addAndGet(bytes.length);
+				this.bytesAfterCompression.addAndGet(compressed.length);
+				return compressed;
+			}
+		}
+		this.uncompressedCount.incrementAndGet();
+		byte[] result = new byte[bytes.length + 3];
+		writeHeader(result, UNCOMPRESSED);
+		System.arraycopy(bytes, 0, result, 3, bytes.length);
+		return result;
+	}
+
+	@Override
+	public <T> T decode(byte[] bytes, Class<T> type) throws IOException {
+		Assert.notNull(bytes, "'bytes' cannot be null");
+		if (bytes.length < 3 || (bytes[0] & 0xFF) != MARKER_0 || (bytes[1] & 0xFF) != MARKER_1) {
+			return this.delegate.decode(bytes, type);
+		}
+		return decode(bytes[2], new ByteArrayInputStream(bytes, 3, bytes.length - 3), type);
+	}
+
+	@Override
+	public <T> T decode(InputStream inputStream, Class<T> type) throws IOException {
+		Assert.notNull(inputStream, "'inputStream' cannot be null");
+		PushbackInputStream pushbackInputStream = new PushbackInputStream(inputStream, 3);
+		byte[] header = new byte[3];
+		int length = 0;
+		int n;
+		while (length < 3 && (n = pushbackInputStream.read(header, length, 3 - length)) > 0) {
+			length += n;
+		}
+		if (length < 3 || (header[0] & 0xFF) != MARKER_0 || (header[1] & 0xFF) != MARKER_1) {
+			pushbackInputStream.unread(header, 0, length);
+			return this.delegate.decode(pushbackInputStream, type);
+		}
+		return decode(header[2], pushbackInputStream, type);
+	}
+
+	private <T> T decode(int format, InputStream inputStream, Class<T> type) throws IOException {
+		switch (format) {
+			case UNCOMPRESSED:
+				return this.delegate.decode(inputStream, type);
+			case DEFLATED:
+				long start = System.nanoTime();
+				// the delegate may close the inflating stream, but the caller's stream must stay open
+				Inflater inflater = new Inflater();
+				try {
+					return this.delegate.decode(new InflaterInputStream(StreamUtils.nonClosing(inputStream), inflater),
+							type);
+				}
+				finally {
+					inflater.end();
+					this.decompressedCount.incrementAndGet();
+					this.decompressionNanos.addAndGet(System.nanoTime() - start);
+				}
+			default:
+				throw new IOException("Unknown compression format: " + format);
+		}
+	}
+
+	private byte[] deflate(byte[] bytes) throws IOException {
+		Deflater deflater = new Deflater(this.compressionLevel);
+		try {
+			ByteArrayOutputStream bos = new ByteArrayOutputStream(bytes.length / 2 + 3);
+			bos.write(MARKER_0);
+			bos.write(MARKER_1);
+			bos.write(DEFLATED);
+			try (DeflaterOutputStream out = new DeflaterOutputStream(bos, deflater)) {
+				out.write(bytes);
+			}
+			return bos.toByteArray();
+		}
+		finally {
+			deflater.end();
+		}
+	}
+
+	private static void writeHeader(byte[] bytes, int format) {
+		bytes[0] = (byte) MARKER_0;
+		bytes[1] = (byte) MARKER_1;
+		bytes[2] = (byte) format;
+	}
+
+}
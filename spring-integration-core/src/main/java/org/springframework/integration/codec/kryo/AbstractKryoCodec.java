@@ -1,5 +1,5 @@
 /*
- * Copyright 2015-2016 the original author or authors.
+ * Copyright 2015-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -20,27 +20,43 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 
 import org.springframework.integration.codec.Codec;
 import org.springframework.util.Assert;
 
 import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoException;
+import com.esotericsoftware.kryo.io.ByteBufferInput;
+import com.esotericsoftware.kryo.io.ByteBufferOutput;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.pool.KryoCallback;
 import com.esotericsoftware.kryo.pool.KryoFactory;
 import com.esotericsoftware.kryo.pool.KryoPool;
 
 /**
  * Base class for {@link Codec}s using {@link Kryo}.
- * Manages pooled {@link Kryo} instances.
+ * Manages pooled {@link Kryo} instances or, optionally, one {@link Kryo} instance per
+ * thread, together with reusable {@link Input} and {@link Output} buffers.
  *
  * @author David Turanski
  * @since 4.2
  */
 public abstract class AbstractKryoCodec implements Codec {
 
+	private static final int BUFFER_SIZE = 4096;
+
+	private static final int MAX_RETAINED_BUFFER_SIZE = 1024 * 1024;
+
+	private static final byte[] EMPTY = new byte[0];
+
 	protected final KryoPool pool;
 
+	private final ThreadLocal<KryoContext> context;
+
+	private volatile boolean useThreadLocalInstances;
+
 	protected AbstractKryoCodec() {
 		KryoFactory factory = () -> {
 			Kryo kryo = new Kryo();
@@ -50,23 +66,103 @@ public abstract class AbstractKryoCodec implements Codec {
 		};
 		// Build pool with SoftReferences enabled (optional)
 		this.pool = new KryoPool.Builder(factory).softReferences().build();
+		this.context = ThreadLocal.withInitial(() -> new KryoContext(factory.create()));
+	}
+
+	/**
+	 * Set to true to use a {@link Kryo} instance per thread, instead of borrowing one from
+	 * a pool for each operation, and to reuse per-thread {@link Input}/{@link Output}
+	 * buffers rather than allocating them for each operation. Recommended for a bounded
+	 * number of long lived threads (such as a container's or poller's) with a high
+	 * throughput. Each thread retains its Kryo instance and buffers (up to 1Mb) until it
+	 * terminates; do not use with unbounded thread pools.
+	 * Default false.
+	 * @param useThreadLocalInstances true to use thread-bound instances.
+	 * @since 5.1
+	 */
+	public void setUseThreadLocalInstances(boolean useThreadLocalInstances) {
+		this.useThreadLocalInstances = useThreadLocalInstances;
 	}
 
 	@Override
 	public void encode(final Object object, OutputStream outputStream) throws IOException {
 		Assert.notNull(object, "cannot encode a null object");
 		Assert.notNull(outputStream, "'outputSteam' cannot be null");
+		if (this.useThreadLocalInstances && !(outputStream instanceof Output)) {
+			KryoContext context = this.context.get();
+			Output output = context.output;
+			output.setOutputStream(outputStream);
+			try {
+				doEncode(context.kryo, object, output);
+				output.close();
+			}
+			finally {
+				output.setOutputStream(null);
+				context.trimOutput();
+			}
+			return;
+		}
 		final Output output = (outputStream instanceof Output ? (Output) outputStream : new Output(outputStream));
-		this.pool.run(kryo -> {
+		execute(kryo -> {
 			doEncode(kryo, object, output);
 			return Void.class;
 		});
 		output.close();
 	}
 
+	/**
+	 * Encode the object into the buffer, starting at its position; on return, the
+	 * position is advanced past the encoded data.
+	 * @param object the object to encode.
+	 * @param buffer the buffer.
+	 * @throws IOException if the object doesn't fit in the buffer's remaining space.
+	 * @since 5.1
+	 */
+	public void encode(final Object object, ByteBuffer buffer) throws IOException {
+		Assert.notNull(object, "cannot encode a null object");
+		Assert.notNull(buffer, "'buffer' cannot be null");
+		ByteBuffer slice = buffer.slice();
+		ByteBufferOutput output;
+		if (this.useThreadLocalInstances) {
+			output = this.context.get().byteBufferOutput();
+			output.setBuffer(slice, slice.capacity());
+		}
+		else {
+			output = new ByteBufferOutput(slice, slice.capacity());
+		}
+		try {
+			execute(kryo -> {
+				doEncode(kryo, object, output);
+				return Void.class;
+			});
+			output.flush();
+			buffer.position(buffer.position() + output.position());
+		}
+		catch (KryoException e) {
+			throw new IOException("Failed to encode into the buffer", e);
+		}
+		finally {
+			if (this.useThreadLocalInstances) {
+				output.setBuffer(KryoContext.EMPTY_BUFFER, 0);
+			}
+		}
+	}
+
 	@Override
 	public <T> T decode(byte[] bytes, Class<T> type) throws IOException {
 		Assert.notNull(bytes, "'bytes' cannot be null");
+		if (this.useThreadLocalInstances) {
+			Assert.notNull(type, "'type' cannot be null");
+			KryoContext context = this.context.get();
+			Input input = context.arrayInput;
+			input.setBuffer(bytes);
+			try {
+				return doDecode(context.kryo, input, type);
+			}
+			finally {
+				input.setBuffer(EMPTY);
+			}
+		}
 		final Input input = new Input(bytes);
 		try {
 			return decode(input, type);
@@ -80,10 +176,22 @@ public abstract class AbstractKryoCodec implements Codec {
 	public <T> T decode(InputStream inputStream, final Class<T> type) throws IOException {
 		Assert.notNull(inputStream, "'inputStream' cannot be null");
 		Assert.notNull(type, "'type' cannot be null");
+		if (this.useThreadLocalInstances && !(inputStream instanceof Input)) {
+			KryoContext context = this.context.get();
+			Input input = context.streamInput;
+			input.setInputStream(inputStream);
+			try {
+				return doDecode(context.kryo, input, type);
+			}
+			finally {
+				input.close();
+				input.setInputStream(null);
+			}
+		}
 		final Input input = (inputStream instanceof Input ? (Input) inputStream : new Input(inputStream));
 		T result = null;
 		try {
-			result = this.pool.run(kryo -> doDecode(kryo, input, type));
+			result = execute(kryo -> doDecode(kryo, input, type));
 		}
 		finally {
 			input.close();
@@ -91,8 +199,58 @@ public abstract class AbstractKryoCodec implements Codec {
 		return result;
 	}
 
+	/**
+	 * Decode an object from the buffer, starting at its position, without copying the
+	 * data; on return, the position is advanced past the decoded data.
+	 * @param buffer the buffer.
+	 * @param type the object's class.
+	 * @param <T> the type.
+	 * @return the object.
+	 * @throws IOException if the buffer doesn't contain a complete object.
+	 * @since 5.1
+	 */
+	public <T> T decode(ByteBuffer buffer, final Class<T> type) throws IOException {
+		Assert.notNull(buffer, "'buffer' cannot be null");
+		Assert.notNull(type, "'type' cannot be null");
+		ByteBuffer slice = buffer.slice();
+		ByteBufferInput input;
+		if (this.useThreadLocalInstances) {
+			input = this.context.get().byteBufferInput();
+			input.setBuffer(slice);
+		}
+		else {
+			input = new ByteBufferInput(slice);
+		}
+		try {
+			T result = execute(kryo -> doDecode(kryo, input, type));
+			buffer.position(buffer.position() + input.position());
+			return result;
+		}
+		catch (KryoException e) {
+			throw new IOException("Failed to decode from the buffer", e);
+		}
+		finally {
+			if (this.useThreadLocalInstances) {
+				input.setBuffer(KryoContext.EMPTY_BUFFER);
+			}
+		}
+	}
+
 	@Override
 	public byte[] encode(Object object) throws IOException {
+		if (this.useThreadLocalInstances) {
+			Assert.notNull(object, "cannot encode a null object");
+			KryoContext context = this.context.get();
+			Output output = context.output;
+			output.clear();
+			try {
+				doEncode(context.kryo, object, output);
+				return output.toBytes();
+			}
+			finally {
+				context.trimOutput();
+			}
+		}
 		ByteArrayOutputStream bos = new ByteArrayOutputStream();
 		encode(object, bos);
 		byte[] bytes = bos.toByteArray();
@@ -100,6 +258,15 @@ public abstract class AbstractKryoCodec implements Codec {
 		return bytes;
 	}
 
+	private <T> T execute(KryoCallback<T> callback) {
+		if (this.useThreadLocalInstances) {
+			return callback.execute(this.context.get().kryo);
+		}
+		else {
+			return this.pool.run(callback);
+		}
+	}
+
 	/**
 	 * Subclasses implement this method to encode with Kryo.
 	 * @param kryo the Kryo instance
@@ -125,4 +292,49 @@ public abstract class AbstractKryoCodec implements Codec {
 	 */
 	protected abstract void configureKryoInstance(Kryo kryo);
 
+	/**
+	 * A thread-bound {@link Kryo} instance and its reusable buffers.
+	 */
+	private static final class KryoContext {
+
+		private static final ByteBuffer EMPTY_BUFFER = ByteBuffer.allocate(0).asReadOnlyBuffer();
+
+		private final Kryo kryo;
+
+		private final Input arrayInput = new Input();
+
+		private final Input streamInput = new Input(BUFFER_SIZE);
+
+		private Output output = new Output(BUFFER_SIZE, -1);
+
+		private ByteBufferOutput byteBufferOutput;
+
+		private ByteBufferInput byteBufferInput;
+
+		KryoContext(Kryo kryo) {
+			this.kryo = kryo;
+		}
+
+		ByteBufferOutput byteBufferOutput() {
+			if (this.byteBufferOutput == null) {
+				this.byteBufferOutput = new ByteBufferOutput();
+			}
+			return this.byteBufferOutput;
+		}
+
+		ByteBufferInput byteBufferInput() {
+			if (this.byteBufferInput == null) {
+				this.byteBufferInput = new ByteBufferInput();
+			}
+			return this.byteBufferInput;
+		}
+
+		void trimOutput() {
+			if (this.output.getBuffer().length > MAX_RETAINED_BUFFER_SIZE) {
+				this.output = new Output(BUFFER_SIZE, -1);
+			}
+		}
+
+	}
+
 }
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.codec.kryo;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import org.springframework.messaging.MessageHeaders;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+/**
+ * Writes {@link MessageHeaders} in a compact form: the id and timestamp as raw
+ * numbers, header names as varint ids from a {@link HeaderNameDictionary} (or as
+ * strings when not in the dictionary) and common value types without class
+ * information.
+ *
+ * @since 5.1
+ */
+class CompactMessageHeadersSerializer extends Serializer<MessageHeaders> {
+
+	private static final int FLAG_ID = 0x01;
+
+	private static final int FLAG_TIMESTAMP = 0x02;
+
+	private static final int OBJECT = 0;
+
+	private static final int STRING = 1;
+
+	private static final int INTEGER = 2;
+
+	private static final int LONG = 3;
+
+	private static final int TRUE = 4;
+
+	private static final int FALSE = 5;
+
+	private static final int UUID_VALUE = 6;
+
+	private final HeaderNameDictionary dictionary;
+
+	CompactMessageHeadersSerializer(HeaderNameDictionary dictionary) {
+		this.dictionary = dictionary;
+	}
+
+	@Override
+	public void write(Kryo kryo, Output output, MessageHeaders headers) {
+		UUID id = headers.getId();
+		Long timestamp = headers.getTimestamp();
+		int flags = (id != null ? FLAG_ID : 0) | (timestamp != null ? FLAG_TIMESTAMP : 0);
+		output.writeByte(flags);
+		if (id != null) {
+			output.writeLong(id.getMostSignificantBits());
+			output.writeLong(id.getLeastSignificantBits());
+		}
+		if (timestamp != null) {
+			output.writeLong(timestamp, true);
+		}
+		int count = 0;
+		for (Map.Entry<String, Object> entry : headers.entrySet()) {
+			if (isOtherHeader(entry)) {
+				count++;
+			}
+		}
+		output.writeInt(count, true);
+		for (Map.Entry<String, Object> entry : headers.entrySet()) {
+			if (isOtherHeader(entry)) {
+				String name = entry.getKey();
+				int nameId = this.dictionary.getId(name);
+				output.writeInt(nameId, true);
+				if (nameId == 0) {
+					output.writeString(name);
+				}
+				writeValue(kryo, output, entry.getValue());
+			}
+		}
+	}
+
+	@Override
+	public MessageHeaders read(Kryo kryo, Input input, Class<MessageHeaders> type) {
+		int flags = input.readByte();
+		UUID id = null;
+		if ((flags & FLAG_ID) != 0) {
+			id = new UUID(input.readLong(), input.readLong());
+		}
+		Long timestamp = null;
+		if ((flags & FLAG_TIMESTAMP) != 0) {
+			timestamp = input.readLong(true);
+		}
+		int count = input.readInt(true);
+		Map<String, Object> headers = new HashMap<>(count + 2, 1.0f);
+		for (int i = 0; i < count; i++) {
+			int nameId = input.readInt(true);
+			String name = nameId == 0 ? input.readString() : this.dictionary.getName(nameId);
+			headers.put(name, readValue(kryo, input));
+		}
+		if (id != null) {
+			headers.put(MessageHeaders.ID, id);
+		}
+		if (timestamp != null) {
+			headers.put(MessageHeaders.TIMESTAMP, timestamp);
+		}
+		return createHeaders(headers);
+	}
+
+	/**
+	 * Create the headers instance; the map contains the original id and timestamp
+	 * (if any), which must be retained.
+	 * @param headers the headers.
+	 * @return the {@link MessageHeaders}.
+	 */
+	protected MessageHeaders createHeaders(Map<String, Object> headers) {
+		MessageHeaders messageHeaders = new MessageHeaders(headers);
+		MessageHeadersSerializer.restoreIdAndTimestamp(messageHeaders, headers);
+		return messageHeaders;
+	}
+
+	private static boolean isOtherHeader(Map.Entry<String, Object> entry) {
+		return entry.getValue() != null
+				&& !MessageHeaders.ID.equals(entry.getKey())
+				&& !MessageHeaders.TIMESTAMP.equals(entry.getKey());
+	}
+
+	private static void writeValue(Kryo kryo, Output output, Object value) {
+		Class<?> valueClass = value.getClass();
+		if (valueClass == String.class) {
+			output.writeByte(STRING);
+			output.writeString((String) value);
+		}
+		else if (valueClass == Integer.class) {
+			output.writeByte(INTEGER);
+			output.writeInt((Integer) value, false);
+		}
+		else if (valueClass == Long.class) {
+			output.writeByte(LONG);
+			output.writeLong((Long) value, false);
+		}
+		else if (valueClass == Boolean.class) {
+			output.writeByte((Boolean) value ? TRUE : FALSE);
+		}
+		else if (valueClass == UUID.class) {
+			output.writeByte(UUID_VALUE);
+			output.writeLong(((UUID) value).getMostSignificantBits());
+			output.writeLong(((UUID) value).getLeastSignificantBits());
+		}
+		else {
+			output.writeByte(OBJECT);
+			kryo.writeClassAndObject(output, value);
+		}
+	}
+
+	private static Object readValue(Kryo kryo, Input input) {
+		int valueType = input.readByte();
+		switch (valueType) {
+			case STRING:
+				return input.readString();
+			case INTEGER:
+				return input.readInt(false);
+			case LONG:
+				return input.readLong(false);
+			case TRUE:
+				return Boolean.TRUE;
+			case FALSE:
+				return Boolean.FALSE;
+			case UUID_VALUE:
+				return new UUID(input.readLong(), input.readLong());
+			case OBJECT:
+				return kryo.readClassAndObject(input);
+			default:
+				throw new IllegalStateException("Unknown header value type: " + valueType);
+		}
+	}
+
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.codec.kryo;
+
+import java.util.Map;
+
+import org.springframework.integration.support.MutableMessageHeaders;
+import org.springframework.messaging.MessageHeaders;
+
+/**
+ * The compact serializer for {@link MutableMessageHeaders}.
+ *
+ * @since 5.1
+ */
+class CompactMutableMessageHeadersSerializer extends CompactMessageHeadersSerializer {
+
+	CompactMutableMessageHeadersSerializer(HeaderNameDictionary dictionary) {
+		super(dictionary);
+	}
+
+	@Override
+	protected MessageHeaders createHeaders(Map<String, Object> headers) {
+		return new MutableMessageHeaders(headers);
+	}
+
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.codec.kryo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.integration.IntegrationMessageHeaderAccessor;
+import org.springframework.integration.history.MessageHistory;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.util.Assert;
+
+/**
+ * A stable mapping of header names to small integer ids, used by the compact
+ * {@code MessageHeaders} wire format (see
+ * {@link MessageKryoRegistrar#setHeaderNameDictionary(HeaderNameDictionary)}).
+ * <p>
+ * The standard framework header names have fixed ids below {@link #FIRST_CUSTOM_ID}.
+ * Application specific names, for example those of frequently used custom headers,
+ * can be added; they get consecutive ids starting at {@link #FIRST_CUSTOM_ID}, in the
+ * order provided. Header names not in the dictionary are written as strings.
+ * <p>
+ * Since the ids are part of the stored data, the same dictionary (with the same names,
+ * in the same order) must be used wherever the data is read; names may only be
+ * appended.
+ *
+ * @since 5.1
+ */
+public final class HeaderNameDictionary {
+
+	/**
+	 * The id of the first application specific header name.
+	 */
+	public static final int FIRST_CUSTOM_ID = 64;
+
+	/**
+	 * The framework header names; ids are the index + 1 (0 means "not in the dictionary").
+	 * New names must only ever be appended.
+	 */
+	private static final List<String> STANDARD_NAMES = Collections.unmodifiableList(Arrays.asList(
+			MessageHeaders.ID,
+			MessageHeaders.TIMESTAMP,
+			MessageHeaders.CONTENT_TYPE,
+			MessageHeaders.REPLY_CHANNEL,
+			MessageHeaders.ERROR_CHANNEL,
+			IntegrationMessageHeaderAccessor.CORRELATION_ID,
+			IntegrationMessageHeaderAccessor.EXPIRATION_DATE,
+			IntegrationMessageHeaderAccessor.PRIORITY,
+			IntegrationMessageHeaderAccessor.SEQUENCE_NUMBER,
+			IntegrationMessageHeaderAccessor.SEQUENCE_SIZE,
+			IntegrationMessageHeaderAccessor.SEQUENCE_DETAILS,
+			IntegrationMessageHeaderAccessor.ROUTING_SLIP,
+			IntegrationMessageHeaderAccessor.DUPLICATE_MESSAGE,
+			IntegrationMessageHeaderAccessor.CLOSEABLE_RESOURCE,
+			IntegrationMessageHeaderAccessor.DELIVERY_ATTEMPT,
+			IntegrationMessageHeaderAccessor.ACKNOWLEDGMENT_CALLBACK,
+			MessageHistory.HEADER_NAME));
+
+	private final String[] names;
+
+	private final Map<String, Integer> ids = new HashMap<>();
+
+	/**
+	 * Create a dictionary with the standard framework header names only.
+	 */
+	public HeaderNameDictionary() {
+		this(Collections.emptyList());
+	}
+
+	/**
+	 * Create a dictionary with the standard framework header names and the provided
+	 * application specific names.
+	 * @param customNames the additional header names.
+	 */
+	public HeaderNameDictionary(String... customNames) {
+		this(Arrays.asList(customNames));
+	}
+
+	/**
+	 * Create a dictionary with the standard framework header names and the provided
+	 * application specific names.
+	 * @param customNames the additional header names.
+	 */
+	public HeaderNameDictionary(List<String> customNames) {
+		Assert.notNull(customNames, "'customNames' cannot be null");
+		List<String> names = new ArrayList<>(FIRST_CUSTOM_ID + customNames.size());
+		names.add(null);
+		names.addAll(STANDARD_NAMES);
+		while (names.size() < FIRST_CUSTOM_ID) {
+			names.add(null);
+		}
+		names.addAll(customNames);
+		this.names = names.toArray(new String[names.size()]);
+		for (int i = 1; i < this.names.length; i++) {
+			String name = this.names[i];
+			if (name != null) {
+				Assert.isNull(this.ids.put(name, i), () -> "Duplicate header name: " + name);
+			}
+		}
+	}
+
+	/**
+	 * Return the id of the header name.
+	 * @param name the header name.
+	 * @return the id, or 0 if the name is not in the dictionary.
+	 */
+	public int getId(String name) {
+		Integer id = this.ids.get(name);
+		return id != null ? id : 0;
+	}
+
+	/**
+	 * Return the header name for the id.
+	 * @param id the id.
+	 * @return the name.
+	 * @throws IllegalArgumentException if the id is unknown.
+	 */
+	public String getName(int id) {
+		String name = id > 0 && id < this.names.length ? this.names[id] : null;
+		Assert.notNull(name, () -> "Unknown header name id: " + id);
+		return name;
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2015-2016 the original author or authors.
+ * Copyright 2015-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,6 +16,8 @@
 
 package org.springframework.integration.codec.kryo;
 
+import org.springframework.util.Assert;
+
 /**
  * {@link PojoCodec} configured to encode/decode {@code Message<?>}s.
  * @author Gary Russell
@@ -41,4 +43,22 @@ public class MessageCodec extends PojoCodec {
 		super(registrar);
 	}
 
+	/**
+	 * Construct an instance that writes message headers in the compact form, using the
+	 * provided dictionary for the header names.
+	 * @param headerNameDictionary the dictionary.
+	 * @since 5.1
+	 * @see MessageKryoRegistrar#setHeaderNameDictionary(HeaderNameDictionary)
+	 */
+	public MessageCodec(HeaderNameDictionary headerNameDictionary) {
+		super(compactRegistrar(headerNameDictionary));
+	}
+
+	private static MessageKryoRegistrar compactRegistrar(HeaderNameDictionary headerNameDictionary) {
+		Assert.notNull(headerNameDictionary, "'headerNameDictionary' cannot be null");
+		MessageKryoRegistrar registrar = new MessageKryoRegistrar();
+		registrar.setHeaderNameDictionary(headerNameDictionary);
+		return registrar;
+	}
+
 }
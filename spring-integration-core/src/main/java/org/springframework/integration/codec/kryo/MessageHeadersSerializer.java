@@ -1,5 +1,5 @@
 /*
- * Copyright 2015-2016 the original author or authors.
+ * Copyright 2015-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,10 +16,12 @@
 
 package org.springframework.integration.codec.kryo;
 
+import java.lang.reflect.Field;
 import java.util.HashMap;
 import java.util.Map;
 
 import org.springframework.messaging.MessageHeaders;
+import org.springframework.util.ReflectionUtils;
 
 import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryo.Serializer;
@@ -32,6 +34,13 @@ import com.esotericsoftware.kryo.io.Output;
  * @since 4.2
  */
 class MessageHeadersSerializer extends Serializer<MessageHeaders> {
+
+	private static final Field HEADERS_FIELD = ReflectionUtils.findField(MessageHeaders.class, "headers");
+
+	static {
+		ReflectionUtils.makeAccessible(HEADERS_FIELD);
+	}
+
 	@Override
 	public void write(Kryo kryo, Output output, MessageHeaders headers) {
 		HashMap<String, Object> map = new HashMap<String, Object>();
@@ -47,7 +56,26 @@ class MessageHeadersSerializer extends Serializer<MessageHeaders> {
 	public MessageHeaders read(Kryo kryo, Input input, Class<MessageHeaders> type) {
 		@SuppressWarnings("unchecked")
 		Map<String, Object> headers = kryo.readObject(input, HashMap.class);
-		return new MessageHeaders(headers);
+		MessageHeaders messageHeaders = new MessageHeaders(headers);
+		restoreIdAndTimestamp(messageHeaders, headers);
+		return messageHeaders;
+	}
+
+	/**
+	 * The {@code MessageHeaders} constructor generates a new id and timestamp;
+	 * restore the original ones, as Java deserialization does.
+	 */
+	@SuppressWarnings("unchecked")
+	static void restoreIdAndTimestamp(MessageHeaders messageHeaders, Map<String, Object> headers) {
+		Map<String, Object> rawHeaders = (Map<String, Object>) ReflectionUtils.getField(HEADERS_FIELD, messageHeaders);
+		Object id = headers.get(MessageHeaders.ID);
+		if (id != null) {
+			rawHeaders.put(MessageHeaders.ID, id);
+		}
+		Object timestamp = headers.get(MessageHeaders.TIMESTAMP);
+		if (timestamp != null) {
+			rawHeaders.put(MessageHeaders.TIMESTAMP, timestamp);
+		}
 	}
 
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2015-2016 the original author or authors.
+ * Copyright 2015-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -36,6 +36,8 @@ public class MessageKryoRegistrar extends AbstractKryoRegistrar {
 
 	private volatile int mutableMessageHeadersRegistrationId = RegistrationIds.DEFAULT_MUTABLE_MESSAGEHEADERS_ID;
 
+	private volatile HeaderNameDictionary headerNameDictionary;
+
 	/**
 	 * Set the registration id for {@code MessageHeaders}.
 	 * @param messageHeadersRegistrationId the id, default 41.
@@ -52,9 +54,40 @@ public class MessageKryoRegistrar extends AbstractKryoRegistrar {
 		this.mutableMessageHeadersRegistrationId = mutableMessageHeadersRegistrationId;
 	}
 
+	/**
+	 * Set a {@link HeaderNameDictionary} to write message headers in a compact form:
+	 * header names in the dictionary are written as small ids instead of strings, the id
+	 * and timestamp as raw numbers and {@code String}, {@code Integer}, {@code Long},
+	 * {@code Boolean} and {@code UUID} values without class information.
+	 * The compact serializers are registered with ids 43 and 44 (unless the ids are
+	 * set explicitly), so data written with one format cannot be misread by the other;
+	 * stores must be drained before switching between them.
+	 * @param headerNameDictionary the dictionary; must be the same for writers and readers.
+	 * @since 5.1
+	 */
+	public void setHeaderNameDictionary(HeaderNameDictionary headerNameDictionary) {
+		this.headerNameDictionary = headerNameDictionary;
+		if (headerNameDictionary != null) {
+			if (this.messageHeadersRegistrationId == RegistrationIds.DEFAULT_MESSAGEHEADERS_ID) {
+				this.messageHeadersRegistrationId = RegistrationIds.DEFAULT_COMPACT_MESSAGEHEADERS_ID;
+			}
+			if (this.mutableMessageHeadersRegistrationId == RegistrationIds.DEFAULT_MUTABLE_MESSAGEHEADERS_ID) {
+				this.mutableMessageHeadersRegistrationId = RegistrationIds.DEFAULT_COMPACT_MUTABLE_MESSAGEHEADERS_ID;
+			}
+		}
+	}
+
 
 	@Override
 	public List<Registration> getRegistrations() {
+		HeaderNameDictionary dictionary = this.headerNameDictionary;
+		if (dictionary != null) {
+			return Arrays.asList(
+					new Registration(MessageHeaders.class, new CompactMessageHeadersSerializer(dictionary),
+							this.messageHeadersRegistrationId),
+					new Registration(MutableMessageHeaders.class, new CompactMutableMessageHeadersSerializer(dictionary),
+							this.mutableMessageHeadersRegistrationId));
+		}
 		return Arrays.asList(
 				new Registration(MessageHeaders.class, new MessageHeadersSerializer(),
 						this.messageHeadersRegistrationId),
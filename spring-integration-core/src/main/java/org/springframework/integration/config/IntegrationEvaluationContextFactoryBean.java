@@ -1,5 +1,5 @@
 /*
- * Copyright 2013-2017 the original author or authors.
+ * Copyright 2013-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,7 +17,9 @@
 package org.springframework.integration.config;
 
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
@@ -35,6 +37,7 @@ import org.springframework.expression.BeanResolver;
 import org.springframework.expression.PropertyAccessor;
 import org.springframework.expression.TypeConverter;
 import org.springframework.expression.TypeLocator;
+import org.springframework.expression.spel.support.ReflectivePropertyAccessor;
 import org.springframework.expression.spel.support.StandardEvaluationContext;
 import org.springframework.expression.spel.support.StandardTypeConverter;
 import org.springframework.integration.context.IntegrationContextUtils;
@@ -66,6 +69,7 @@ import org.springframework.util.Assert;
  * </p>
  * <p>
  * This factory returns a new instance for each reference - {@link #isSingleton()} returns false.
+ * The property accessors (and so their caches) are shared between all the instances.
  * </p>
  *
  * @author Artem Bilan
@@ -88,6 +92,8 @@ public class IntegrationEvaluationContextFactoryBean implements FactoryBean<Stan
 
 	private ApplicationContext applicationContext;
 
+	private volatile List<PropertyAccessor> sharedPropertyAccessors;
+
 	private volatile boolean initialized;
 
 	@Override
@@ -173,9 +179,17 @@ public class IntegrationEvaluationContextFactoryBean implements FactoryBean<Stan
 			}
 		}
 
+		this.sharedPropertyAccessors = buildPropertyAccessors();
 		this.initialized = true;
 	}
 
+	private List<PropertyAccessor> buildPropertyAccessors() {
+		List<PropertyAccessor> propertyAccessors = new ArrayList<>(this.propertyAccessors.values());
+		propertyAccessors.add(new MapAccessor());
+		propertyAccessors.add(new ReflectivePropertyAccessor());
+		return propertyAccessors;
+	}
+
 	@Override
 	public StandardEvaluationContext getObject() throws Exception {
 		StandardEvaluationContext evaluationContext = new StandardEvaluationContext();
@@ -186,11 +200,11 @@ public class IntegrationEvaluationContextFactoryBean implements FactoryBean<Stan
 		evaluationContext.setBeanResolver(this.beanResolver);
 		evaluationContext.setTypeConverter(this.typeConverter);
 
-		for (PropertyAccessor propertyAccessor : this.propertyAccessors.values()) {
-			evaluationContext.addPropertyAccessor(propertyAccessor);
+		if (this.sharedPropertyAccessors == null) {
+			this.sharedPropertyAccessors = buildPropertyAccessors();
 		}
-
-		evaluationContext.addPropertyAccessor(new MapAccessor());
+		// a copy, since the list can be modified on the context
+		evaluationContext.setPropertyAccessors(new ArrayList<>(this.sharedPropertyAccessors));
 
 		for (Entry<String, Method> functionEntry : this.functions.entrySet()) {
 			evaluationContext.registerFunction(functionEntry.getKey(), functionEntry.getValue());
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -71,6 +71,8 @@ public class SourcePollingChannelAdapterFactoryBean implements FactoryBean<Sourc
 
 	private String role;
 
+	private int concurrency = 1;
+
 	private volatile SourcePollingChannelAdapter adapter;
 
 	private volatile boolean initialized;
@@ -108,6 +110,16 @@ public class SourcePollingChannelAdapterFactoryBean implements FactoryBean<Sourc
 		this.role = role;
 	}
 
+	/**
+	 * Set the number of consumers polling the source concurrently.
+	 * @param concurrency the number of consumers.
+	 * @since 5.1
+	 * @see SourcePollingChannelAdapter#setConcurrency(int)
+	 */
+	public void setConcurrency(int concurrency) {
+		this.concurrency = concurrency;
+	}
+
 	/**
 	 * Specify the {@link DestinationResolver} strategy to use.
 	 * The default is a BeanFactoryChannelResolver.
@@ -189,6 +201,7 @@ public class SourcePollingChannelAdapterFactoryBean implements FactoryBean<Sourc
 				this.pollerMetadata.setMaxMessagesPerPoll(1);
 			}
 			spca.setMaxMessagesPerPoll(this.pollerMetadata.getMaxMessagesPerPoll());
+			spca.setConcurrency(this.concurrency);
 			if (this.sendTimeout != null) {
 				spca.setSendTimeout(this.sendTimeout);
 			}
@@ -83,6 +83,14 @@ public final class IntegrationProperties {
 	 */
 	public static final String POST_PROCESS_DYNAMIC_BEANS = INTEGRATION_PROPERTIES_PREFIX + "postProcessDynamicBeans";
 
+	/**
+	 * Specifies the {@link org.springframework.expression.spel.SpelCompilerMode} applied to the expressions
+	 * evaluated by framework components ({@code OFF}, {@code IMMEDIATE} or {@code MIXED}).
+	 * With {@code OFF} expressions are left as parsed.
+	 * @since 5.1
+	 */
+	public static final String SPEL_COMPILER_MODE = INTEGRATION_PROPERTIES_PREFIX + "spel.compilerMode";
+
 
 	private static Properties defaults;
 
@@ -34,6 +34,8 @@ import org.springframework.expression.Expression;
 import org.springframework.expression.spel.standard.SpelExpressionParser;
 import org.springframework.integration.aggregator.AggregatingMessageHandler;
 import org.springframework.integration.aggregator.BarrierMessageHandler;
+import org.springframework.integration.aggregator.WindowDefinition;
+import org.springframework.integration.aggregator.WindowingMessageHandler;
 import org.springframework.integration.channel.ChannelInterceptorAware;
 import org.springframework.integration.channel.DirectChannel;
 import org.springframework.integration.channel.FixedSubscriberChannel;
@@ -1739,6 +1741,160 @@ public abstract class IntegrationFlowDefinition<B extends IntegrationFlowDefinit
 		return register(new AggregatorSpec(), aggregator);
 	}
 
+	/**
+	 * Populate the {@link WindowingMessageHandler} for time-based tumbling windows
+	 * with default options.
+	 * @param size the window size in milliseconds.
+	 * @return the current {@link IntegrationFlowDefinition}.
+	 * @since 5.1
+	 * @see WindowDefinition#tumbling(long)
+	 */
+	public B tumblingWindow(long size) {
+		return tumblingWindow(size, null);
+	}
+
+	/**
+	 * Populate the {@link WindowingMessageHandler} for time-based tumbling windows
+	 * with provided options from {@link WindowSpec}.
+	 * Typically used with a Java 8 Lambda expression:
+	 * <pre class="code">
+	 * {@code
+	 *  .tumblingWindow(1000, w -> w.correlationExpression("payload.symbol")
+	 *                             .outputExpression("size()"))
+	 * }
+	 * </pre>
+	 * @param size the window size in milliseconds.
+	 * @param window the {@link Consumer} to provide {@link WindowingMessageHandler} options.
+	 * @return the current {@link IntegrationFlowDefinition}.
+	 * @since 5.1
+	 * @see WindowDefinition#tumbling(long)
+	 */
+	public B tumblingWindow(long size, Consumer<WindowSpec> window) {
+		return window(WindowDefinition.tumbling(size), window);
+	}
+
+	/**
+	 * Populate the {@link WindowingMessageHandler} for count-based tumbling windows
+	 * with default options.
+	 * @param count the number of messages in each window.
+	 * @return the current {@link IntegrationFlowDefinition}.
+	 * @since 5.1
+	 * @see WindowDefinition#tumblingCount(int)
+	 */
+	public B tumblingCountWindow(int count) {
+		return tumblingCountWindow(count, null);
+	}
+
+	/**
+	 * Populate the {@link WindowingMessageHandler} for count-based tumbling windows
+	 * with provided options from {@link WindowSpec}.
+	 * @param count the number of messages in each window.
+	 * @param window the {@link Consumer} to provide {@link WindowingMessageHandler} options.
+	 * @return the current {@link IntegrationFlowDefinition}.
+	 * @since 5.1
+	 * @see WindowDefinition#tumblingCount(int)
+	 */
+	public B tumblingCountWindow(int count, Consumer<WindowSpec> window) {
+		return window(WindowDefinition.tumblingCount(count), window);
+	}
+
+	/**
+	 * Populate the {@link WindowingMessageHandler} for time-based sliding windows
+	 * with default options.
+	 * @param size the window size in milliseconds; must be a multiple of the {@code slide}.
+	 * @param slide the interval in milliseconds between the starts of two windows.
+	 * @return the current {@link IntegrationFlowDefinition}.
+	 * @since 5.1
+	 * @see WindowDefinition#sliding(long, long)
+	 */
+	public B slidingWindow(long size, long slide) {
+		return slidingWindow(size, slide, null);
+	}
+
+	/**
+	 * Populate the {@link WindowingMessageHandler} for time-based sliding windows
+	 * with provided options from {@link WindowSpec}.
+	 * @param size the window size in milliseconds; must be a multiple of the {@code slide}.
+	 * @param slide the interval in milliseconds between the starts of two windows.
+	 * @param window the {@link Consumer} to provide {@link WindowingMessageHandler} options.
+	 * @return the current {@link IntegrationFlowDefinition}.
+	 * @since 5.1
+	 * @see WindowDefinition#sliding(long, long)
+	 */
+	public B slidingWindow(long size, long slide, Consumer<WindowSpec> window) {
+		return window(WindowDefinition.sliding(size, slide), window);
+	}
+
+	/**
+	 * Populate the {@link WindowingMessageHandler} for count-based sliding windows
+	 * with default options.
+	 * @param count the maximum number of messages in each window.
+	 * @param slide the number of messages between two windows.
+	 * @return the current {@link IntegrationFlowDefinition}.
+	 * @since 5.1
+	 * @see WindowDefinition#slidingCount(int, int)
+	 */
+	public B slidingCountWindow(int count, int slide) {
+		return slidingCountWindow(count, slide, null);
+	}
+
+	/**
+	 * Populate the {@link WindowingMessageHandler} for count-based sliding windows
+	 * with provided options from {@link WindowSpec}.
+	 * @param count the maximum number of messages in each window.
+	 * @param slide the number of messages between two windows.
+	 * @param window the {@link Consumer} to provide {@link WindowingMessageHandler} options.
+	 * @return the current {@link IntegrationFlowDefinition}.
+	 * @since 5.1
+	 * @see WindowDefinition#slidingCount(int, int)
+	 */
+	public B slidingCountWindow(int count, int slide, Consumer<WindowSpec> window) {
+		return window(WindowDefinition.slidingCount(count, slide), window);
+	}
+
+	/**
+	 * Populate the {@link WindowingMessageHandler} for session windows with default options.
+	 * @param gap the inactivity gap in milliseconds after which a session window is closed.
+	 * @return the current {@link IntegrationFlowDefinition}.
+	 * @since 5.1
+	 * @see WindowDefinition#session(long)
+	 */
+	public B sessionWindow(long gap) {
+		return sessionWindow(gap, null);
+	}
+
+	/**
+	 * Populate the {@link WindowingMessageHandler} for session windows
+	 * with provided options from {@link WindowSpec}.
+	 * Typically used with a Java 8 Lambda expression:
+	 * <pre class="code">
+	 * {@code
+	 *  .sessionWindow(30_000, w -> w.correlationExpression("headers.userId"))
+	 * }
+	 * </pre>
+	 * @param gap the inactivity gap in milliseconds after which a session window is closed.
+	 * @param window the {@link Consumer} to provide {@link WindowingMessageHandler} options.
+	 * @return the current {@link IntegrationFlowDefinition}.
+	 * @since 5.1
+	 * @see WindowDefinition#session(long)
+	 */
+	public B sessionWindow(long gap, Consumer<WindowSpec> window) {
+		return window(WindowDefinition.session(gap), window);
+	}
+
+	/**
+	 * Populate the {@link WindowingMessageHandler} for the provided {@link WindowDefinition}
+	 * and options from {@link WindowSpec}.
+	 * @param windowDefinition the {@link WindowDefinition} to use.
+	 * @param window the {@link Consumer} to provide {@link WindowingMessageHandler} options.
+	 * @return the current {@link IntegrationFlowDefinition}.
+	 * @since 5.1
+	 * @see WindowSpec
+	 */
+	public B window(WindowDefinition windowDefinition, Consumer<WindowSpec> window) {
+		return register(new WindowSpec(windowDefinition), window);
+	}
+
 	/**
 	 * Populate the {@link MethodInvokingRouter} for provided bean and its method
 	 * with default options.
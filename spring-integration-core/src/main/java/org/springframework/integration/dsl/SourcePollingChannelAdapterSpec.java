@@ -1,5 +1,5 @@
 /*
- * Copyright 2016-2017 the original author or authors.
+ * Copyright 2016-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -53,6 +53,18 @@ public final class SourcePollingChannelAdapterSpec extends
 		return _this();
 	}
 
+	/**
+	 * Set the number of consumers polling the source concurrently.
+	 * @param concurrency the number of consumers.
+	 * @return the spec.
+	 * @since 5.1
+	 * @see org.springframework.integration.endpoint.SourcePollingChannelAdapter#setConcurrency(int)
+	 */
+	public SourcePollingChannelAdapterSpec concurrency(int concurrency) {
+		this.endpointFactoryBean.setConcurrency(concurrency);
+		return _this();
+	}
+
 	@Override
 	public SourcePollingChannelAdapterSpec role(String role) {
 		this.endpointFactoryBean.setRole(role);
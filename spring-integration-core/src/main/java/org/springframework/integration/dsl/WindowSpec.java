@@ -0,0 +1,125 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.dsl;
+
+import org.springframework.integration.aggregator.CorrelationStrategy;
+import org.springframework.integration.aggregator.ExpressionEvaluatingCorrelationStrategy;
+import org.springframework.integration.aggregator.ExpressionEvaluatingMessageGroupProcessor;
+import org.springframework.integration.aggregator.MessageGroupProcessor;
+import org.springframework.integration.aggregator.WindowDefinition;
+import org.springframework.integration.aggregator.WindowingMessageHandler;
+import org.springframework.integration.store.MessageGroupStore;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.util.Assert;
+
+/**
+ * A {@link ConsumerEndpointSpec} for a {@link WindowingMessageHandler}.
+ *
+ * @since 5.1
+ */
+public final class WindowSpec extends ConsumerEndpointSpec<WindowSpec, WindowingMessageHandler> {
+
+	WindowSpec(WindowDefinition window) {
+		super(new WindowingMessageHandler(window));
+	}
+
+	/**
+	 * @param correlationStrategy the correlation strategy to determine the window key.
+	 * @return the endpoint spec.
+	 * @see WindowingMessageHandler#setCorrelationStrategy(CorrelationStrategy)
+	 */
+	public WindowSpec correlationStrategy(CorrelationStrategy correlationStrategy) {
+		this.handler.setCorrelationStrategy(correlationStrategy);
+		return _this();
+	}
+
+	/**
+	 * Configure the handler with an {@link ExpressionEvaluatingCorrelationStrategy}
+	 * for the given expression.
+	 * @param correlationExpression the correlation expression.
+	 * @return the endpoint spec.
+	 * @see WindowingMessageHandler#setCorrelationStrategy(CorrelationStrategy)
+	 */
+	public WindowSpec correlationExpression(String correlationExpression) {
+		return correlationStrategy(new ExpressionEvaluatingCorrelationStrategy(correlationExpression));
+	}
+
+	/**
+	 * @param outputProcessor the processor to build the output from a window.
+	 * @return the endpoint spec.
+	 * @see WindowingMessageHandler#setOutputProcessor(MessageGroupProcessor)
+	 */
+	public WindowSpec outputProcessor(MessageGroupProcessor outputProcessor) {
+		this.handler.setOutputProcessor(outputProcessor);
+		return _this();
+	}
+
+	/**
+	 * An expression to determine the output message from a window content, evaluated
+	 * against the {@link org.springframework.integration.store.MessageGroup}.
+	 * Defaults to a message with a payload that is a list of payloads from the window.
+	 * @param expression the expression.
+	 * @return the endpoint spec.
+	 */
+	public WindowSpec outputExpression(String expression) {
+		return outputProcessor(new ExpressionEvaluatingMessageGroupProcessor(expression));
+	}
+
+	/**
+	 * @param messageStore the message group store to checkpoint buffered messages to.
+	 * @return the endpoint spec.
+	 * @see WindowingMessageHandler#setMessageStore(MessageGroupStore)
+	 */
+	public WindowSpec messageStore(MessageGroupStore messageStore) {
+		this.handler.setMessageStore(messageStore);
+		return _this();
+	}
+
+	/**
+	 * @param checkpointGroupId the group id for checkpointed messages.
+	 * @return the endpoint spec.
+	 * @see WindowingMessageHandler#setCheckpointGroupId(Object)
+	 */
+	public WindowSpec checkpointGroupId(Object checkpointGroupId) {
+		this.handler.setCheckpointGroupId(checkpointGroupId);
+		return _this();
+	}
+
+	/**
+	 * @param flushOnStop true to emit open windows when the endpoint is stopped.
+	 * @return the endpoint spec.
+	 * @see WindowingMessageHandler#setFlushOnStop(boolean)
+	 */
+	public WindowSpec flushOnStop(boolean flushOnStop) {
+		this.handler.setFlushOnStop(flushOnStop);
+		return _this();
+	}
+
+	/**
+	 * @param taskScheduler the task scheduler.
+	 * @return the endpoint spec.
+	 * @see WindowingMessageHandler#setTaskScheduler(TaskScheduler)
+	 */
+	@Override
+	public WindowSpec taskScheduler(TaskScheduler taskScheduler) {
+		Assert.notNull(taskScheduler, "'taskScheduler' must not be null");
+		super.taskScheduler(taskScheduler);
+		this.handler.setTaskScheduler(taskScheduler);
+		return _this();
+	}
+
+}
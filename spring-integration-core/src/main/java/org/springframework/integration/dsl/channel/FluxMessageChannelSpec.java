@@ -1,5 +1,5 @@
 /*
- * Copyright 2017 the original author or authors.
+ * Copyright 2017-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,7 +16,10 @@
 
 package org.springframework.integration.dsl.channel;
 
+import java.time.Duration;
+
 import org.springframework.integration.channel.FluxMessageChannel;
+import org.springframework.integration.channel.OverflowPolicy;
 
 /**
  * @author Artem Bilan
@@ -30,4 +33,62 @@ public class FluxMessageChannelSpec extends MessageChannelSpec<FluxMessageChanne
 		this.channel = new FluxMessageChannel();
 	}
 
+	/**
+	 * @param bufferSize the buffer size.
+	 * @return the spec.
+	 * @since 5.1
+	 * @see FluxMessageChannel#setBufferSize(int)
+	 */
+	public FluxMessageChannelSpec bufferSize(int bufferSize) {
+		this.channel.setBufferSize(bufferSize);
+		return _this();
+	}
+
+	/**
+	 * @param overflowPolicy the overflow policy.
+	 * @return the spec.
+	 * @since 5.1
+	 * @see FluxMessageChannel#setOverflowPolicy(OverflowPolicy)
+	 */
+	public FluxMessageChannelSpec overflowPolicy(OverflowPolicy overflowPolicy) {
+		this.channel.setOverflowPolicy(overflowPolicy);
+		return _this();
+	}
+
+	/**
+	 * @param prefetch the prefetch.
+	 * @return the spec.
+	 * @since 5.1
+	 * @see FluxMessageChannel#setPrefetch(int)
+	 */
+	public FluxMessageChannelSpec prefetch(int prefetch) {
+		this.channel.setPrefetch(prefetch);
+		return _this();
+	}
+
+	/**
+	 * @param limitRate the limit rate.
+	 * @return the spec.
+	 * @since 5.1
+	 * @see FluxMessageChannel#setLimitRate(int)
+	 */
+	public FluxMessageChannelSpec limitRate(int limitRate) {
+		this.channel.setLimitRate(limitRate);
+		return _this();
+	}
+
+	/**
+	 * @param batchSize the batch size.
+	 * @param batchTimeout the batch timeout.
+	 * @return the spec.
+	 * @since 5.1
+	 * @see FluxMessageChannel#setBatchSize(int)
+	 * @see FluxMessageChannel#setBatchTimeout(Duration)
+	 */
+	public FluxMessageChannelSpec batch(int batchSize, Duration batchTimeout) {
+		this.channel.setBatchSize(batchSize);
+		this.channel.setBatchTimeout(batchTimeout);
+		return _this();
+	}
+
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,11 +16,13 @@
 
 package org.springframework.integration.endpoint;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
 import org.aopalliance.aop.Advice;
@@ -62,6 +64,8 @@ public abstract class AbstractPollingEndpoint extends AbstractEndpoint implement
 
 	private volatile Executor taskExecutor = new SyncTaskExecutor();
 
+	private volatile boolean syncExecutor = true;
+
 	private volatile ErrorHandler errorHandler;
 
 	private volatile boolean errorHandlerIsDefault;
@@ -72,7 +76,7 @@ public abstract class AbstractPollingEndpoint extends AbstractEndpoint implement
 
 	private volatile ClassLoader beanClassLoader = ClassUtils.getDefaultClassLoader();
 
-	private volatile ScheduledFuture<?> runningTask;
+	private final List<ScheduledFuture<?>> runningTasks = new ArrayList<>();
 
 	private volatile Runnable poller;
 
@@ -90,6 +94,7 @@ public abstract class AbstractPollingEndpoint extends AbstractEndpoint implement
 
 	public void setTaskExecutor(Executor taskExecutor) {
 		this.taskExecutor = (taskExecutor != null ? taskExecutor : new SyncTaskExecutor());
+		this.syncExecutor = this.taskExecutor instanceof SyncTaskExecutor;
 	}
 
 	public void setTrigger(Trigger trigger) {
@@ -154,6 +159,17 @@ public abstract class AbstractPollingEndpoint extends AbstractEndpoint implement
 	protected void applyReceiveOnlyAdviceChain(Collection<Advice> chain) {
 	}
 
+	/**
+	 * Return the number of poll loops to run concurrently, each one scheduled with the
+	 * trigger independently of the others. Default 1.
+	 * @return the number of poll loops.
+	 * @since 5.1
+	 * @see #receiveMessage(int)
+	 */
+	protected int getConcurrency() {
+		return 1;
+	}
+
 	@Override
 	protected void onInit() {
 		synchronized (this.initializationMonitor) {
@@ -188,15 +204,15 @@ public abstract class AbstractPollingEndpoint extends AbstractEndpoint implement
 	}
 
 	@SuppressWarnings("unchecked")
-	private Runnable createPoller() throws Exception {
+	private Runnable createPoller(int consumer) throws Exception {
 		List<Advice> receiveOnlyAdviceChain = null;
-		if (!CollectionUtils.isEmpty(this.adviceChain)) {
+		if (consumer == 0 && !CollectionUtils.isEmpty(this.adviceChain)) {
 			receiveOnlyAdviceChain = this.adviceChain.stream()
 					.filter(this::isReceiveOnlyAdvice)
 					.collect(Collectors.toList());
 		}
 
-		Callable<Boolean> pollingTask = this::doPoll;
+		Callable<Boolean> pollingTask = () -> doPoll(consumer);
 
 		List<Advice> adviceChain = this.adviceChain;
 		if (!CollectionUtils.isEmpty(adviceChain)) {
@@ -223,31 +239,46 @@ public abstract class AbstractPollingEndpoint extends AbstractEndpoint implement
 		}
 		Assert.state(this.getTaskScheduler() != null,
 				"unable to start polling, no taskScheduler available");
+		Assert.state(getConcurrency() == 1 || !(this.trigger instanceof AdaptivePollController),
+				"An AdaptivePollController cannot be shared by concurrent poll loops");
+		if (this.trigger instanceof AdaptivePollController) {
+			((AdaptivePollController) this.trigger).setParallelPollsSupported(!this.syncExecutor);
+		}
+		List<Runnable> pollers = new ArrayList<>();
 		try {
-			this.poller = createPoller();
+			this.poller = createPoller(0);
+			pollers.add(this.poller);
+			for (int i = 1; i < getConcurrency(); i++) {
+				pollers.add(createPoller(i));
+			}
 		}
 		catch (Exception e) {
 			this.initialized = false;
 			throw new MessagingException("Failed to create Poller", e);
 		}
-		this.runningTask = this.getTaskScheduler().schedule(this.poller, this.trigger);
+		for (Runnable poller : pollers) {
+			ScheduledFuture<?> runningTask = this.getTaskScheduler().schedule(poller, this.trigger);
+			if (runningTask != null) {
+				this.runningTasks.add(runningTask);
+			}
+		}
 	}
 
 	@Override // guarded by super#lifecycleLock
 	protected void doStop() {
-		if (this.runningTask != null) {
-			this.runningTask.cancel(true);
+		for (ScheduledFuture<?> runningTask : this.runningTasks) {
+			runningTask.cancel(true);
 		}
-		this.runningTask = null;
+		this.runningTasks.clear();
 		this.initialized = false;
 	}
 
-	private boolean doPoll() {
+	private boolean doPoll(int consumer) {
 		IntegrationResourceHolder holder = this.bindResourceHolderIfNecessary(
 				this.getResourceKey(), this.getResourceToBind());
 		Message<?> message = null;
 		try {
-			message = this.receiveMessage();
+			message = this.receiveMessage(consumer);
 		}
 		catch (Exception e) {
 			if (Thread.interrupted()) {
@@ -297,6 +328,18 @@ public abstract class AbstractPollingEndpoint extends AbstractEndpoint implement
 	 */
 	protected abstract Message<?> receiveMessage();
 
+	/**
+	 * Obtain the next message (if one is available) for the provided poll loop.
+	 * MAY return null if no message is immediately available.
+	 * Default implementation delegates to {@link #receiveMessage()}.
+	 * @param consumer the index of the poll loop, less than {@link #getConcurrency()}.
+	 * @return The message or null.
+	 * @since 5.1
+	 */
+	protected Message<?> receiveMessage(int consumer) {
+		return receiveMessage();
+	}
+
 	/**
 	 * Handle a message.
 	 * @param message The message.
@@ -370,42 +413,77 @@ public abstract class AbstractPollingEndpoint extends AbstractEndpoint implement
 
 		@Override
 		public void run() {
-			AbstractPollingEndpoint.this.taskExecutor.execute(() -> {
-				int count = 0;
-				while (AbstractPollingEndpoint.this.initialized
-						&& (AbstractPollingEndpoint.this.maxMessagesPerPoll <= 0
-						|| count < AbstractPollingEndpoint.this.maxMessagesPerPoll)) {
+			Trigger trigger = AbstractPollingEndpoint.this.trigger;
+			if (trigger instanceof AdaptivePollController) {
+				AdaptivePollController controller = (AdaptivePollController) trigger;
+				int polls = controller.acquirePolls();
+				for (int i = 0; i < polls; i++) {
+					AtomicBoolean started = new AtomicBoolean();
 					try {
-						if (!Poller.this.pollingTask.call()) {
-							break;
-						}
-						count++;
-					}
-					catch (Exception e) {
-						if (e instanceof MessagingException) {
-							throw (MessagingException) e;
-						}
-						else {
-							Message<?> failedMessage = null;
-							if (AbstractPollingEndpoint.this.transactionSynchronizationFactory != null) {
-								Object resource = TransactionSynchronizationManager.getResource(getResourceToBind());
-								if (resource instanceof IntegrationResourceHolder) {
-									failedMessage = ((IntegrationResourceHolder) resource).getMessage();
-								}
+						AbstractPollingEndpoint.this.taskExecutor.execute(() -> {
+							started.set(true);
+							int count;
+							try {
+								count = poll();
+							}
+							catch (RuntimeException | Error e) {
+								controller.pollFailed();
+								throw e;
 							}
-							throw new MessagingException(failedMessage, e);
+							long maxMessagesPerPoll = AbstractPollingEndpoint.this.maxMessagesPerPoll;
+							controller.pollCompleted(count, maxMessagesPerPoll > 0 && count >= maxMessagesPerPoll);
+						});
+					}
+					catch (RuntimeException e) {
+						// a poll that started (synchronous executor) has already been released
+						for (int j = started.get() ? i + 1 : i; j < polls; j++) {
+							controller.releasePoll();
 						}
+						throw e;
+					}
+				}
+			}
+			else {
+				AbstractPollingEndpoint.this.taskExecutor.execute(this::poll);
+			}
+		}
+
+		private int poll() {
+			int count = 0;
+			while (AbstractPollingEndpoint.this.initialized
+					&& (AbstractPollingEndpoint.this.maxMessagesPerPoll <= 0
+					|| count < AbstractPollingEndpoint.this.maxMessagesPerPoll)) {
+				try {
+					if (!Poller.this.pollingTask.call()) {
+						break;
+					}
+					count++;
+				}
+				catch (Exception e) {
+					if (e instanceof MessagingException) {
+						throw (MessagingException) e;
 					}
-					finally {
+					else {
+						Message<?> failedMessage = null;
 						if (AbstractPollingEndpoint.this.transactionSynchronizationFactory != null) {
-							Object resource = getResourceToBind();
-							if (TransactionSynchronizationManager.hasResource(resource)) {
-								TransactionSynchronizationManager.unbindResource(resource);
+							Object resource = TransactionSynchronizationManager.getResource(getResourceToBind());
+							if (resource instanceof IntegrationResourceHolder) {
+								failedMessage = ((IntegrationResourceHolder) resource).getMessage();
 							}
 						}
+						throw new MessagingException(failedMessage, e);
 					}
 				}
-			});
+				finally {
+					if (AbstractPollingEndpoint.this.transactionSynchronizationFactory != null) {
+						Object resource = getResourceToBind();
+						if (TransactionSynchronizationManager.hasResource(resource)) {
+							TransactionSynchronizationManager.unbindResource(resource);
+						}
+					}
+				}
+			}
+			return count;
 		}
 
 	}
@@ -0,0 +1,243 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.endpoint;
+
+import java.util.Date;
+
+import org.springframework.scheduling.Trigger;
+import org.springframework.scheduling.TriggerContext;
+import org.springframework.util.Assert;
+
+/**
+ * A {@link Trigger} adapting the polling of an {@link AbstractPollingEndpoint} to the
+ * load of its source. When used as the trigger of the endpoint, the endpoint reports the
+ * outcome of each poll to this controller:
+ * <ul>
+ * <li>a poll receiving no message multiplies the period by the
+ * {@link #setBackOffMultiplier(double) backOffMultiplier}, up to the maximum period, and
+ * halves the number of parallel polls;</li>
+ * <li>a poll failing with an exception backs off and halves the number of parallel polls
+ * in the same way, but is counted as a failed poll rather than an empty poll;</li>
+ * <li>a poll receiving messages resets the period to the minimum period;</li>
+ * <li>a poll stopped by the {@code maxMessagesPerPoll} limit (the source has more
+ * messages) adds one parallel poll, up to {@link #setMaxConcurrentPolls(int)
+ * maxConcurrentPolls}.</li>
+ * </ul>
+ * Parallel polls run on the {@code taskExecutor} of the endpoint; with the default
+ * synchronous executor, the concurrency stays at 1 and only the period is adapted.
+ * An instance must not be shared by several endpoints.
+ *
+ * @since 5.1
+ */
+public class AdaptivePollController implements Trigger {
+
+	private final long minPeriod;
+
+	private final long maxPeriod;
+
+	private double backOffMultiplier = 2.0;
+
+	private int maxConcurrentPolls = 1;
+
+	private volatile long period;
+
+	private volatile int concurrency = 1;
+
+	private volatile boolean parallelPollsSupported = true;
+
+	private volatile int inFlight;
+
+	private volatile long pollCount;
+
+	private volatile long emptyPollCount;
+
+	private volatile long messageCount;
+
+	private volatile long failedPollCount;
+
+	/**
+	 * Construct an instance with the provided bounds for the period between polls.
+	 * @param minPeriod the period in milliseconds when messages are available.
+	 * @param maxPeriod the maximum period in milliseconds when the source is idle.
+	 */
+	public AdaptivePollController(long minPeriod, long maxPeriod) {
+		Assert.isTrue(minPeriod >= 0, "'minPeriod' must not be negative");
+		Assert.isTrue(maxPeriod >= minPeriod, "'maxPeriod' must not be less than 'minPeriod'");
+		this.minPeriod = minPeriod;
+		this.maxPeriod = maxPeriod;
+		this.period = minPeriod;
+	}
+
+	/**
+	 * Set the multiplier applied to the period after a poll receiving no message.
+	 * Default 2.0.
+	 * @param backOffMultiplier the multiplier.
+	 */
+	public void setBackOffMultiplier(double backOffMultiplier) {
+		Assert.isTrue(backOffMultiplier > 1.0, "'backOffMultiplier' must be greater than 1");
+		this.backOffMultiplier = backOffMultiplier;
+	}
+
+	/**
+	 * Set the maximum number of polls in flight at the same time. Default 1.
+	 * @param maxConcurrentPolls the maximum number of parallel polls.
+	 */
+	public void setMaxConcurrentPolls(int maxConcurrentPolls) {
+		Assert.isTrue(maxConcurrentPolls > 0, "'maxConcurrentPolls' must be greater than 0");
+		this.maxConcurrentPolls = maxConcurrentPolls;
+	}
+
+	/**
+	 * Return the current period between polls in milliseconds.
+	 * @return the period.
+	 */
+	public long getPeriod() {
+		return this.period;
+	}
+
+	/**
+	 * Return the current target number of parallel polls.
+	 * @return the concurrency.
+	 */
+	public int getConcurrency() {
+		return this.concurrency;
+	}
+
+	/**
+	 * Return the number of polls currently in flight.
+	 * @return the count.
+	 */
+	public int getInFlightPolls() {
+		return this.inFlight;
+	}
+
+	/**
+	 * Return the number of completed polls, not including the failed polls.
+	 * @return the count.
+	 */
+	public long getPollCount() {
+		return this.pollCount;
+	}
+
+	/**
+	 * Return the number of completed polls that received no message.
+	 * @return the count.
+	 */
+	public long getEmptyPollCount() {
+		return this.emptyPollCount;
+	}
+
+	/**
+	 * Return the number of messages received by the completed polls.
+	 * @return the count.
+	 */
+	public long getMessageCount() {
+		return this.messageCount;
+	}
+
+	/**
+	 * Return the number of polls that failed with an exception.
+	 * @return the count.
+	 */
+	public long getFailedPollCount() {
+		return this.failedPollCount;
+	}
+
+	@Override
+	public Date nextExecutionTime(TriggerContext triggerContext) {
+		Date lastCompletion = triggerContext.lastCompletionTime();
+		if (lastCompletion == null) {
+			return new Date();
+		}
+		return new Date(lastCompletion.getTime() + this.period);
+	}
+
+	/**
+	 * Set by the endpoint according to its {@code taskExecutor}: when false (synchronous
+	 * executor), the concurrency is not increased above 1.
+	 * @param parallelPollsSupported false if the polls cannot run in parallel.
+	 */
+	void setParallelPollsSupported(boolean parallelPollsSupported) {
+		this.parallelPollsSupported = parallelPollsSupported;
+		if (!parallelPollsSupported) {
+			this.concurrency = 1;
+		}
+	}
+
+	/**
+	 * Reserve the polls to start for a scheduled execution: the difference between the
+	 * current concurrency and the polls still in flight.
+	 * @return the number of polls to start.
+	 */
+	synchronized int acquirePolls() {
+		int polls = Math.max(0, this.concurrency - this.inFlight);
+		this.inFlight += polls;
+		return polls;
+	}
+
+	/**
+	 * Release a poll reserved by {@link #acquirePolls()} that could not be started.
+	 */
+	synchronized void releasePoll() {
+		this.inFlight--;
+	}
+
+	/**
+	 * Record the outcome of a poll started after {@link #acquirePolls()} and adapt the
+	 * period and the concurrency.
+	 * @param messages the number of messages received by the poll.
+	 * @param limitReached true if the poll was stopped by {@code maxMessagesPerPoll}.
+	 */
+	synchronized void pollCompleted(int messages, boolean limitReached) {
+		this.inFlight--;
+		this.pollCount++;
+		this.messageCount += messages;
+		if (messages == 0) {
+			this.emptyPollCount++;
+			backOff();
+		}
+		else {
+			this.period = this.minPeriod;
+			if (limitReached && this.parallelPollsSupported) {
+				this.concurrency = Math.min(this.maxConcurrentPolls, this.concurrency + 1);
+			}
+		}
+	}
+
+	/**
+	 * Record a poll started after {@link #acquirePolls()} that failed with an exception
+	 * and back off.
+	 */
+	synchronized void pollFailed() {
+		this.inFlight--;
+		this.failedPollCount++;
+		backOff();
+	}
+
+	private void backOff() {
+		long next = (long) Math.ceil(Math.max(this.period, 1) * this.backOffMultiplier);
+		this.period = Math.max(this.minPeriod, Math.min(this.maxPeriod, next));
+		this.concurrency = Math.max(1, this.concurrency / 2);
+	}
+
+	@Override
+	public String toString() {
+		return "AdaptivePollController [period=" + this.period + ", concurrency=" + this.concurrency
+				+ ", inFlight=" + this.inFlight + "]";
+	}
+
+}
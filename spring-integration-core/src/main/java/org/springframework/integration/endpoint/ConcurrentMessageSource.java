@@ -0,0 +1,53 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.endpoint;
+
+import org.springframework.integration.core.MessageSource;
+import org.springframework.messaging.Message;
+
+/**
+ * A {@link MessageSource} polled by several concurrent consumers of a
+ * {@link SourcePollingChannelAdapter} with a {@code concurrency} greater than 1.
+ * Each consumer identifies itself on each poll, so that the source can partition the
+ * work between the consumers; for example, by selecting the rows where
+ * {@code MOD(ID, concurrency) = consumer}, or by claiming rows with an owner
+ * derived from the consumer.
+ *
+ * @param <T> the expected payload type.
+ *
+ * @since 5.1
+ */
+public interface ConcurrentMessageSource<T> extends MessageSource<T> {
+
+	/**
+	 * Retrieve the next available message for the provided consumer.
+	 * @param consumer the index of the consumer, from 0 to {@code concurrency - 1}.
+	 * @param concurrency the number of consumers.
+	 * @return The message or null.
+	 */
+	Message<T> receive(int consumer, int concurrency);
+
+	/**
+	 * Retrieve the next available message for a single consumer.
+	 * @return The message or null.
+	 */
+	@Override
+	default Message<T> receive() {
+		return receive(0, 1);
+	}
+
+}
@@ -16,8 +16,12 @@
 
 package org.springframework.integration.endpoint;
 
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.aopalliance.aop.Advice;
 
@@ -70,6 +74,10 @@ public class SourcePollingChannelAdapter extends AbstractPollingEndpoint
 
 	private volatile boolean shouldTrack;
 
+	private volatile int concurrency = 1;
+
+	private volatile ConsumerMetrics[] consumerMetrics = { new ConsumerMetrics(0) };
+
 	/**
 	 * Specify the source to be polled for Messages.
 	 *
@@ -129,6 +137,47 @@ public class SourcePollingChannelAdapter extends AbstractPollingEndpoint
 		this.shouldTrack = shouldTrack;
 	}
 
+	/**
+	 * Set the number of consumers polling the source concurrently. Each consumer runs its
+	 * own poll loop, scheduled with the trigger independently of the others, so the
+	 * source must be thread-safe. A {@link ConcurrentMessageSource} is told which
+	 * consumer is polling, so that it can partition the work. Default 1.
+	 * A concurrency greater than 1 cannot be combined with an
+	 * {@link AdaptivePollController} trigger, which adapts the number of parallel polls
+	 * itself.
+	 * @param concurrency the number of consumers.
+	 * @since 5.1
+	 */
+	public void setConcurrency(int concurrency) {
+		Assert.isTrue(concurrency > 0, "'concurrency' must be greater than 0");
+		Assert.state(!isRunning(), "'concurrency' cannot be changed while the adapter is running");
+		ConsumerMetrics[] consumerMetrics = new ConsumerMetrics[concurrency];
+		for (int i = 0; i < concurrency; i++) {
+			consumerMetrics[i] = new ConsumerMetrics(i);
+		}
+		this.consumerMetrics = consumerMetrics;
+		this.concurrency = concurrency;
+	}
+
+	/**
+	 * Return the number of consumers polling the source concurrently.
+	 * @return the number of consumers.
+	 * @since 5.1
+	 */
+	@Override
+	public int getConcurrency() {
+		return this.concurrency;
+	}
+
+	/**
+	 * Return the metrics of each consumer, indexed by consumer.
+	 * @return the metrics.
+	 * @since 5.1
+	 */
+	public List<ConsumerMetrics> getConsumerMetrics() {
+		return Collections.unmodifiableList(Arrays.asList(this.consumerMetrics));
+	}
+
 	@Override
 	public String getComponentType() {
 		return (this.source instanceof NamedComponent) ?
@@ -236,6 +285,30 @@ public class SourcePollingChannelAdapter extends AbstractPollingEndpoint
 		return this.source.receive();
 	}
 
+	@Override
+	protected Message<?> receiveMessage(int consumer) {
+		ConsumerMetrics metrics = this.consumerMetrics[consumer];
+		metrics.pollCount.incrementAndGet();
+		Message<?> message;
+		try {
+			int concurrency = this.concurrency;
+			if (concurrency > 1 && this.source instanceof ConcurrentMessageSource) {
+				message = ((ConcurrentMessageSource<?>) this.source).receive(consumer, concurrency);
+			}
+			else {
+				message = receiveMessage();
+			}
+		}
+		catch (RuntimeException e) {
+			metrics.errorCount.incrementAndGet();
+			throw e;
+		}
+		if (message != null) {
+			metrics.messageCount.incrementAndGet();
+		}
+		return message;
+	}
+
 	@Override
 	protected Object getResourceToBind() {
 		return this.originalSource;
@@ -262,5 +335,64 @@ public class SourcePollingChannelAdapter extends AbstractPollingEndpoint
 		}
 	}
 
+	/**
+	 * The polling metrics of a consumer of the adapter.
+	 *
+	 * @since 5.1
+	 */
+	public static final class ConsumerMetrics {
+
+		private final int consumer;
+
+		private final AtomicLong pollCount = new AtomicLong();
+
+		private final AtomicLong messageCount = new AtomicLong();
+
+		private final AtomicLong errorCount = new AtomicLong();
+
+		ConsumerMetrics(int consumer) {
+			this.consumer = consumer;
+		}
+
+		/**
+		 * Return the index of the consumer.
+		 * @return the index.
+		 */
+		public int getConsumer() {
+			return this.consumer;
+		}
+
+		/**
+		 * Return the number of polls of the source by this consumer.
+		 * @return the count.
+		 */
+		public long getPollCount() {
+			return this.pollCount.get();
+		}
+
+		/**
+		 * Return the number of messages received by this consumer.
+		 * @return the count.
+		 */
+		public long getMessageCount() {
+			return this.messageCount.get();
+		}
+
+		/**
+		 * Return the number of polls of this consumer that failed with an exception.
+		 * @return the count.
+		 */
+		public long getErrorCount() {
+			return this.errorCount.get();
+		}
+
+		@Override
+		public String toString() {
+			return "ConsumerMetrics [consumer=" + this.consumer + ", pollCount=" + getPollCount()
+					+ ", messageCount=" + getMessageCount() + ", errorCount=" + getErrorCount() + "]";
+		}
+
+	}
+
 
 }
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.expression;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.expression.BeanResolver;
+import org.springframework.expression.ConstructorResolver;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.MethodResolver;
+import org.springframework.expression.OperatorOverloader;
+import org.springframework.expression.PropertyAccessor;
+import org.springframework.expression.TypeComparator;
+import org.springframework.expression.TypeConverter;
+import org.springframework.expression.TypeLocator;
+import org.springframework.expression.TypedValue;
+import org.springframework.util.Assert;
+
+/**
+ * A lightweight {@link EvaluationContext} for a single evaluation (or a few related ones),
+ * which holds its own variables and, optionally, root object, and delegates everything
+ * else to a shared, fully configured context.
+ * <p>
+ * Use it instead of creating a new
+ * {@link org.springframework.expression.spel.support.StandardEvaluationContext}
+ * per message just to set some variables: the resolvers, accessors and converters
+ * (and their caches) of the shared context are reused.
+ * Variables not set on this context are looked up in the delegate, so functions
+ * registered there remain available.
+ * <p>
+ * Instances are not thread-safe, but the delegate is not mutated.
+ *
+ * @since 5.1
+ */
+public final class DelegatingEvaluationContext implements EvaluationContext {
+
+	private final EvaluationContext delegate;
+
+	private final TypedValue rootObject;
+
+	private Map<String, Object> variables;
+
+	/**
+	 * Create an instance with the root object of the delegate.
+	 * @param delegate the shared evaluation context.
+	 */
+	public DelegatingEvaluationContext(EvaluationContext delegate) {
+		Assert.notNull(delegate, "'delegate' must not be null");
+		this.delegate = delegate;
+		this.rootObject = null;
+	}
+
+	/**
+	 * Create an instance with the provided root object.
+	 * @param delegate the shared evaluation context.
+	 * @param rootObject the root object.
+	 */
+	public DelegatingEvaluationContext(EvaluationContext delegate, Object rootObject) {
+		Assert.notNull(delegate, "'delegate' must not be null");
+		this.delegate = delegate;
+		this.rootObject = new TypedValue(rootObject);
+	}
+
+	@Override
+	public TypedValue getRootObject() {
+		return this.rootObject != null ? this.rootObject : this.delegate.getRootObject();
+	}
+
+	@Override
+	public List<PropertyAccessor> getPropertyAccessors() {
+		return this.delegate.getPropertyAccessors();
+	}
+
+	@Override
+	public List<ConstructorResolver> getConstructorResolvers() {
+		return this.delegate.getConstructorResolvers();
+	}
+
+	@Override
+	public List<MethodResolver> getMethodResolvers() {
+		return this.delegate.getMethodResolvers();
+	}
+
+	@Override
+	public BeanResolver getBeanResolver() {
+		return this.delegate.getBeanResolver();
+	}
+
+	@Override
+	public TypeLocator getTypeLocator() {
+		return this.delegate.getTypeLocator();
+	}
+
+	@Override
+	public TypeConverter getTypeConverter() {
+		return this.delegate.getTypeConverter();
+	}
+
+	@Override
+	public TypeComparator getTypeComparator() {
+		return this.delegate.getTypeComparator();
+	}
+
+	@Override
+	public OperatorOverloader getOperatorOverloader() {
+		return this.delegate.getOperatorOverloader();
+	}
+
+	@Override
+	public void setVariable(String name, Object value) {
+		if (this.variables == null) {
+			this.variables = new HashMap<>();
+		}
+		this.variables.put(name, value);
+	}
+
+	@Override
+	public Object lookupVariable(String name) {
+		if (this.variables != null && this.variables.containsKey(name)) {
+			return this.variables.get(name);
+		}
+		return this.delegate.lookupVariable(name);
+	}
+
+}
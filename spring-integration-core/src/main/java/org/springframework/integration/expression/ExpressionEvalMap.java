@@ -1,5 +1,5 @@
 /*
- * Copyright 2013-2016 the original author or authors.
+ * Copyright 2013-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -88,6 +88,10 @@ public final class ExpressionEvalMap extends AbstractMap<String, Object> {
 				expression = (Expression) value;
 			}
 			else if (value instanceof String) {
+				if (this.evaluationCallback.getClass() == ComponentsEvaluationCallback.class
+						&& ((ComponentsEvaluationCallback) this.evaluationCallback).returnsLiteral()) {
+					return value;
+				}
 				expression = new LiteralExpression((String) value);
 			}
 			else {
@@ -214,13 +218,22 @@ public final class ExpressionEvalMap extends AbstractMap<String, Object> {
 			return expression.getValue(this.root, this.returnType);
 		}
 
+		/**
+		 * A literal evaluates to itself when no conversion is required.
+		 */
+		boolean returnsLiteral() {
+			return this.returnType == null || this.returnType.isAssignableFrom(String.class);
+		}
+
 	}
 
 
 	/**
 	 * The builder class to instantiate {@link ExpressionEvalMap}.
+	 * The builder itself is returned from the fluent methods, to avoid extra allocations
+	 * when a map is built for each message.
 	 */
-	public static final class ExpressionEvalMapBuilder {
+	public static final class ExpressionEvalMapBuilder implements ExpressionEvalMapComponentsBuilder {
 
 		private final Map<String, ?> expressions;
 
@@ -232,77 +245,47 @@ public final class ExpressionEvalMap extends AbstractMap<String, Object> {
 
 		private Class<?> returnType;
 
-		private final ExpressionEvalMapComponentsBuilder evalMapComponentsBuilder =
-				new ExpressionEvalMapComponentsBuilderImpl();
-
-		private final ExpressionEvalMapFinalBuilder finalBuilder = new ExpressionEvalMapFinalBuilderImpl();
-
 		private ExpressionEvalMapBuilder(Map<String, ?> expressions) {
 			this.expressions = expressions;
 		}
 
 		public ExpressionEvalMapFinalBuilder usingCallback(EvaluationCallback callback) {
 			this.evaluationCallback = callback;
-			return this.finalBuilder;
+			return this;
 		}
 
 		public ExpressionEvalMapFinalBuilder usingSimpleCallback() {
 			return this.usingCallback(SIMPLE_CALLBACK);
 		}
 
+		@Override
 		public ExpressionEvalMapComponentsBuilder usingEvaluationContext(EvaluationContext context) {
 			this.context = context;
-			return this.evalMapComponentsBuilder;
+			return this;
 		}
 
+		@Override
 		public ExpressionEvalMapComponentsBuilder withRoot(Object root) {
 			this.root = root;
-			return this.evalMapComponentsBuilder;
+			return this;
 
 		}
 
+		@Override
 		public ExpressionEvalMapComponentsBuilder withReturnType(Class<?> returnType) {
 			this.returnType = returnType;
-			return this.evalMapComponentsBuilder;
+			return this;
 
 		}
 
-
-		private class ExpressionEvalMapFinalBuilderImpl implements ExpressionEvalMapFinalBuilder {
-
-			@Override
-			public ExpressionEvalMap build() {
-				if (ExpressionEvalMapBuilder.this.evaluationCallback != null) {
-					return new ExpressionEvalMap(ExpressionEvalMapBuilder.this.expressions,
-							ExpressionEvalMapBuilder.this.evaluationCallback);
-				}
-				ComponentsEvaluationCallback evaluationCallback =
-						new ComponentsEvaluationCallback(ExpressionEvalMapBuilder.this.context,
-								ExpressionEvalMapBuilder.this.root, ExpressionEvalMapBuilder.this.returnType);
-				return new ExpressionEvalMap(ExpressionEvalMapBuilder.this.expressions, evaluationCallback);
-			}
-
-		}
-
-
-		private class ExpressionEvalMapComponentsBuilderImpl extends ExpressionEvalMapFinalBuilderImpl
-				implements ExpressionEvalMapComponentsBuilder {
-
-			@Override
-			public ExpressionEvalMapComponentsBuilder usingEvaluationContext(EvaluationContext context) {
-				return ExpressionEvalMapBuilder.this.usingEvaluationContext(context);
-			}
-
-			@Override
-			public ExpressionEvalMapComponentsBuilder withRoot(Object root) {
-				return ExpressionEvalMapBuilder.this.withRoot(root);
-			}
-
-			@Override
-			public ExpressionEvalMapComponentsBuilder withReturnType(Class<?> returnType) {
-				return ExpressionEvalMapBuilder.this.withReturnType(returnType);
+		@Override
+		public ExpressionEvalMap build() {
+			if (this.evaluationCallback != null) {
+				return new ExpressionEvalMap(this.expressions, this.evaluationCallback);
 			}
-
+			ComponentsEvaluationCallback evaluationCallback =
+					new ComponentsEvaluationCallback(this.context, this.root, this.returnType);
+			return new ExpressionEvalMap(this.expressions, evaluationCallback);
 		}
 
 	}
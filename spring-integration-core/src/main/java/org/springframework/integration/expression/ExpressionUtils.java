@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -28,13 +28,16 @@ import org.springframework.core.convert.ConversionService;
 import org.springframework.expression.EvaluationContext;
 import org.springframework.expression.Expression;
 import org.springframework.expression.ExpressionParser;
+import org.springframework.expression.spel.SpelCompilerMode;
 import org.springframework.expression.spel.standard.SpelExpressionParser;
 import org.springframework.expression.spel.support.StandardEvaluationContext;
 import org.springframework.expression.spel.support.StandardTypeConverter;
 import org.springframework.integration.context.IntegrationContextUtils;
+import org.springframework.integration.context.IntegrationProperties;
 import org.springframework.integration.support.utils.IntegrationUtils;
 import org.springframework.messaging.Message;
 import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
 
 /**
  * Utility class with static methods for helping with evaluation of SpEL expressions.
@@ -179,4 +182,20 @@ public final class ExpressionUtils {
 		return EXPRESSION_PARSER.parseExpression(expression);
 	}
 
+	/**
+	 * Resolve the {@link SpelCompilerMode} from the
+	 * {@link IntegrationProperties#SPEL_COMPILER_MODE} integration property.
+	 * @param beanFactory the bean factory (may be null).
+	 * @return the compiler mode; {@link SpelCompilerMode#OFF} if not configured.
+	 * @since 5.1
+	 */
+	public static SpelCompilerMode getSpelCompilerMode(BeanFactory beanFactory) {
+		String mode = IntegrationContextUtils.getIntegrationProperties(beanFactory)
+				.getProperty(IntegrationProperties.SPEL_COMPILER_MODE);
+		if (!StringUtils.hasText(mode)) {
+			return SpelCompilerMode.OFF;
+		}
+		return SpelCompilerMode.valueOf(mode.trim().toUpperCase());
+	}
+
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -38,6 +38,7 @@ import org.springframework.expression.EvaluationContext;
 import org.springframework.expression.Expression;
 import org.springframework.expression.spel.standard.SpelExpressionParser;
 import org.springframework.expression.spel.support.StandardEvaluationContext;
+import org.springframework.integration.expression.DelegatingEvaluationContext;
 import org.springframework.integration.expression.ExpressionUtils;
 import org.springframework.integration.mapping.InboundMessageMapper;
 import org.springframework.integration.mapping.MessageMappingException;
@@ -207,8 +208,11 @@ class GatewayMethodInboundMessageMapper implements InboundMessageMapper<Object[]
 		return evaluatedHeaders;
 	}
 
-	private StandardEvaluationContext createMethodInvocationEvaluationContext(Object[] arguments) {
-		StandardEvaluationContext context = ExpressionUtils.createStandardEvaluationContext(this.beanFactory);
+	private EvaluationContext createMethodInvocationEvaluationContext(Object[] arguments) {
+		if (this.payloadExpressionEvaluationContext == null) {
+			this.payloadExpressionEvaluationContext = ExpressionUtils.createStandardEvaluationContext(this.beanFactory);
+		}
+		EvaluationContext context = new DelegatingEvaluationContext(this.payloadExpressionEvaluationContext);
 		context.setVariable("args", arguments);
 
 		context.setVariable("gatewayMethod", this.method);
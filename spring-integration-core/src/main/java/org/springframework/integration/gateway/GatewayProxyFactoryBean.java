@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -28,6 +28,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
 import java.util.function.Supplier;
@@ -76,6 +77,8 @@ import org.springframework.util.CollectionUtils;
 import org.springframework.util.ObjectUtils;
 import org.springframework.util.ReflectionUtils;
 import org.springframework.util.StringUtils;
+import org.springframework.util.concurrent.CompletableToListenableFutureAdapter;
+import org.springframework.util.concurrent.ListenableFuture;
 
 import reactor.core.publisher.Mono;
 
@@ -322,6 +325,11 @@ public class GatewayProxyFactoryBean extends AbstractEndpoint
 	 * {@link java.util.concurrent.Future} or {@link org.springframework.util.concurrent.ListenableFuture}.
 	 * Set it to null to disable the async processing, and any
 	 * {@link java.util.concurrent.Future} return types must be returned by the downstream flow.
+	 * Starting with version 5.1, for methods returning {@link CompletableFuture} or
+	 * {@link ListenableFuture}, the executor is only used to send the request; the returned
+	 * future is completed when the reply arrives, without a thread waiting for it.
+	 * Methods returning {@link Future} still return the result of the executor's
+	 * {@code submit()}.
 	 * @param executor The executor.
 	 */
 	public void setAsyncExecutor(Executor executor) {
@@ -436,6 +444,12 @@ public class GatewayProxyFactoryBean extends AbstractEndpoint
 	public Object invoke(final MethodInvocation invocation) throws Throwable {
 		final Class<?> returnType = invocation.getMethod().getReturnType();
 		if (this.asyncExecutor != null && !Object.class.equals(returnType)) {
+			if (isNonBlockingFutureMethod(invocation.getMethod())) {
+				CompletableFuture<Object> reply = sendAndReceiveAsync(invocation);
+				return ListenableFuture.class.equals(returnType)
+						? new CompletableToListenableFutureAdapter<>(reply)
+						: reply;
+			}
 			Invoker invoker = new Invoker(invocation);
 			if (returnType.isAssignableFrom(this.asyncSubmitType)) {
 				return this.asyncExecutor.submit(invoker::get);
@@ -460,6 +474,50 @@ public class GatewayProxyFactoryBean extends AbstractEndpoint
 		return this.doInvoke(invocation, true);
 	}
 
+	private boolean isNonBlockingFutureMethod(Method method) {
+		Class<?> returnType = method.getReturnType();
+		if (CompletableFuture.class.equals(returnType)
+				|| (ListenableFuture.class.equals(returnType) && this.asyncSubmitListenableType != null)) {
+
+			if (!this.initialized) {
+				this.afterPropertiesSet();
+			}
+			return !isReceiveOnly(method);
+		}
+		return false;
+	}
+
+	/**
+	 * Send the request on the async executor and complete the returned future from the
+	 * reply, so no thread is blocked waiting for it.
+	 */
+	private CompletableFuture<Object> sendAndReceiveAsync(MethodInvocation invocation) {
+		Method method = invocation.getMethod();
+		MethodInvocationGateway gateway = this.gatewayMap.get(method);
+		Object[] args = invocation.getArguments();
+		boolean shouldReturnMessage = hasReturnParameterizedWithMessage(method, false);
+		CompletableFuture<Object> result = new CompletableFuture<>();
+		CompletableFuture
+				.supplyAsync(() -> shouldReturnMessage
+						? gateway.sendAndReceiveMessageAsync(args).thenApply(Object.class::cast)
+						: gateway.sendAndReceiveAsync(args), this.asyncExecutor)
+				.thenCompose(reply -> reply)
+				.whenComplete((reply, ex) -> {
+					if (ex == null) {
+						result.complete(reply);
+					}
+					else {
+						Throwable t = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+						t = exceptionCauseIfPossible(t, method);
+						if (!(t instanceof RuntimeException || t instanceof Error)) {
+							t = new MessagingException("Asynchronous gateway invocation failed", t);
+						}
+						result.completeExceptionally(t);
+					}
+				});
+		return result;
+	}
+
 	protected Object doInvoke(MethodInvocation invocation, boolean runningOnCallerThread) throws Throwable {
 		Method method = invocation.getMethod();
 		if (AopUtils.isToStringMethod(method)) {
@@ -484,15 +542,8 @@ public class GatewayProxyFactoryBean extends AbstractEndpoint
 		boolean shouldReturnMessage = Message.class.isAssignableFrom(returnType)
 				|| hasReturnParameterizedWithMessage(method, runningOnCallerThread);
 		boolean shouldReply = returnType != void.class;
-		int paramCount = method.getParameterTypes().length;
 		Object response = null;
-		boolean hasPayloadExpression = method.isAnnotationPresent(Payload.class);
-		if (!hasPayloadExpression && this.methodMetadataMap != null) {
-			// check for the method metadata next
-			GatewayMethodMetadata metadata = this.methodMetadataMap.get(method.getName());
-			hasPayloadExpression = (metadata != null) && StringUtils.hasText(metadata.getPayloadExpression());
-		}
-		if (paramCount == 0 && !hasPayloadExpression) {
+		if (isReceiveOnly(method)) {
 			Long receiveTimeout = null;
 			if (gateway.getReceiveTimeoutExpression() != null) {
 				receiveTimeout = gateway.getReceiveTimeoutExpression().getValue(this.evaluationContext, Long.class);
@@ -527,24 +578,38 @@ public class GatewayProxyFactoryBean extends AbstractEndpoint
 		return (response != null) ? this.convert(response, returnType) : null;
 	}
 
+	private boolean isReceiveOnly(Method method) {
+		boolean hasPayloadExpression = method.isAnnotationPresent(Payload.class);
+		if (!hasPayloadExpression && this.methodMetadataMap != null) {
+			// check for the method metadata next
+			GatewayMethodMetadata metadata = this.methodMetadataMap.get(method.getName());
+			hasPayloadExpression = (metadata != null) && StringUtils.hasText(metadata.getPayloadExpression());
+		}
+		return method.getParameterTypes().length == 0 && !hasPayloadExpression;
+	}
+
 	private void rethrowExceptionCauseIfPossible(Throwable originalException, Method method) throws Throwable {
+		throw exceptionCauseIfPossible(originalException, method);
+	}
+
+	private static Throwable exceptionCauseIfPossible(Throwable originalException, Method method) {
 		Class<?>[] exceptionTypes = method.getExceptionTypes();
 		Throwable t = originalException;
 		while (t != null) {
 			for (Class<?> exceptionType : exceptionTypes) {
 				if (exceptionType.isAssignableFrom(t.getClass())) {
-					throw t;
+					return t;
 				}
 			}
 			if (t instanceof RuntimeException
 					&& !(t instanceof MessagingException)
 					&& !(t instanceof UndeclaredThrowableException)
 					&& !(t instanceof IllegalStateException && ("Unexpected exception thrown").equals(t.getMessage()))) {
-				throw t;
+				return t;
 			}
 			t = t.getCause();
 		}
-		throw originalException;
+		return originalException;
 	}
 
 	private MethodInvocationGateway createGatewayForMethod(Method method) {
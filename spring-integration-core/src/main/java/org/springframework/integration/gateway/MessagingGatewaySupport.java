@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -18,6 +18,8 @@ package org.springframework.integration.gateway;
 
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.reactivestreams.Subscriber;
@@ -57,7 +59,9 @@ import org.springframework.messaging.support.ErrorMessage;
 import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.util.Assert;
 
+import reactor.core.Disposable;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 /**
  * A convenient base class for connecting application code to
@@ -555,6 +559,181 @@ public abstract class MessagingGatewaySupport extends AbstractEndpoint
 		return reply;
 	}
 
+	/**
+	 * Send the request and return a future that is completed with the reply, converted
+	 * with the reply mapper (if any), without blocking a thread while the reply is
+	 * pending. Errors and timeouts are handled as they are by {@link #sendAndReceive(Object)},
+	 * but complete the future exceptionally instead of being thrown.
+	 * @param object the request.
+	 * @return the future reply.
+	 * @since 5.1
+	 */
+	protected CompletableFuture<Object> sendAndReceiveAsync(Object object) {
+		return doSendAndReceiveAsync(object, true);
+	}
+
+	/**
+	 * Send the request and return a future that is completed with the reply message,
+	 * without blocking a thread while the reply is pending. Errors and timeouts are handled
+	 * as they are by {@link #sendAndReceiveMessage(Object)}, but complete the future
+	 * exceptionally instead of being thrown.
+	 * @param object the request.
+	 * @return the future reply message.
+	 * @since 5.1
+	 */
+	@SuppressWarnings("unchecked")
+	protected CompletableFuture<Message<?>> sendAndReceiveMessageAsync(Object object) {
+		return (CompletableFuture<Message<?>>) (CompletableFuture<?>) doSendAndReceiveAsync(object, false);
+	}
+
+	private CompletableFuture<Object> doSendAndReceiveAsync(Object object, boolean shouldConvert) {
+		this.initializeIfNecessary();
+		Assert.notNull(object, "request must not be null");
+		MessageChannel requestChannel = getRequestChannel();
+		if (requestChannel == null) {
+			throw new MessagingException("No request channel available. Cannot send request message.");
+		}
+
+		registerReplyMessageCorrelatorIfNecessary();
+
+		if (this.countsEnabled) {
+			this.messageCount.incrementAndGet();
+		}
+		Message<?> requestMessage = null;
+		CompletableFuture<Message<?>> replyFuture;
+		try {
+			@SuppressWarnings("unchecked") // the request mapper is raw
+			Message<?> mapped = (object instanceof Message<?>)
+					? (Message<?>) object : this.requestMapper.toMessage(object);
+			requestMessage = this.historyWritingPostProcessor.postProcessMessage(mapped);
+			replyFuture = sendForReply(requestChannel, requestMessage);
+		}
+		catch (Exception e) {
+			replyFuture = new CompletableFuture<>();
+			replyFuture.completeExceptionally(e);
+		}
+
+		Message<?> request = requestMessage;
+		return replyFuture
+				.handle((reply, ex) -> {
+					Throwable error = unwrapCompletionException(ex);
+					if (reply != null) {
+						if (reply instanceof ErrorMessage || (shouldConvert && reply.getPayload() instanceof Throwable)) {
+							error = (Throwable) reply.getPayload();
+						}
+						else {
+							return CompletableFuture.<Object>completedFuture(
+									shouldConvert ? this.messageConverter.fromMessage(reply, Object.class) : reply);
+						}
+					}
+					else if (error == null && this.errorOnTimeout) {
+						error = timeoutException(object, "No reply received within timeout");
+					}
+					if (error != null) {
+						if (logger.isDebugEnabled()) {
+							logger.debug("failure occurred in gateway sendAndReceiveAsync: " + error.getMessage());
+						}
+						return handleAsyncError(object, request, error, shouldConvert);
+					}
+					return CompletableFuture.<Object>completedFuture(null);
+				})
+				.thenCompose(future -> future);
+	}
+
+	private CompletableFuture<Object> handleAsyncError(Object object, Message<?> requestMessage, Throwable error,
+			boolean shouldConvert) {
+
+		MessageChannel errorChannel = getErrorChannel();
+		if (errorChannel == null) { // no errorChannel so we'll propagate
+			CompletableFuture<Object> future = new CompletableFuture<>();
+			future.completeExceptionally(wrapExceptionIfNecessary(error, "gateway received checked Exception"));
+			return future;
+		}
+		ErrorMessage errorMessage = buildErrorMessage(requestMessage, error);
+		CompletableFuture<Message<?>> errorFlowFuture;
+		try {
+			errorFlowFuture = sendForReply(errorChannel, errorMessage);
+		}
+		catch (Exception errorFlowFailure) {
+			errorFlowFuture = new CompletableFuture<>();
+			errorFlowFuture.completeExceptionally(errorFlowFailure);
+		}
+		return errorFlowFuture.handle((errorFlowReply, errorFlowFailure) -> {
+			if (errorFlowFailure != null) {
+				throw new MessagingException(errorMessage, "failure occurred in error-handling flow",
+						unwrapCompletionException(errorFlowFailure));
+			}
+			if (errorFlowReply != null && errorFlowReply.getPayload() instanceof Throwable) {
+				throw wrapExceptionIfNecessary((Throwable) errorFlowReply.getPayload(),
+						shouldConvert ? "error flow returned Exception" : "error flow returned an Error Message");
+			}
+			if (shouldConvert) {
+				return errorFlowReply != null ? errorFlowReply.getPayload() : null;
+			}
+			if (errorFlowReply == null && this.errorOnTimeout) {
+				throw timeoutException(object, "No reply received from error channel within timeout");
+			}
+			return errorFlowReply;
+		});
+	}
+
+	/**
+	 * Send the message with a reply channel that completes the returned future, which
+	 * is completed with null if the receive timeout elapses first; the timeout is
+	 * scheduled on a shared timer rather than by blocking the calling thread.
+	 */
+	private CompletableFuture<Message<?>> sendForReply(MessageChannel channel, Message<?> message) {
+		Object originalReplyChannelHeader = message.getHeaders().getReplyChannel();
+		Object originalErrorChannelHeader = message.getHeaders().getErrorChannel();
+		long sendTimeout = sendTimeout(message);
+		long receiveTimeout = receiveTimeout(message);
+
+		FutureReplyChannel replyChannel = new FutureReplyChannel();
+
+		Message<?> requestMessage = MutableMessageBuilder.fromMessage(message)
+				.setReplyChannel(replyChannel)
+				.setHeader(this.messagingTemplate.getSendTimeoutHeader(), null)
+				.setHeader(this.messagingTemplate.getReceiveTimeoutHeader(), null)
+				.setErrorChannel(replyChannel)
+				.build();
+
+		boolean sent =
+				sendTimeout >= 0
+						? channel.send(requestMessage, sendTimeout)
+						: channel.send(requestMessage);
+
+		if (!sent) {
+			throw new MessageDeliveryException(requestMessage,
+					"Failed to send message to channel '" + channel + "' within timeout: " + sendTimeout);
+		}
+
+		CompletableFuture<Message<?>> future = replyChannel.messageFuture;
+		if (receiveTimeout >= 0 && !future.isDone()) {
+			Disposable timeout = Schedulers.parallel()
+					.schedule(() -> future.complete(null), receiveTimeout, TimeUnit.MILLISECONDS);
+			future.whenComplete((reply, ex) -> timeout.dispose());
+		}
+		return future.thenApply(replyMessage ->
+				replyMessage == null
+						? null
+						: MessageBuilder.fromMessage(replyMessage)
+								.setHeader(MessageHeaders.REPLY_CHANNEL, originalReplyChannelHeader)
+								.setHeader(MessageHeaders.ERROR_CHANNEL, originalErrorChannelHeader)
+								.build());
+	}
+
+	private static Throwable unwrapCompletionException(Throwable throwable) {
+		return throwable instanceof CompletionException && throwable.getCause() != null
+				? throwable.getCause()
+				: throwable;
+	}
+
+	private static MessageTimeoutException timeoutException(Object request, String description) {
+		return request instanceof Message
+				? new MessageTimeoutException((Message<?>) request, description)
+				: new MessageTimeoutException(description);
+	}
+
 	protected Mono<Message<?>> sendAndReceiveMessageReactive(Object object) {
 		initializeIfNecessary();
 		Assert.notNull(object, "request must not be null");
@@ -0,0 +1,412 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.handler.advice;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.integration.MessageTimeoutException;
+import org.springframework.integration.core.MessagingTemplate;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandlingException;
+import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.support.ErrorMessage;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.Assert;
+
+/**
+ * A bulkhead limiting the number of concurrent calls to the advised handler(s), so that
+ * a slow or degraded dependency cannot hold all the threads of a shared executor.
+ * All the handlers advised by the same instance share the bulkhead.
+ * <p>
+ * With {@link Isolation#SEMAPHORE} isolation (default), calls run on the calling thread;
+ * up to {@link #setMaxWaitingCalls(int) maxWaitingCalls} calls wait for up to
+ * {@link #setMaxWait(long) maxWait} milliseconds when all the permits are taken.
+ * With {@link Isolation#THREAD_POOL} isolation, calls run on a dedicated pool with a
+ * queue of {@code maxWaitingCalls} calls; the calling thread waits for the result for up to
+ * {@link #setTimeout(long) timeout} milliseconds.
+ * <p>
+ * <b>Important:</b> with {@link Isolation#THREAD_POOL} isolation, the advised handler runs
+ * on a pool thread, so none of the state bound to the calling thread is available to it:
+ * a transaction (and any resource bound to it, such as a JDBC connection), the security
+ * context, or any other {@link ThreadLocal}. A downstream flow reached through a
+ * {@code DirectChannel} from the handler also runs on the pool thread. Calls made while a
+ * transaction is active are therefore rejected with a {@link MessageHandlingException};
+ * use {@link Isolation#SEMAPHORE} isolation for handlers taking part in a transaction.
+ * <p>
+ * Calls that cannot be accepted are rejected immediately with a
+ * {@link BulkheadFullException}; when a {@link #setRejectionChannel(MessageChannel)
+ * rejectionChannel} is provided, an {@link ErrorMessage} is sent to it instead and the
+ * advised handler returns {@code null}.
+ *
+ * @since 5.1
+ */
+public class BulkheadRequestHandlerAdvice extends AbstractRequestHandlerAdvice implements DisposableBean {
+
+	private final int maxConcurrentCalls;
+
+	private final Semaphore permits;
+
+	private final AtomicInteger active = new AtomicInteger();
+
+	private final AtomicInteger waiting = new AtomicInteger();
+
+	private final AtomicLong permitted = new AtomicLong();
+
+	private final AtomicLong rejected = new AtomicLong();
+
+	private final AtomicLong timedOut = new AtomicLong();
+
+	private final MessagingTemplate messagingTemplate = new MessagingTemplate();
+
+	private Isolation isolation = Isolation.SEMAPHORE;
+
+	private int maxWaitingCalls;
+
+	private long maxWait;
+
+	private long timeout = -1;
+
+	private MessageChannel rejectionChannel;
+
+	private String rejectionChannelName;
+
+	private volatile ThreadPoolExecutor executor;
+
+	private volatile Semaphore poolPermits;
+
+	/**
+	 * Construct an instance allowing the provided number of concurrent calls.
+	 * @param maxConcurrentCalls the maximum number of concurrent calls.
+	 */
+	public BulkheadRequestHandlerAdvice(int maxConcurrentCalls) {
+		Assert.isTrue(maxConcurrentCalls > 0, "'maxConcurrentCalls' must be greater than 0");
+		this.maxConcurrentCalls = maxConcurrentCalls;
+		this.permits = new Semaphore(maxConcurrentCalls);
+	}
+
+	/**
+	 * Set the isolation of the calls. Default {@link Isolation#SEMAPHORE}.
+	 * @param isolation the isolation.
+	 */
+	public void setIsolation(Isolation isolation) {
+		Assert.notNull(isolation, "'isolation' must not be null");
+		this.isolation = isolation;
+	}
+
+	/**
+	 * Set the maximum number of calls waiting for a permit (semaphore isolation) or
+	 * queued in the pool (thread pool isolation); further calls are rejected. Default 0.
+	 * @param maxWaitingCalls the maximum number of waiting calls.
+	 */
+	public void setMaxWaitingCalls(int maxWaitingCalls) {
+		Assert.isTrue(maxWaitingCalls >= 0, "'maxWaitingCalls' must not be negative");
+		this.maxWaitingCalls = maxWaitingCalls;
+	}
+
+	/**
+	 * Set the maximum time in milliseconds a waiting call waits for a permit, with
+	 * semaphore isolation; the call is rejected afterwards. Default 0.
+	 * @param maxWait the maximum time to wait.
+	 */
+	public void setMaxWait(long maxWait) {
+		Assert.isTrue(maxWait >= 0, "'maxWait' must not be negative");
+		this.maxWait = maxWait;
+	}
+
+	/**
+	 * Set the maximum time in milliseconds the calling thread waits for the result, with
+	 * thread pool isolation; the call is then interrupted and a
+	 * {@link MessageTimeoutException} is thrown. Default: wait indefinitely.
+	 * @param timeout the timeout.
+	 */
+	public void setTimeout(long timeout) {
+		this.timeout = timeout;
+	}
+
+	/**
+	 * Set the channel to send an {@link ErrorMessage} with a {@link BulkheadFullException}
+	 * to when a call is rejected. Default: the exception is thrown to the caller.
+	 * @param rejectionChannel the channel.
+	 */
+	public void setRejectionChannel(MessageChannel rejectionChannel) {
+		this.rejectionChannel = rejectionChannel;
+	}
+
+	/**
+	 * Set the name of the channel to send an {@link ErrorMessage} with a
+	 * {@link BulkheadFullException} to when a call is rejected.
+	 * @param rejectionChannelName the channel name.
+	 * @see #setRejectionChannel(MessageChannel)
+	 */
+	public void setRejectionChannelName(String rejectionChannelName) {
+		this.rejectionChannelName = rejectionChannelName;
+	}
+
+	/**
+	 * Return the maximum number of concurrent calls.
+	 * @return the maximum number of concurrent calls.
+	 */
+	public int getMaxConcurrentCalls() {
+		return this.maxConcurrentCalls;
+	}
+
+	/**
+	 * Return the number of calls in progress.
+	 * @return the count.
+	 */
+	public int getActiveCount() {
+		return this.active.get();
+	}
+
+	/**
+	 * Return the number of calls waiting for a permit or queued in the pool.
+	 * @return the count.
+	 */
+	public int getWaitingCount() {
+		ThreadPoolExecutor executor = this.executor;
+		return executor != null ? executor.getQueue().size() : this.waiting.get();
+	}
+
+	/**
+	 * Return the ratio of calls in progress to the maximum number of concurrent calls,
+	 * between 0 and 1.
+	 * @return the saturation.
+	 */
+	public double getSaturation() {
+		return (double) this.active.get() / this.maxConcurrentCalls;
+	}
+
+	/**
+	 * Return the number of calls that were accepted.
+	 * @return the count.
+	 */
+	public long getPermittedCount() {
+		return this.permitted.get();
+	}
+
+	/**
+	 * Return the number of calls that were rejected.
+	 * @return the count.
+	 */
+	public long getRejectedCount() {
+		return this.rejected.get();
+	}
+
+	/**
+	 * Return the number of calls that timed out, with thread pool isolation.
+	 * @return the count.
+	 */
+	public long getTimedOutCount() {
+		return this.timedOut.get();
+	}
+
+	@Override
+	protected void onInit() throws Exception {
+		super.onInit();
+		if (getBeanFactory() != null) {
+			this.messagingTemplate.setBeanFactory(getBeanFactory());
+		}
+	}
+
+	@Override
+	protected Object doInvoke(ExecutionCallback callback, Object target, Message<?> message) throws Exception {
+		if (Isolation.THREAD_POOL.equals(this.isolation)) {
+			return invokeOnPool(callback, message);
+		}
+		if (!this.permits.tryAcquire()) {
+			if (this.waiting.incrementAndGet() > this.maxWaitingCalls) {
+				this.waiting.decrementAndGet();
+				return reject(message, "no permit available and " + this.maxWaitingCalls + " calls waiting");
+			}
+			try {
+				if (!this.permits.tryAcquire(this.maxWait, TimeUnit.MILLISECONDS)) {
+					return reject(message, "no permit available after " + this.maxWait + "ms");
+				}
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new MessageHandlingException(message, "Interrupted while waiting for a permit", e);
+			}
+			finally {
+				this.waiting.decrementAndGet();
+			}
+		}
+		this.permitted.incrementAndGet();
+		this.active.incrementAndGet();
+		try {
+			return callback.execute();
+		}
+		finally {
+			this.active.decrementAndGet();
+			this.permits.release();
+		}
+	}
+
+	private Object invokeOnPool(ExecutionCallback callback, Message<?> message) throws Exception {
+		if (TransactionSynchronizationManager.isActualTransactionActive()) {
+			throw new MessageHandlingException(message, "THREAD_POOL isolation cannot be used within a transaction "
+					+ "in " + this + ": the transaction is not available on the pool thread");
+		}
+		ThreadPoolExecutor executor = obtainExecutor();
+		Semaphore poolPermits = this.poolPermits;
+		// the permits bound the running and the queued calls; the queue of the executor itself is unbounded
+		if (!poolPermits.tryAcquire()) {
+			return reject(message, "all threads busy and " + this.maxWaitingCalls + " calls queued");
+		}
+		// the permit is released by the call once it has started, or by done() if it never starts
+		AtomicBoolean started = new AtomicBoolean();
+		FutureTask<Object> future = new FutureTask<Object>(() -> {
+			if (!started.compareAndSet(false, true)) {
+				return null;
+			}
+			this.active.incrementAndGet();
+			try {
+				return callback.execute();
+			}
+			finally {
+				this.active.decrementAndGet();
+				// before the result is available to the caller
+				poolPermits.release();
+			}
+		}) {
+
+			@Override
+			protected void done() {
+				// cancel(true) calls done() while a started call still runs: it keeps its permit until it ends
+				if (started.compareAndSet(false, true)) {
+					poolPermits.release();
+				}
+			}
+
+		};
+		try {
+			executor.execute(future);
+		}
+		catch (RejectedExecutionException e) {
+			poolPermits.release();
+			return reject(message, "the pool is shut down");
+		}
+		this.permitted.incrementAndGet();
+		try {
+			return this.timeout < 0 ? future.get() : future.get(this.timeout, TimeUnit.MILLISECONDS);
+		}
+		catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw unwrapExceptionIfNecessary((Exception) cause);
+		}
+		catch (TimeoutException e) {
+			future.cancel(true);
+			executor.remove(future);
+			this.timedOut.incrementAndGet();
+			throw new MessageTimeoutException(message, "No result within " + this.timeout + "ms in " + this, e);
+		}
+		catch (InterruptedException e) {
+			future.cancel(true);
+			executor.remove(future);
+			Thread.currentThread().interrupt();
+			throw new MessageHandlingException(message, "Interrupted while waiting for the result", e);
+		}
+	}
+
+	private ThreadPoolExecutor obtainExecutor() {
+		ThreadPoolExecutor executor = this.executor;
+		if (executor == null) {
+			synchronized (this) {
+				executor = this.executor;
+				if (executor == null) {
+					String prefix = (getComponentName() != null ? getComponentName() : "bulkhead") + "-";
+					executor = new ThreadPoolExecutor(this.maxConcurrentCalls, this.maxConcurrentCalls,
+							0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+							new CustomizableThreadFactory(prefix));
+					this.poolPermits = new Semaphore(this.maxConcurrentCalls + this.maxWaitingCalls);
+					this.executor = executor;
+				}
+			}
+		}
+		return executor;
+	}
+
+	private Object reject(Message<?> message, String reason) {
+		this.rejected.incrementAndGet();
+		BulkheadFullException exception = new BulkheadFullException(message,
+				"Bulkhead is full for " + this + ": " + reason);
+		if (this.rejectionChannel == null && this.rejectionChannelName != null && getChannelResolver() != null) {
+			this.rejectionChannel = getChannelResolver().resolveDestination(this.rejectionChannelName);
+		}
+		if (this.rejectionChannel != null) {
+			this.messagingTemplate.send(this.rejectionChannel, new ErrorMessage(exception, message));
+			return null;
+		}
+		throw exception;
+	}
+
+	@Override
+	public void destroy() {
+		ThreadPoolExecutor executor = this.executor;
+		if (executor != null) {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * The isolation of the calls to the advised handler(s).
+	 */
+	public enum Isolation {
+
+		/**
+		 * The calls run on the calling thread, limited by a semaphore.
+		 */
+		SEMAPHORE,
+
+		/**
+		 * The calls run on a dedicated thread pool; the state bound to the calling
+		 * thread, such as a transaction or the security context, is not available to them.
+		 */
+		THREAD_POOL
+
+	}
+
+	/**
+	 * An exception thrown when a call is rejected because the bulkhead is full.
+	 */
+	public static final class BulkheadFullException extends MessagingException {
+
+		private static final long serialVersionUID = 1L;
+
+		public BulkheadFullException(Message<?> message, String description) {
+			super(message, description);
+		}
+
+	}
+
+}
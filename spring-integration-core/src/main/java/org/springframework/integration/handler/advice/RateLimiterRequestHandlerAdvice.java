@@ -0,0 +1,223 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.handler.advice;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.Expression;
+import org.springframework.integration.expression.ExpressionUtils;
+import org.springframework.integration.expression.FunctionExpression;
+import org.springframework.integration.support.context.NamedComponent;
+import org.springframework.integration.support.ratelimit.DefaultRateLimiter;
+import org.springframework.integration.support.ratelimit.RateLimit;
+import org.springframework.integration.support.ratelimit.RateLimiter;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHandlingException;
+import org.springframework.messaging.MessagingException;
+import org.springframework.util.Assert;
+
+/**
+ * An advice limiting the rate of calls to the advised handler, using a token bucket
+ * per key maintained by a {@link RateLimiter}. With a {@link RateLimiter} backed by a
+ * shared store, the limit applies across all the instances of an application.
+ * <p>
+ * When no permit is available, the call waits up to {@link #setMaxWait(long) maxWait}
+ * milliseconds for one; if none can be obtained in that time, a
+ * {@link RateLimitExceededException} is thrown immediately, without waiting.
+ *
+ * @since 5.1
+ */
+public class RateLimiterRequestHandlerAdvice extends AbstractRequestHandlerAdvice {
+
+	private final RateLimiter rateLimiter;
+
+	private final RateLimit defaultLimit;
+
+	private final Map<String, RateLimit> limits = new ConcurrentHashMap<>();
+
+	private final AtomicLong permitted = new AtomicLong();
+
+	private final AtomicLong delayed = new AtomicLong();
+
+	private final AtomicLong rejected = new AtomicLong();
+
+	private Expression keyExpression;
+
+	private long maxWait;
+
+	private volatile EvaluationContext evaluationContext;
+
+	/**
+	 * Construct an instance applying the limit to this JVM only, using a
+	 * {@link DefaultRateLimiter}.
+	 * @param defaultLimit the limit for keys without a specific limit.
+	 */
+	public RateLimiterRequestHandlerAdvice(RateLimit defaultLimit) {
+		this(new DefaultRateLimiter(), defaultLimit);
+	}
+
+	/**
+	 * Construct an instance using the provided {@link RateLimiter}.
+	 * @param rateLimiter the rate limiter.
+	 * @param defaultLimit the limit for keys without a specific limit.
+	 */
+	public RateLimiterRequestHandlerAdvice(RateLimiter rateLimiter, RateLimit defaultLimit) {
+		Assert.notNull(rateLimiter, "'rateLimiter' must not be null");
+		Assert.notNull(defaultLimit, "'defaultLimit' must not be null");
+		this.rateLimiter = rateLimiter;
+		this.defaultLimit = defaultLimit;
+	}
+
+	/**
+	 * Set an expression evaluated against the request message to determine the key of
+	 * the bucket to acquire a permit from. Default: the component name of the advised
+	 * handler; each handler has its own bucket.
+	 * @param keyExpression the key expression.
+	 */
+	public void setKeyExpression(Expression keyExpression) {
+		this.keyExpression = keyExpression;
+	}
+
+	/**
+	 * Set a function applied to the request message to determine the key of
+	 * the bucket to acquire a permit from.
+	 * @param keyFunction the key function.
+	 * @see #setKeyExpression(Expression)
+	 */
+	public void setKeyFunction(Function<Message<?>, String> keyFunction) {
+		Assert.notNull(keyFunction, "'keyFunction' must not be null");
+		this.keyExpression = new FunctionExpression<>(keyFunction);
+	}
+
+	/**
+	 * Set the limit for a specific key, overriding the default limit.
+	 * @param key the key.
+	 * @param limit the limit.
+	 */
+	public void setLimit(String key, RateLimit limit) {
+		Assert.notNull(key, "'key' must not be null");
+		Assert.notNull(limit, "'limit' must not be null");
+		this.limits.put(key, limit);
+	}
+
+	/**
+	 * Set the limits for specific keys, overriding the default limit.
+	 * @param limits the limits.
+	 */
+	public void setLimits(Map<String, RateLimit> limits) {
+		Assert.notNull(limits, "'limits' must not be null");
+		limits.forEach(this::setLimit);
+	}
+
+	/**
+	 * Set the maximum time in milliseconds to wait for a permit. Default 0 - calls are
+	 * rejected when no permit is available.
+	 * @param maxWait the maximum time to wait.
+	 */
+	public void setMaxWait(long maxWait) {
+		Assert.isTrue(maxWait >= 0, "'maxWait' must not be negative");
+		this.maxWait = maxWait;
+	}
+
+	/**
+	 * Return the number of calls that were permitted.
+	 * @return the count.
+	 */
+	public long getPermittedCount() {
+		return this.permitted.get();
+	}
+
+	/**
+	 * Return the number of permitted calls that had to wait for a permit.
+	 * @return the count.
+	 */
+	public long getDelayedCount() {
+		return this.delayed.get();
+	}
+
+	/**
+	 * Return the number of calls that were rejected.
+	 * @return the count.
+	 */
+	public long getRejectedCount() {
+		return this.rejected.get();
+	}
+
+	@Override
+	protected Object doInvoke(ExecutionCallback callback, Object target, Message<?> message) throws Exception {
+		String key = determineKey(target, message);
+		RateLimit limit = this.limits.getOrDefault(key, this.defaultLimit);
+		long deadline = System.currentTimeMillis() + this.maxWait;
+		long wait = this.rateLimiter.tryAcquire(key, limit, 1);
+		if (wait > 0) {
+			do {
+				if (System.currentTimeMillis() + wait > deadline) {
+					this.rejected.incrementAndGet();
+					throw new RateLimitExceededException(message,
+							"Rate limit " + limit + " exceeded for '" + key + "'");
+				}
+				try {
+					Thread.sleep(wait);
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new MessageHandlingException(message, "Interrupted while waiting for a permit", e);
+				}
+				wait = this.rateLimiter.tryAcquire(key, limit, 1);
+			}
+			while (wait > 0);
+			this.delayed.incrementAndGet();
+		}
+		this.permitted.incrementAndGet();
+		return callback.execute();
+	}
+
+	private String determineKey(Object target, Message<?> message) {
+		if (this.keyExpression != null) {
+			if (this.evaluationContext == null) {
+				this.evaluationContext = ExpressionUtils.createStandardEvaluationContext(getBeanFactory());
+			}
+			String key = this.keyExpression.getValue(this.evaluationContext, message, String.class);
+			Assert.state(key != null, () -> "The key expression returned null for " + message);
+			return key;
+		}
+		else if (target instanceof NamedComponent && ((NamedComponent) target).getComponentName() != null) {
+			return ((NamedComponent) target).getComponentName();
+		}
+		else {
+			return target.getClass().getName();
+		}
+	}
+
+	/**
+	 * An exception thrown when a call is rejected because no permit is available.
+	 */
+	public static final class RateLimitExceededException extends MessagingException {
+
+		private static final long serialVersionUID = 1L;
+
+		public RateLimitExceededException(Message<?> message, String description) {
+			super(message, description);
+		}
+
+	}
+
+}
@@ -126,6 +126,9 @@ public class JsonPropertyAccessor implements PropertyAccessor {
 	 * Return an integer if the String property name can be parsed as an int, or null otherwise.
 	 */
 	private Integer maybeIndex(String name) {
+		if (!isNumeric(name)) {
+			return null;
+		}
 		try {
 			return Integer.valueOf(name);
 		}
@@ -134,6 +137,28 @@ public class JsonPropertyAccessor implements PropertyAccessor {
 		}
 	}
 
+	/**
+	 * Avoid the cost of an exception for the regular (non-index) property names.
+	 */
+	private static boolean isNumeric(String name) {
+		int length = name.length();
+		if (length == 0) {
+			return false;
+		}
+		char first = name.charAt(0);
+		int start = first == '-' || first == '+' ? 1 : 0;
+		if (start == length) {
+			return false;
+		}
+		for (int i = start; i < length; i++) {
+			char c = name.charAt(i);
+			if (c < '0' || c > '9') {
+				return false;
+			}
+		}
+		return true;
+	}
+
 	@Override
 	public TypedValue read(EvaluationContext context, Object target, String name) throws AccessException {
 		ContainerNode<?> container = asJson(target);
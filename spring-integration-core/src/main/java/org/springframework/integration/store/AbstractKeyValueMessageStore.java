@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -18,8 +18,14 @@ package org.springframework.integration.store;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 
@@ -42,6 +48,8 @@ public abstract class AbstractKeyValueMessageStore extends AbstractMessageGroupS
 
 	protected static final String MESSAGE_GROUP_KEY_PREFIX = "MESSAGE_GROUP_";
 
+	protected static final String GROUP_MEMBERS_KEY_PREFIX = "GROUP_MEMBERS_";
+
 	/**
 	 * Represents the time when the message has been added to the store.
 	 * @deprecated since 5.0. This constant isn't used any more.
@@ -53,6 +61,12 @@ public abstract class AbstractKeyValueMessageStore extends AbstractMessageGroupS
 
 	private final String groupPrefix;
 
+	private final String groupMembersPrefix;
+
+	private volatile Map<Object, Object> nearCache;
+
+	private volatile boolean incrementalGroupMembership;
+
 	protected AbstractKeyValueMessageStore() {
 		this("");
 	}
@@ -69,6 +83,7 @@ public abstract class AbstractKeyValueMessageStore extends AbstractMessageGroupS
 		Assert.notNull(prefix, "'prefix' must not be null");
 		this.messagePrefix = prefix + MESSAGE_KEY_PREFIX;
 		this.groupPrefix = prefix + MESSAGE_GROUP_KEY_PREFIX;
+		this.groupMembersPrefix = prefix + GROUP_MEMBERS_KEY_PREFIX;
 	}
 
 	/**
@@ -93,12 +108,88 @@ public abstract class AbstractKeyValueMessageStore extends AbstractMessageGroupS
 		return this.groupPrefix;
 	}
 
+	/**
+	 * Set to true to store the ids of the messages in a group separately from the group
+	 * metadata (under the key {@code prefix + GROUP_MEMBERS_ + groupId}), so that adding
+	 * messages to a group appends the new ids (using
+	 * {@link #doAddGroupMembers(Object, Collection)}) instead of rewriting the complete
+	 * {@link MessageGroupMetadata}, which is then reduced to the group's state and
+	 * timestamps. Groups stored without this option remain readable: the ids in
+	 * their metadata are combined with the separately stored ones. However, all
+	 * application instances sharing a store must use the same setting.
+	 * Default false.
+	 * @param incrementalGroupMembership true to store group members separately.
+	 * @since 5.1
+	 */
+	public void setIncrementalGroupMembership(boolean incrementalGroupMembership) {
+		this.incrementalGroupMembership = incrementalGroupMembership;
+	}
+
+	/**
+	 * Set the maximum number of messages to keep in a local cache, avoiding round trips
+	 * to the store for messages that were recently added or retrieved, for example when
+	 * an aggregator reads the messages of a group. The least recently used messages are
+	 * evicted when the size is exceeded. Only messages are cached: they are immutable, so
+	 * a cached copy is never out of date, but it might have been removed by another
+	 * instance sharing the store; messages are only looked up by the ids in the (not
+	 * cached) group metadata, which reflects such removals, but direct
+	 * {@link #getMessage(UUID)} calls might return a stale entry unless the application
+	 * calls {@link #evictFromNearCache(UUID)} when notified of the removal.
+	 * Default 0 - no cache.
+	 * @param nearCacheSize the maximum number of cached messages.
+	 * @since 5.1
+	 */
+	public void setNearCacheSize(final int nearCacheSize) {
+		Assert.isTrue(nearCacheSize >= 0, "'nearCacheSize' cannot be negative");
+		if (nearCacheSize > 0) {
+			this.nearCache = Collections.synchronizedMap(new LinkedHashMap<Object, Object>(16, 0.75f, true) {
+
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<Object, Object> eldest) {
+					return size() > nearCacheSize;
+				}
+
+			});
+		}
+		else {
+			this.nearCache = null;
+		}
+	}
+
+	/**
+	 * Remove a message from the local cache, if present; for example when another instance
+	 * sharing the store has removed it.
+	 * @param messageId the message id.
+	 * @since 5.1
+	 * @see #setNearCacheSize(int)
+	 */
+	public void evictFromNearCache(UUID messageId) {
+		Map<Object, Object> cache = this.nearCache;
+		if (cache != null) {
+			cache.remove(this.messagePrefix + messageId);
+		}
+	}
+
+	/**
+	 * Remove all messages from the local cache.
+	 * @since 5.1
+	 * @see #setNearCacheSize(int)
+	 */
+	public void clearNearCache() {
+		Map<Object, Object> cache = this.nearCache;
+		if (cache != null) {
+			cache.clear();
+		}
+	}
+
 	// MessageStore methods
 
 	@Override
 	public Message<?> getMessage(UUID messageId) {
 		Assert.notNull(messageId, "'messageId' must not be null");
-		Object object = doRetrieve(this.messagePrefix + messageId);
+		Object object = retrieveMessage(messageId);
 		if (object != null) {
 			return extractMessage(object);
 		}
@@ -107,6 +198,19 @@ public abstract class AbstractKeyValueMessageStore extends AbstractMessageGroupS
 		}
 	}
 
+	private Object retrieveMessage(UUID messageId) {
+		Object key = this.messagePrefix + messageId;
+		Map<Object, Object> cache = this.nearCache;
+		Object object = cache != null ? cache.get(key) : null;
+		if (object == null) {
+			object = doRetrieve(key);
+			if (object != null && cache != null) {
+				cache.put(key, object);
+			}
+		}
+		return object;
+	}
+
 	private Message<?> extractMessage(Object object) {
 		if (object instanceof MessageHolder) {
 			return ((MessageHolder) object).getMessage();
@@ -124,7 +228,7 @@ public abstract class AbstractKeyValueMessageStore extends AbstractMessageGroupS
 	@Override
 	public MessageMetadata getMessageMetadata(UUID messageId) {
 		Assert.notNull(messageId, "'messageId' must not be null");
-		Object object = doRetrieve(this.messagePrefix + messageId);
+		Object object = retrieveMessage(messageId);
 		if (object != null) {
 			extractMessage(object);
 			if (object instanceof MessageHolder) {
@@ -144,12 +248,35 @@ public abstract class AbstractKeyValueMessageStore extends AbstractMessageGroupS
 	protected void doAddMessage(Message<?> message) {
 		Assert.notNull(message, "'message' must not be null");
 		UUID messageId = message.getHeaders().getId();
-		doStoreIfAbsent(this.messagePrefix + messageId, new MessageHolder(message));
+		MessageHolder holder = new MessageHolder(message);
+		doStoreIfAbsent(this.messagePrefix + messageId, holder);
+		Map<Object, Object> cache = this.nearCache;
+		if (cache != null) {
+			cache.putIfAbsent(this.messagePrefix + messageId, holder);
+		}
+	}
+
+	private void doAddMessages(Message<?>... messages) {
+		if (messages.length == 1) {
+			doAddMessage(messages[0]);
+			return;
+		}
+		Map<Object, Object> holders = new LinkedHashMap<>();
+		for (Message<?> message : messages) {
+			Assert.notNull(message, "'message' must not be null");
+			holders.put(this.messagePrefix + message.getHeaders().getId(), new MessageHolder(message));
+		}
+		doStoreAll(holders);
+		Map<Object, Object> cache = this.nearCache;
+		if (cache != null) {
+			holders.forEach(cache::putIfAbsent);
+		}
 	}
 
 	@Override
 	public Message<?> removeMessage(UUID id) {
 		Assert.notNull(id, "'id' must not be null");
+		evictFromNearCache(id);
 		Object object = doRemove(this.messagePrefix + id);
 		if (object != null) {
 			return extractMessage(object);
@@ -174,7 +301,9 @@ public abstract class AbstractKeyValueMessageStore extends AbstractMessageGroupS
 	 */
 	@Override
 	public MessageGroup getMessageGroup(Object groupId) {
-		MessageGroupMetadata metadata = getGroupMetadata(groupId);
+		Assert.notNull(groupId, "'groupId' must not be null");
+		MessageGroupMetadata metadata =
+				this.incrementalGroupMembership ? retrieveGroupHeader(groupId) : getGroupMetadata(groupId);
 		if (metadata != null) {
 
 			MessageGroup messageGroup = getMessageGroupFactory()
@@ -191,6 +320,22 @@ public abstract class AbstractKeyValueMessageStore extends AbstractMessageGroupS
 	@Override
 	public MessageGroupMetadata getGroupMetadata(Object groupId) {
 		Assert.notNull(groupId, "'groupId' must not be null");
+		MessageGroupMetadata metadata = retrieveGroupHeader(groupId);
+		if (metadata != null && this.incrementalGroupMembership) {
+			List<UUID> members = doRetrieveGroupMembers(this.groupMembersPrefix + groupId);
+			if (members.size() > 0) {
+				metadata = new MessageGroupMetadata(metadata, members);
+			}
+		}
+		return metadata;
+	}
+
+	/**
+	 * Retrieve the stored group metadata; when {@link #setIncrementalGroupMembership(boolean)
+	 * incrementalGroupMembership} is true, it only contains the ids of members added
+	 * before that mode was enabled.
+	 */
+	private MessageGroupMetadata retrieveGroupHeader(Object groupId) {
 		Object mgm = this.doRetrieve(this.groupPrefix + groupId);
 		if (mgm != null) {
 			Assert.isInstanceOf(MessageGroupMetadata.class, mgm);
@@ -204,15 +349,22 @@ public abstract class AbstractKeyValueMessageStore extends AbstractMessageGroupS
 		Assert.notNull(groupId, "'groupId' must not be null");
 		Assert.notNull(messages, "'messages' must not be null");
 
-		MessageGroupMetadata metadata = getGroupMetadata(groupId);
+		MessageGroupMetadata metadata = retrieveGroupHeader(groupId);
 		SimpleMessageGroup group = null;
 		if (metadata == null) {
 			group = new SimpleMessageGroup(groupId);
 		}
 
+		doAddMessages(messages);
+		List<UUID> newMembers = new ArrayList<>(messages.length);
 		for (Message<?> message : messages) {
-			doAddMessage(message);
-			if (metadata != null) {
+			if (this.incrementalGroupMembership) {
+				UUID messageId = message.getHeaders().getId();
+				if (metadata == null || metadata.size() == 0 || !metadata.getMessageIds().contains(messageId)) {
+					newMembers.add(messageId);
+				}
+			}
+			else if (metadata != null) {
 				metadata.add(message.getHeaders().getId());
 			}
 			else {
@@ -229,6 +381,9 @@ public abstract class AbstractKeyValueMessageStore extends AbstractMessageGroupS
 			metadata.setLastModified(System.currentTimeMillis());
 		}
 
+		if (newMembers.size() > 0) {
+			doAddGroupMembers(this.groupMembersPrefix + groupId, newMembers);
+		}
 
 		// store MessageGroupMetadata built from enriched MG
 		doStore(this.groupPrefix + groupId, metadata);
@@ -239,15 +394,21 @@ public abstract class AbstractKeyValueMessageStore extends AbstractMessageGroupS
 		Assert.notNull(groupId, "'groupId' must not be null");
 		Assert.notNull(messages, "'messages' must not be null");
 
-		Object mgm = doRetrieve(this.groupPrefix + groupId);
-		if (mgm != null) {
-			Assert.isInstanceOf(MessageGroupMetadata.class, mgm);
-			MessageGroupMetadata messageGroupMetadata = (MessageGroupMetadata) mgm;
+		MessageGroupMetadata messageGroupMetadata = retrieveGroupHeader(groupId);
+		if (messageGroupMetadata != null) {
+			List<UUID> messageIds = new ArrayList<>(messages.size());
+			List<Object> keys = new ArrayList<>(messages.size());
 			for (Message<?> messageToRemove : messages) {
 				UUID messageId = messageToRemove.getHeaders().getId();
 				messageGroupMetadata.remove(messageId);
-				doRemove(this.messagePrefix + messageId);
+				evictFromNearCache(messageId);
+				messageIds.add(messageId);
+				keys.add(this.messagePrefix + messageId);
 			}
+			if (this.incrementalGroupMembership) {
+				doRemoveGroupMembers(this.groupMembersPrefix + groupId, messageIds);
+			}
+			doRemoveAll(keys);
 			messageGroupMetadata.setLastModified(System.currentTimeMillis());
 			doStore(this.groupPrefix + groupId, messageGroupMetadata);
 		}
@@ -256,7 +417,7 @@ public abstract class AbstractKeyValueMessageStore extends AbstractMessageGroupS
 	@Override
 	public void completeGroup(Object groupId) {
 		Assert.notNull(groupId, "'groupId' must not be null");
-		MessageGroupMetadata metadata = getGroupMetadata(groupId);
+		MessageGroupMetadata metadata = retrieveGroupHeader(groupId);
 		if (metadata != null) {
 			metadata.complete();
 			metadata.setLastModified(System.currentTimeMillis());
@@ -270,22 +431,34 @@ public abstract class AbstractKeyValueMessageStore extends AbstractMessageGroupS
 	@Override
 	public void removeMessageGroup(Object groupId) {
 		Assert.notNull(groupId, "'groupId' must not be null");
+		List<UUID> members = this.incrementalGroupMembership
+				? doRetrieveGroupMembers(this.groupMembersPrefix + groupId)
+				: Collections.emptyList();
 		Object mgm = doRemove(this.groupPrefix + groupId);
 		if (mgm != null) {
 			Assert.isInstanceOf(MessageGroupMetadata.class, mgm);
-			MessageGroupMetadata messageGroupMetadata = (MessageGroupMetadata) mgm;
+			MessageGroupMetadata messageGroupMetadata = new MessageGroupMetadata((MessageGroupMetadata) mgm, members);
 
+			List<Object> keys = new ArrayList<>(messageGroupMetadata.size());
 			Iterator<UUID> messageIds = messageGroupMetadata.messageIdIterator();
 			while (messageIds.hasNext()) {
-				removeMessage(messageIds.next());
+				UUID messageId = messageIds.next();
+				evictFromNearCache(messageId);
+				keys.add(this.messagePrefix + messageId);
+			}
+			if (keys.size() > 0) {
+				doRemoveAll(keys);
 			}
 		}
+		if (this.incrementalGroupMembership) {
+			doRemoveAllGroupMembers(this.groupMembersPrefix + groupId);
+		}
 	}
 
 	@Override
 	public void setLastReleasedSequenceNumberForGroup(Object groupId, int sequenceNumber) {
 		Assert.notNull(groupId, "'groupId' must not be null");
-		MessageGroupMetadata metadata = getGroupMetadata(groupId);
+		MessageGroupMetadata metadata = retrieveGroupHeader(groupId);
 		if (metadata == null) {
 			SimpleMessageGroup messageGroup = new SimpleMessageGroup(groupId);
 			metadata = new MessageGroupMetadata(messageGroup);
@@ -297,11 +470,17 @@ public abstract class AbstractKeyValueMessageStore extends AbstractMessageGroupS
 
 	@Override
 	public Message<?> pollMessageFromGroup(Object groupId) {
-		MessageGroupMetadata groupMetadata = getGroupMetadata(groupId);
+		Assert.notNull(groupId, "'groupId' must not be null");
+		MessageGroupMetadata groupMetadata = retrieveGroupHeader(groupId);
 		if (groupMetadata != null) {
 			UUID firstId = groupMetadata.firstId();
 			if (firstId != null) {
 				groupMetadata.remove(firstId);
+			}
+			else if (this.incrementalGroupMembership) {
+				firstId = doPollGroupMember(this.groupMembersPrefix + groupId);
+			}
+			if (firstId != null) {
 				groupMetadata.setLastModified(System.currentTimeMillis());
 				doStore(this.groupPrefix + groupId, groupMetadata);
 				return removeMessage(firstId);
@@ -312,9 +491,12 @@ public abstract class AbstractKeyValueMessageStore extends AbstractMessageGroupS
 
 	@Override
 	public Message<?> getOneMessageFromGroup(Object groupId) {
-		MessageGroupMetadata groupMetadata = getGroupMetadata(groupId);
+		MessageGroupMetadata groupMetadata = retrieveGroupHeader(groupId);
 		if (groupMetadata != null) {
 			UUID messageId = groupMetadata.firstId();
+			if (messageId == null && this.incrementalGroupMembership) {
+				messageId = doRetrieveFirstGroupMember(this.groupMembersPrefix + groupId);
+			}
 			if (messageId != null) {
 				return getMessage(messageId);
 			}
@@ -327,9 +509,32 @@ public abstract class AbstractKeyValueMessageStore extends AbstractMessageGroupS
 		MessageGroupMetadata groupMetadata = getGroupMetadata(groupId);
 		ArrayList<Message<?>> messages = new ArrayList<Message<?>>();
 		if (groupMetadata != null) {
+			Map<Object, Object> cache = this.nearCache;
+			List<Object> keys = new ArrayList<>(groupMetadata.size());
+			Map<Object, Object> objects = new HashMap<>();
+			List<Object> missing = new ArrayList<>();
 			Iterator<UUID> messageIds = groupMetadata.messageIdIterator();
 			while (messageIds.hasNext()) {
-				messages.add(getMessage(messageIds.next()));
+				Object key = this.messagePrefix + messageIds.next();
+				keys.add(key);
+				Object object = cache != null ? cache.get(key) : null;
+				if (object != null) {
+					objects.put(key, object);
+				}
+				else {
+					missing.add(key);
+				}
+			}
+			if (missing.size() > 0) {
+				Map<Object, Object> retrieved = doRetrieveAll(missing);
+				objects.putAll(retrieved);
+				if (cache != null) {
+					cache.putAll(retrieved);
+				}
+			}
+			for (Object key : keys) {
+				Object object = objects.get(key);
+				messages.add(object != null ? extractMessage(object) : null);
 			}
 		}
 		return messages;
@@ -361,9 +566,14 @@ public abstract class AbstractKeyValueMessageStore extends AbstractMessageGroupS
 
 	@Override
 	public int messageGroupSize(Object groupId) {
-		MessageGroupMetadata mgm = getGroupMetadata(groupId);
+		Assert.notNull(groupId, "'groupId' must not be null");
+		MessageGroupMetadata mgm = retrieveGroupHeader(groupId);
 		if (mgm != null) {
-			return mgm.size();
+			int size = mgm.size();
+			if (this.incrementalGroupMembership) {
+				size += doCountGroupMembers(this.groupMembersPrefix + groupId);
+			}
+			return size;
 		}
 		else {
 			return 0;
@@ -372,14 +582,172 @@ public abstract class AbstractKeyValueMessageStore extends AbstractMessageGroupS
 
 	protected abstract Object doRetrieve(Object id);
 
+	/**
+	 * Retrieve the values of several keys; subclasses should override this method to
+	 * fetch them with a single operation, if the store supports it. The default
+	 * implementation calls {@link #doRetrieve(Object)} for each key.
+	 * @param ids the keys.
+	 * @return a map of the keys to their values; keys without a value are omitted.
+	 * @since 5.1
+	 */
+	protected Map<Object, Object> doRetrieveAll(Collection<?> ids) {
+		Map<Object, Object> result = new HashMap<>();
+		for (Object id : ids) {
+			Object object = doRetrieve(id);
+			if (object != null) {
+				result.put(id, object);
+			}
+		}
+		return result;
+	}
+
 	protected abstract void doStore(Object id, Object objectToStore);
 
 	protected abstract void doStoreIfAbsent(Object id, Object objectToStore);
 
+	/**
+	 * Store several messages, each unless its key is already present; subclasses should
+	 * override this method to store them with a single operation, if the store supports
+	 * it. Since the key of a message is derived from its id, and a message is immutable,
+	 * overwriting an existing value is acceptable if the store has no atomic "store if
+	 * absent" batch operation. The default implementation calls
+	 * {@link #doStoreIfAbsent(Object, Object)} for each entry.
+	 * @param objectsToStore the keys and values to store.
+	 * @since 5.1
+	 */
+	protected void doStoreAll(Map<Object, Object> objectsToStore) {
+		objectsToStore.forEach(this::doStoreIfAbsent);
+	}
+
 	protected abstract Object doRemove(Object id);
 
+	/**
+	 * Remove several keys; subclasses should override this method to remove them with a
+	 * single operation, if the store supports it. The default implementation calls
+	 * {@link #doRemove(Object)} for each key.
+	 * @param ids the keys.
+	 * @since 5.1
+	 */
+	protected void doRemoveAll(Collection<?> ids) {
+		for (Object id : ids) {
+			doRemove(id);
+		}
+	}
+
 	protected abstract Collection<?> doListKeys(String keyPattern);
 
+	/**
+	 * Add message ids to the members of a group, unless already present; the members
+	 * must be returned by {@link #doRetrieveGroupMembers(Object)} in the order they were
+	 * added. Used when {@link #setIncrementalGroupMembership(boolean)
+	 * incrementalGroupMembership} is true. Subclasses should override the group
+	 * membership methods with a native collection in the store (such as a Redis sorted
+	 * set); the default implementations rewrite a list of ids stored with
+	 * {@link #doStore(Object, Object)}.
+	 * <p><b>The default implementations are not atomic:</b> each one reads the list of
+	 * ids, modifies it and stores it back, so concurrent updates of the same group
+	 * (from several threads or application instances) can lose members. Unless the
+	 * callers already serialize the updates of a group (for example with the lock of
+	 * an aggregator running in a single instance), subclasses must override
+	 * {@link #doAddGroupMembers(Object, Collection)},
+	 * {@link #doRemoveGroupMembers(Object, Collection)} and
+	 * {@link #doPollGroupMember(Object)} with atomic operations of the store.
+	 * @param key the key of the group members.
+	 * @param messageIds the message ids to add.
+	 * @since 5.1
+	 */
+	protected void doAddGroupMembers(Object key, Collection<UUID> messageIds) {
+		Set<UUID> members = new LinkedHashSet<>(doRetrieveGroupMembers(key));
+		if (members.addAll(messageIds)) {
+			doStore(key, new ArrayList<>(members));
+		}
+	}
+
+	/**
+	 * Remove message ids from the members of a group.
+	 * @param key the key of the group members.
+	 * @param messageIds the message ids to remove.
+	 * @since 5.1
+	 * @see #doAddGroupMembers(Object, Collection)
+	 */
+	protected void doRemoveGroupMembers(Object key, Collection<UUID> messageIds) {
+		List<UUID> members = doRetrieveGroupMembers(key);
+		if (members.removeAll(messageIds)) {
+			if (members.isEmpty()) {
+				doRemove(key);
+			}
+			else {
+				doStore(key, members);
+			}
+		}
+	}
+
+	/**
+	 * Remove all the members of a group.
+	 * @param key the key of the group members.
+	 * @since 5.1
+	 * @see #doAddGroupMembers(Object, Collection)
+	 */
+	protected void doRemoveAllGroupMembers(Object key) {
+		doRemove(key);
+	}
+
+	/**
+	 * Retrieve the members of a group, in the order they were added.
+	 * @param key the key of the group members.
+	 * @return the message ids; empty if none.
+	 * @since 5.1
+	 * @see #doAddGroupMembers(Object, Collection)
+	 */
+	@SuppressWarnings("unchecked")
+	protected List<UUID> doRetrieveGroupMembers(Object key) {
+		Object members = doRetrieve(key);
+		return members != null ? new ArrayList<>((Collection<UUID>) members) : new ArrayList<>();
+	}
+
+	/**
+	 * Retrieve the first member of a group, without reading the other members.
+	 * The default implementation retrieves all the members; subclasses should
+	 * override it when the store can read a single member.
+	 * @param key the key of the group members.
+	 * @return the first message id, or null if none.
+	 * @since 5.1
+	 * @see #doAddGroupMembers(Object, Collection)
+	 */
+	protected UUID doRetrieveFirstGroupMember(Object key) {
+		List<UUID> members = doRetrieveGroupMembers(key);
+		return members.isEmpty() ? null : members.get(0);
+	}
+
+	/**
+	 * Remove and return the first member of a group. The default implementation
+	 * retrieves all the members and then removes the first one; it is not atomic, so
+	 * concurrent polls of the same group can return the same id. Subclasses should
+	 * override it with an atomic operation of the store.
+	 * @param key the key of the group members.
+	 * @return the removed message id, or null if none.
+	 * @since 5.1
+	 * @see #doAddGroupMembers(Object, Collection)
+	 */
+	protected UUID doPollGroupMember(Object key) {
+		UUID firstId = doRetrieveFirstGroupMember(key);
+		if (firstId != null) {
+			doRemoveGroupMembers(key, Collections.singletonList(firstId));
+		}
+		return firstId;
+	}
+
+	/**
+	 * Return the number of members of a group.
+	 * @param key the key of the group members.
+	 * @return the number of members.
+	 * @since 5.1
+	 * @see #doAddGroupMembers(Object, Collection)
+	 */
+	protected int doCountGroupMembers(Object key) {
+		return doRetrieveGroupMembers(key).size();
+	}
+
 	private final class MessageGroupIterator implements Iterator<MessageGroup> {
 
 		private final Iterator<?> idIterator;
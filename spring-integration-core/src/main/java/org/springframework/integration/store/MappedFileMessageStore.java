@@ -0,0 +1,983 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.store;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+import java.util.zip.CRC32;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.serializer.DefaultDeserializer;
+import org.springframework.core.serializer.DefaultSerializer;
+import org.springframework.core.serializer.Deserializer;
+import org.springframework.core.serializer.Serializer;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.integration.IntegrationMessageHeaderAccessor;
+import org.springframework.integration.codec.Codec;
+import org.springframework.integration.codec.CodecSerializer;
+import org.springframework.integration.support.locks.DefaultLockRegistry;
+import org.springframework.integration.support.locks.LockRegistry;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessagingException;
+import org.springframework.util.Assert;
+
+/**
+ * A {@link SimpleMessageStore} that survives restarts by recording each change in an
+ * append-only log of memory-mapped segment files in a directory.
+ * <p>
+ * The in-memory state of the {@link SimpleMessageStore} serves as the index; reads
+ * never touch the log. When the store is constructed, the log is replayed to rebuild
+ * that state. Each record carries a CRC, so that a record torn by a crash is detected
+ * and the log is truncated to the last complete record.
+ * <p>
+ * A change is serialized before it is applied to the in-memory state, so that a message
+ * that cannot be serialized is rejected without modifying the store.
+ * <p>
+ * When the log has grown by more than the {@link #setCompactionThreshold(long)
+ * compaction threshold} since the last compaction, a compaction is started on the
+ * {@link #setTaskExecutor(Executor) task executor}: new records go to a new segment while
+ * the live state is written as a snapshot to separate segments, then the older segments
+ * are unmapped and deleted. Writers are only blocked while switching segments.
+ * {@link #compact()} can also be invoked explicitly, for example from a scheduled task.
+ * <p>
+ * Since the segments are memory-mapped, completed writes survive a crash of the
+ * process; the {@link FsyncPolicy} determines when the segments are also forced to the
+ * storage device, to survive a crash of the operating system.
+ * <p>
+ * When {@link #setPriorityEnabled(boolean) priority} is enabled, messages are polled
+ * from a group in {@link IntegrationMessageHeaderAccessor#getPriority() priority}
+ * order (FIFO within a priority), so the store can back a
+ * {@link org.springframework.integration.channel.PriorityChannel}.
+ * <p>
+ * Group capacity is enforced without waiting; when a group is full, adding a message
+ * fails immediately.
+ *
+ * @since 5.1
+ */
+public class MappedFileMessageStore extends SimpleMessageStore
+		implements PriorityCapableChannelMessageStore, Closeable, DisposableBean {
+
+	/**
+	 * The default segment size (16 megabytes).
+	 */
+	public static final int DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+
+	/**
+	 * The default compaction threshold (64 megabytes).
+	 */
+	public static final long DEFAULT_COMPACTION_THRESHOLD = 64L * 1024 * 1024;
+
+	/**
+	 * The default interval between forcing segments to storage with
+	 * {@link FsyncPolicy#INTERVAL}.
+	 */
+	public static final long DEFAULT_FSYNC_INTERVAL = 1000;
+
+	private static final String SEGMENT_SUFFIX = ".log";
+
+	private static final String SNAPSHOT_SEPARATOR = ".";
+
+	private static final int RECORD_HEADER_LENGTH = 9;
+
+	private static final int RECORD_TIMES_LENGTH = 16;
+
+	private static final byte MESSAGE_ADDED = 1;
+
+	private static final byte MESSAGE_REMOVED = 2;
+
+	private static final byte GROUP_MESSAGES_ADDED = 3;
+
+	private static final byte GROUP_MESSAGES_REMOVED = 4;
+
+	private static final byte GROUP_REMOVED = 5;
+
+	private static final byte GROUP_COMPLETED = 6;
+
+	private static final byte GROUP_LAST_RELEASED = 7;
+
+	private static final byte GROUP_CLEARED = 8;
+
+	private static final byte GROUP_STATE = 9;
+
+	private final Object monitor = new Object();
+
+	private final Object compactionMonitor = new Object();
+
+	private final AtomicBoolean compactionScheduled = new AtomicBoolean();
+
+	private final LockRegistry orderingLocks = new DefaultLockRegistry();
+
+	private final List<Segment> segments = new ArrayList<>();
+
+	private final File directory;
+
+	private final Serializer<Object> serializer;
+
+	private final Deserializer<Object> deserializer;
+
+	private volatile int segmentSize = DEFAULT_SEGMENT_SIZE;
+
+	private volatile long compactionThreshold = DEFAULT_COMPACTION_THRESHOLD;
+
+	private volatile FsyncPolicy fsyncPolicy = FsyncPolicy.INTERVAL;
+
+	private volatile long fsyncInterval = DEFAULT_FSYNC_INTERVAL;
+
+	private volatile boolean priorityEnabled;
+
+	private volatile Executor taskExecutor = new SimpleAsyncTaskExecutor();
+
+	private MappedByteBuffer current;
+
+	private long nextSegmentNumber;
+
+	private long logSize;
+
+	private long compactedLogSize;
+
+	private long lastFsync;
+
+	private volatile boolean closed;
+
+	/**
+	 * Construct an instance that stores its log in the provided directory, using Java
+	 * serialization, with unlimited capacity.
+	 * @param directory the directory; created if necessary.
+	 */
+	public MappedFileMessageStore(File directory) {
+		this(directory, null);
+	}
+
+	/**
+	 * Construct an instance that stores its log in the provided directory, using the
+	 * provided codec, with unlimited capacity.
+	 * @param directory the directory; created if necessary.
+	 * @param codec the codec; Java serialization is used if null.
+	 */
+	public MappedFileMessageStore(File directory, Codec codec) {
+		this(directory, codec, 0, 0);
+	}
+
+	/**
+	 * Construct an instance that stores its log in the provided directory, using the
+	 * provided codec, with the provided capacities.
+	 * @param directory the directory; created if necessary.
+	 * @param codec the codec; Java serialization is used if null.
+	 * @param individualCapacity the maximum number of messages outside of groups (0 for unlimited).
+	 * @param groupCapacity the maximum number of messages per group (0 for unlimited).
+	 */
+	public MappedFileMessageStore(File directory, Codec codec, int individualCapacity, int groupCapacity) {
+		super(individualCapacity, groupCapacity);
+		Assert.notNull(directory, "'directory' cannot be null");
+		Assert.isTrue(directory.isDirectory() || directory.mkdirs(), () -> "Cannot create directory " + directory);
+		this.directory = directory;
+		if (codec != null) {
+			CodecSerializer codecSerializer = new CodecSerializer(codec);
+			this.serializer = codecSerializer;
+			this.deserializer = codecSerializer;
+		}
+		else {
+			this.serializer = new DefaultSerializer();
+			this.deserializer = new DefaultDeserializer();
+		}
+		recover();
+	}
+
+	/**
+	 * Set the size of new segment files; a segment is larger when it has to hold a
+	 * larger record. Default {@link #DEFAULT_SEGMENT_SIZE}.
+	 * @param segmentSize the segment size in bytes.
+	 */
+	public void setSegmentSize(int segmentSize) {
+		Assert.isTrue(segmentSize >= 1024, "'segmentSize' must be at least 1024");
+		this.segmentSize = segmentSize;
+	}
+
+	/**
+	 * Set the number of bytes the log may grow by, after the previous compaction,
+	 * before it is compacted; 0 to only compact when {@link #compact()} is invoked.
+	 * Default {@link #DEFAULT_COMPACTION_THRESHOLD}.
+	 * @param compactionThreshold the threshold in bytes.
+	 */
+	public void setCompactionThreshold(long compactionThreshold) {
+		Assert.isTrue(compactionThreshold >= 0, "'compactionThreshold' cannot be negative");
+		this.compactionThreshold = compactionThreshold;
+	}
+
+	/**
+	 * Set the executor running the compactions started when the
+	 * {@link #setCompactionThreshold(long) compaction threshold} is exceeded.
+	 * Default {@link SimpleAsyncTaskExecutor}.
+	 * @param taskExecutor the executor.
+	 */
+	public void setTaskExecutor(Executor taskExecutor) {
+		Assert.notNull(taskExecutor, "'taskExecutor' cannot be null");
+		this.taskExecutor = taskExecutor;
+	}
+
+	/**
+	 * Set when the segments are forced to the storage device. Default
+	 * {@link FsyncPolicy#INTERVAL}.
+	 * @param fsyncPolicy the policy.
+	 * @see #setFsyncInterval(long)
+	 */
+	public void setFsyncPolicy(FsyncPolicy fsyncPolicy) {
+		Assert.notNull(fsyncPolicy, "'fsyncPolicy' cannot be null");
+		this.fsyncPolicy = fsyncPolicy;
+	}
+
+	/**
+	 * Set the minimum interval between forcing the current segment to the storage
+	 * device with {@link FsyncPolicy#INTERVAL}; the segment is forced by the first write
+	 * after the interval has elapsed. Default {@link #DEFAULT_FSYNC_INTERVAL}.
+	 * @param fsyncInterval the interval in milliseconds.
+	 */
+	public void setFsyncInterval(long fsyncInterval) {
+		Assert.isTrue(fsyncInterval >= 0, "'fsyncInterval' cannot be negative");
+		this.fsyncInterval = fsyncInterval;
+	}
+
+	/**
+	 * Set to true to poll messages from a group in priority order.
+	 * @param priorityEnabled true to enable priority.
+	 */
+	public void setPriorityEnabled(boolean priorityEnabled) {
+		this.priorityEnabled = priorityEnabled;
+	}
+
+	@Override
+	public boolean isPriorityEnabled() {
+		return this.priorityEnabled;
+	}
+
+	/**
+	 * Return the number of bytes currently used by the log.
+	 * @return the size.
+	 */
+	public long getLogSize() {
+		synchronized (this.monitor) {
+			return this.logSize;
+		}
+	}
+
+	@Override
+	public <T> Message<T> addMessage(Message<T> message) {
+		UUID id = message.getHeaders().getId();
+		return doWithOrderingLock(id, () -> {
+			byte[] record = serialize(message);
+			super.addMessage(message);
+			append(MESSAGE_ADDED, 0, 0, record);
+			return message;
+		});
+	}
+
+	@Override
+	public Message<?> removeMessage(UUID key) {
+		if (key == null) {
+			return null;
+		}
+		return doWithOrderingLock(key, () -> {
+			byte[] record = serialize(key);
+			Message<?> message = super.removeMessage(key);
+			if (message != null) {
+				append(MESSAGE_REMOVED, 0, 0, record);
+			}
+			return message;
+		});
+	}
+
+	@Override
+	public void addMessagesToGroup(Object groupId, Message<?>... messages) {
+		doWithOrderingLock(groupId, () -> {
+			byte[] record = serialize(groupId, messages);
+			RuntimeException failure = null;
+			try {
+				super.addMessagesToGroup(groupId, messages);
+			}
+			catch (RuntimeException e) {
+				// some messages may have been added before running out of capacity
+				failure = e;
+				Collection<Message<?>> present = getMessagesForGroup(groupId);
+				Message<?>[] added = Arrays.stream(messages)
+						.filter(present::contains)
+						.toArray(Message<?>[]::new);
+				record = added.length > 0 ? serialize(groupId, added) : null;
+			}
+			if (record != null) {
+				MessageGroup group = getMessageGroup(groupId);
+				append(GROUP_MESSAGES_ADDED, group.getTimestamp(), group.getLastModified(), record);
+			}
+			if (failure != null) {
+				throw failure;
+			}
+			return null;
+		});
+	}
+
+	@Override
+	public void removeMessagesFromGroup(Object groupId, Collection<Message<?>> messages) {
+		doWithOrderingLock(groupId, () -> {
+			UUID[] ids = messages.stream()
+					.map(m -> m.getHeaders().getId())
+					.toArray(UUID[]::new);
+			byte[] record = serialize(groupId, ids);
+			super.removeMessagesFromGroup(groupId, messages);
+			append(GROUP_MESSAGES_REMOVED, 0, getMessageGroup(groupId).getLastModified(), record);
+			return null;
+		});
+	}
+
+	@Override
+	public void removeMessageGroup(Object groupId) {
+		doWithOrderingLock(groupId, () -> {
+			byte[] record = serialize(groupId);
+			super.removeMessageGroup(groupId);
+			append(GROUP_REMOVED, 0, 0, record);
+			return null;
+		});
+	}
+
+	@Override
+	public void completeGroup(Object groupId) {
+		doWithOrderingLock(groupId, () -> {
+			byte[] record = serialize(groupId);
+			super.completeGroup(groupId);
+			append(GROUP_COMPLETED, 0, getMessageGroup(groupId).getLastModified(), record);
+			return null;
+		});
+	}
+
+	@Override
+	public void setLastReleasedSequenceNumberForGroup(Object groupId, int sequenceNumber) {
+		doWithOrderingLock(groupId, () -> {
+			byte[] record = serialize(groupId, sequenceNumber);
+			super.setLastReleasedSequenceNumberForGroup(groupId, sequenceNumber);
+			append(GROUP_LAST_RELEASED, 0, getMessageGroup(groupId).getLastModified(), record);
+			return null;
+		});
+	}
+
+	@Override
+	public void clearMessageGroup(Object groupId) {
+		doWithOrderingLock(groupId, () -> {
+			byte[] record = serialize(groupId);
+			super.clearMessageGroup(groupId);
+			append(GROUP_CLEARED, 0, getMessageGroup(groupId).getLastModified(), record);
+			return null;
+		});
+	}
+
+	@Override
+	public Message<?> pollMessageFromGroup(Object groupId) {
+		return doWithOrderingLock(groupId, () -> {
+			if (!this.priorityEnabled) {
+				return super.pollMessageFromGroup(groupId);
+			}
+			Message<?> message = null;
+			int highest = 0;
+			for (Message<?> candidate : getMessagesForGroup(groupId)) {
+				Integer priority = new IntegrationMessageHeaderAccessor(candidate).getPriority();
+				int value = priority != null ? priority : 0;
+				if (message == null || value > highest) {
+					message = candidate;
+					highest = value;
+				}
+			}
+			if (message != null) {
+				removeMessagesFromGroup(groupId, message);
+			}
+			return message;
+		});
+	}
+
+	/**
+	 * Write the live state to new segments and delete the older segments. New records
+	 * are written to a new segment in the meantime.
+	 */
+	public void compact() {
+		synchronized (this.compactionMonitor) {
+			long snapshotNumber;
+			int tailStart;
+			long obsoleteSize;
+			synchronized (this.monitor) {
+				assertOpen();
+				if (this.fsyncPolicy != FsyncPolicy.NEVER) {
+					forceCurrent();
+				}
+				snapshotNumber = this.nextSegmentNumber++;
+				tailStart = this.segments.size();
+				obsoleteSize = this.logSize;
+				this.current = newSegment(0);
+			}
+			Snapshot snapshot = new Snapshot(snapshotNumber);
+			try {
+				for (Message<?> message : getIndividualMessages()) {
+					snapshot.write(MESSAGE_ADDED, 0, 0, serialize(message));
+				}
+				Iterator<MessageGroup> groups = iterator();
+				while (groups.hasNext()) {
+					MessageGroup group = copy(groups.next());
+					snapshot.write(GROUP_STATE, group.getTimestamp(), group.getLastModified(),
+							serialize(group.getGroupId(), group.isComplete(),
+									group.getLastReleasedMessageSequenceNumber(),
+									group.getMessages().toArray(new Message<?>[0])));
+				}
+				snapshot.force();
+			}
+			catch (RuntimeException e) {
+				snapshot.delete();
+				throw e;
+			}
+			List<Segment> obsolete;
+			synchronized (this.monitor) {
+				List<Segment> replaced = this.segments.subList(0, tailStart);
+				obsolete = new ArrayList<>(replaced);
+				replaced.clear();
+				this.segments.addAll(0, snapshot.segments);
+				this.logSize += snapshot.size - obsoleteSize;
+				this.compactedLogSize = this.logSize;
+			}
+			for (Segment segment : obsolete) {
+				segment.delete();
+			}
+		}
+	}
+
+	/**
+	 * Force the log to the storage device and close it; the store cannot be modified
+	 * afterwards. Waits for a compaction in progress.
+	 */
+	@Override
+	public void close() {
+		synchronized (this.compactionMonitor) {
+			synchronized (this.monitor) {
+				if (!this.closed) {
+					if (this.fsyncPolicy != FsyncPolicy.NEVER) {
+						forceCurrent();
+					}
+					this.current = null;
+					for (Segment segment : this.segments) {
+						segment.close();
+					}
+					this.closed = true;
+				}
+			}
+		}
+	}
+
+	@Override
+	public void destroy() {
+		close();
+	}
+
+	private <T> T doWithOrderingLock(Object key, OrderedOperation<T> operation) {
+		Lock lock = this.orderingLocks.obtain(key);
+		try {
+			lock.lockInterruptibly();
+			try {
+				return operation.execute();
+			}
+			finally {
+				lock.unlock();
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MessagingException("Interrupted while obtaining lock", e);
+		}
+	}
+
+	private void append(byte type, long timestamp, long lastModified, byte[] body) {
+		boolean compactionDue;
+		synchronized (this.monitor) {
+			assertOpen();
+			write(type, timestamp, lastModified, body);
+			switch (this.fsyncPolicy) {
+				case ALWAYS:
+					forceCurrent();
+					break;
+				case INTERVAL:
+					if (System.currentTimeMillis() - this.lastFsync >= this.fsyncInterval) {
+						forceCurrent();
+					}
+					break;
+				default:
+			}
+			compactionDue = this.compactionThreshold > 0
+					&& this.logSize - this.compactedLogSize > this.compactionThreshold;
+		}
+		if (compactionDue) {
+			scheduleCompaction();
+		}
+	}
+
+	private void scheduleCompaction() {
+		if (this.compactionScheduled.compareAndSet(false, true)) {
+			try {
+				this.taskExecutor.execute(() -> {
+					try {
+						if (!this.closed) {
+							compact();
+						}
+					}
+					catch (RuntimeException e) {
+						this.logger.error("Failed to compact the log in " + this.directory, e);
+					}
+					finally {
+						this.compactionScheduled.set(false);
+					}
+				});
+			}
+			catch (RuntimeException e) {
+				this.compactionScheduled.set(false);
+				this.logger.error("Failed to start a compaction of the log in " + this.directory, e);
+			}
+		}
+	}
+
+	private byte[] serialize(Object... fields) {
+		try {
+			ByteArrayOutputStream bos = new ByteArrayOutputStream(256);
+			this.serializer.serialize(fields, bos);
+			return bos.toByteArray();
+		}
+		catch (IOException e) {
+			throw new MessageStoreException("Failed to serialize a log record", e);
+		}
+	}
+
+	private void write(byte type, long timestamp, long lastModified, byte[] body) {
+		int recordLength = RECORD_HEADER_LENGTH + RECORD_TIMES_LENGTH + body.length;
+		if (this.current == null || this.current.remaining() < recordLength) {
+			if (this.current != null && this.fsyncPolicy != FsyncPolicy.NEVER) {
+				forceCurrent();
+			}
+			this.current = newSegment(recordLength);
+		}
+		putRecord(this.current, type, timestamp, lastModified, body);
+		this.logSize += recordLength;
+	}
+
+	/*
+	 * Record layout: payload length (int), CRC32 of the type and payload (int), type,
+	 * payload (timestamp, last modified, serialized body). The length is written last so
+	 * that a partially written record reads as the end of the log.
+	 */
+	private static void putRecord(MappedByteBuffer buffer, byte type, long timestamp, long lastModified,
+			byte[] body) {
+
+		int position = buffer.position();
+		buffer.position(position + RECORD_HEADER_LENGTH - 1);
+		buffer.put(type);
+		buffer.putLong(timestamp);
+		buffer.putLong(lastModified);
+		buffer.put(body);
+		CRC32 crc = new CRC32();
+		crc.update(type);
+		crc.update(timesBytes(timestamp, lastModified));
+		crc.update(body);
+		buffer.putInt(position + 4, (int) crc.getValue());
+		buffer.putInt(position, RECORD_TIMES_LENGTH + body.length);
+	}
+
+	private static byte[] timesBytes(long timestamp, long lastModified) {
+		return ByteBuffer.allocate(RECORD_TIMES_LENGTH)
+				.putLong(timestamp)
+				.putLong(lastModified)
+				.array();
+	}
+
+	private MappedByteBuffer newSegment(int minimumSize) {
+		File file = new File(this.directory, String.format("%020d", this.nextSegmentNumber++) + SEGMENT_SUFFIX);
+		Segment segment = new Segment(file, Math.max(this.segmentSize, minimumSize));
+		this.segments.add(segment);
+		return segment.buffer;
+	}
+
+	private void forceCurrent() {
+		if (this.current != null) {
+			this.current.force();
+		}
+		this.lastFsync = System.currentTimeMillis();
+	}
+
+	private void assertOpen() {
+		if (this.closed) {
+			throw new MessageStoreException("The store has been closed");
+		}
+	}
+
+	private void recover() {
+		File[] files = this.directory.listFiles((dir, name) -> name.endsWith(SEGMENT_SUFFIX));
+		if (files == null || files.length == 0) {
+			return;
+		}
+		Arrays.sort(files);
+		RecoveredState state = new RecoveredState();
+		for (int i = 0; i < files.length; i++) {
+			Segment segment = new Segment(files[i], files[i].length());
+			this.segments.add(segment);
+			int end = replay(segment.buffer, state);
+			this.logSize += end;
+			segment.buffer.position(end);
+			if (i < files.length - 1) {
+				if (segment.buffer.remaining() >= 4 && segment.buffer.getInt(end) != 0) {
+					this.logger.warn("Ignoring the corrupted end of log segment " + files[i]);
+				}
+			}
+			else {
+				// clear any torn record so that it cannot reappear behind new records
+				while (segment.buffer.hasRemaining()) {
+					segment.buffer.put((byte) 0);
+				}
+				segment.buffer.position(end);
+			}
+		}
+		this.current = this.segments.get(this.segments.size() - 1).buffer;
+		String lastName = files[files.length - 1].getName();
+		int numberEnd = lastName.indexOf(SNAPSHOT_SEPARATOR);
+		this.nextSegmentNumber = Long.parseLong(lastName.substring(0, numberEnd)) + 1;
+		this.compactedLogSize = this.logSize;
+		for (Message<?> message : state.messages.values()) {
+			super.addMessage(message);
+		}
+		for (GroupState groupState : state.groups.values()) {
+			MessageGroup group = getMessageGroupFactory().create(groupState.messages.values(), groupState.groupId,
+					groupState.timestamp, groupState.complete);
+			group.setLastModified(groupState.lastModified);
+			group.setLastReleasedMessageSequenceNumber(groupState.lastReleased);
+			restoreMessageGroup(group);
+		}
+	}
+
+	/*
+	 * Records are applied with set semantics so that replaying a record whose change
+	 * is also contained in a later snapshot (or vice versa) is harmless.
+	 */
+	private int replay(MappedByteBuffer buffer, RecoveredState state) {
+		int position = 0;
+		while (buffer.limit() - position >= RECORD_HEADER_LENGTH) {
+			int length = buffer.getInt(position);
+			if (length <= 0 || length > buffer.limit() - position - RECORD_HEADER_LENGTH) {
+				break;
+			}
+			if (length < RECORD_TIMES_LENGTH) {
+				break;
+			}
+			int expectedCrc = buffer.getInt(position + 4);
+			byte type = buffer.get(position + 8);
+			byte[] payload = new byte[length];
+			buffer.position(position + RECORD_HEADER_LENGTH);
+			buffer.get(payload);
+			CRC32 crc = new CRC32();
+			crc.update(type);
+			crc.update(payload);
+			if ((int) crc.getValue() != expectedCrc) {
+				break;
+			}
+			ByteBuffer times = ByteBuffer.wrap(payload, 0, RECORD_TIMES_LENGTH);
+			long timestamp = times.getLong();
+			long lastModified = times.getLong();
+			try {
+				Object[] fields = (Object[]) this.deserializer.deserialize(new ByteArrayInputStream(payload,
+						RECORD_TIMES_LENGTH, payload.length - RECORD_TIMES_LENGTH));
+				state.apply(type, timestamp, lastModified, fields);
+			}
+			catch (IOException e) {
+				throw new MessageStoreException("Failed to deserialize a log record", e);
+			}
+			position += RECORD_HEADER_LENGTH + length;
+		}
+		return position;
+	}
+
+	/*
+	 * Release the mapping now rather than when the buffer is garbage collected; the buffer
+	 * must not be accessed afterwards.
+	 */
+	private static void unmap(MappedByteBuffer buffer) {
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+			theUnsafe.setAccessible(true);
+			Method invokeCleaner;
+			try {
+				invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+			}
+			catch (NoSuchMethodException e) {
+				// Java 8
+				Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+				cleanerMethod.setAccessible(true);
+				Object cleaner = cleanerMethod.invoke(buffer);
+				if (cleaner != null) {
+					cleaner.getClass().getMethod("clean").invoke(cleaner);
+				}
+				return;
+			}
+			invokeCleaner.invoke(theUnsafe.get(null), buffer);
+		}
+		catch (Exception e) {
+			// the mapping is released when the buffer is garbage collected
+		}
+	}
+
+	/**
+	 * When the log segments are forced to the storage device.
+	 */
+	public enum FsyncPolicy {
+
+		/**
+		 * After each write; a write survives an operating system crash once the
+		 * operation that caused it has returned.
+		 */
+		ALWAYS,
+
+		/**
+		 * On a write, when the {@link #setFsyncInterval(long) interval} has elapsed since
+		 * the previous one, when switching to a new segment, and when closing the store.
+		 */
+		INTERVAL,
+
+		/**
+		 * Leave it to the operating system.
+		 */
+		NEVER
+
+	}
+
+	@FunctionalInterface
+	private interface OrderedOperation<T> {
+
+		T execute();
+
+	}
+
+	private static final class Segment {
+
+		private final File file;
+
+		private final FileChannel channel;
+
+		private final MappedByteBuffer buffer;
+
+		Segment(File file, long size) {
+			this.file = file;
+			try {
+				this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+						StandardOpenOption.WRITE);
+				this.buffer = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+			}
+			catch (IOException e) {
+				throw new MessageStoreException("Failed to map log segment " + file, e);
+			}
+		}
+
+		private boolean closed;
+
+		void close() {
+			if (!this.closed) {
+				this.closed = true;
+				try {
+					this.channel.close();
+				}
+				catch (IOException e) {
+					// ignore
+				}
+				// some platforms cannot delete a file while it is mapped
+				unmap(this.buffer);
+			}
+		}
+
+		void delete() {
+			close();
+			if (!this.file.delete()) {
+				throw new MessageStoreException("Failed to delete log segment " + this.file);
+			}
+		}
+
+	}
+
+	/**
+	 * The segments receiving a snapshot of the live state during a compaction; they are
+	 * named after the segment number reserved for the snapshot, so that they are replayed
+	 * before the records written in the meantime.
+	 */
+	private final class Snapshot {
+
+		private final List<Segment> segments = new ArrayList<>();
+
+		private final long number;
+
+		private MappedByteBuffer buffer;
+
+		private long size;
+
+		Snapshot(long number) {
+			this.number = number;
+		}
+
+		void write(byte type, long timestamp, long lastModified, byte[] body) {
+			int recordLength = RECORD_HEADER_LENGTH + RECORD_TIMES_LENGTH + body.length;
+			if (this.buffer == null || this.buffer.remaining() < recordLength) {
+				File file = new File(MappedFileMessageStore.this.directory, String.format("%020d", this.number)
+						+ SNAPSHOT_SEPARATOR + String.format("%06d", this.segments.size()) + SEGMENT_SUFFIX);
+				Segment segment = new Segment(file,
+						Math.max(MappedFileMessageStore.this.segmentSize, recordLength));
+				this.segments.add(segment);
+				this.buffer = segment.buffer;
+			}
+			putRecord(this.buffer, type, timestamp, lastModified, body);
+			this.size += recordLength;
+		}
+
+		void force() {
+			for (Segment segment : this.segments) {
+				segment.buffer.force();
+			}
+		}
+
+		void delete() {
+			for (Segment segment : this.segments) {
+				try {
+					segment.delete();
+				}
+				catch (RuntimeException e) {
+					// ignore
+				}
+			}
+		}
+
+	}
+
+	private static final class RecoveredState {
+
+		private final Map<UUID, Message<?>> messages = new LinkedHashMap<>();
+
+		private final Map<Object, GroupState> groups = new LinkedHashMap<>();
+
+		RecoveredState() {
+			super();
+		}
+
+		void apply(byte type, long timestamp, long lastModified, Object[] fields) {
+			switch (type) {
+				case MESSAGE_ADDED:
+					Message<?> message = (Message<?>) fields[0];
+					this.messages.put(message.getHeaders().getId(), message);
+					break;
+				case MESSAGE_REMOVED:
+					this.messages.remove(fields[0]);
+					break;
+				case GROUP_MESSAGES_ADDED:
+					GroupState added = this.groups.computeIfAbsent(fields[0],
+							groupId -> new GroupState(groupId, timestamp));
+					for (Message<?> member : (Message<?>[]) fields[1]) {
+						added.messages.put(member.getHeaders().getId(), member);
+					}
+					added.lastModified = lastModified;
+					break;
+				case GROUP_MESSAGES_REMOVED:
+					GroupState removed = this.groups.get(fields[0]);
+					if (removed != null) {
+						removed.messages.keySet().removeAll(Arrays.asList((UUID[]) fields[1]));
+						removed.lastModified = lastModified;
+					}
+					break;
+				case GROUP_REMOVED:
+					this.groups.remove(fields[0]);
+					break;
+				case GROUP_COMPLETED:
+					GroupState completed = this.groups.get(fields[0]);
+					if (completed != null) {
+						completed.complete = true;
+						completed.lastModified = lastModified;
+					}
+					break;
+				case GROUP_LAST_RELEASED:
+					GroupState released = this.groups.get(fields[0]);
+					if (released != null) {
+						released.lastModified = lastModified;
+						released.lastReleased = (Integer) fields[1];
+					}
+					break;
+				case GROUP_CLEARED:
+					GroupState cleared = this.groups.get(fields[0]);
+					if (cleared != null) {
+						cleared.messages.clear();
+						cleared.lastModified = lastModified;
+					}
+					break;
+				case GROUP_STATE:
+					GroupState group = new GroupState(fields[0], timestamp);
+					group.lastModified = lastModified;
+					group.complete = (Boolean) fields[1];
+					group.lastReleased = (Integer) fields[2];
+					for (Message<?> member : (Message<?>[]) fields[3]) {
+						group.messages.put(member.getHeaders().getId(), member);
+					}
+					this.groups.put(group.groupId, group);
+					break;
+				default:
+					throw new MessageStoreException("Unknown log record type: " + type);
+			}
+		}
+
+	}
+
+	private static final class GroupState {
+
+		private final Object groupId;
+
+		private final long timestamp;
+
+		private final Map<UUID, Message<?>> messages = new LinkedHashMap<>();
+
+		private long lastModified;
+
+		private boolean complete;
+
+		private int lastReleased;
+
+		GroupState(Object groupId, long timestamp) {
+			this.groupId = groupId;
+			this.timestamp = timestamp;
+			this.lastModified = timestamp;
+		}
+
+	}
+
+}
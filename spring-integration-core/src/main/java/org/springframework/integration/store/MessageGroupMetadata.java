@@ -17,6 +17,7 @@
 package org.springframework.integration.store;
 
 import java.io.Serializable;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
@@ -64,6 +65,21 @@ public class MessageGroupMetadata implements Serializable {
 		this.lastModified = messageGroup.getLastModified();
 	}
 
+	/**
+	 * Create a copy of the provided metadata, with the additional message ids appended.
+	 * @param metadata the metadata to copy.
+	 * @param additionalMessageIds the message ids to append.
+	 * @since 5.1
+	 */
+	MessageGroupMetadata(MessageGroupMetadata metadata, Collection<UUID> additionalMessageIds) {
+		this.messageIds.addAll(metadata.messageIds);
+		this.messageIds.addAll(additionalMessageIds);
+		this.complete = metadata.complete;
+		this.timestamp = metadata.timestamp;
+		this.lastReleasedMessageSequenceNumber = metadata.lastReleasedMessageSequenceNumber;
+		this.lastModified = metadata.lastModified;
+	}
+
 	public void remove(UUID messageId) {
 		this.messageIds.remove(messageId);
 	}
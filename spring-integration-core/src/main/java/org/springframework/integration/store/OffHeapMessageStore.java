@@ -0,0 +1,524 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.store;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.integration.codec.Codec;
+import org.springframework.integration.codec.CodecSerializer;
+import org.springframework.integration.codec.kryo.MessageCodec;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessagingException;
+import org.springframework.util.Assert;
+
+/**
+ * A {@link SimpleMessageStore} that keeps the messages in direct (off-heap) memory,
+ * to avoid long garbage collection pauses when large numbers of messages are
+ * buffered, for example by an aggregator or a delayer.
+ * <p>
+ * Messages are encoded with a {@link Codec} ({@link MessageCodec} by default) into
+ * fixed size chunks of direct memory slabs; only a small index entry (the message id
+ * and the chunk numbers) is kept on the heap. Messages are decoded whenever they are
+ * retrieved, so each retrieval returns a new instance.
+ * <p>
+ * The memory is bounded by a byte budget, in addition to the message count
+ * capacities and the {@link #setByteCapacity(long) byte capacity}; when the budget is
+ * exhausted, adding a message fails. Slabs are allocated on demand and retained for
+ * reuse; note that the budget must fit within the JVM's maximum direct memory
+ * ({@code -XX:MaxDirectMemorySize}). The estimated size of each message is recorded
+ * when it is added, so that removing a group does not decode its messages.
+ * <p>
+ * A removed group is cleared, so its memory is reused; unlike with the
+ * {@link SimpleMessageStore}, a reference to a removed group therefore no longer
+ * provides its messages.
+ *
+ * @since 5.1
+ */
+public class OffHeapMessageStore extends SimpleMessageStore {
+
+	/**
+	 * The default chunk size in bytes.
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 128;
+
+	private static final int SLAB_SIZE = 1024 * 1024;
+
+	private final ConcurrentMap<UUID, Slot> individualMessages = new ConcurrentHashMap<>();
+
+	private final MessageGroupFactory messageGroupFactory = new OffHeapMessageGroupFactory();
+
+	private final CodecSerializer serializer;
+
+	private final Slabs slabs;
+
+	private final long maxBytes;
+
+	/**
+	 * Construct an instance with the provided byte budget, using a {@link MessageCodec}.
+	 * @param maxBytes the maximum number of bytes of direct memory to use.
+	 */
+	public OffHeapMessageStore(long maxBytes) {
+		this(new MessageCodec(), maxBytes);
+	}
+
+	/**
+	 * Construct an instance with the provided codec and byte budget.
+	 * @param codec the codec.
+	 * @param maxBytes the maximum number of bytes of direct memory to use.
+	 */
+	public OffHeapMessageStore(Codec codec, long maxBytes) {
+		this(codec, maxBytes, DEFAULT_CHUNK_SIZE, 0, 0);
+	}
+
+	/**
+	 * Construct an instance with the provided codec, byte budget, chunk size and
+	 * capacities.
+	 * @param codec the codec.
+	 * @param maxBytes the maximum number of bytes of direct memory to use.
+	 * @param chunkSize the unit of allocation; a message occupies as many chunks as
+	 * needed for its encoded form, so the chunk size should be in the order of the
+	 * smaller messages.
+	 * @param individualCapacity the maximum number of messages outside of groups (0 for unlimited).
+	 * @param groupCapacity the maximum number of messages per group (0 for unlimited).
+	 */
+	public OffHeapMessageStore(Codec codec, long maxBytes, int chunkSize, int individualCapacity,
+			int groupCapacity) {
+
+		super(individualCapacity, groupCapacity);
+		Assert.notNull(codec, "'codec' cannot be null");
+		Assert.isTrue(chunkSize >= 16 && chunkSize <= SLAB_SIZE, "'chunkSize' must be between 16 and 1048576");
+		Assert.isTrue(maxBytes >= chunkSize, "'maxBytes' must be at least the 'chunkSize'");
+		Assert.isTrue(maxBytes / chunkSize <= Integer.MAX_VALUE, "'maxBytes' is too large for the 'chunkSize'");
+		this.serializer = new CodecSerializer(codec);
+		this.slabs = new Slabs(chunkSize, maxBytes);
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Return the maximum number of bytes of direct memory to use.
+	 * @return the budget.
+	 */
+	public long getMaxBytes() {
+		return this.maxBytes;
+	}
+
+	/**
+	 * Return the number of bytes of direct memory occupied by messages, in whole chunks.
+	 * @return the number of bytes.
+	 */
+	@ManagedAttribute
+	public long getUsedBytes() {
+		return this.slabs.getUsedBytes();
+	}
+
+	/**
+	 * Return the number of bytes of direct memory allocated for slabs.
+	 * @return the number of bytes.
+	 */
+	@ManagedAttribute
+	public long getAllocatedBytes() {
+		return this.slabs.getAllocatedBytes();
+	}
+
+	@Override
+	protected MessageGroupFactory getMessageGroupFactory() {
+		return this.messageGroupFactory;
+	}
+
+	@Override
+	@ManagedAttribute
+	public long getMessageCount() {
+		return this.individualMessages.size();
+	}
+
+	@Override
+	Message<?> putIndividualMessage(Message<?> message) {
+		Slot previous = this.individualMessages.put(message.getHeaders().getId(), store(message));
+		if (previous != null) {
+			Message<?> replaced = load(previous);
+			release(previous);
+			return replaced;
+		}
+		return null;
+	}
+
+	@Override
+	public Message<?> getMessage(UUID key) {
+		Slot slot = key != null ? this.individualMessages.get(key) : null;
+		return slot != null ? load(slot) : null;
+	}
+
+	@Override
+	Message<?> removeIndividualMessage(UUID id) {
+		Slot slot = this.individualMessages.remove(id);
+		if (slot != null) {
+			Message<?> message = load(slot);
+			release(slot);
+			return message;
+		}
+		else {
+			return null;
+		}
+	}
+
+	@Override
+	long estimateSize(MessageGroup group) {
+		if (group instanceof OffHeapMessageGroup) {
+			return ((OffHeapMessageGroup) group).messages.getEstimatedSize();
+		}
+		return super.estimateSize(group);
+	}
+
+	@Override
+	void messageGroupRemoved(MessageGroup group) {
+		group.clear();
+	}
+
+	private Slot store(Message<?> message) {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream(256);
+		try {
+			this.serializer.serialize(message, bos);
+		}
+		catch (IOException e) {
+			throw new MessagingException(message, "Failed to encode the message", e);
+		}
+		byte[] bytes = bos.toByteArray();
+		int[] chunks = this.slabs.allocate(bytes.length);
+		if (chunks == null) {
+			throw new MessagingException(message, getClass().getSimpleName()
+					+ " was out of memory (" + this.maxBytes + " bytes), "
+					+ "try constructing it with a larger budget.");
+		}
+		this.slabs.write(chunks, bytes);
+		return new Slot(bytes.length, chunks, estimateSize(message));
+	}
+
+	/*
+	 * Return null if the slot has been released concurrently.
+	 */
+	private Message<?> load(Slot slot) {
+		byte[] bytes;
+		synchronized (slot) {
+			if (slot.released) {
+				return null;
+			}
+			bytes = this.slabs.read(slot.chunks, slot.length);
+		}
+		try {
+			return (Message<?>) this.serializer.deserialize(new ByteArrayInputStream(bytes));
+		}
+		catch (IOException e) {
+			throw new MessagingException("Failed to decode a message", e);
+		}
+	}
+
+	private void release(Slot slot) {
+		synchronized (slot) {
+			if (!slot.released) {
+				slot.released = true;
+				this.slabs.free(slot.chunks);
+			}
+		}
+	}
+
+	private static final class Slot {
+
+		private final int length;
+
+		private final int[] chunks;
+
+		private final long estimatedSize;
+
+		private boolean released;
+
+		Slot(int length, int[] chunks, long estimatedSize) {
+			this.length = length;
+			this.chunks = chunks;
+			this.estimatedSize = estimatedSize;
+		}
+
+	}
+
+	/**
+	 * Fixed size chunks in direct memory slabs, allocated on demand up to the budget;
+	 * freed chunks are kept on a stack for reuse.
+	 */
+	private static final class Slabs {
+
+		private final int chunkSize;
+
+		private final int chunksPerSlab;
+
+		private final ByteBuffer[] slabs;
+
+		private final long maxChunks;
+
+		private int slabCount;
+
+		private int[] freeChunks = new int[0];
+
+		private int freeCount;
+
+		private long usedChunks;
+
+		Slabs(int chunkSize, long maxBytes) {
+			this.chunkSize = chunkSize;
+			this.chunksPerSlab = SLAB_SIZE / chunkSize;
+			this.maxChunks = maxBytes / chunkSize;
+			this.slabs = new ByteBuffer[(int) ((this.maxChunks + this.chunksPerSlab - 1) / this.chunksPerSlab)];
+		}
+
+		synchronized long getUsedBytes() {
+			return this.usedChunks * this.chunkSize;
+		}
+
+		synchronized long getAllocatedBytes() {
+			long allocated = 0;
+			for (int i = 0; i < this.slabCount; i++) {
+				allocated += this.slabs[i].capacity();
+			}
+			return allocated;
+		}
+
+		/*
+		 * Return the chunk numbers, or null if the budget is exhausted.
+		 */
+		synchronized int[] allocate(int length) {
+			int count = Math.max(1, (length + this.chunkSize - 1) / this.chunkSize);
+			while (this.freeCount < count && this.slabCount < this.slabs.length) {
+				addSlab();
+			}
+			if (this.freeCount < count) {
+				return null;
+			}
+			int[] chunks = new int[count];
+			for (int i = 0; i < count; i++) {
+				chunks[i] = this.freeChunks[--this.freeCount];
+			}
+			this.usedChunks += count;
+			return chunks;
+		}
+
+		synchronized void free(int[] chunks) {
+			for (int chunk : chunks) {
+				this.freeChunks[this.freeCount++] = chunk;
+			}
+			this.usedChunks -= chunks.length;
+		}
+
+		void write(int[] chunks, byte[] bytes) {
+			int offset = 0;
+			for (int chunk : chunks) {
+				int length = Math.min(this.chunkSize, bytes.length - offset);
+				ByteBuffer buffer = chunkBuffer(chunk);
+				buffer.put(bytes, offset, length);
+				offset += length;
+			}
+		}
+
+		byte[] read(int[] chunks, int length) {
+			byte[] bytes = new byte[length];
+			int offset = 0;
+			for (int chunk : chunks) {
+				int chunkLength = Math.min(this.chunkSize, length - offset);
+				ByteBuffer buffer = chunkBuffer(chunk);
+				buffer.get(bytes, offset, chunkLength);
+				offset += chunkLength;
+			}
+			return bytes;
+		}
+
+		private ByteBuffer chunkBuffer(int chunk) {
+			ByteBuffer buffer = this.slabs[chunk / this.chunksPerSlab].duplicate();
+			buffer.position((chunk % this.chunksPerSlab) * this.chunkSize);
+			return buffer;
+		}
+
+		private void addSlab() {
+			int chunks = (int) Math.min(this.chunksPerSlab, this.maxChunks - (long) this.slabCount * this.chunksPerSlab);
+			int slab = this.slabCount;
+			this.slabs[slab] = ByteBuffer.allocateDirect(chunks * this.chunkSize);
+			this.slabCount++;
+			int[] free = new int[this.freeChunks.length + chunks];
+			System.arraycopy(this.freeChunks, 0, free, 0, this.freeCount);
+			// push in reverse so that lower chunk numbers are handed out first
+			for (int i = chunks - 1; i >= 0; i--) {
+				free[this.freeCount++] = slab * this.chunksPerSlab + i;
+			}
+			this.freeChunks = free;
+		}
+
+	}
+
+	/**
+	 * Creates the groups held by the store with off-heap storage; other groups, e.g.
+	 * copies, are regular on-heap groups.
+	 */
+	private final class OffHeapMessageGroupFactory extends SimpleMessageGroupFactory {
+
+		OffHeapMessageGroupFactory() {
+			super();
+		}
+
+		@Override
+		public MessageGroup create(Object groupId) {
+			return new OffHeapMessageGroup(new OffHeapMessageCollection(), groupId);
+		}
+
+	}
+
+	private static final class OffHeapMessageGroup extends SimpleMessageGroup {
+
+		private final OffHeapMessageCollection messages;
+
+		OffHeapMessageGroup(OffHeapMessageCollection messages, Object groupId) {
+			super(messages, Collections.emptyList(), groupId, System.currentTimeMillis(), false, true);
+			this.messages = messages;
+		}
+
+	}
+
+	/**
+	 * The messages of a group, in insertion order, unique by id. Iterators work on a
+	 * snapshot and skip the messages removed in the meantime.
+	 */
+	private final class OffHeapMessageCollection extends AbstractCollection<Message<?>> {
+
+		private final Map<UUID, Slot> slots = new LinkedHashMap<>();
+
+		private long estimatedSize;
+
+		OffHeapMessageCollection() {
+			super();
+		}
+
+		@Override
+		public synchronized boolean add(Message<?> message) {
+			UUID id = message.getHeaders().getId();
+			if (this.slots.containsKey(id)) {
+				return false;
+			}
+			Slot slot = store(message);
+			this.slots.put(id, slot);
+			this.estimatedSize += slot.estimatedSize;
+			return true;
+		}
+
+		@Override
+		public boolean remove(Object object) {
+			return object instanceof Message && remove(((Message<?>) object).getHeaders().getId());
+		}
+
+		synchronized boolean remove(UUID id) {
+			Slot slot = this.slots.remove(id);
+			if (slot != null) {
+				this.estimatedSize -= slot.estimatedSize;
+				release(slot);
+				return true;
+			}
+			return false;
+		}
+
+		@Override
+		public synchronized boolean contains(Object object) {
+			return object instanceof Message && this.slots.containsKey(((Message<?>) object).getHeaders().getId());
+		}
+
+		@Override
+		public synchronized int size() {
+			return this.slots.size();
+		}
+
+		synchronized long getEstimatedSize() {
+			return this.estimatedSize;
+		}
+
+		@Override
+		public synchronized void clear() {
+			for (Slot slot : this.slots.values()) {
+				release(slot);
+			}
+			this.slots.clear();
+			this.estimatedSize = 0;
+		}
+
+		@Override
+		public Iterator<Message<?>> iterator() {
+			List<Map.Entry<UUID, Slot>> entries;
+			synchronized (this) {
+				entries = new ArrayList<>(this.slots.entrySet());
+			}
+			Iterator<Map.Entry<UUID, Slot>> iterator = entries.iterator();
+			return new Iterator<Message<?>>() {
+
+				private UUID nextId;
+
+				private Message<?> next;
+
+				private UUID current;
+
+				@Override
+				public boolean hasNext() {
+					while (this.next == null && iterator.hasNext()) {
+						Map.Entry<UUID, Slot> entry = iterator.next();
+						this.nextId = entry.getKey();
+						this.next = load(entry.getValue());
+					}
+					return this.next != null;
+				}
+
+				@Override
+				public Message<?> next() {
+					if (!hasNext()) {
+						throw new NoSuchElementException();
+					}
+					Message<?> message = this.next;
+					this.current = this.nextId;
+					this.next = null;
+					return message;
+				}
+
+				@Override
+				public void remove() {
+					if (this.current == null) {
+						throw new IllegalStateException();
+					}
+					OffHeapMessageCollection.this.remove(this.current);
+					this.current = null;
+				}
+
+			};
+		}
+
+	}
+
+}
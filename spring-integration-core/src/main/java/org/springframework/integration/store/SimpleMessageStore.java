@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2016 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,6 +16,7 @@
 
 package org.springframework.integration.store;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -26,6 +27,9 @@ import java.util.concurrent.locks.Lock;
 
 import org.springframework.integration.support.locks.DefaultLockRegistry;
 import org.springframework.integration.support.locks.LockRegistry;
+import org.springframework.integration.util.ByteUpperBound;
+import org.springframework.integration.util.DefaultMessageSizeEstimator;
+import org.springframework.integration.util.MessageSizeEstimator;
 import org.springframework.integration.util.UpperBound;
 import org.springframework.jmx.export.annotation.ManagedAttribute;
 import org.springframework.messaging.Message;
@@ -71,6 +75,10 @@ public class SimpleMessageStore extends AbstractMessageGroupStore
 
 	private final long upperBoundTimeout;
 
+	private volatile ByteUpperBound byteUpperBound;
+
+	private volatile MessageSizeEstimator messageSizeEstimator = new DefaultMessageSizeEstimator();
+
 	/**
 	 * Creates a SimpleMessageStore with a maximum size limited by the given capacity, or unlimited size if the given
 	 * capacity is less than 1. The capacities are applied independently to messages stored via
@@ -162,6 +170,47 @@ public class SimpleMessageStore extends AbstractMessageGroupStore
 		this.lockRegistry = lockRegistry;
 	}
 
+	/**
+	 * Set the maximum total size of the messages in the store (individual messages and
+	 * group members), as estimated by the
+	 * {@link #setMessageSizeEstimator(MessageSizeEstimator) message size estimator}.
+	 * Adding messages waits for space for the {@code upperBoundTimeout}, as for the
+	 * message count capacities. A message larger than the byte capacity is accepted
+	 * when the store is empty. A value less than 1 does not bound the store, but
+	 * maintains the {@link #getMessageBytes() message bytes} statistic.
+	 * @param byteCapacity the byte capacity.
+	 * @since 5.1
+	 */
+	public void setByteCapacity(long byteCapacity) {
+		Assert.isTrue(!(this.isUsed), "Cannot change the byte capacity after the store has been used");
+		this.byteUpperBound = new ByteUpperBound(byteCapacity);
+	}
+
+	/**
+	 * Set the {@link MessageSizeEstimator} used with the
+	 * {@link #setByteCapacity(long) byte capacity}; default
+	 * {@link DefaultMessageSizeEstimator}.
+	 * @param messageSizeEstimator the estimator.
+	 * @since 5.1
+	 */
+	public void setMessageSizeEstimator(MessageSizeEstimator messageSizeEstimator) {
+		Assert.notNull(messageSizeEstimator, "'messageSizeEstimator' must not be null");
+		Assert.isTrue(!(this.isUsed), "Cannot change the message size estimator after the store has been used");
+		this.messageSizeEstimator = messageSizeEstimator;
+	}
+
+	/**
+	 * Return the estimated total size of the messages in the store, when a byte
+	 * capacity is configured.
+	 * @return the size in bytes, or 0 if not tracked.
+	 * @since 5.1
+	 */
+	@ManagedAttribute
+	public long getMessageBytes() {
+		ByteUpperBound byteUpperBound = this.byteUpperBound;
+		return byteUpperBound != null ? byteUpperBound.getUsedBytes() : 0;
+	}
+
 	@Override
 	public void setLazyLoadMessageGroups(boolean lazyLoadMessageGroups) {
 		throw new UnsupportedOperationException("The lazy-load isn't supported for in-memory 'SimpleMessageStore'");
@@ -182,10 +231,46 @@ public class SimpleMessageStore extends AbstractMessageGroupStore
 					+ this.individualCapacity
 					+ "), try constructing it with a larger capacity.");
 		}
-		this.idToMessage.put(message.getHeaders().getId(), message);
+		if (!acquireBytes(estimateSize(message), this.upperBoundTimeout)) {
+			this.individualUpperBound.release();
+			throw outOfByteCapacity();
+		}
+		Message<?> previous;
+		try {
+			previous = putIndividualMessage(message);
+		}
+		catch (RuntimeException e) {
+			this.individualUpperBound.release();
+			releaseBytes(estimateSize(message));
+			throw e;
+		}
+		if (previous != null) {
+			this.individualUpperBound.release();
+			releaseBytes(estimateSize(previous));
+		}
 		return message;
 	}
 
+	/**
+	 * Store a message outside of any group, once the capacities have been acquired.
+	 * @param message the message.
+	 * @return the message previously stored with the same id, or null.
+	 * @since 5.1
+	 */
+	Message<?> putIndividualMessage(Message<?> message) {
+		return this.idToMessage.put(message.getHeaders().getId(), message);
+	}
+
+	/**
+	 * Remove a message stored outside of any group; the capacities are released by the caller.
+	 * @param id the message id.
+	 * @return the removed message, or null.
+	 * @since 5.1
+	 */
+	Message<?> removeIndividualMessage(UUID id) {
+		return this.idToMessage.remove(id);
+	}
+
 	@Override
 	public Message<?> getMessage(UUID key) {
 		return (key != null) ? this.idToMessage.get(key) : null;
@@ -207,9 +292,10 @@ public class SimpleMessageStore extends AbstractMessageGroupStore
 	@Override
 	public Message<?> removeMessage(UUID key) {
 		if (key != null) {
-			Message<?> message = this.idToMessage.remove(key);
+			Message<?> message = removeIndividualMessage(key);
 			if (message != null) {
 				this.individualUpperBound.release();
+				releaseBytes(estimateSize(message));
 			}
 			return message;
 		}
@@ -262,6 +348,11 @@ public class SimpleMessageStore extends AbstractMessageGroupStore
 		Assert.notNull(groupId, "'groupId' must not be null");
 		Assert.notNull(messages, "'messages' must not be null");
 
+		long bytes = estimateSize(Arrays.asList(messages));
+		if (!acquireBytes(bytes, this.upperBoundTimeout)) {
+			throw outOfByteCapacity();
+		}
+		long addedBytes = 0;
 		Lock lock = this.lockRegistry.obtain(groupId);
 		try {
 			lock.lockInterruptibly();
@@ -282,7 +373,7 @@ public class SimpleMessageStore extends AbstractMessageGroupStore
 					upperBound = new UpperBound(this.groupCapacity);
 					for (Message<?> message : messages) {
 						upperBound.tryAcquire(-1);
-						group.add(message);
+						addedBytes += addToGroup(group, message);
 					}
 					this.groupToUpperBound.put(groupId, upperBound);
 				}
@@ -296,7 +387,7 @@ public class SimpleMessageStore extends AbstractMessageGroupStore
 							throw outOfCapacityException;
 						}
 						lock.lockInterruptibly();
-						group.add(message);
+						addedBytes += addToGroup(group, message);
 					}
 				}
 
@@ -312,6 +403,15 @@ public class SimpleMessageStore extends AbstractMessageGroupStore
 			Thread.currentThread().interrupt();
 			throw new MessagingException("Interrupted while obtaining lock", e);
 		}
+		finally {
+			releaseBytes(bytes - addedBytes);
+		}
+	}
+
+	private long addToGroup(MessageGroup group, Message<?> message) {
+		int size = group.size();
+		group.add(message);
+		return group.size() > size ? estimateSize(message) : 0;
 	}
 
 	@Override
@@ -325,6 +425,8 @@ public class SimpleMessageStore extends AbstractMessageGroupStore
 					UpperBound upperBound = this.groupToUpperBound.remove(groupId);
 					Assert.state(upperBound != null, "'upperBound' must not be null.");
 					upperBound.release(this.groupCapacity);
+					releaseBytes(estimateSize(messageGroup));
+					messageGroupRemoved(messageGroup);
 				}
 			}
 			finally {
@@ -337,6 +439,15 @@ public class SimpleMessageStore extends AbstractMessageGroupStore
 		}
 	}
 
+	/**
+	 * Invoked, while holding the group lock, after a group has been removed.
+	 * @param group the removed group.
+	 * @since 5.1
+	 */
+	void messageGroupRemoved(MessageGroup group) {
+		// no-op
+	}
+
 	@Override
 	public void removeMessagesFromGroup(Object groupId, Collection<Message<?>> messages) {
 		Lock lock = this.lockRegistry.obtain(groupId);
@@ -349,12 +460,15 @@ public class SimpleMessageStore extends AbstractMessageGroupStore
 				UpperBound upperBound = this.groupToUpperBound.get(groupId);
 				Assert.state(upperBound != null, "'upperBound' must not be null.");
 				boolean modified = false;
+				long removedBytes = 0;
 				for (Message<?> messageToRemove : messages) {
 					if (group.remove(messageToRemove)) {
 						upperBound.release();
+						removedBytes += estimateSize(messageToRemove);
 						modified = true;
 					}
 				}
+				releaseBytes(removedBytes);
 				if (modified) {
 					group.setLastModified(System.currentTimeMillis());
 				}
@@ -369,6 +483,90 @@ public class SimpleMessageStore extends AbstractMessageGroupStore
 		}
 	}
 
+	/**
+	 * Return a live view of the messages stored outside of any group.
+	 * @return the messages.
+	 * @since 5.1
+	 */
+	Collection<Message<?>> getIndividualMessages() {
+		return this.idToMessage.values();
+	}
+
+	/**
+	 * Register a group with its complete state, replacing any existing group with the
+	 * same id; used when the store is restored from persistent storage.
+	 * @param group the group.
+	 * @since 5.1
+	 */
+	void restoreMessageGroup(MessageGroup group) {
+		Object groupId = group.getGroupId();
+		if (this.groupCapacity > 0 && group.size() > this.groupCapacity) {
+			throw new MessagingException(getClass().getSimpleName() +
+					" was out of capacity (" + this.groupCapacity + ") for group '" + groupId +
+					"', try constructing it with a larger capacity.");
+		}
+		if (!acquireBytes(estimateSize(group.getMessages()), 0)) {
+			throw outOfByteCapacity();
+		}
+		this.isUsed = true;
+		UpperBound upperBound = new UpperBound(this.groupCapacity);
+		for (int i = 0; i < group.size(); i++) {
+			upperBound.tryAcquire(-1);
+		}
+		this.groupToUpperBound.put(groupId, upperBound);
+		this.groupIdToMessageGroup.put(groupId, group);
+	}
+
+	/**
+	 * Estimate the size of a message, if a byte capacity is configured.
+	 * @param message the message.
+	 * @return the estimated size, or 0.
+	 * @since 5.1
+	 */
+	long estimateSize(Message<?> message) {
+		return this.byteUpperBound != null ? this.messageSizeEstimator.estimateSize(message) : 0;
+	}
+
+	/**
+	 * Estimate the total size of the messages in a group held by this store, if a byte
+	 * capacity is configured.
+	 * @param group the group.
+	 * @return the estimated size, or 0.
+	 * @since 5.1
+	 */
+	long estimateSize(MessageGroup group) {
+		return estimateSize(group.getMessages());
+	}
+
+	private long estimateSize(Collection<Message<?>> messages) {
+		long size = 0;
+		if (this.byteUpperBound != null) {
+			for (Message<?> message : messages) {
+				size += this.messageSizeEstimator.estimateSize(message);
+			}
+		}
+		return size;
+	}
+
+	private boolean acquireBytes(long bytes, long timeout) {
+		ByteUpperBound byteUpperBound = this.byteUpperBound;
+		return byteUpperBound == null || byteUpperBound.tryAcquire(bytes, timeout);
+	}
+
+	private void releaseBytes(long bytes) {
+		ByteUpperBound byteUpperBound = this.byteUpperBound;
+		if (byteUpperBound != null && bytes > 0) {
+			byteUpperBound.release(bytes);
+		}
+	}
+
+	private MessagingException outOfByteCapacity() {
+		return new MessagingException(getClass().getSimpleName()
+				+ " was out of byte capacity ("
+				+ this.byteUpperBound.getCapacity()
+				+ "), try setting a larger byte capacity.");
+	}
+
 	@Override
 	public Iterator<MessageGroup> iterator() {
 		return new HashSet<MessageGroup>(this.groupIdToMessageGroup.values()).iterator();
@@ -459,6 +657,7 @@ public class SimpleMessageStore extends AbstractMessageGroupStore
 				MessageGroup group = this.groupIdToMessageGroup.get(groupId);
 				Assert.notNull(group, "MessageGroup for groupId '" + groupId + "' " +
 						"can not be located while attempting to complete the MessageGroup");
+				releaseBytes(estimateSize(group));
 				group.clear();
 				group.setLastModified(System.currentTimeMillis());
 				UpperBound upperBound = this.groupToUpperBound.get(groupId);
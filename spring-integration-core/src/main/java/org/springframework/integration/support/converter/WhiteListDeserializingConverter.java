@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -20,6 +20,7 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectStreamClass;
+import java.io.ObjectStreamConstants;
 import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.Set;
@@ -57,6 +58,8 @@ public class WhiteListDeserializingConverter implements Converter<byte[], Object
 
 	private final Set<String> whiteListPatterns = new LinkedHashSet<String>();
 
+	private final boolean javaSerializationFallback;
+
 
 	/**
 	 * Create a {@code WhiteListDeserializingConverter} with default
@@ -82,8 +85,23 @@ public class WhiteListDeserializingConverter implements Converter<byte[], Object
 	 * @param deserializer the deserializer to use.
 	 */
 	public WhiteListDeserializingConverter(Deserializer<Object> deserializer) {
+		this(deserializer, false);
+	}
+
+	/**
+	 * Create a {@code WhiteListDeserializingConverter} that delegates to the provided
+	 * {@link Deserializer}, except for data written with Java serialization, which is
+	 * deserialized (subject to the white list) with an {@link java.io.ObjectInputStream}
+	 * when {@code javaSerializationFallback} is true. Use it to read data that was
+	 * stored with Java serialization before switching to another format.
+	 * @param deserializer the deserializer to use.
+	 * @param javaSerializationFallback true to deserialize Java serialized data.
+	 * @since 5.1
+	 */
+	public WhiteListDeserializingConverter(Deserializer<Object> deserializer, boolean javaSerializationFallback) {
 		Assert.notNull(deserializer, "Deserializer must not be null");
 		this.deserializer = deserializer;
+		this.javaSerializationFallback = javaSerializationFallback;
 		if (deserializer instanceof DefaultDeserializer) {
 			ClassLoader classLoader = null;
 			try {
@@ -127,7 +145,7 @@ public class WhiteListDeserializingConverter implements Converter<byte[], Object
 	public Object convert(byte[] source) {
 		ByteArrayInputStream byteStream = new ByteArrayInputStream(source);
 		try {
-			if (this.usingDefaultDeserializer) {
+			if (this.usingDefaultDeserializer || (this.javaSerializationFallback && isJavaSerialized(source))) {
 				return deserialize(byteStream);
 			}
 			else {
@@ -141,6 +159,11 @@ public class WhiteListDeserializingConverter implements Converter<byte[], Object
 		}
 	}
 
+	private static boolean isJavaSerialized(byte[] source) {
+		return source.length > 1
+				&& (((source[0] & 0xFF) << 8) | (source[1] & 0xFF)) == (ObjectStreamConstants.STREAM_MAGIC & 0xFFFF);
+	}
+
 	protected Object deserialize(ByteArrayInputStream inputStream) throws IOException {
 		try {
 			ObjectInputStream objectInputStream = new ConfigurableObjectInputStream(inputStream,
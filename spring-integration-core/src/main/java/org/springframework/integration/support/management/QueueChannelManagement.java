@@ -1,5 +1,5 @@
 /*
- * Copyright 2015-2016 the original author or authors.
+ * Copyright 2015-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -32,4 +32,26 @@ public interface QueueChannelManagement extends PollableChannelManagement {
 	@ManagedMetric(metricType = MetricType.GAUGE, displayName = "QueueChannel Remaining Capacity")
 	int getRemainingCapacity();
 
+	/**
+	 * Return the estimated total size of the queued messages, when a byte capacity
+	 * is configured.
+	 * @return the size in bytes, or 0 if not tracked.
+	 * @since 5.1
+	 */
+	@ManagedMetric(metricType = MetricType.GAUGE, displayName = "QueueChannel Queue Bytes")
+	default long getQueueBytes() {
+		return 0;
+	}
+
+	/**
+	 * Return the number of bytes that can be queued without waiting, when a byte
+	 * capacity is configured.
+	 * @return the size in bytes, or {@link Long#MAX_VALUE} if not bounded.
+	 * @since 5.1
+	 */
+	@ManagedMetric(metricType = MetricType.GAUGE, displayName = "QueueChannel Remaining Byte Capacity")
+	default long getRemainingByteCapacity() {
+		return Long.MAX_VALUE;
+	}
+
 }
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.support.ratelimit;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A lock-free {@link RateLimiter} keeping the buckets in memory; the limits
+ * apply to this JVM only.
+ * <p>
+ * The bucket of a key whose refill time is in the past is full, so it is equivalent to
+ * no bucket at all; such idle keys are evicted every 1000 acquisitions, so that the
+ * memory used is bounded by the number of keys active within the capacity of their limit.
+ *
+ * @since 5.1
+ */
+public class DefaultRateLimiter implements RateLimiter {
+
+	private static final int EVICTION_INTERVAL = 1000;
+
+	private static final long EVICTED = Long.MAX_VALUE;
+
+	private final ConcurrentMap<String, AtomicLong> refillTimes = new ConcurrentHashMap<>();
+
+	private final AtomicInteger acquisitions = new AtomicInteger();
+
+	@Override
+	public long tryAcquire(String key, RateLimit limit, int permits) {
+		if (this.acquisitions.incrementAndGet() % EVICTION_INTERVAL == 0) {
+			evictIdleKeys();
+		}
+		AtomicLong refillTime = this.refillTimes.computeIfAbsent(key, k -> new AtomicLong(Long.MIN_VALUE));
+		while (true) {
+			long current = refillTime.get();
+			if (current == EVICTED) {
+				refillTime = this.refillTimes.computeIfAbsent(key, k -> new AtomicLong(Long.MIN_VALUE));
+				continue;
+			}
+			long now = now();
+			long next = limit.refillTimeAfter(current, now, permits);
+			long wait = limit.waitMillis(next, now);
+			if (wait > 0) {
+				return wait;
+			}
+			if (refillTime.compareAndSet(current, next)) {
+				return 0;
+			}
+		}
+	}
+
+	/**
+	 * Remove the keys whose bucket is full again (the refill time is in the past).
+	 * Called automatically; can also be called periodically when the keys are
+	 * acquired rarely.
+	 */
+	public void evictIdleKeys() {
+		long now = now();
+		for (Map.Entry<String, AtomicLong> entry : this.refillTimes.entrySet()) {
+			AtomicLong refillTime = entry.getValue();
+			long current = refillTime.get();
+			// mark the bucket first, so that a concurrent acquisition retries with a new one
+			if (current < now && refillTime.compareAndSet(current, EVICTED)) {
+				this.refillTimes.remove(entry.getKey(), refillTime);
+			}
+		}
+	}
+
+	/**
+	 * Return the number of keys with a bucket in memory.
+	 * @return the number of keys.
+	 */
+	public int getKeyCount() {
+		return this.refillTimes.size();
+	}
+
+	private static long now() {
+		return System.nanoTime() / 1000;
+	}
+
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.support.ratelimit;
+
+import java.time.Duration;
+
+import org.springframework.util.Assert;
+
+/**
+ * A token bucket limit: {@code permits} per {@code period}, with a bucket capacity of
+ * {@code burst} permits.
+ * <p>
+ * {@link RateLimiter}s track a bucket as its <em>refill time</em> - the time at which
+ * the bucket is full again; each permit acquired moves it forward by the
+ * {@link #getIntervalMicros() interval} and a permit can be acquired as long as the
+ * refill time does not move more than the {@link #getCapacityMicros() capacity} into
+ * the future.
+ *
+ * @since 5.1
+ */
+public final class RateLimit {
+
+	private final long permits;
+
+	private final Duration period;
+
+	private final long burst;
+
+	private final long intervalMicros;
+
+	/**
+	 * Construct a limit of {@code permits} per {@code period}, allowing all the
+	 * permits of a period to be acquired at once.
+	 * @param permits the number of permits per period.
+	 * @param period the period.
+	 */
+	public RateLimit(long permits, Duration period) {
+		this(permits, period, permits);
+	}
+
+	/**
+	 * Construct a limit of {@code permits} per {@code period}, allowing up to
+	 * {@code burst} permits to be acquired at once.
+	 * @param permits the number of permits per period.
+	 * @param period the period.
+	 * @param burst the bucket capacity.
+	 */
+	public RateLimit(long permits, Duration period, long burst) {
+		Assert.isTrue(permits > 0, "'permits' must be greater than 0");
+		Assert.notNull(period, "'period' must not be null");
+		Assert.isTrue(burst > 0, "'burst' must be greater than 0");
+		long periodMicros = period.toNanos() / 1000;
+		Assert.isTrue(periodMicros >= permits, "at most one permit per microsecond is supported");
+		this.permits = permits;
+		this.period = period;
+		this.burst = burst;
+		this.intervalMicros = periodMicros / permits;
+	}
+
+	public long getPermits() {
+		return this.permits;
+	}
+
+	public Duration getPeriod() {
+		return this.period;
+	}
+
+	public long getBurst() {
+		return this.burst;
+	}
+
+	/**
+	 * Return the time in microseconds it takes to replenish one permit.
+	 * @return the interval.
+	 */
+	public long getIntervalMicros() {
+		return this.intervalMicros;
+	}
+
+	/**
+	 * Return the time in microseconds it takes to replenish the whole bucket.
+	 * @return the capacity.
+	 */
+	public long getCapacityMicros() {
+		return this.intervalMicros * this.burst;
+	}
+
+	/**
+	 * Compute the refill time of a bucket after acquiring permits.
+	 * @param refillTime the current refill time of the bucket, in microseconds.
+	 * @param now the current time, in microseconds.
+	 * @param permitsToAcquire the number of permits to acquire.
+	 * @return the new refill time; if it is more than the {@link #getCapacityMicros()
+	 * capacity} after {@code now}, the permits cannot be acquired yet.
+	 */
+	public long refillTimeAfter(long refillTime, long now, int permitsToAcquire) {
+		return Math.max(refillTime, now) + this.intervalMicros * permitsToAcquire;
+	}
+
+	/**
+	 * Return the time in milliseconds to wait before the permits whose acquisition would
+	 * result in the provided refill time can be acquired.
+	 * @param newRefillTime the refill time after acquiring the permits.
+	 * @param now the current time, in microseconds.
+	 * @return the time to wait, or 0 if the permits can be acquired now.
+	 * @see #refillTimeAfter(long, long, int)
+	 */
+	public long waitMillis(long newRefillTime, long now) {
+		long excess = newRefillTime - now - getCapacityMicros();
+		return excess > 0 ? (excess + 999) / 1000 : 0;
+	}
+
+	@Override
+	public String toString() {
+		return this.permits + " per " + this.period + " (burst " + this.burst + ")";
+	}
+
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.support.ratelimit;
+
+/**
+ * Strategy for acquiring permits from token buckets identified by a key.
+ * Implementations backed by a shared store allow the limit to be applied across
+ * a cluster.
+ *
+ * @since 5.1
+ */
+@FunctionalInterface
+public interface RateLimiter {
+
+	/**
+	 * Try to acquire permits from the bucket of the key, without waiting.
+	 * @param key the key identifying the bucket.
+	 * @param limit the limit of the bucket.
+	 * @param permits the number of permits to acquire.
+	 * @return 0 if the permits were acquired; otherwise the time in milliseconds
+	 * to wait before they may be available.
+	 */
+	long tryAcquire(String key, RateLimit limit, int permits);
+
+}
@@ -0,0 +1,4 @@
+/**
+ * Provides classes related to limiting the rate of calls.
+ */
+package org.springframework.integration.support.ratelimit;
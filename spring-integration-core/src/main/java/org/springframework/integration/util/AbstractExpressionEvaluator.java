@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2016 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,6 +16,11 @@
 
 package org.springframework.integration.util;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
@@ -27,6 +32,10 @@ import org.springframework.core.convert.ConversionService;
 import org.springframework.expression.EvaluationException;
 import org.springframework.expression.Expression;
 import org.springframework.expression.ExpressionParser;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelEvaluationException;
+import org.springframework.expression.spel.SpelMessage;
+import org.springframework.expression.spel.standard.SpelExpression;
 import org.springframework.expression.spel.standard.SpelExpressionParser;
 import org.springframework.expression.spel.support.StandardEvaluationContext;
 import org.springframework.integration.expression.ExpressionUtils;
@@ -51,6 +60,17 @@ public abstract class AbstractExpressionEvaluator implements BeanFactoryAware, I
 
 	protected static final ExpressionParser EXPRESSION_PARSER = new SpelExpressionParser();
 
+	/**
+	 * The number of interpreted evaluations before compiling an expression in
+	 * {@link SpelCompilerMode#MIXED} mode.
+	 */
+	private static final int MIXED_COMPILE_THRESHOLD = 100;
+
+	/**
+	 * The number of failed compilations after which an expression is no longer compiled.
+	 */
+	private static final int MAX_COMPILE_ATTEMPTS = 100;
+
 	private final BeanFactoryTypeConverter typeConverter = new BeanFactoryTypeConverter();
 
 	private volatile StandardEvaluationContext evaluationContext;
@@ -59,6 +79,12 @@ public abstract class AbstractExpressionEvaluator implements BeanFactoryAware, I
 
 	private volatile MessageBuilderFactory messageBuilderFactory = new DefaultMessageBuilderFactory();
 
+	private final Map<Expression, CompilableExpression> compilableExpressions = new ConcurrentHashMap<>();
+
+	private volatile SpelCompilerMode compilerMode;
+
+	private volatile boolean compilerModeExplicitlySet;
+
 	/**
 	 * Specify a BeanFactory in order to enable resolution via <code>@beanName</code> in the expression.
 	 */
@@ -67,6 +93,9 @@ public abstract class AbstractExpressionEvaluator implements BeanFactoryAware, I
 		if (beanFactory != null) {
 			this.beanFactory = beanFactory;
 			this.typeConverter.setBeanFactory(beanFactory);
+			if (!this.compilerModeExplicitlySet) {
+				this.compilerMode = ExpressionUtils.getSpelCompilerMode(beanFactory);
+			}
 			if (this.evaluationContext != null && this.evaluationContext.getBeanResolver() == null) {
 				this.evaluationContext.setBeanResolver(new BeanFactoryResolver(beanFactory));
 			}
@@ -83,6 +112,42 @@ public abstract class AbstractExpressionEvaluator implements BeanFactoryAware, I
 		}
 	}
 
+	/**
+	 * Set the {@link SpelCompilerMode} for the evaluated expressions, overriding the
+	 * {@code spring.integration.spel.compilerMode} integration property.
+	 * With {@link SpelCompilerMode#OFF} the expressions are evaluated as parsed.
+	 * Otherwise, each {@link SpelExpression} is compiled in place with
+	 * {@link SpelExpression#compileExpression()}, after its first interpreted evaluation
+	 * ({@link SpelCompilerMode#IMMEDIATE}) or after 100 of them
+	 * ({@link SpelCompilerMode#MIXED}). When an evaluation of the compiled code fails,
+	 * its exception is propagated, without evaluating the expression again, and the
+	 * expression reverts to interpreted mode; it is compiled again later only in
+	 * {@link SpelCompilerMode#MIXED} mode.
+	 * @param compilerMode the compiler mode.
+	 * @since 5.1
+	 */
+	public void setCompilerMode(SpelCompilerMode compilerMode) {
+		this.compilerMode = compilerMode;
+		this.compilerModeExplicitlySet = true;
+		this.compilableExpressions.values().forEach(CompilableExpression::revert);
+		this.compilableExpressions.clear();
+	}
+
+	/**
+	 * Return the compile status for each expression evaluated with a
+	 * {@link SpelCompilerMode} other than {@link SpelCompilerMode#OFF}:
+	 * {@code true} when the expression currently runs as compiled bytecode.
+	 * @return the map of expression strings to compile status.
+	 * @since 5.1
+	 */
+	public Map<String, Boolean> getExpressionCompileStatus() {
+		Map<String, Boolean> status = new LinkedHashMap<>();
+		for (CompilableExpression expression : this.compilableExpressions.values()) {
+			status.put(expression.expression.getExpressionString(), expression.compiled);
+		}
+		return Collections.unmodifiableMap(status);
+	}
+
 	protected MessageBuilderFactory getMessageBuilderFactory() {
 		return this.messageBuilderFactory;
 	}
@@ -158,15 +223,134 @@ public abstract class AbstractExpressionEvaluator implements BeanFactoryAware, I
 	}
 
 	protected <T> T evaluateExpression(Expression expression, Class<T> expectedType) {
-		return expression.getValue(this.getEvaluationContext(), expectedType);
+		CompilableExpression compilable = compilable(expression);
+		try {
+			T value = expression.getValue(this.getEvaluationContext(), expectedType);
+			if (compilable != null) {
+				compilable.evaluated();
+			}
+			return value;
+		}
+		catch (SpelEvaluationException e) {
+			if (compilable != null) {
+				compilable.failed(e);
+			}
+			throw e;
+		}
 	}
 
 	protected Object evaluateExpression(Expression expression) {
-		return expression.getValue(this.getEvaluationContext());
+		return evaluateExpression(expression, (Class<?>) null);
 	}
 
 	protected <T> T evaluateExpression(Expression expression, Object input, Class<T> expectedType) {
-		return expression.getValue(this.getEvaluationContext(), input, expectedType);
+		CompilableExpression compilable = compilable(expression);
+		try {
+			T value = expression.getValue(this.getEvaluationContext(), input, expectedType);
+			if (compilable != null) {
+				compilable.evaluated();
+			}
+			return value;
+		}
+		catch (SpelEvaluationException e) {
+			if (compilable != null) {
+				compilable.failed(e);
+			}
+			throw e;
+		}
+	}
+
+	private CompilableExpression compilable(Expression expression) {
+		SpelCompilerMode compilerMode = this.compilerMode;
+		if (compilerMode == null || SpelCompilerMode.OFF.equals(compilerMode)
+				|| !(expression instanceof SpelExpression)) {
+			return null;
+		}
+		CompilableExpression compilable = this.compilableExpressions.get(expression);
+		if (compilable == null) {
+			compilable = new CompilableExpression((SpelExpression) expression, compilerMode);
+			CompilableExpression existing = this.compilableExpressions.putIfAbsent(expression, compilable);
+			if (existing != null) {
+				compilable = existing;
+			}
+		}
+		return compilable;
+	}
+
+	/**
+	 * The compilation state of an expression evaluated with a {@link SpelCompilerMode}
+	 * other than {@link SpelCompilerMode#OFF}.
+	 */
+	private final class CompilableExpression {
+
+		private final SpelExpression expression;
+
+		private final SpelCompilerMode compilerMode;
+
+		private volatile boolean compiled;
+
+		private volatile boolean interpretedOnly;
+
+		private int interpretedCount;
+
+		private int failedAttempts;
+
+		CompilableExpression(SpelExpression expression, SpelCompilerMode compilerMode) {
+			this.expression = expression;
+			this.compilerMode = compilerMode;
+		}
+
+		/**
+		 * Compile the expression once it has been evaluated (interpreted) enough times
+		 * for the types of its nodes to be known.
+		 */
+		void evaluated() {
+			if (this.compiled || this.interpretedOnly) {
+				return;
+			}
+			synchronized (this) {
+				if (this.compiled || this.interpretedOnly) {
+					return;
+				}
+				int threshold = SpelCompilerMode.MIXED.equals(this.compilerMode) ? MIXED_COMPILE_THRESHOLD : 1;
+				if (++this.interpretedCount < threshold) {
+					return;
+				}
+				if (this.expression.compileExpression()) {
+					this.compiled = true;
+				}
+				else if (++this.failedAttempts >= MAX_COMPILE_ATTEMPTS) {
+					this.interpretedOnly = true;
+				}
+			}
+		}
+
+		/**
+		 * Revert to interpreted mode when the compiled code fails; the exception is
+		 * re-thrown by the caller, since evaluating again could repeat side effects.
+		 */
+		void failed(SpelEvaluationException e) {
+			if (!this.compiled || !SpelMessage.EXCEPTION_RUNNING_COMPILED_EXPRESSION.equals(e.getMessageCode())) {
+				return;
+			}
+			synchronized (this) {
+				revert();
+				this.interpretedCount = 0;
+				this.interpretedOnly = SpelCompilerMode.IMMEDIATE.equals(this.compilerMode);
+			}
+			if (AbstractExpressionEvaluator.this.logger.isWarnEnabled()) {
+				AbstractExpressionEvaluator.this.logger.warn("Compiled expression '"
+						+ this.expression.getExpressionString() + "' failed; reverting to interpreted mode", e);
+			}
+		}
+
+		synchronized void revert() {
+			if (this.compiled) {
+				this.expression.revertToInterpreted();
+				this.compiled = false;
+			}
+		}
+
 	}
 
 }
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.util.Assert;
+
+/**
+ * The byte-based counterpart of {@link UpperBound}: bounds the total size of the
+ * objects held, as estimated for example by a {@link MessageSizeEstimator}.
+ * <p>
+ * An object larger than the capacity is admitted when nothing else is held, so that
+ * it cannot block forever.
+ *
+ * @since 5.1
+ */
+public final class ByteUpperBound {
+
+	private final long capacity;
+
+	private final ReentrantLock lock = new ReentrantLock(true);
+
+	private final Condition released = this.lock.newCondition();
+
+	private volatile long used;
+
+	/**
+	 * Create a ByteUpperBound with the given capacity. If the given capacity is less
+	 * than 1, the bound is infinite, but the bytes held are still counted.
+	 * @param capacity The capacity in bytes.
+	 */
+	public ByteUpperBound(long capacity) {
+		this(capacity, 0);
+	}
+
+	/**
+	 * Create a ByteUpperBound with the given capacity, already holding the given number
+	 * of bytes, for example for objects held before the bound was created.
+	 * @param capacity The capacity in bytes.
+	 * @param used The number of bytes initially held.
+	 */
+	public ByteUpperBound(long capacity, long used) {
+		Assert.isTrue(used >= 0, "'used' cannot be negative");
+		this.capacity = capacity;
+		this.used = used;
+	}
+
+	/**
+	 * @return the capacity in bytes, or a value less than 1 if unbounded.
+	 */
+	public long getCapacity() {
+		return this.capacity;
+	}
+
+	/**
+	 * @return the number of bytes currently held.
+	 */
+	public long getUsedBytes() {
+		return this.used;
+	}
+
+	/**
+	 * @return the number of bytes that can be acquired without waiting.
+	 */
+	public long getAvailableBytes() {
+		if (this.capacity <= 0) {
+			return Long.MAX_VALUE;
+		}
+		return Math.max(0, this.capacity - this.used);
+	}
+
+	/**
+	 * Acquire the given number of bytes and return true if it succeeds within the given
+	 * timeout. If the timeout is less than 0, it will block indefinitely.
+	 * @param bytes The number of bytes.
+	 * @param timeoutInMilliseconds The time to wait until the bytes are available.
+	 * @return true if the bytes are acquired.
+	 */
+	public boolean tryAcquire(long bytes, long timeoutInMilliseconds) {
+		Assert.isTrue(bytes >= 0, "'bytes' cannot be negative");
+		try {
+			this.lock.lockInterruptibly();
+			try {
+				if (this.capacity > 0) {
+					long nanos = TimeUnit.MILLISECONDS.toNanos(timeoutInMilliseconds);
+					while (this.used > 0 && this.used + bytes > this.capacity) {
+						if (timeoutInMilliseconds < 0) {
+							this.released.await();
+						}
+						else if (nanos <= 0) {
+							return false;
+						}
+						else {
+							nanos = this.released.awaitNanos(nanos);
+						}
+					}
+				}
+				this.used += bytes;
+				return true;
+			}
+			finally {
+				this.lock.unlock();
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	/**
+	 * Release the given number of bytes. This is typically not done by the same Thread
+	 * that acquired them, but by the thread that picked up the object. The bytes held
+	 * never go below 0, in case the size of an object is estimated differently on
+	 * release; callers must only release bytes they acquired or declared as initially held.
+	 * @param bytes The number of bytes to release.
+	 */
+	public void release(long bytes) {
+		this.lock.lock();
+		try {
+			this.used = Math.max(0, this.used - bytes);
+			this.released.signalAll();
+		}
+		finally {
+			this.lock.unlock();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return super.toString() + "[Used = " + this.used + ", Capacity = " +
+				(this.capacity > 0 ? this.capacity : "UNLIMITED") + "]";
+	}
+
+}
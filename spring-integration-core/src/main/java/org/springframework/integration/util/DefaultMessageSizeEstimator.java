@@ -0,0 +1,73 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.util;
+
+import java.nio.ByteBuffer;
+
+import org.springframework.messaging.Message;
+import org.springframework.util.Assert;
+
+/**
+ * A {@link MessageSizeEstimator} based on the payload: the length of a {@code byte[]},
+ * the remaining bytes of a {@link ByteBuffer}, two bytes per character of a
+ * {@link CharSequence} and a configurable size for other payloads.
+ *
+ * @since 5.1
+ */
+public class DefaultMessageSizeEstimator implements MessageSizeEstimator {
+
+	/**
+	 * The default size of payloads of other types.
+	 */
+	public static final long DEFAULT_OBJECT_SIZE = 1024;
+
+	private final long objectSize;
+
+	/**
+	 * Construct an instance with the {@link #DEFAULT_OBJECT_SIZE}.
+	 */
+	public DefaultMessageSizeEstimator() {
+		this(DEFAULT_OBJECT_SIZE);
+	}
+
+	/**
+	 * Construct an instance with the provided size for payloads of other types.
+	 * @param objectSize the size in bytes.
+	 */
+	public DefaultMessageSizeEstimator(long objectSize) {
+		Assert.isTrue(objectSize >= 0, "'objectSize' cannot be negative");
+		this.objectSize = objectSize;
+	}
+
+	@Override
+	public long estimateSize(Message<?> message) {
+		Object payload = message.getPayload();
+		if (payload instanceof byte[]) {
+			return ((byte[]) payload).length;
+		}
+		else if (payload instanceof ByteBuffer) {
+			return ((ByteBuffer) payload).remaining();
+		}
+		else if (payload instanceof CharSequence) {
+			return 2L * ((CharSequence) payload).length();
+		}
+		else {
+			return this.objectSize;
+		}
+	}
+
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.util;
+
+import org.springframework.messaging.Message;
+
+/**
+ * Strategy to estimate the memory occupied by a message, for byte-based capacity
+ * limits. Implementations must return the same size for the same message each time,
+ * since the size is estimated again when the message is removed.
+ *
+ * @since 5.1
+ *
+ * @see DefaultMessageSizeEstimator
+ * @see ByteUpperBound
+ */
+@FunctionalInterface
+public interface MessageSizeEstimator {
+
+	/**
+	 * Estimate the size of the message.
+	 * @param message the message.
+	 * @return the size in bytes.
+	 */
+	long estimateSize(Message<?> message);
+
+}
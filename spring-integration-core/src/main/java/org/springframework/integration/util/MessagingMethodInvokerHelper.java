@@ -236,6 +236,8 @@ public class MessagingMethodInvokerHelper<T> extends AbstractExpressionEvaluator
 
 		this.annotationType = annotationType;
 		this.canProcessMessageList = canProcessMessageList;
+		// the compiler mode for method invocation expressions is governed by @UseSpelInvoker
+		setCompilerMode(SpelCompilerMode.OFF);
 		Assert.notNull(method, "method must not be null");
 		this.method = method;
 		this.requiresReply = expectedType != null;
@@ -350,6 +352,8 @@ public class MessagingMethodInvokerHelper<T> extends AbstractExpressionEvaluator
 		this.annotationType = annotationType;
 		this.methodName = methodName;
 		this.canProcessMessageList = canProcessMessageList;
+		// the compiler mode for method invocation expressions is governed by @UseSpelInvoker
+		setCompilerMode(SpelCompilerMode.OFF);
 		Assert.notNull(targetObject, "targetObject must not be null");
 		if (expectedType != null) {
 			this.expectedType = TypeDescriptor.valueOf(expectedType);
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.aggregator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.store.SimpleMessageStore;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.GenericMessage;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+/**
+ * @since 5.1
+ */
+public class WindowingMessageHandlerTests {
+
+	private final QueueChannel output = new QueueChannel();
+
+	private final ThreadPoolTaskScheduler taskScheduler = new ThreadPoolTaskScheduler();
+
+	private WindowingMessageHandler handler;
+
+	@Before
+	public void setup() {
+		this.taskScheduler.setPoolSize(2);
+		this.taskScheduler.initialize();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		if (this.handler != null) {
+			this.handler.destroy();
+		}
+		this.taskScheduler.destroy();
+	}
+
+	@Test
+	public void testTumblingCountWindow() {
+		createHandler(WindowDefinition.tumblingCount(2));
+		send(1, 2, 3, 4, 5);
+		assertEquals(Arrays.asList(1, 2), this.output.receive(0).getPayload());
+		assertEquals(Arrays.asList(3, 4), this.output.receive(0).getPayload());
+		assertNull(this.output.receive(0));
+		assertEquals(1, this.handler.getBufferedMessageCount());
+	}
+
+	@Test
+	public void testSlidingCountWindow() {
+		createHandler(WindowDefinition.slidingCount(3, 1));
+		send(1, 2, 3, 4);
+		assertEquals(Collections.singletonList(1), this.output.receive(0).getPayload());
+		assertEquals(Arrays.asList(1, 2), this.output.receive(0).getPayload());
+		assertEquals(Arrays.asList(1, 2, 3), this.output.receive(0).getPayload());
+		assertEquals(Arrays.asList(2, 3, 4), this.output.receive(0).getPayload());
+		assertEquals(3, this.handler.getBufferedMessageCount());
+	}
+
+	@Test
+	public void testKeyedCountWindows() {
+		createHandler(WindowDefinition.tumblingCount(2));
+		this.handler.setCorrelationStrategy(m -> (Integer) m.getPayload() % 2);
+		send(1, 2, 3, 4);
+		assertEquals(Arrays.asList(1, 3), this.output.receive(0).getPayload());
+		assertEquals(Arrays.asList(2, 4), this.output.receive(0).getPayload());
+		assertEquals(0, this.handler.getOpenWindowCount());
+	}
+
+	@Test
+	public void testTumblingTimeWindow() {
+		createHandler(WindowDefinition.tumbling(100));
+		send(1, 2, 3);
+		Message<?> window = this.output.receive(10000);
+		assertNotNull(window);
+		long start = window.getHeaders().get(WindowingMessageHandler.WINDOW_START, Long.class);
+		long end = window.getHeaders().get(WindowingMessageHandler.WINDOW_END, Long.class);
+		assertEquals(0, start % 100);
+		assertEquals(start + 100, end);
+		// the messages may straddle a boundary
+		if (window.getPayload().equals(Arrays.asList(1, 2, 3))) {
+			assertNull(this.output.receive(200));
+		}
+		else {
+			assertNotNull(this.output.receive(10000));
+		}
+		assertEquals(0, this.handler.getOpenWindowCount());
+	}
+
+	@Test
+	public void testSlidingTimeWindow() {
+		createHandler(WindowDefinition.sliding(200, 100));
+		send(1);
+		Message<?> first = this.output.receive(10000);
+		assertNotNull(first);
+		Message<?> second = this.output.receive(10000);
+		assertNotNull(second);
+		assertEquals(Collections.singletonList(1), first.getPayload());
+		assertEquals(Collections.singletonList(1), second.getPayload());
+		assertEquals(100L, second.getHeaders().get(WindowingMessageHandler.WINDOW_START, Long.class)
+				- first.getHeaders().get(WindowingMessageHandler.WINDOW_START, Long.class));
+		assertNull(this.output.receive(300));
+		assertEquals(0, this.handler.getBufferedMessageCount());
+	}
+
+	@Test
+	public void testSessionWindow() throws Exception {
+		createHandler(WindowDefinition.session(200));
+		send(1);
+		Thread.sleep(50);
+		send(2);
+		Message<?> window = this.output.receive(10000);
+		assertNotNull(window);
+		assertEquals(Arrays.asList(1, 2), window.getPayload());
+		assertNull(this.output.receive(300));
+		assertEquals(0, this.handler.getOpenWindowCount());
+	}
+
+	@Test
+	public void testCheckpointAndRecovery() {
+		SimpleMessageStore store = new SimpleMessageStore();
+		createHandler(WindowDefinition.tumblingCount(2), store);
+		send(1, 2, 3);
+		assertEquals(Arrays.asList(1, 2), this.output.receive(0).getPayload());
+		assertEquals(1, store.messageGroupSize("window"));
+
+		createHandler(WindowDefinition.tumblingCount(2), store);
+		send(4);
+		assertEquals(Arrays.asList(3, 4), this.output.receive(0).getPayload());
+		assertEquals(0, store.messageGroupSize("window"));
+	}
+
+	@Test
+	public void testFlushOnStop() {
+		createHandler(WindowDefinition.tumbling(60000));
+		this.handler.setFlushOnStop(true);
+		send(1, 2);
+		assertNull(this.output.receive(0));
+		this.handler.stop();
+		assertEquals(Arrays.asList(1, 2), this.output.receive(0).getPayload());
+	}
+
+	private void createHandler(WindowDefinition window) {
+		createHandler(window, null);
+	}
+
+	private void createHandler(WindowDefinition window, SimpleMessageStore store) {
+		this.handler = new WindowingMessageHandler(window);
+		this.handler.setOutputChannel(this.output);
+		this.handler.setTaskScheduler(this.taskScheduler);
+		this.handler.setBeanFactory(mock(BeanFactory.class));
+		if (store != null) {
+			this.handler.setMessageStore(store);
+			this.handler.setCheckpointGroupId("window");
+		}
+		this.handler.afterPropertiesSet();
+		this.handler.start();
+		assertTrue(this.handler.isRunning());
+	}
+
+	private void send(int... payloads) {
+		for (int payload : payloads) {
+			this.handler.handleMessage(new GenericMessage<>(payload));
+		}
+	}
+
+}
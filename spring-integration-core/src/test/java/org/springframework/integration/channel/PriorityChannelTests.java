@@ -291,6 +291,24 @@ public class PriorityChannelTests {
 	}
 
 
+	@Test
+	public void testByteCapacity() {
+		PriorityChannel channel = new PriorityChannel(10);
+		channel.setByteCapacity(10);
+		assertTrue(channel.send(MessageBuilder.withPayload("abc").setPriority(1).build(), 0));
+		assertTrue(channel.send(MessageBuilder.withPayload("d").setPriority(2).build(), 0));
+		assertEquals(8, channel.getQueueBytes());
+		assertFalse(channel.send(MessageBuilder.withPayload("ef").setPriority(3).build(), 0));
+		assertEquals(8, channel.getRemainingCapacity());
+		assertEquals("d", channel.receive(0).getPayload());
+		assertEquals(6, channel.getQueueBytes());
+		assertTrue(channel.send(MessageBuilder.withPayload("ef").setPriority(3).build(), 0));
+		assertEquals("ef", channel.receive(0).getPayload());
+		assertEquals("abc", channel.receive(0).getPayload());
+		assertEquals(0, channel.getQueueBytes());
+		assertEquals(10, channel.getRemainingCapacity());
+	}
+
 	public static class StringPayloadComparator implements Comparator<Message<?>> {
 
 		@Override
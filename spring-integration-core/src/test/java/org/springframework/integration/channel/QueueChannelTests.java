@@ -33,6 +33,8 @@ import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
 import org.springframework.integration.selector.UnexpiredMessageSelector;
+import org.springframework.integration.store.MessageGroupQueue;
+import org.springframework.integration.store.SimpleMessageStore;
 import org.springframework.integration.support.MessageBuilder;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.support.GenericMessage;
@@ -224,6 +226,59 @@ public class QueueChannelTests {
 		assertTrue(channel.send(new GenericMessage<String>("roomAvailable"), 0));
 	}
 
+	@Test
+	public void testByteCapacity() throws Exception {
+		QueueChannel channel = new QueueChannel();
+		channel.setByteCapacity(100);
+		assertTrue(channel.send(new GenericMessage<>(new byte[60]), 0));
+		assertEquals(60, channel.getQueueBytes());
+		assertEquals(40, channel.getRemainingByteCapacity());
+		assertTrue(channel.send(new GenericMessage<>(new byte[40]), 0));
+		assertFalse(channel.send(new GenericMessage<>(new byte[1]), 10));
+
+		ExecutorService exec = Executors.newSingleThreadExecutor();
+		CountDownLatch sent = new CountDownLatch(1);
+		exec.execute(() -> {
+			if (channel.send(new GenericMessage<>(new byte[50]), 10000)) {
+				sent.countDown();
+			}
+		});
+		assertFalse(sent.await(100, TimeUnit.MILLISECONDS));
+		assertEquals(60, ((byte[]) channel.receive(0).getPayload()).length);
+		assertTrue(sent.await(10, TimeUnit.SECONDS));
+		assertEquals(90, channel.getQueueBytes());
+		exec.shutdownNow();
+
+		channel.clear();
+		assertEquals(0, channel.getQueueBytes());
+		assertTrue(channel.send(new GenericMessage<>(new byte[500]), 0));
+		assertFalse(channel.send(new GenericMessage<>("a"), 0));
+		channel.purge(m -> false);
+		assertEquals(0, channel.getQueueBytes());
+
+		channel.setMessageSizeEstimator(m -> 10);
+		for (int i = 0; i < 10; i++) {
+			assertTrue(channel.send(new GenericMessage<>("foo"), 0));
+		}
+		assertFalse(channel.send(new GenericMessage<>("foo"), 0));
+		assertEquals(10, channel.getQueueSize());
+	}
+
+	@Test
+	public void testByteCapacityWithStoredMessages() {
+		SimpleMessageStore store = new SimpleMessageStore();
+		store.addMessagesToGroup("queue", new GenericMessage<>(new byte[60]), new GenericMessage<>(new byte[30]));
+		QueueChannel channel = new QueueChannel(new MessageGroupQueue(store, "queue"));
+		channel.setByteCapacity(100);
+		assertEquals(90, channel.getQueueBytes());
+		assertFalse(channel.send(new GenericMessage<>(new byte[20]), 0));
+		assertEquals(60, ((byte[]) channel.receive(0).getPayload()).length);
+		assertEquals(30, channel.getQueueBytes());
+		assertTrue(channel.send(new GenericMessage<>(new byte[20]), 0));
+		channel.clear();
+		assertEquals(0, channel.getQueueBytes());
+	}
+
 	@Rule
 	public final TemporaryFolder tempFolder = new TemporaryFolder();
 
@@ -17,20 +17,27 @@
 package org.springframework.integration.channel.reactive;
 
 import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.isOneOf;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.reactivestreams.Subscription;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
@@ -38,10 +45,12 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.integration.annotation.ServiceActivator;
 import org.springframework.integration.channel.FluxMessageChannel;
 import org.springframework.integration.channel.MessageChannelReactiveUtils;
+import org.springframework.integration.channel.OverflowPolicy;
 import org.springframework.integration.channel.QueueChannel;
 import org.springframework.integration.config.EnableIntegration;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageDeliveryException;
 import org.springframework.messaging.MessagingException;
 import org.springframework.messaging.PollableChannel;
 import org.springframework.messaging.support.GenericMessage;
@@ -49,6 +58,8 @@ import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.junit4.SpringRunner;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.BaseSubscriber;
 import reactor.core.publisher.Flux;
 
 /**
@@ -106,6 +117,127 @@ public class FluxMessageChannelTests {
 		assertThat(results, contains("FOO", "BAR"));
 	}
 
+	@Test
+	public void testDropOverflowPolicy() {
+		FluxMessageChannel channel = new FluxMessageChannel(2, OverflowPolicy.DROP);
+		channel.setPrefetch(1);
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		channel.registerMeterRegistry(registry);
+		PayloadSubscriber subscriber = new PayloadSubscriber();
+		channel.subscribe(subscriber);
+		sendAll(channel, 5);
+		assertEquals(2, channel.getDroppedCount());
+		assertEquals(2, channel.getBufferDepth());
+		assertEquals(2.0, registry.get("spring.integration.channel.buffer.depth").gauge().value(), 0.0);
+		assertEquals(2.0, registry.get("spring.integration.channel.dropped").gauge().value(), 0.0);
+		subscriber.request(5);
+		assertEquals(Arrays.asList(0, 1, 2), subscriber.payloads);
+		assertEquals(0, channel.getBufferDepth());
+	}
+
+	@Test
+	public void testLatestOverflowPolicy() {
+		FluxMessageChannel channel = new FluxMessageChannel(2, OverflowPolicy.LATEST);
+		channel.setPrefetch(1);
+		PayloadSubscriber subscriber = new PayloadSubscriber();
+		channel.subscribe(subscriber);
+		sendAll(channel, 5);
+		assertEquals(2, channel.getDroppedCount());
+		subscriber.request(5);
+		assertEquals(Arrays.asList(0, 3, 4), subscriber.payloads);
+	}
+
+	@Test
+	public void testErrorOverflowPolicy() {
+		FluxMessageChannel channel = new FluxMessageChannel(2, OverflowPolicy.ERROR);
+		channel.setPrefetch(1);
+		PayloadSubscriber subscriber = new PayloadSubscriber();
+		channel.subscribe(subscriber);
+		sendAll(channel, 3);
+		try {
+			channel.send(new GenericMessage<>(3));
+			fail("MessageDeliveryException expected");
+		}
+		catch (MessageDeliveryException e) {
+			assertThat(e.getMessage(), containsString("is full"));
+		}
+		assertEquals(2, channel.getBufferDepth());
+		subscriber.request(1);
+		assertTrue(channel.send(new GenericMessage<>(4)));
+		subscriber.request(5);
+		assertEquals(Arrays.asList(0, 1, 2, 4), subscriber.payloads);
+	}
+
+	@Test
+	public void testBlockOverflowPolicy() throws InterruptedException {
+		FluxMessageChannel channel = new FluxMessageChannel(2, OverflowPolicy.BLOCK);
+		channel.setPrefetch(1);
+		PayloadSubscriber subscriber = new PayloadSubscriber();
+		channel.subscribe(subscriber);
+		sendAll(channel, 3);
+		assertFalse(channel.send(new GenericMessage<>(3), 10));
+		CountDownLatch sent = new CountDownLatch(1);
+		new Thread(() -> {
+			if (channel.send(new GenericMessage<>(4), 10000)) {
+				sent.countDown();
+			}
+		}).start();
+		assertFalse(sent.await(100, TimeUnit.MILLISECONDS));
+		subscriber.request(1);
+		assertTrue(sent.await(10, TimeUnit.SECONDS));
+		subscriber.request(5);
+		assertEquals(Arrays.asList(0, 1, 2, 4), subscriber.payloads);
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testBatches() throws InterruptedException {
+		FluxMessageChannel channel = new FluxMessageChannel();
+		channel.setBatchSize(3);
+		channel.setBatchTimeout(Duration.ofMillis(100));
+		channel.setLimitRate(10);
+		QueueChannel batches = new QueueChannel();
+		Flux.from(channel)
+				.subscribe(batches::send);
+		sendAll(channel, 4);
+		Message<?> batch = batches.receive(10000);
+		assertNotNull(batch);
+		assertEquals(Arrays.asList(0, 1, 2),
+				((List<Message<?>>) batch.getPayload()).stream()
+						.map(Message::getPayload)
+						.collect(Collectors.toList()));
+		batch = batches.receive(10000);
+		assertNotNull(batch);
+		assertEquals(1, ((List<?>) batch.getPayload()).size());
+		assertEquals(0, channel.getBufferDepth());
+	}
+
+	private static void sendAll(MessageChannel channel, int count) {
+		for (int i = 0; i < count; i++) {
+			assertTrue(channel.send(new GenericMessage<>(i)));
+		}
+	}
+
+	private static class PayloadSubscriber extends BaseSubscriber<Message<?>> {
+
+		private final List<Object> payloads = new ArrayList<>();
+
+		PayloadSubscriber() {
+			super();
+		}
+
+		@Override
+		protected void hookOnSubscribe(Subscription subscription) {
+			// no initial demand
+		}
+
+		@Override
+		protected void hookOnNext(Message<?> value) {
+			this.payloads.add(value.getPayload());
+		}
+
+	}
+
 	@Configuration
 	@EnableIntegration
 	public static class TestConfiguration {
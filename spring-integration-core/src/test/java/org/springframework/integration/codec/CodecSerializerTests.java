@@ -0,0 +1,109 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.codec;
+
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.Serializable;
+
+import org.junit.Test;
+
+import org.springframework.core.serializer.support.SerializationFailedException;
+import org.springframework.core.serializer.support.SerializingConverter;
+import org.springframework.integration.codec.kryo.MessageCodec;
+import org.springframework.integration.codec.kryo.PojoCodec;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.integration.support.converter.WhiteListDeserializingConverter;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.GenericMessage;
+
+/**
+ * @since 5.1
+ */
+public class CodecSerializerTests {
+
+	private final CodecSerializer codecSerializer = new CodecSerializer(new MessageCodec());
+
+	@Test
+	public void testMessageRoundTrip() {
+		Message<?> message = MessageBuilder.withPayload("foo")
+				.setHeader("bar", 42)
+				.setCorrelationId("baz")
+				.build();
+		byte[] bytes = new SerializingConverter(this.codecSerializer).convert(message);
+		assertEquals(CodecSerializer.MAGIC >> 8, bytes[0] & 0xFF);
+		assertEquals(CodecSerializer.MAGIC & 0xFF, bytes[1] & 0xFF);
+		assertEquals(CodecSerializer.FORMAT_VERSION, bytes[2]);
+		assertThat(bytes.length, lessThan(new SerializingConverter().convert(message).length));
+
+		Object decoded = new WhiteListDeserializingConverter(this.codecSerializer).convert(bytes);
+		assertThat(decoded, instanceOf(GenericMessage.class));
+		assertEquals(message, decoded);
+	}
+
+	@Test
+	public void testArbitraryType() {
+		CodecSerializer serializer = new CodecSerializer(new PojoCodec());
+		Foo foo = new Foo("foo");
+		byte[] bytes = new SerializingConverter(serializer).convert(foo);
+		Object decoded = new WhiteListDeserializingConverter(serializer).convert(bytes);
+		assertEquals("foo", ((Foo) decoded).value);
+	}
+
+	@Test
+	public void testJavaSerializationFallback() {
+		Message<?> message = new GenericMessage<>(new Foo("foo"));
+		byte[] javaSerialized = new SerializingConverter().convert(message);
+
+		WhiteListDeserializingConverter deserializer =
+				new WhiteListDeserializingConverter(this.codecSerializer, true);
+		assertEquals("foo", ((Foo) ((Message<?>) deserializer.convert(javaSerialized)).getPayload()).value);
+
+		deserializer.addWhiteListPatterns("java.util.*", "org.springframework.messaging.*");
+		try {
+			deserializer.convert(javaSerialized);
+			fail("SecurityException expected");
+		}
+		catch (SerializationFailedException e) {
+			assertThat(e.getCause(), instanceOf(SecurityException.class));
+		}
+
+		try {
+			new WhiteListDeserializingConverter(this.codecSerializer).convert(javaSerialized);
+			fail("SerializationFailedException expected");
+		}
+		catch (SerializationFailedException e) {
+			// no fallback by default
+		}
+	}
+
+	@SuppressWarnings("serial")
+	private static class Foo implements Serializable {
+
+		private final String value;
+
+		Foo(String value) {
+			this.value = value;
+		}
+
+	}
+
+}
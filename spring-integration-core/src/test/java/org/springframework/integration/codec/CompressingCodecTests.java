@@ -0,0 +1,120 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.codec;
+
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+import org.springframework.core.serializer.support.SerializingConverter;
+import org.springframework.integration.codec.kryo.MessageCodec;
+import org.springframework.integration.support.converter.WhiteListDeserializingConverter;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.GenericMessage;
+import org.springframework.util.StringUtils;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * @since 5.1
+ */
+public class CompressingCodecTests {
+
+	private final MessageCodec messageCodec = new MessageCodec();
+
+	private final CompressingCodec codec = new CompressingCodec(this.messageCodec, 256);
+
+	@Test
+	public void testCompression() throws Exception {
+		Message<String> small = new GenericMessage<>("foo");
+		Message<String> large = new GenericMessage<>(
+				StringUtils.collectionToCommaDelimitedString(Collections.nCopies(200, "<foo>bar</foo>")));
+
+		byte[] smallBytes = this.codec.encode(small);
+		assertEquals(this.messageCodec.encode(small).length + 3, smallBytes.length);
+		assertEquals(small, this.codec.decode(smallBytes, GenericMessage.class));
+
+		byte[] largeBytes = this.codec.encode(large);
+		assertThat(largeBytes.length, lessThan(this.messageCodec.encode(large).length / 5));
+		assertEquals(large, this.codec.decode(largeBytes, GenericMessage.class));
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		this.codec.encode(large, bos);
+		assertEquals(large, this.codec.decode(new ByteArrayInputStream(bos.toByteArray()), GenericMessage.class));
+
+		assertEquals(2, this.codec.getCompressedCount());
+		assertEquals(1, this.codec.getUncompressedCount());
+		assertThat(this.codec.getCompressionRatio(), lessThan(0.2));
+		assertThat(this.codec.getCompressionTime(TimeUnit.NANOSECONDS), greaterThan(0L));
+		assertThat(this.codec.getDecompressionTime(TimeUnit.NANOSECONDS), greaterThan(0L));
+
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		this.codec.registerMeterRegistry(registry, "test");
+		assertEquals(this.codec.getCompressionRatio(),
+				registry.find("spring.integration.codec.compression.ratio").tag("name", "test").gauge().value(), 0.0);
+		assertEquals(2, registry.find("spring.integration.codec.decompression").functionTimer().count(), 0.0);
+		assertEquals(2, registry.find("spring.integration.codec.compressed").functionCounter().count(), 0.0);
+		assertEquals(1, registry.find("spring.integration.codec.uncompressed").functionCounter().count(), 0.0);
+	}
+
+	@Test
+	public void testDecodeDoesNotCloseStream() throws Exception {
+		Message<String> large = new GenericMessage<>(
+				StringUtils.collectionToCommaDelimitedString(Collections.nCopies(200, "<foo>bar</foo>")));
+		AtomicBoolean closed = new AtomicBoolean();
+		InputStream inputStream = new ByteArrayInputStream(this.codec.encode(large)) {
+
+			@Override
+			public void close() throws IOException {
+				closed.set(true);
+				super.close();
+			}
+
+		};
+		assertEquals(large, this.codec.decode(inputStream, GenericMessage.class));
+		assertFalse(closed.get());
+	}
+
+	@Test
+	public void testLegacyData() throws Exception {
+		Message<String> message = new GenericMessage<>("foo");
+		byte[] legacy = this.messageCodec.encode(message);
+		assertEquals(message, this.codec.decode(legacy, GenericMessage.class));
+		assertEquals(message, this.codec.decode(new ByteArrayInputStream(legacy), GenericMessage.class));
+	}
+
+	@Test
+	public void testWithCodecSerializer() {
+		CodecSerializer serializer = new CodecSerializer(this.codec);
+		Message<String> message = new GenericMessage<>(StringUtils.collectionToCommaDelimitedString(
+				Collections.nCopies(100, "foo")));
+		byte[] bytes = new SerializingConverter(serializer).convert(message);
+		assertEquals(message, new WhiteListDeserializingConverter(serializer).convert(bytes));
+	}
+
+}
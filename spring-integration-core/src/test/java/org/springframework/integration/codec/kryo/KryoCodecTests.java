@@ -1,5 +1,5 @@
 /*
- * Copyright 2015-2016 the original author or authors.
+ * Copyright 2015-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,18 +16,32 @@
 
 package org.springframework.integration.codec.kryo;
 
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.lessThan;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
 
 import org.junit.Test;
 
+import org.springframework.integration.history.MessageHistory;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.integration.support.MutableMessage;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.GenericMessage;
+
 /**
  * @author David Turanski
  * @since 4.2
@@ -124,6 +138,75 @@ public class KryoCodecTests {
 		assertEquals(2, foo2.get("two"));
 	}
 
+	@Test
+	public void testCompactMessageHeaders() throws IOException {
+		MessageCodec codec = new MessageCodec();
+		MessageCodec compactCodec = new MessageCodec(new HeaderNameDictionary("tenant"));
+		Message<?> message = MessageBuilder.withPayload("foo")
+				.setCorrelationId(UUID.randomUUID())
+				.setSequenceNumber(1)
+				.setSequenceSize(2)
+				.setExpirationDate(System.currentTimeMillis())
+				.setHeader("tenant", "bar")
+				.setHeader("flag", true)
+				.setHeader(MessageHistory.HEADER_NAME, new HashMap<>(Collections.singletonMap("baz", "qux")))
+				.build();
+
+		byte[] bytes = compactCodec.encode(message);
+		assertThat(bytes.length, lessThan(codec.encode(message).length));
+		Message<?> decoded = compactCodec.decode(bytes, GenericMessage.class);
+		assertEquals(message, decoded);
+		assertEquals(message.getHeaders().getId(), decoded.getHeaders().getId());
+		assertEquals(message.getHeaders().getTimestamp(), decoded.getHeaders().getTimestamp());
+
+		MutableMessage<?> mutableMessage = new MutableMessage<>("foo", message.getHeaders());
+		Message<?> decodedMutable = compactCodec.decode(compactCodec.encode(mutableMessage), MutableMessage.class);
+		assertThat(decodedMutable, instanceOf(MutableMessage.class));
+		assertEquals(message.getHeaders(), decodedMutable.getHeaders());
+	}
+
+	@Test
+	public void testThreadLocalInstances() throws IOException {
+		MessageCodec codec = new MessageCodec();
+		codec.setUseThreadLocalInstances(true);
+		Message<?> message = MessageBuilder.withPayload("foo").setHeader("bar", 42).build();
+		for (int i = 0; i < 2; i++) {
+			assertEquals(message, codec.decode(codec.encode(message), GenericMessage.class));
+			ByteArrayOutputStream bos = new ByteArrayOutputStream();
+			codec.encode(message, bos);
+			assertEquals(message, codec.decode(new ByteArrayInputStream(bos.toByteArray()), GenericMessage.class));
+		}
+	}
+
+	@Test
+	public void testByteBuffers() throws IOException {
+		PojoCodec pooled = new PojoCodec();
+		PojoCodec threadLocal = new PojoCodec();
+		threadLocal.setUseThreadLocalInstances(true);
+		for (PojoCodec codec : new PojoCodec[] { pooled, threadLocal }) {
+			for (ByteBuffer buffer : new ByteBuffer[] { ByteBuffer.allocate(64), ByteBuffer.allocateDirect(64) }) {
+				buffer.position(3);
+				codec.encode("foo", buffer);
+				codec.encode(new SomeClassWithNoDefaultConstructors("bar", 42), buffer);
+				int end = buffer.position();
+				buffer.flip().position(3);
+				assertEquals("foo", codec.decode(buffer, String.class));
+				assertEquals(new SomeClassWithNoDefaultConstructors("bar", 42),
+						codec.decode(buffer, SomeClassWithNoDefaultConstructors.class));
+				assertEquals(end, buffer.position());
+
+				buffer.clear().position(60);
+				try {
+					codec.encode("a string that does not fit", buffer);
+					fail("IOException expected");
+				}
+				catch (IOException e) {
+					assertEquals(60, buffer.position());
+				}
+			}
+		}
+	}
+
 	static class SomeClassWithNoDefaultConstructors {
 
 		private String val1;
@@ -20,6 +20,7 @@ import static org.hamcrest.Matchers.instanceOf;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
@@ -92,6 +93,13 @@ public class CorrelationHandlerTests {
 	@Autowired
 	private PollableChannel releaseChannel;
 
+	@Autowired
+	@Qualifier("windowFlow.input")
+	private MessageChannel windowFlowInput;
+
+	@Autowired
+	private PollableChannel windowResults;
+
 	@Test
 	public void testSplitterResequencer() {
 		QueueChannel replyChannel = new QueueChannel();
@@ -151,6 +159,20 @@ public class CorrelationHandlerTests {
 		assertEquals("bar", out.getPayload());
 	}
 
+	@Test
+	public void testTumblingCountWindow() {
+		for (int i = 0; i < 5; i++) {
+			this.windowFlowInput.send(new GenericMessage<>(i));
+		}
+		Message<?> out = this.windowResults.receive(10000);
+		assertNotNull(out);
+		assertEquals(Arrays.asList(0, 2), out.getPayload());
+		out = this.windowResults.receive(10000);
+		assertNotNull(out);
+		assertEquals(Arrays.asList(1, 3), out.getPayload());
+		assertNull(this.windowResults.receive(0));
+	}
+
 	@Configuration
 	@EnableIntegration
 	public static class ContextConfiguration {
@@ -242,6 +264,13 @@ public class CorrelationHandlerTests {
 					.channel(MessageChannels.queue("barrierResults"));
 		}
 
+		@Bean
+		public IntegrationFlow windowFlow() {
+			return f -> f
+					.tumblingCountWindow(2, w -> w.correlationExpression("payload % 2"))
+					.channel(MessageChannels.queue("windowResults"));
+		}
+
 		@Bean
 		@DependsOn("barrierFlow")
 		public IntegrationFlow releaseBarrierFlow(MessageTriggerAction barrierTriggerAction) {
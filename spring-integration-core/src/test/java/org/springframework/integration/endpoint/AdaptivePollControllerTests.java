@@ -0,0 +1,235 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.endpoint;
+
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.integration.channel.NullChannel;
+import org.springframework.messaging.support.GenericMessage;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+/**
+ * @since 5.1
+ */
+public class AdaptivePollControllerTests {
+
+	@Test
+	public void testBackOffAndRampUp() {
+		AdaptivePollController controller = new AdaptivePollController(10, 100);
+		controller.setMaxConcurrentPolls(3);
+		assertEquals(10, controller.getPeriod());
+		assertEquals(1, controller.acquirePolls());
+		assertEquals(0, controller.acquirePolls());
+		controller.pollCompleted(0, false);
+		assertEquals(20, controller.getPeriod());
+		controller.acquirePolls();
+		controller.pollCompleted(0, false);
+		controller.acquirePolls();
+		controller.pollCompleted(0, false);
+		controller.acquirePolls();
+		controller.pollCompleted(0, false);
+		assertEquals(100, controller.getPeriod());
+
+		controller.acquirePolls();
+		controller.pollCompleted(1, true);
+		assertEquals(10, controller.getPeriod());
+		assertEquals(2, controller.getConcurrency());
+		assertEquals(2, controller.acquirePolls());
+		controller.pollCompleted(1, true);
+		controller.pollCompleted(1, true);
+		assertEquals(3, controller.getConcurrency());
+		controller.acquirePolls();
+		controller.pollCompleted(5, true);
+		assertEquals(3, controller.getConcurrency());
+		assertEquals(2, controller.getInFlightPolls());
+		controller.pollCompleted(0, false);
+		assertEquals(1, controller.getConcurrency());
+		assertEquals(20, controller.getPeriod());
+		controller.releasePoll();
+
+		assertEquals(0, controller.getInFlightPolls());
+		assertEquals(9, controller.getPollCount());
+		assertEquals(5, controller.getEmptyPollCount());
+		assertEquals(8, controller.getMessageCount());
+		assertEquals(0, controller.getFailedPollCount());
+	}
+
+	@Test
+	public void testFailedPollIsNotEmpty() {
+		AdaptivePollController controller = new AdaptivePollController(10, 100);
+		controller.setMaxConcurrentPolls(2);
+		controller.acquirePolls();
+		controller.pollCompleted(1, true);
+		assertEquals(2, controller.getConcurrency());
+		assertEquals(2, controller.acquirePolls());
+		controller.pollFailed();
+		assertEquals(20, controller.getPeriod());
+		assertEquals(1, controller.getConcurrency());
+		controller.pollCompleted(1, false);
+		assertEquals(0, controller.getInFlightPolls());
+		assertEquals(2, controller.getPollCount());
+		assertEquals(0, controller.getEmptyPollCount());
+		assertEquals(1, controller.getFailedPollCount());
+	}
+
+	@Test
+	public void testSynchronousExecutorKeepsSinglePoll() throws Exception {
+		AtomicInteger polls = new AtomicInteger();
+		SourcePollingChannelAdapter adapter = new SourcePollingChannelAdapter();
+		adapter.setSource(() -> {
+			if (polls.incrementAndGet() % 3 == 0) {
+				throw new IllegalStateException("test");
+			}
+			return new GenericMessage<>("foo");
+		});
+		adapter.setOutputChannel(new NullChannel());
+		AdaptivePollController controller = new AdaptivePollController(0, 10);
+		controller.setMaxConcurrentPolls(4);
+		adapter.setTrigger(controller);
+		adapter.setMaxMessagesPerPoll(1);
+		adapter.setErrorHandler(t -> { });
+		ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+		scheduler.afterPropertiesSet();
+		adapter.setTaskScheduler(scheduler);
+		adapter.setBeanFactory(mock(BeanFactory.class));
+		adapter.afterPropertiesSet();
+		adapter.start();
+		int n = 0;
+		while (controller.getFailedPollCount() < 3 && n++ < 100) {
+			Thread.sleep(100);
+		}
+		adapter.stop();
+		scheduler.destroy();
+		assertThat(controller.getFailedPollCount(), greaterThan(2L));
+		assertThat(controller.getPollCount(), greaterThan(5L));
+		assertEquals(0, controller.getEmptyPollCount());
+		assertEquals(1, controller.getConcurrency());
+	}
+
+	@Test
+	public void testFailedPollReleasedOnceWithRethrowingErrorHandler() throws Exception {
+		SourcePollingChannelAdapter adapter = new SourcePollingChannelAdapter();
+		adapter.setSource(() -> {
+			throw new IllegalStateException("test");
+		});
+		adapter.setOutputChannel(new NullChannel());
+		AdaptivePollController controller = new AdaptivePollController(0, 1);
+		adapter.setTrigger(controller);
+		adapter.setErrorHandler(t -> {
+			throw new RuntimeException(t);
+		});
+		ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+		scheduler.afterPropertiesSet();
+		adapter.setTaskScheduler(scheduler);
+		adapter.setBeanFactory(mock(BeanFactory.class));
+		adapter.afterPropertiesSet();
+		adapter.start();
+		int n = 0;
+		while (controller.getFailedPollCount() < 20 && n++ < 100) {
+			Thread.sleep(100);
+		}
+		assertThat(controller.getInFlightPolls(), lessThanOrEqualTo(1));
+		adapter.stop();
+		scheduler.destroy();
+		assertThat(controller.getFailedPollCount(), greaterThanOrEqualTo(20L));
+		assertEquals(0, controller.getInFlightPolls());
+		assertEquals(1, controller.acquirePolls());
+	}
+
+	@Test
+	public void testAdaptivePolling() throws Exception {
+		AtomicBoolean available = new AtomicBoolean();
+		AtomicInteger active = new AtomicInteger();
+		AtomicInteger maxActive = new AtomicInteger();
+		CountDownLatch idleLatch = new CountDownLatch(5);
+		SourcePollingChannelAdapter adapter = new SourcePollingChannelAdapter();
+		adapter.setSource(() -> {
+			if (!available.get()) {
+				idleLatch.countDown();
+				return null;
+			}
+			maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+			try {
+				Thread.sleep(20);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			active.decrementAndGet();
+			return new GenericMessage<>("foo");
+		});
+		adapter.setOutputChannel(new NullChannel());
+		AdaptivePollController controller = new AdaptivePollController(0, 50);
+		controller.setMaxConcurrentPolls(4);
+		adapter.setTrigger(controller);
+		adapter.setMaxMessagesPerPoll(1);
+		ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+		executor.setCorePoolSize(4);
+		executor.afterPropertiesSet();
+		adapter.setTaskExecutor(executor);
+		ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+		scheduler.afterPropertiesSet();
+		adapter.setTaskScheduler(scheduler);
+		adapter.setBeanFactory(mock(BeanFactory.class));
+		adapter.afterPropertiesSet();
+		adapter.start();
+
+		assertTrue(idleLatch.await(10, TimeUnit.SECONDS));
+		assertThat(controller.getPeriod(), greaterThan(0L));
+		assertEquals(1, controller.getConcurrency());
+
+		available.set(true);
+		int n = 0;
+		while (controller.getConcurrency() < 4 && n++ < 100) {
+			Thread.sleep(100);
+		}
+		assertEquals(4, controller.getConcurrency());
+		assertEquals(0, controller.getPeriod());
+		n = 0;
+		while (maxActive.get() < 2 && n++ < 100) {
+			Thread.sleep(100);
+		}
+		assertThat(maxActive.get(), greaterThan(1));
+
+		available.set(false);
+		n = 0;
+		while (controller.getPeriod() < 50 && n++ < 100) {
+			Thread.sleep(100);
+		}
+		assertEquals(50, controller.getPeriod());
+		assertEquals(1, controller.getConcurrency());
+		adapter.stop();
+		scheduler.destroy();
+		executor.destroy();
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -402,9 +402,9 @@ public class PseudoTransactionalMessageSourceTests {
 
 	protected void doPoll(SourcePollingChannelAdapter adapter) {
 		try {
-			Method method = AbstractPollingEndpoint.class.getDeclaredMethod("doPoll");
+			Method method = AbstractPollingEndpoint.class.getDeclaredMethod("doPoll", int.class);
 			method.setAccessible(true);
-			method.invoke(adapter);
+			method.invoke(adapter, 0);
 		}
 		catch (Exception e) {
 			fail("Failed to invoke doPoll(): " + e.toString());
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.endpoint;
+
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.integration.aop.AbstractMessageSourceAdvice;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.core.MessageSource;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.GenericMessage;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.scheduling.support.PeriodicTrigger;
+
+/**
+ * @since 5.1
+ */
+public class SourcePollingChannelAdapterConcurrencyTests {
+
+	private final ThreadPoolTaskScheduler taskScheduler = new ThreadPoolTaskScheduler();
+
+	@Before
+	public void init() {
+		this.taskScheduler.setPoolSize(5);
+		this.taskScheduler.afterPropertiesSet();
+	}
+
+	@After
+	public void tearDown() {
+		this.taskScheduler.destroy();
+	}
+
+	@Test
+	public void testConcurrentPollLoops() throws Exception {
+		CyclicBarrier barrier = new CyclicBarrier(3);
+		Set<String> threads = ConcurrentHashMap.newKeySet();
+		MessageSource<String> source = () -> {
+			threads.add(Thread.currentThread().getName());
+			try {
+				// all the consumers must be in a poll at the same time
+				barrier.await(10, TimeUnit.SECONDS);
+			}
+			catch (Exception e) {
+				return null;
+			}
+			return new GenericMessage<>("foo");
+		};
+		QueueChannel channel = new QueueChannel();
+		SourcePollingChannelAdapter adapter = createAdapter(source, channel, 3);
+		adapter.start();
+		for (int i = 0; i < 9; i++) {
+			assertTrue(channel.receive(10000) != null);
+		}
+		adapter.stop();
+		assertThat(threads.size(), greaterThan(2));
+		List<SourcePollingChannelAdapter.ConsumerMetrics> metrics = adapter.getConsumerMetrics();
+		assertEquals(3, metrics.size());
+		for (int i = 0; i < 3; i++) {
+			assertEquals(i, metrics.get(i).getConsumer());
+			assertThat(metrics.get(i).getMessageCount(), greaterThan(0L));
+		}
+	}
+
+	@Test
+	public void testPartitionedSource() throws Exception {
+		Set<Integer> remaining = Collections.synchronizedSet(new HashSet<>());
+		for (int i = 0; i < 30; i++) {
+			remaining.add(i);
+		}
+		AtomicInteger misrouted = new AtomicInteger();
+		CountDownLatch advised = new CountDownLatch(3);
+		ConcurrentMessageSource<Integer> source = (consumer, concurrency) -> {
+			if (concurrency != 3) {
+				misrouted.incrementAndGet();
+			}
+			synchronized (remaining) {
+				for (Integer id : remaining) {
+					if (id % concurrency == consumer) {
+						remaining.remove(id);
+						return new GenericMessage<>(id);
+					}
+				}
+			}
+			return null;
+		};
+		QueueChannel channel = new QueueChannel();
+		SourcePollingChannelAdapter adapter = createAdapter(source, channel, 3);
+		adapter.setAdviceChain(Collections.singletonList(new AbstractMessageSourceAdvice() {
+
+			@Override
+			public boolean beforeReceive(MessageSource<?> source) {
+				advised.countDown();
+				return true;
+			}
+
+			@Override
+			public Message<?> afterReceive(Message<?> result, MessageSource<?> source) {
+				return result;
+			}
+
+		}));
+		adapter.start();
+		for (int i = 0; i < 30; i++) {
+			assertTrue(channel.receive(10000) != null);
+		}
+		assertTrue(advised.await(10, TimeUnit.SECONDS));
+		adapter.stop();
+		assertTrue(remaining.isEmpty());
+		assertEquals(0, misrouted.get());
+		for (SourcePollingChannelAdapter.ConsumerMetrics metrics : adapter.getConsumerMetrics()) {
+			assertEquals(10, metrics.getMessageCount());
+			assertThat(metrics.getPollCount(), greaterThanOrEqualTo(10L));
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testConcurrencyCannotChangeWhileRunning() {
+		SourcePollingChannelAdapter adapter =
+				createAdapter(() -> null, new QueueChannel(), 2);
+		adapter.start();
+		try {
+			adapter.setConcurrency(3);
+		}
+		finally {
+			adapter.stop();
+		}
+	}
+
+	@Test
+	public void testReceiveMessageOverrideIsUsed() throws Exception {
+		AtomicInteger overridden = new AtomicInteger();
+		SourcePollingChannelAdapter adapter = new SourcePollingChannelAdapter() {
+
+			@Override
+			protected Message<?> receiveMessage() {
+				overridden.incrementAndGet();
+				return super.receiveMessage();
+			}
+
+		};
+		QueueChannel channel = new QueueChannel();
+		adapter.setSource(() -> new GenericMessage<>("foo"));
+		adapter.setOutputChannel(channel);
+		adapter.setConcurrency(2);
+		adapter.setTrigger(new PeriodicTrigger(10));
+		adapter.setMaxMessagesPerPoll(1);
+		adapter.setTaskScheduler(this.taskScheduler);
+		adapter.setBeanFactory(mock(BeanFactory.class));
+		adapter.afterPropertiesSet();
+		adapter.start();
+		for (int i = 0; i < 4; i++) {
+			assertTrue(channel.receive(10000) != null);
+		}
+		adapter.stop();
+		assertThat(overridden.get(), greaterThanOrEqualTo(4));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testConcurrencyWithAdaptivePollControllerIsRejected() {
+		SourcePollingChannelAdapter adapter =
+				createAdapter(() -> null, new QueueChannel(), 2);
+		adapter.setTrigger(new AdaptivePollController(10, 100));
+		adapter.start();
+	}
+
+	private SourcePollingChannelAdapter createAdapter(MessageSource<?> source, QueueChannel channel,
+			int concurrency) {
+
+		SourcePollingChannelAdapter adapter = new SourcePollingChannelAdapter();
+		adapter.setSource(source);
+		adapter.setOutputChannel(channel);
+		adapter.setConcurrency(concurrency);
+		adapter.setTrigger(new PeriodicTrigger(10));
+		adapter.setMaxMessagesPerPoll(1);
+		adapter.setTaskScheduler(this.taskScheduler);
+		adapter.setBeanFactory(mock(BeanFactory.class));
+		adapter.afterPropertiesSet();
+		return adapter;
+	}
+
+}
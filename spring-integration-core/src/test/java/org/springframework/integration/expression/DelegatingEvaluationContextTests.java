@@ -0,0 +1,62 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.expression;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Collections;
+
+import org.junit.Test;
+
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+
+/**
+ * @since 5.1
+ */
+public class DelegatingEvaluationContextTests {
+
+	private final SpelExpressionParser parser = new SpelExpressionParser();
+
+	@Test
+	public void testVariablesAndRootObject() throws Exception {
+		StandardEvaluationContext shared = ExpressionUtils.createStandardEvaluationContext();
+		shared.registerFunction("upper", String.class.getMethod("valueOf", Object.class));
+		shared.setVariable("shared", "baz");
+
+		EvaluationContext context = new DelegatingEvaluationContext(shared, Collections.singletonMap("foo", "bar"));
+		context.setVariable("var", 42);
+		assertEquals("bar", this.parser.parseExpression("foo").getValue(context));
+		assertEquals(42, this.parser.parseExpression("#var").getValue(context));
+		assertEquals("baz", this.parser.parseExpression("#shared").getValue(context));
+		assertEquals("42", this.parser.parseExpression("#upper(#var)").getValue(context));
+		assertSame(shared.getPropertyAccessors(), context.getPropertyAccessors());
+		assertSame(shared.getTypeConverter(), context.getTypeConverter());
+
+		context.setVariable("shared", "qux");
+		assertEquals("qux", this.parser.parseExpression("#shared").getValue(context));
+		assertEquals("baz", this.parser.parseExpression("#shared").getValue(shared));
+		assertNull(shared.lookupVariable("var"));
+
+		EvaluationContext noRoot = new DelegatingEvaluationContext(shared);
+		assertNull(this.parser.parseExpression("#root").getValue(noRoot));
+	}
+
+}
@@ -16,10 +16,20 @@
 
 package org.springframework.integration.expression;
 
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
 
@@ -28,11 +38,17 @@ import org.springframework.context.support.ConversionServiceFactoryBean;
 import org.springframework.context.support.GenericApplicationContext;
 import org.springframework.core.convert.support.DefaultConversionService;
 import org.springframework.expression.TypeConverter;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
 import org.springframework.expression.spel.support.StandardEvaluationContext;
 import org.springframework.integration.config.IntegrationEvaluationContextFactoryBean;
 import org.springframework.integration.context.IntegrationContextUtils;
+import org.springframework.integration.context.IntegrationProperties;
+import org.springframework.integration.handler.ExpressionEvaluatingMessageProcessor;
 import org.springframework.integration.support.utils.IntegrationUtils;
 import org.springframework.integration.test.util.TestUtils;
+import org.springframework.messaging.MessageHandlingException;
+import org.springframework.messaging.support.GenericMessage;
 
 /**
  * @author Gary Russell
@@ -98,4 +114,66 @@ public class ExpressionUtilsTests {
 		assertSame(DefaultConversionService.getSharedInstance(),
 				TestUtils.getPropertyValue(typeConverter, "conversionService"));
 	}
+
+	@Test
+	public void testGlobalCompilerModeWithFallback() throws Exception {
+		GenericApplicationContext context = new GenericApplicationContext();
+		Properties properties = new Properties();
+		properties.setProperty(IntegrationProperties.SPEL_COMPILER_MODE, "immediate");
+		context.getBeanFactory()
+				.registerSingleton(IntegrationContextUtils.INTEGRATION_GLOBAL_PROPERTIES_BEAN_NAME, properties);
+		context.refresh();
+		assertSame(SpelCompilerMode.IMMEDIATE, ExpressionUtils.getSpelCompilerMode(context));
+		ExpressionEvaluatingMessageProcessor<Integer> processor =
+				new ExpressionEvaluatingMessageProcessor<>(
+						new SpelExpressionParser().parseExpression("payload.count() + payload.value.length()"),
+						Integer.class);
+		processor.setBeanFactory(context);
+		processor.afterPropertiesSet();
+		AtomicInteger evaluations = new AtomicInteger();
+		assertEquals(Integer.valueOf(3), processor.processMessage(new GenericMessage<>(new Holder("foo", evaluations))));
+		assertEquals(Integer.valueOf(3), processor.processMessage(new GenericMessage<>(new Holder("foo", evaluations))));
+		Map<String, Boolean> status = processor.getExpressionCompileStatus();
+		assertEquals(1, status.size());
+		assertTrue(status.get("payload.count() + payload.value.length()"));
+		assertEquals(2, evaluations.get());
+		// the compiled code casts the value to String
+		try {
+			processor.processMessage(new GenericMessage<>(new Holder(new StringBuilder("bar"), evaluations)));
+			fail("Expected MessageHandlingException");
+		}
+		catch (MessageHandlingException e) {
+			assertThat(e.getCause(), instanceOf(ClassCastException.class));
+		}
+		// not evaluated again after the failure
+		assertEquals(3, evaluations.get());
+		assertFalse(processor.getExpressionCompileStatus().get("payload.count() + payload.value.length()"));
+		assertEquals(Integer.valueOf(4),
+				processor.processMessage(new GenericMessage<>(new Holder(new StringBuilder("buzz"), evaluations))));
+		assertFalse(processor.getExpressionCompileStatus().get("payload.count() + payload.value.length()"));
+		context.close();
+	}
+
+	public static class Holder {
+
+		private final Object value;
+
+		private final AtomicInteger evaluations;
+
+		Holder(Object value, AtomicInteger evaluations) {
+			this.value = value;
+			this.evaluations = evaluations;
+		}
+
+		public Object getValue() {
+			return this.value;
+		}
+
+		public int count() {
+			this.evaluations.incrementAndGet();
+			return 0;
+		}
+
+	}
+
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2016 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,13 +19,18 @@ package org.springframework.integration.gateway;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
 
 import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -40,8 +45,11 @@ import org.springframework.integration.channel.DirectChannel;
 import org.springframework.integration.channel.QueueChannel;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessagingException;
 import org.springframework.messaging.PollableChannel;
 import org.springframework.messaging.support.ChannelInterceptorAdapter;
+import org.springframework.messaging.support.ErrorMessage;
+import org.springframework.messaging.support.GenericMessage;
 import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.util.concurrent.ListenableFuture;
 import org.springframework.util.concurrent.ListenableFutureCallback;
@@ -114,8 +122,8 @@ public class AsyncGatewayTests {
 		proxyFactory.setBeanFactory(mock(BeanFactory.class));
 		proxyFactory.afterPropertiesSet();
 		TestEchoService service = (TestEchoService) proxyFactory.getObject();
-		ListenableFuture<Message<?>> f = service.returnMessageListenable("foo");
 		long start = System.currentTimeMillis();
+		ListenableFuture<Message<?>> f = service.returnMessageListenable("foo");
 		final AtomicReference<Message<?>> result = new AtomicReference<Message<?>>();
 		final CountDownLatch latch = new CountDownLatch(1);
 		f.addCallback(new ListenableFutureCallback<Message<?>>() {
@@ -300,6 +308,76 @@ public class AsyncGatewayTests {
 		assertEquals("foobar", result.get());
 	}
 
+	@Test
+	public void completableFutureWithoutBlockedExecutorThread() throws Exception {
+		QueueChannel requestChannel = new QueueChannel();
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		GatewayProxyFactoryBean proxyFactory = new GatewayProxyFactoryBean();
+		proxyFactory.setDefaultRequestChannel(requestChannel);
+		proxyFactory.setServiceInterface(TestEchoService.class);
+		proxyFactory.setAsyncExecutor(executor);
+		proxyFactory.setDefaultReplyTimeout(10000L);
+		proxyFactory.setBeanName("testGateway");
+		proxyFactory.setBeanFactory(mock(BeanFactory.class));
+		proxyFactory.afterPropertiesSet();
+		TestEchoService service = (TestEchoService) proxyFactory.getObject();
+		CompletableFuture<String> first = service.returnStringCompletable("foo");
+		CompletableFuture<String> second = service.returnStringCompletable("baz");
+		// both requests are sent by the single executor thread before any reply
+		Message<?> firstRequest = requestChannel.receive(10000);
+		Message<?> secondRequest = requestChannel.receive(10000);
+		assertNotNull(firstRequest);
+		assertNotNull(secondRequest);
+		((MessageChannel) secondRequest.getHeaders().getReplyChannel())
+				.send(new GenericMessage<>(secondRequest.getPayload() + "bar"));
+		((MessageChannel) firstRequest.getHeaders().getReplyChannel())
+				.send(new GenericMessage<>(firstRequest.getPayload() + "bar"));
+		assertEquals("foobar", first.get(10, TimeUnit.SECONDS));
+		assertEquals("bazbar", second.get(10, TimeUnit.SECONDS));
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void completableFutureWithReplyTimeout() throws Exception {
+		QueueChannel requestChannel = new QueueChannel();
+		GatewayProxyFactoryBean proxyFactory = new GatewayProxyFactoryBean();
+		proxyFactory.setDefaultRequestChannel(requestChannel);
+		proxyFactory.setServiceInterface(TestEchoService.class);
+		proxyFactory.setDefaultReplyTimeout(100L);
+		proxyFactory.setBeanName("testGateway");
+		proxyFactory.setBeanFactory(mock(BeanFactory.class));
+		proxyFactory.afterPropertiesSet();
+		TestEchoService service = (TestEchoService) proxyFactory.getObject();
+		CompletableFuture<String> f = service.returnStringCompletable("foo");
+		assertNull(f.get(10, TimeUnit.SECONDS));
+		assertNotNull(requestChannel.receive(0));
+	}
+
+	@Test
+	public void completableFutureWithErrorReply() throws Exception {
+		QueueChannel requestChannel = new QueueChannel();
+		GatewayProxyFactoryBean proxyFactory = new GatewayProxyFactoryBean();
+		proxyFactory.setDefaultRequestChannel(requestChannel);
+		proxyFactory.setServiceInterface(TestEchoService.class);
+		proxyFactory.setBeanName("testGateway");
+		proxyFactory.setBeanFactory(mock(BeanFactory.class));
+		proxyFactory.afterPropertiesSet();
+		TestEchoService service = (TestEchoService) proxyFactory.getObject();
+		CompletableFuture<String> f = service.returnStringCompletable("foo");
+		Message<?> request = requestChannel.receive(10000);
+		assertNotNull(request);
+		IllegalStateException error = new IllegalStateException("intentional");
+		((MessageChannel) request.getHeaders().getErrorChannel())
+				.send(new ErrorMessage(new MessagingException(request, error)));
+		try {
+			f.get(10, TimeUnit.SECONDS);
+			fail("Expected Exception");
+		}
+		catch (ExecutionException e) {
+			assertSame(error, e.getCause());
+		}
+	}
+
 	private static void startResponder(final PollableChannel requestChannel) {
 		new Thread(() -> {
 			Message<?> input = requestChannel.receive();
@@ -332,6 +410,8 @@ public class AsyncGatewayTests {
 
 		Future<Message<?>> returnMessage(String s);
 
+		CompletableFuture<String> returnStringCompletable(String s);
+
 		Future<?> returnSomething(String s);
 
 		ListenableFuture<Message<?>> returnMessageListenable(String s);
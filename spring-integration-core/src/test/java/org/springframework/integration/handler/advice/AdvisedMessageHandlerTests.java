@@ -33,14 +33,17 @@ import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.when;
 
 import java.lang.reflect.Method;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
@@ -59,12 +62,14 @@ import org.springframework.aop.support.AopUtils;
 import org.springframework.beans.DirectFieldAccessor;
 import org.springframework.beans.factory.BeanFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.integration.MessageTimeoutException;
 import org.springframework.integration.channel.QueueChannel;
 import org.springframework.integration.endpoint.PollingConsumer;
 import org.springframework.integration.filter.MessageFilter;
 import org.springframework.integration.handler.AbstractReplyProducingMessageHandler;
 import org.springframework.integration.handler.advice.ExpressionEvaluatingRequestHandlerAdvice.MessageHandlingExpressionEvaluatingAdviceException;
 import org.springframework.integration.message.AdviceMessage;
+import org.springframework.integration.support.ratelimit.RateLimit;
 import org.springframework.integration.test.util.TestUtils;
 import org.springframework.integration.util.ErrorHandlingTaskExecutor;
 import org.springframework.messaging.Message;
@@ -82,6 +87,7 @@ import org.springframework.scheduling.TaskScheduler;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 /**
  * @author Gary Russell
@@ -351,6 +357,270 @@ public class AdvisedMessageHandlerTests {
 
 	}
 
+	@Test
+	public void rateLimiterTests() throws Exception {
+		AtomicInteger calls = new AtomicInteger();
+		AbstractReplyProducingMessageHandler handler = new AbstractReplyProducingMessageHandler() {
+
+			@Override
+			protected Object handleRequestMessage(Message<?> requestMessage) {
+				calls.incrementAndGet();
+				return "bar";
+			}
+
+		};
+		handler.setBeanName("baz");
+		handler.setOutputChannel(new QueueChannel());
+		RateLimiterRequestHandlerAdvice advice =
+				new RateLimiterRequestHandlerAdvice(new RateLimit(2, Duration.ofSeconds(10)));
+		advice.setLimit("qux", new RateLimit(1, Duration.ofMillis(200)));
+		advice.setKeyFunction(m -> m.getPayload().equals("qux") ? "qux" : "default");
+		handler.setAdviceChain(Collections.singletonList(advice));
+		handler.setBeanFactory(mock(BeanFactory.class));
+		handler.afterPropertiesSet();
+
+		handler.handleMessage(new GenericMessage<>("foo"));
+		handler.handleMessage(new GenericMessage<>("foo"));
+		try {
+			handler.handleMessage(new GenericMessage<>("foo"));
+			fail("Expected RateLimitExceededException");
+		}
+		catch (RateLimiterRequestHandlerAdvice.RateLimitExceededException e) {
+			assertThat(e.getMessage(), containsString("exceeded for 'default'"));
+		}
+		assertEquals(2, calls.get());
+
+		handler.handleMessage(new GenericMessage<>("qux"));
+		advice.setMaxWait(1000);
+		long start = System.currentTimeMillis();
+		handler.handleMessage(new GenericMessage<>("qux"));
+		assertThat(System.currentTimeMillis() - start, Matchers.greaterThanOrEqualTo(100L));
+		try {
+			handler.handleMessage(new GenericMessage<>("foo"));
+			fail("Expected RateLimitExceededException");
+		}
+		catch (RateLimiterRequestHandlerAdvice.RateLimitExceededException e) {
+			// rejected without waiting 5 seconds for a permit
+		}
+		assertEquals(4, calls.get());
+		assertEquals(4, advice.getPermittedCount());
+		assertEquals(1, advice.getDelayedCount());
+		assertEquals(2, advice.getRejectedCount());
+	}
+
+	@Test
+	public void bulkheadTests() throws Exception {
+		CountDownLatch entered = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicInteger calls = new AtomicInteger();
+		AbstractReplyProducingMessageHandler handler = new AbstractReplyProducingMessageHandler() {
+
+			@Override
+			protected Object handleRequestMessage(Message<?> requestMessage) {
+				calls.incrementAndGet();
+				if ("slow".equals(requestMessage.getPayload())) {
+					entered.countDown();
+					try {
+						release.await(10, TimeUnit.SECONDS);
+					}
+					catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+				return "bar";
+			}
+
+		};
+		handler.setBeanName("baz");
+		QueueChannel replies = new QueueChannel();
+		handler.setOutputChannel(replies);
+		BulkheadRequestHandlerAdvice advice = new BulkheadRequestHandlerAdvice(1);
+		advice.setMaxWaitingCalls(1);
+		advice.setMaxWait(10000);
+		QueueChannel rejections = new QueueChannel();
+		advice.setRejectionChannel(rejections);
+		handler.setAdviceChain(Collections.singletonList(advice));
+		handler.setBeanFactory(mock(BeanFactory.class));
+		handler.afterPropertiesSet();
+
+		ExecutorService exec = Executors.newFixedThreadPool(2);
+		exec.execute(() -> handler.handleMessage(new GenericMessage<>("slow")));
+		assertTrue(entered.await(10, TimeUnit.SECONDS));
+		assertEquals(1, advice.getActiveCount());
+		assertEquals(1.0, advice.getSaturation(), 0.0);
+		exec.execute(() -> handler.handleMessage(new GenericMessage<>("foo")));
+		int n = 0;
+		while (advice.getWaitingCount() < 1 && n++ < 100) {
+			Thread.sleep(100);
+		}
+		assertEquals(1, advice.getWaitingCount());
+
+		handler.handleMessage(new GenericMessage<>("qux"));
+		Message<?> rejection = rejections.receive(0);
+		assertNotNull(rejection);
+		assertThat(rejection.getPayload(), instanceOf(BulkheadRequestHandlerAdvice.BulkheadFullException.class));
+		assertEquals("qux", ((ErrorMessage) rejection).getOriginalMessage().getPayload());
+		assertEquals(1, advice.getRejectedCount());
+
+		release.countDown();
+		assertNotNull(replies.receive(10000));
+		assertNotNull(replies.receive(10000));
+		exec.shutdown();
+		assertTrue(exec.awaitTermination(10, TimeUnit.SECONDS));
+		assertEquals(2, calls.get());
+		assertEquals(2, advice.getPermittedCount());
+		assertEquals(0, advice.getActiveCount());
+		assertEquals(0, advice.getWaitingCount());
+	}
+
+	@Test
+	public void bulkheadThreadPoolTests() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		AbstractReplyProducingMessageHandler handler = new AbstractReplyProducingMessageHandler() {
+
+			@Override
+			protected Object handleRequestMessage(Message<?> requestMessage) {
+				if ("slow".equals(requestMessage.getPayload())) {
+					try {
+						release.await(10, TimeUnit.SECONDS);
+					}
+					catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new MessageHandlingException(requestMessage, "interrupted");
+					}
+				}
+				else if ("fail".equals(requestMessage.getPayload())) {
+					throw new RuntimeException("foo");
+				}
+				return Thread.currentThread().getName();
+			}
+
+		};
+		handler.setBeanName("baz");
+		QueueChannel replies = new QueueChannel();
+		handler.setOutputChannel(replies);
+		BulkheadRequestHandlerAdvice advice = new BulkheadRequestHandlerAdvice(1);
+		advice.setIsolation(BulkheadRequestHandlerAdvice.Isolation.THREAD_POOL);
+		advice.setTimeout(200);
+		advice.setBeanName("bulkhead");
+		handler.setAdviceChain(Collections.singletonList(advice));
+		handler.setBeanFactory(mock(BeanFactory.class));
+		handler.afterPropertiesSet();
+
+		handler.handleMessage(new GenericMessage<>("foo"));
+		Message<?> reply = replies.receive(10000);
+		assertNotNull(reply);
+		assertThat((String) reply.getPayload(), Matchers.startsWith("bulkhead-"));
+
+		try {
+			handler.handleMessage(new GenericMessage<>("fail"));
+			fail("Expected MessageHandlingException");
+		}
+		catch (MessageHandlingException e) {
+			assertEquals("foo", e.getCause().getMessage());
+		}
+
+		try {
+			handler.handleMessage(new GenericMessage<>("slow"));
+			fail("Expected MessageTimeoutException");
+		}
+		catch (MessageTimeoutException e) {
+			assertEquals(1, advice.getTimedOutCount());
+		}
+		release.countDown();
+		advice.destroy();
+		assertEquals(3, advice.getPermittedCount());
+		assertEquals(0, advice.getRejectedCount());
+	}
+
+	@Test
+	public void bulkheadThreadPoolKeepsSlotOfCallIgnoringInterrupts() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		AbstractReplyProducingMessageHandler handler = new AbstractReplyProducingMessageHandler() {
+
+			@Override
+			protected Object handleRequestMessage(Message<?> requestMessage) {
+				if ("stuck".equals(requestMessage.getPayload())) {
+					while (release.getCount() > 0) {
+						try {
+							release.await(10, TimeUnit.SECONDS);
+						}
+						catch (InterruptedException e) {
+							// a degraded dependency ignoring interrupts
+						}
+					}
+				}
+				return "bar";
+			}
+
+		};
+		QueueChannel replies = new QueueChannel();
+		handler.setOutputChannel(replies);
+		BulkheadRequestHandlerAdvice advice = new BulkheadRequestHandlerAdvice(1);
+		advice.setIsolation(BulkheadRequestHandlerAdvice.Isolation.THREAD_POOL);
+		advice.setTimeout(100);
+		handler.setAdviceChain(Collections.singletonList(advice));
+		handler.setBeanFactory(mock(BeanFactory.class));
+		handler.afterPropertiesSet();
+
+		try {
+			handler.handleMessage(new GenericMessage<>("stuck"));
+			fail("Expected MessageTimeoutException");
+		}
+		catch (MessageTimeoutException e) {
+			assertEquals(1, advice.getTimedOutCount());
+		}
+		assertEquals(1, advice.getActiveCount());
+		try {
+			handler.handleMessage(new GenericMessage<>("foo"));
+			fail("Expected BulkheadFullException");
+		}
+		catch (BulkheadRequestHandlerAdvice.BulkheadFullException e) {
+			assertEquals(1, advice.getRejectedCount());
+		}
+		assertEquals(0, advice.getWaitingCount());
+
+		release.countDown();
+		int n = 0;
+		while (advice.getActiveCount() > 0 && n++ < 100) {
+			Thread.sleep(100);
+		}
+		handler.handleMessage(new GenericMessage<>("foo"));
+		assertNotNull(replies.receive(10000));
+		advice.destroy();
+	}
+
+	@Test
+	public void bulkheadThreadPoolRejectedInTransaction() throws Exception {
+		AbstractReplyProducingMessageHandler handler = new AbstractReplyProducingMessageHandler() {
+
+			@Override
+			protected Object handleRequestMessage(Message<?> requestMessage) {
+				return "bar";
+			}
+
+		};
+		BulkheadRequestHandlerAdvice advice = new BulkheadRequestHandlerAdvice(1);
+		advice.setIsolation(BulkheadRequestHandlerAdvice.Isolation.THREAD_POOL);
+		handler.setOutputChannel(new QueueChannel());
+		handler.setAdviceChain(Collections.singletonList(advice));
+		handler.setBeanFactory(mock(BeanFactory.class));
+		handler.afterPropertiesSet();
+		TransactionSynchronizationManager.setActualTransactionActive(true);
+		try {
+			handler.handleMessage(new GenericMessage<>("foo"));
+			fail("Expected MessageHandlingException");
+		}
+		catch (MessageHandlingException e) {
+			assertThat(e.getMessage(), containsString("cannot be used within a transaction"));
+		}
+		finally {
+			TransactionSynchronizationManager.setActualTransactionActive(false);
+		}
+		assertEquals(0, advice.getPermittedCount());
+		advice.destroy();
+	}
+
 	@Test
 	@SuppressWarnings("rawtypes")
 	public void circuitBreakerTests() throws Exception {
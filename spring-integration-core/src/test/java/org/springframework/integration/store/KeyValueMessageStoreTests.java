@@ -0,0 +1,219 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.GenericMessage;
+import org.springframework.util.PatternMatchUtils;
+
+/**
+ * @since 5.1
+ */
+public class KeyValueMessageStoreTests {
+
+	@Test
+	public void testMultiGet() {
+		MapMessageStore store = new MapMessageStore();
+		Message<?> foo = new GenericMessage<>("foo");
+		Message<?> bar = new GenericMessage<>("bar");
+		store.addMessagesToGroup("group", foo, bar);
+		store.retrieveCount = 0;
+
+		List<Object> payloads = payloads(store.getMessagesForGroup("group"));
+		assertEquals("[foo, bar]", payloads.toString());
+		assertEquals(1, store.retrieveCount);
+		assertEquals(1, store.retrieveAllCount);
+	}
+
+	@Test
+	public void testBatchStoreAndRemove() {
+		MapMessageStore store = new MapMessageStore();
+		Message<?> foo = new GenericMessage<>("foo");
+		Message<?> bar = new GenericMessage<>("bar");
+		Message<?> baz = new GenericMessage<>("baz");
+		store.addMessagesToGroup("group", foo, bar, baz);
+		assertEquals(1, store.storeAllCount);
+		assertEquals(4, store.map.size());
+		assertEquals(3, store.messageGroupSize("group"));
+
+		store.removeMessagesFromGroup("group", foo, bar);
+		assertEquals(1, store.removeAllCount);
+		assertEquals(2, store.map.size());
+		assertEquals(1, store.messageGroupSize("group"));
+
+		store.removeMessageGroup("group");
+		assertEquals(2, store.removeAllCount);
+		assertEquals(0, store.map.size());
+	}
+
+	@Test
+	public void testIncrementalGroupMembership() {
+		MapMessageStore store = new MapMessageStore();
+		Message<?> foo = new GenericMessage<>("foo");
+		Message<?> bar = new GenericMessage<>("bar");
+		Message<?> baz = new GenericMessage<>("baz");
+		Message<?> qux = new GenericMessage<>("qux");
+		store.addMessagesToGroup("group", foo);
+
+		store.setIncrementalGroupMembership(true);
+		store.addMessagesToGroup("group", bar, baz);
+		store.addMessagesToGroup("group", qux, foo);
+		assertEquals(1, ((MessageGroupMetadata) store.map.get("MESSAGE_GROUP_group")).size());
+		assertEquals(3, ((Collection<?>) store.map.get("GROUP_MEMBERS_group")).size());
+		assertEquals(4, store.messageGroupSize("group"));
+		assertEquals("[foo, bar, baz, qux]", payloads(store.getMessagesForGroup("group")).toString());
+		assertEquals(4, store.getMessageGroup("group").size());
+		assertEquals(1, store.getMessageGroupCount());
+
+		assertEquals(foo, store.pollMessageFromGroup("group"));
+		assertEquals(bar, store.pollMessageFromGroup("group"));
+		assertEquals(baz, store.getOneMessageFromGroup("group"));
+		store.removeMessagesFromGroup("group", baz);
+		assertEquals("[qux]", payloads(store.getMessagesForGroup("group")).toString());
+		assertEquals(0, ((MessageGroupMetadata) store.map.get("MESSAGE_GROUP_group")).size());
+
+		store.completeGroup("group");
+		assertTrue(store.getMessageGroup("group").isComplete());
+		assertEquals(1, store.messageGroupSize("group"));
+
+		store.removeMessageGroup("group");
+		assertEquals(0, store.map.size());
+	}
+
+	@Test
+	public void testNearCache() {
+		MapMessageStore store = new MapMessageStore();
+		store.setNearCacheSize(2);
+		Message<?> foo = new GenericMessage<>("foo");
+		Message<?> bar = new GenericMessage<>("bar");
+		Message<?> baz = new GenericMessage<>("baz");
+		store.addMessagesToGroup("group", foo, bar, baz);
+		store.retrieveCount = 0;
+
+		assertEquals("[foo, bar, baz]", payloads(store.getMessagesForGroup("group")).toString());
+		assertEquals(1, store.retrieveAllCount);
+		assertEquals(1, store.retrieveCount);
+		assertEquals(foo, store.getMessage(foo.getHeaders().getId()));
+		assertEquals(1, store.retrieveCount);
+
+		store.map.remove("MESSAGE_" + foo.getHeaders().getId());
+		assertEquals(foo, store.getMessage(foo.getHeaders().getId()));
+		store.evictFromNearCache(foo.getHeaders().getId());
+		assertNull(store.getMessage(foo.getHeaders().getId()));
+
+		store.removeMessagesFromGroup("group", bar);
+		assertNull(store.getMessage(bar.getHeaders().getId()));
+		store.clearNearCache();
+		store.retrieveCount = 0;
+		assertEquals(baz, store.getMessage(baz.getHeaders().getId()));
+		assertEquals(1, store.retrieveCount);
+	}
+
+	private static List<Object> payloads(Collection<Message<?>> messages) {
+		return messages.stream()
+				.map(Message::getPayload)
+				.collect(Collectors.toList());
+	}
+
+	private static class MapMessageStore extends AbstractKeyValueMessageStore {
+
+		private final Map<Object, Object> map = new ConcurrentHashMap<>();
+
+		private int retrieveCount;
+
+		private int retrieveAllCount;
+
+		private int storeAllCount;
+
+		private int removeAllCount;
+
+		MapMessageStore() {
+			super();
+		}
+
+		@Override
+		protected Object doRetrieve(Object id) {
+			this.retrieveCount++;
+			return this.map.get(id);
+		}
+
+		@Override
+		protected Map<Object, Object> doRetrieveAll(Collection<?> ids) {
+			this.retrieveAllCount++;
+			return this.map.entrySet()
+					.stream()
+					.filter(e -> ids.contains(e.getKey()))
+					.collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+		}
+
+		@Override
+		protected void doStore(Object id, Object objectToStore) {
+			this.map.put(id, objectToStore);
+		}
+
+		@Override
+		protected void doStoreIfAbsent(Object id, Object objectToStore) {
+			this.map.putIfAbsent(id, objectToStore);
+		}
+
+		@Override
+		protected void doStoreAll(Map<Object, Object> objectsToStore) {
+			this.storeAllCount++;
+			objectsToStore.forEach(this.map::putIfAbsent);
+		}
+
+		@Override
+		protected void doRemoveAll(Collection<?> ids) {
+			this.removeAllCount++;
+			this.map.keySet().removeAll(ids);
+		}
+
+		@Override
+		protected Object doRemove(Object id) {
+			return this.map.remove(id);
+		}
+
+		@Override
+		protected Collection<?> doListKeys(String keyPattern) {
+			List<Object> keys = new ArrayList<>();
+			Iterator<Object> iterator = this.map.keySet().iterator();
+			while (iterator.hasNext()) {
+				Object key = iterator.next();
+				if (PatternMatchUtils.simpleMatch(keyPattern, key.toString())) {
+					keys.add(key);
+				}
+			}
+			return keys;
+		}
+
+	}
+
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.store;
+
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import org.springframework.integration.channel.PriorityChannel;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.codec.kryo.MessageCodec;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.support.GenericMessage;
+
+/**
+ * @since 5.1
+ */
+public class MappedFileMessageStoreTests {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testRecovery() throws Exception {
+		File directory = this.folder.newFolder();
+		MappedFileMessageStore store = new MappedFileMessageStore(directory);
+		Message<?> foo = new GenericMessage<>("foo");
+		Message<?> bar = new GenericMessage<>("bar");
+		Message<?> baz = new GenericMessage<>("baz");
+		Message<?> qux = new GenericMessage<>("qux");
+		store.addMessage(foo);
+		store.addMessage(bar);
+		store.removeMessage(bar.getHeaders().getId());
+		store.addMessagesToGroup("group", foo, bar, baz);
+		store.removeMessagesFromGroup("group", bar);
+		store.setLastReleasedSequenceNumberForGroup("group", 2);
+		store.completeGroup("group");
+		store.addMessagesToGroup("other", qux);
+		store.addMessagesToGroup("removed", qux);
+		store.removeMessageGroup("removed");
+		MessageGroup group = store.getMessageGroup("group");
+		long timestamp = group.getTimestamp();
+		long lastModified = group.getLastModified();
+		store.close();
+
+		store = new MappedFileMessageStore(directory);
+		assertEquals(1, store.getMessageCount());
+		assertEquals(foo, store.getMessage(foo.getHeaders().getId()));
+		assertNull(store.getMessage(bar.getHeaders().getId()));
+		assertEquals(2, store.getMessageGroupCount());
+		group = store.getMessageGroup("group");
+		assertEquals("[foo, baz]", payloads(group.getMessages()).toString());
+		assertTrue(group.isComplete());
+		assertEquals(2, group.getLastReleasedMessageSequenceNumber());
+		assertEquals(timestamp, group.getTimestamp());
+		assertEquals(lastModified, group.getLastModified());
+		assertEquals(qux, store.pollMessageFromGroup("other"));
+		store.close();
+
+		store = new MappedFileMessageStore(directory);
+		assertEquals(0, store.messageGroupSize("other"));
+		store.close();
+	}
+
+	@Test
+	public void testCompaction() throws Exception {
+		File directory = this.folder.newFolder();
+		MappedFileMessageStore store = new MappedFileMessageStore(directory, new MessageCodec());
+		store.setSegmentSize(4096);
+		store.setCompactionThreshold(16 * 1024);
+		store.setFsyncPolicy(MappedFileMessageStore.FsyncPolicy.NEVER);
+		store.addMessagesToGroup("kept", new GenericMessage<>("kept"));
+		for (int i = 0; i < 1000; i++) {
+			store.addMessageToGroup("group", new GenericMessage<>("message" + i));
+			if (i % 2 == 0) {
+				store.pollMessageFromGroup("group");
+			}
+		}
+		// compactions run asynchronously
+		int n = 0;
+		while ((store.getLogSize() >= 64L * 1024 || directory.list().length >= 20) && n++ < 100) {
+			Thread.sleep(100);
+		}
+		assertThat(store.getLogSize(), lessThan(64L * 1024));
+		assertThat(directory.list().length, lessThan(20));
+		List<Object> payloads = payloads(store.getMessagesForGroup("group"));
+		store.close();
+
+		store = new MappedFileMessageStore(directory, new MessageCodec());
+		assertEquals(500, store.messageGroupSize("group"));
+		assertEquals(payloads, payloads(store.getMessagesForGroup("group")));
+		assertEquals("[kept]", payloads(store.getMessagesForGroup("kept")).toString());
+		store.compact();
+		// the snapshot and the segment receiving new records
+		assertEquals(2, directory.list().length);
+		store.close();
+
+		store = new MappedFileMessageStore(directory, new MessageCodec());
+		assertEquals(payloads, payloads(store.getMessagesForGroup("group")));
+		store.close();
+	}
+
+	@Test
+	public void testUnserializableMessageLeavesStoreUnchanged() throws Exception {
+		File directory = this.folder.newFolder();
+		MappedFileMessageStore store = new MappedFileMessageStore(directory);
+		store.addMessagesToGroup("group", new GenericMessage<>("foo"));
+		Message<?> unserializable = new GenericMessage<>(new Object());
+		try {
+			store.addMessagesToGroup("group", unserializable);
+			fail("expected MessageStoreException");
+		}
+		catch (MessageStoreException e) {
+			// expected
+		}
+		try {
+			store.addMessage(unserializable);
+			fail("expected MessageStoreException");
+		}
+		catch (MessageStoreException e) {
+			// expected
+		}
+		assertEquals("[foo]", payloads(store.getMessagesForGroup("group")).toString());
+		assertEquals(0, store.getMessageCount());
+		store.close();
+
+		store = new MappedFileMessageStore(directory);
+		assertEquals("[foo]", payloads(store.getMessagesForGroup("group")).toString());
+		store.close();
+	}
+
+	@Test
+	public void testTornRecord() throws Exception {
+		File directory = this.folder.newFolder();
+		MappedFileMessageStore store = new MappedFileMessageStore(directory);
+		store.setSegmentSize(4096);
+		store.addMessagesToGroup("group", new GenericMessage<>("foo"));
+		long intact = store.getLogSize();
+		store.addMessagesToGroup("group", new GenericMessage<>("bar"));
+		store.close();
+
+		File segment = directory.listFiles()[0];
+		try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+			file.seek(store.getLogSize() - 10);
+			file.write(new byte[] { 1, 2, 3 });
+		}
+
+		store = new MappedFileMessageStore(directory);
+		assertEquals(intact, store.getLogSize());
+		assertEquals("[foo]", payloads(store.getMessagesForGroup("group")).toString());
+		store.addMessagesToGroup("group", new GenericMessage<>("baz"));
+		store.close();
+
+		store = new MappedFileMessageStore(directory);
+		assertEquals("[foo, baz]", payloads(store.getMessagesForGroup("group")).toString());
+		store.close();
+	}
+
+	@Test
+	public void testQueueChannel() throws Exception {
+		File directory = this.folder.newFolder();
+		MappedFileMessageStore store = new MappedFileMessageStore(directory);
+		store.setFsyncPolicy(MappedFileMessageStore.FsyncPolicy.ALWAYS);
+		QueueChannel channel = new QueueChannel(new MessageGroupQueue(store, "queue"));
+		channel.send(new GenericMessage<>("foo"));
+		channel.send(new GenericMessage<>("bar"));
+		assertEquals("foo", channel.receive(0).getPayload());
+		store.close();
+
+		store = new MappedFileMessageStore(directory);
+		channel = new QueueChannel(new MessageGroupQueue(store, "queue"));
+		assertEquals("bar", channel.receive(0).getPayload());
+		assertNull(channel.receive(0));
+		store.close();
+	}
+
+	@Test
+	public void testPriorityChannel() throws Exception {
+		MappedFileMessageStore store = new MappedFileMessageStore(this.folder.newFolder());
+		assertFalse(store.isPriorityEnabled());
+		store.setPriorityEnabled(true);
+		PriorityChannel channel = new PriorityChannel(store, "priority");
+		channel.send(MessageBuilder.withPayload("low").setPriority(1).build());
+		channel.send(new GenericMessage<>("none"));
+		channel.send(MessageBuilder.withPayload("high").setPriority(5).build());
+		channel.send(MessageBuilder.withPayload("low2").setPriority(1).build());
+		assertEquals("high", channel.receive(0).getPayload());
+		assertEquals("low", channel.receive(0).getPayload());
+		assertEquals("low2", channel.receive(0).getPayload());
+		assertEquals("none", channel.receive(0).getPayload());
+		store.close();
+	}
+
+	@Test
+	public void testGroupCapacity() throws Exception {
+		File directory = this.folder.newFolder();
+		MappedFileMessageStore store = new MappedFileMessageStore(directory, null, 0, 2);
+		store.addMessagesToGroup("group", new GenericMessage<>("foo"));
+		try {
+			store.addMessagesToGroup("group", new GenericMessage<>("bar"), new GenericMessage<>("baz"));
+			fail("expected MessagingException");
+		}
+		catch (MessagingException e) {
+			assertTrue(e.getMessage().contains("out of capacity"));
+		}
+		store.close();
+
+		store = new MappedFileMessageStore(directory, null, 0, 2);
+		assertEquals("[foo, bar]", payloads(store.getMessagesForGroup("group")).toString());
+		store.close();
+	}
+
+	private static List<Object> payloads(Collection<Message<?>> messages) {
+		return messages.stream()
+				.map(Message::getPayload)
+				.collect(Collectors.toList());
+	}
+
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.integration.aggregator.AggregatingMessageHandler;
+import org.springframework.integration.aggregator.DefaultAggregatingMessageGroupProcessor;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.codec.kryo.MessageCodec;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.support.GenericMessage;
+import org.springframework.util.StringUtils;
+
+/**
+ * @since 5.1
+ */
+public class OffHeapMessageStoreTests {
+
+	@Test
+	public void testIndividualMessages() {
+		OffHeapMessageStore store = new OffHeapMessageStore(1024 * 1024);
+		Message<?> foo = MessageBuilder.withPayload("foo").setHeader("bar", "baz").build();
+		store.addMessage(foo);
+		assertEquals(1, store.getMessageCount());
+		assertThat(store.getUsedBytes(), Matchers.greaterThan(0L));
+		Message<?> retrieved = store.getMessage(foo.getHeaders().getId());
+		assertEquals(foo, retrieved);
+		assertNotSame(foo, retrieved);
+		assertEquals(foo, store.removeMessage(foo.getHeaders().getId()));
+		assertNull(store.getMessage(foo.getHeaders().getId()));
+		assertEquals(0, store.getUsedBytes());
+	}
+
+	@Test
+	public void testGroups() {
+		OffHeapMessageStore store = new OffHeapMessageStore(1024 * 1024);
+		Message<?> foo = new GenericMessage<>("foo");
+		Message<?> bar = new GenericMessage<>("bar");
+		Message<?> baz = new GenericMessage<>(StringUtils.collectionToCommaDelimitedString(
+				Collections.nCopies(100, "baz")));
+		store.addMessagesToGroup("group", foo, bar, baz, foo);
+		assertEquals(3, store.messageGroupSize("group"));
+		assertEquals(foo, store.getOneMessageFromGroup("group"));
+		assertEquals(baz, store.getMessagesForGroup("group").toArray()[2]);
+
+		assertEquals(foo, store.pollMessageFromGroup("group"));
+		store.removeMessagesFromGroup("group", baz);
+		assertEquals("[bar]", payloads(store.getMessagesForGroup("group")).toString());
+
+		MessageGroup copy = store.copy(store.getMessageGroup("group"));
+		long used = store.getUsedBytes();
+		store.removeMessageGroup("group");
+		assertEquals(0, store.getUsedBytes());
+		assertThat(used, Matchers.greaterThan(0L));
+		assertEquals("[bar]", payloads(copy.getMessages()).toString());
+		assertEquals(0, store.getMessageGroupCount());
+	}
+
+	@Test
+	public void testBudget() {
+		OffHeapMessageStore store = new OffHeapMessageStore(new MessageCodec(), 1024, 64, 0, 0);
+		Message<?> large = new GenericMessage<>(StringUtils.collectionToCommaDelimitedString(
+				Collections.nCopies(100, "foo")));
+		store.addMessagesToGroup("group", large);
+		assertEquals(512, store.getUsedBytes());
+		store.addMessagesToGroup("group", new GenericMessage<>(large.getPayload()));
+		try {
+			store.addMessagesToGroup("group", new GenericMessage<>(large.getPayload()));
+			fail("expected MessagingException");
+		}
+		catch (MessagingException e) {
+			assertThat(e.getMessage(), Matchers.containsString("out of memory (1024 bytes)"));
+		}
+		assertEquals(2, store.messageGroupSize("group"));
+		store.clearMessageGroup("group");
+		assertEquals(0, store.getUsedBytes());
+		assertEquals(1024, store.getAllocatedBytes());
+		store.addMessagesToGroup("group", large);
+		assertEquals(large, store.getOneMessageFromGroup("group"));
+	}
+
+	@Test
+	public void testByteCapacity() {
+		OffHeapMessageStore store = new OffHeapMessageStore(1024 * 1024);
+		AtomicInteger estimates = new AtomicInteger();
+		store.setMessageSizeEstimator(message -> {
+			estimates.incrementAndGet();
+			return 100;
+		});
+		store.setByteCapacity(250);
+		store.addMessage(new GenericMessage<>("foo"));
+		store.addMessagesToGroup("group", new GenericMessage<>("bar"));
+		try {
+			store.addMessage(new GenericMessage<>("baz"));
+			fail("expected MessagingException");
+		}
+		catch (MessagingException e) {
+			assertThat(e.getMessage(), Matchers.containsString("out of byte capacity"));
+		}
+		assertEquals(1, store.getMessageCount());
+		assertEquals(200, store.getMessageBytes());
+
+		int before = estimates.get();
+		store.removeMessageGroup("group");
+		assertEquals(100, store.getMessageBytes());
+		// the size recorded when the message was added is released, without decoding it
+		assertEquals(before, estimates.get());
+		store.addMessagesToGroup("group", new GenericMessage<>("baz"));
+		assertEquals(200, store.getMessageBytes());
+	}
+
+	@Test
+	public void testIteratorSkipsRemovedMessages() {
+		OffHeapMessageStore store = new OffHeapMessageStore(1024 * 1024);
+		Message<?> foo = new GenericMessage<>("foo");
+		Message<?> bar = new GenericMessage<>("bar");
+		Message<?> baz = new GenericMessage<>("baz");
+		store.addMessagesToGroup("group", foo, bar, baz);
+		Iterator<Message<?>> iterator = store.getMessagesForGroup("group").iterator();
+		assertEquals(foo, iterator.next());
+		store.removeMessagesFromGroup("group", bar);
+		store.removeMessagesFromGroup("group", baz);
+		assertFalse(iterator.hasNext());
+		assertEquals("[foo]", payloads(store.getMessagesForGroup("group")).toString());
+	}
+
+	@Test
+	public void testQueueChannel() {
+		OffHeapMessageStore store = new OffHeapMessageStore(1024 * 1024);
+		QueueChannel channel = new QueueChannel(new MessageGroupQueue(store, "queue"));
+		for (int i = 0; i < 1000; i++) {
+			channel.send(new GenericMessage<>(i));
+		}
+		for (int i = 0; i < 1000; i++) {
+			assertEquals(i, channel.receive(0).getPayload());
+		}
+		assertNull(channel.receive(0));
+		assertEquals(0, store.getUsedBytes());
+	}
+
+	@Test
+	public void testAggregator() {
+		OffHeapMessageStore store = new OffHeapMessageStore(1024 * 1024);
+		AggregatingMessageHandler handler = new AggregatingMessageHandler(
+				new DefaultAggregatingMessageGroupProcessor(), store);
+		QueueChannel output = new QueueChannel();
+		handler.setOutputChannel(output);
+		handler.setBeanFactory(mock(BeanFactory.class));
+		handler.afterPropertiesSet();
+		for (int i = 1; i <= 3; i++) {
+			handler.handleMessage(MessageBuilder.withPayload(i)
+					.setCorrelationId("foo")
+					.setSequenceNumber(i)
+					.setSequenceSize(3)
+					.build());
+		}
+		Message<?> result = output.receive(0);
+		assertEquals("[1, 2, 3]", result.getPayload().toString());
+		assertEquals(0, store.messageGroupSize("foo"));
+		assertEquals(0, store.getUsedBytes());
+	}
+
+	private static List<Object> payloads(Collection<Message<?>> messages) {
+		return messages.stream()
+				.map(Message::getPayload)
+				.collect(Collectors.toList());
+	}
+
+}
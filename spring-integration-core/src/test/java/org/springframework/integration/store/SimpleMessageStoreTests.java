@@ -300,4 +300,32 @@ public class SimpleMessageStoreTests {
 		assertEquals(0, group.size());
 	}
 
+	@Test
+	public void testByteCapacity() {
+		SimpleMessageStore store = new SimpleMessageStore();
+		store.setByteCapacity(100);
+		Message<byte[]> foo = new GenericMessage<>(new byte[30]);
+		Message<byte[]> bar = new GenericMessage<>(new byte[30]);
+		Message<byte[]> baz = new GenericMessage<>(new byte[30]);
+		store.addMessage(foo);
+		store.addMessagesToGroup("group", bar, baz);
+		assertEquals(90, store.getMessageBytes());
+		try {
+			store.addMessagesToGroup("group", new GenericMessage<>(new byte[20]));
+			fail("expected MessagingException");
+		}
+		catch (MessagingException e) {
+			assertThat(e.getMessage(), containsString("out of byte capacity (100)"));
+		}
+		assertEquals(90, store.getMessageBytes());
+		store.removeMessage(foo.getHeaders().getId());
+		store.removeMessagesFromGroup("group", bar);
+		assertEquals(30, store.getMessageBytes());
+		store.addMessagesToGroup("other", new GenericMessage<>(new byte[70]));
+		store.clearMessageGroup("other");
+		assertEquals(30, store.getMessageBytes());
+		store.removeMessageGroup("group");
+		assertEquals(0, store.getMessageBytes());
+	}
+
 }
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.support.ratelimit;
+
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+
+import java.time.Duration;
+
+import org.junit.Test;
+
+/**
+ * @since 5.1
+ */
+public class DefaultRateLimiterTests {
+
+	@Test
+	public void testIdleKeysEvicted() throws Exception {
+		DefaultRateLimiter rateLimiter = new DefaultRateLimiter();
+		RateLimit idleLimit = new RateLimit(1, Duration.ofMillis(10));
+		RateLimit busyLimit = new RateLimit(1, Duration.ofSeconds(10));
+		assertEquals(0, rateLimiter.tryAcquire("busy", busyLimit, 1));
+		for (int i = 0; i < 998; i++) {
+			assertEquals(0, rateLimiter.tryAcquire("key" + i, idleLimit, 1));
+		}
+		assertEquals(999, rateLimiter.getKeyCount());
+		Thread.sleep(50);
+		// the 1000th acquisition evicts the idle keys, but not the busy one
+		assertThat(rateLimiter.tryAcquire("busy", busyLimit, 1), greaterThan(0L));
+		assertEquals(1, rateLimiter.getKeyCount());
+	}
+
+	@Test
+	public void testEvictedKeyStillLimited() throws Exception {
+		DefaultRateLimiter rateLimiter = new DefaultRateLimiter();
+		RateLimit limit = new RateLimit(1, Duration.ofSeconds(10));
+		assertEquals(0, rateLimiter.tryAcquire("foo", limit, 1));
+		rateLimiter.evictIdleKeys();
+		assertEquals(1, rateLimiter.getKeyCount());
+		assertThat(rateLimiter.tryAcquire("foo", limit, 1), greaterThan(0L));
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -35,6 +35,7 @@ import org.springframework.expression.EvaluationContext;
 import org.springframework.expression.Expression;
 import org.springframework.expression.spel.standard.SpelExpressionParser;
 import org.springframework.integration.IntegrationMessageHeaderAccessor;
+import org.springframework.integration.expression.DelegatingEvaluationContext;
 import org.springframework.integration.expression.ExpressionUtils;
 import org.springframework.integration.expression.FunctionExpression;
 import org.springframework.integration.expression.ValueExpression;
@@ -249,6 +250,8 @@ public abstract class AbstractRemoteFileOutboundGateway<F> extends AbstractReply
 
 	private volatile Integer chmod;
 
+	private volatile EvaluationContext evaluationContext;
+
 	/**
 	 * Construct an instance using the provided session factory and callback for
 	 * performing operations on the session.
@@ -1236,7 +1239,7 @@ public abstract class AbstractRemoteFileOutboundGateway<F> extends AbstractReply
 	}
 
 	private File generateLocalDirectory(Message<?> message, String remoteDirectory) {
-		EvaluationContext evaluationContext = ExpressionUtils.createStandardEvaluationContext(getBeanFactory());
+		EvaluationContext evaluationContext = new DelegatingEvaluationContext(getEvaluationContext());
 		if (remoteDirectory != null) {
 			evaluationContext.setVariable("remoteDirectory", remoteDirectory);
 		}
@@ -1250,13 +1253,20 @@ public abstract class AbstractRemoteFileOutboundGateway<F> extends AbstractReply
 
 	private String generateLocalFileName(Message<?> message, String remoteFileName) {
 		if (this.localFilenameGeneratorExpression != null) {
-			EvaluationContext evaluationContext = ExpressionUtils.createStandardEvaluationContext(getBeanFactory());
+			EvaluationContext evaluationContext = new DelegatingEvaluationContext(getEvaluationContext());
 			evaluationContext.setVariable("remoteFileName", remoteFileName);
 			return this.localFilenameGeneratorExpression.getValue(evaluationContext, message, String.class);
 		}
 		return remoteFileName;
 	}
 
+	private EvaluationContext getEvaluationContext() {
+		if (this.evaluationContext == null) {
+			this.evaluationContext = ExpressionUtils.createStandardEvaluationContext(getBeanFactory());
+		}
+		return this.evaluationContext;
+	}
+
 	abstract protected boolean isDirectory(F file);
 
 	abstract protected boolean isLink(F file);
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -18,7 +18,10 @@ package org.springframework.integration.gemfire.store;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 import org.apache.geode.cache.Region;
 
@@ -72,6 +75,13 @@ public class GemfireMessageStore extends AbstractKeyValueMessageStore {
 		return this.messageStoreRegion.get(id);
 	}
 
+	@Override
+	protected Map<Object, Object> doRetrieveAll(Collection<?> ids) {
+		Map<Object, Object> result = new HashMap<>(this.messageStoreRegion.getAll(ids));
+		result.values().removeIf(Objects::isNull);
+		return result;
+	}
+
 	@Override
 	protected void doStore(Object id, Object objectToStore) {
 		Assert.notNull(id, "'id' must not be null");
@@ -90,12 +100,22 @@ public class GemfireMessageStore extends AbstractKeyValueMessageStore {
 		}
 	}
 
+	@Override
+	protected void doStoreAll(Map<Object, Object> objectsToStore) {
+		this.messageStoreRegion.putAll(objectsToStore);
+	}
+
 	@Override
 	protected Object doRemove(Object id) {
 		Assert.notNull(id, "'id' must not be null");
 		return this.messageStoreRegion.remove(id);
 	}
 
+	@Override
+	protected void doRemoveAll(Collection<?> ids) {
+		this.messageStoreRegion.removeAll(ids);
+	}
+
 	@Override
 	protected Collection<?> doListKeys(String keyPattern) {
 		Assert.hasText(keyPattern, "'keyPattern' must not be empty");
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.jdbc.ratelimit;
+
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.integration.support.ratelimit.RateLimit;
+import org.springframework.integration.support.ratelimit.RateLimiter;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.Assert;
+
+/**
+ * A {@link RateLimiter} keeping the buckets in a relational database, so that the
+ * limits apply to all the instances sharing the same table and region.
+ * SQL scripts to create the necessary tables are packaged as
+ * <code>org/springframework/integration/jdbc/schema-*.sql</code>,
+ * where <code>*</code> is the target database type.
+ * <p>
+ * The refill time of each bucket is stored in a row of the {@code RATE_LIMIT} table
+ * and updated with an optimistic compare-and-set {@code UPDATE}, so no transaction
+ * or row lock is needed. The time is taken from the clock of the calling instance;
+ * the clocks of the instances should be synchronized.
+ *
+ * @since 5.1
+ */
+public class JdbcRateLimiter implements RateLimiter, InitializingBean {
+
+	/**
+	 * Default value for the table prefix property.
+	 */
+	public static final String DEFAULT_TABLE_PREFIX = "INT_";
+
+	private static final int MAX_ATTEMPTS = 10;
+
+	private final JdbcOperations jdbcTemplate;
+
+	private String tablePrefix = DEFAULT_TABLE_PREFIX;
+
+	private String region = "DEFAULT";
+
+	private String selectQuery = "SELECT REFILL_TIME FROM %SRATE_LIMIT WHERE LIMIT_KEY=? AND REGION=?";
+
+	private String updateQuery = "UPDATE %SRATE_LIMIT SET REFILL_TIME=? WHERE LIMIT_KEY=? AND REGION=? AND REFILL_TIME=?";
+
+	private String insertQuery = "INSERT INTO %SRATE_LIMIT (LIMIT_KEY, REGION, REFILL_TIME) VALUES (?, ?, ?)";
+
+	/**
+	 * Instantiate a {@link JdbcRateLimiter} using provided dataSource {@link DataSource}.
+	 * @param dataSource a {@link DataSource}
+	 */
+	public JdbcRateLimiter(DataSource dataSource) {
+		this(new JdbcTemplate(dataSource));
+	}
+
+	/**
+	 * Instantiate a {@link JdbcRateLimiter} using provided jdbcOperations {@link JdbcOperations}.
+	 * @param jdbcOperations a {@link JdbcOperations}
+	 */
+	public JdbcRateLimiter(JdbcOperations jdbcOperations) {
+		Assert.notNull(jdbcOperations, "'jdbcOperations' must not be null");
+		this.jdbcTemplate = jdbcOperations;
+	}
+
+	/**
+	 * Public setter for the table prefix property.
+	 * This will be prefixed to all the table names before queries are
+	 * executed. Defaults to {@link #DEFAULT_TABLE_PREFIX}.
+	 * @param tablePrefix the tablePrefix to set
+	 */
+	public void setTablePrefix(String tablePrefix) {
+		Assert.notNull(tablePrefix, "'tablePrefix' must not be null");
+		this.tablePrefix = tablePrefix;
+	}
+
+	/**
+	 * A unique grouping identifier for all buckets persisted by this limiter.
+	 * Defaults to <code>DEFAULT</code>.
+	 * @param region the region name to set
+	 */
+	public void setRegion(String region) {
+		Assert.hasText(region, "Region must not be null or empty.");
+		this.region = region;
+	}
+
+	@Override
+	public void afterPropertiesSet() {
+		this.selectQuery = String.format(this.selectQuery, this.tablePrefix);
+		this.updateQuery = String.format(this.updateQuery, this.tablePrefix);
+		this.insertQuery = String.format(this.insertQuery, this.tablePrefix);
+	}
+
+	@Override
+	public long tryAcquire(String key, RateLimit limit, int permits) {
+		for (int i = 0; i < MAX_ATTEMPTS; i++) {
+			List<Long> refillTimes = this.jdbcTemplate.queryForList(this.selectQuery, Long.class, key, this.region);
+			long now = System.currentTimeMillis() * 1000;
+			Long current = refillTimes.isEmpty() ? null : refillTimes.get(0);
+			long next = limit.refillTimeAfter(current != null ? current : now, now, permits);
+			long wait = limit.waitMillis(next, now);
+			if (wait > 0) {
+				return wait;
+			}
+			if (current == null) {
+				try {
+					this.jdbcTemplate.update(this.insertQuery, key, this.region, next);
+					return 0;
+				}
+				catch (DuplicateKeyException e) {
+					// inserted concurrently - retry
+				}
+			}
+			else if (this.jdbcTemplate.update(this.updateQuery, next, key, this.region, current) > 0) {
+				return 0;
+			}
+		}
+		// heavy contention for the bucket - the permits are likely consumed by the other instances
+		return Math.max(1, limit.getIntervalMicros() / 1000);
+	}
+
+}
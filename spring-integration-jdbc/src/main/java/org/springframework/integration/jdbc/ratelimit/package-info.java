@@ -0,0 +1,4 @@
+/**
+ * Contains JDBC implementation of RateLimiter
+ */
+package org.springframework.integration.jdbc.ratelimit;
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -37,6 +37,8 @@ import org.springframework.core.serializer.Deserializer;
 import org.springframework.core.serializer.Serializer;
 import org.springframework.core.serializer.support.SerializingConverter;
 import org.springframework.dao.DuplicateKeyException;
+import org.springframework.integration.codec.Codec;
+import org.springframework.integration.codec.CodecSerializer;
 import org.springframework.integration.jdbc.store.channel.ChannelMessageStorePreparedStatementSetter;
 import org.springframework.integration.jdbc.store.channel.ChannelMessageStoreQueryProvider;
 import org.springframework.integration.jdbc.store.channel.MessageRowMapper;
@@ -198,6 +200,26 @@ public class JdbcChannelMessageStore implements PriorityCapableChannelMessageSto
 		this.deserializer = new WhiteListDeserializingConverter((Deserializer) deserializer);
 	}
 
+	/**
+	 * Encode the queued messages with the provided {@link Codec} (for example a
+	 * {@link org.springframework.integration.codec.kryo.MessageCodec}) rather than with
+	 * Java serialization. Messages that were already queued in Java serialized form
+	 * are still polled, within the limits of the
+	 * {@link #addWhiteListPatterns(String...) white list}.
+	 * Must be called before {@link #afterPropertiesSet()}, since the default
+	 * {@link ChannelMessageStorePreparedStatementSetter} captures the serializer; it
+	 * overrides the {@link #setSerializer(Serializer) serializer} and
+	 * {@link #setDeserializer(Deserializer) deserializer}.
+	 * @param codec the codec.
+	 * @since 5.1
+	 * @see CodecSerializer
+	 */
+	public void setCodec(Codec codec) {
+		CodecSerializer codecSerializer = new CodecSerializer(codec);
+		this.serializer = new SerializingConverter(codecSerializer);
+		this.deserializer = new WhiteListDeserializingConverter(codecSerializer, true);
+	}
+
 	/**
 	 * Add patterns for packages/classes that are allowed to be deserialized. A class can
 	 * be fully qualified or a wildcard '*' is allowed at the beginning or end of the
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -38,6 +38,8 @@ import org.springframework.core.serializer.Deserializer;
 import org.springframework.core.serializer.Serializer;
 import org.springframework.core.serializer.support.SerializingConverter;
 import org.springframework.dao.DuplicateKeyException;
+import org.springframework.integration.codec.Codec;
+import org.springframework.integration.codec.CodecSerializer;
 import org.springframework.integration.store.AbstractMessageGroupStore;
 import org.springframework.integration.store.MessageGroup;
 import org.springframework.integration.store.MessageMetadata;
@@ -266,6 +268,24 @@ public class JdbcMessageStore extends AbstractMessageGroupStore implements Messa
 		this.deserializer = new WhiteListDeserializingConverter((Deserializer) deserializer);
 	}
 
+	/**
+	 * Write the {@code MESSAGE_BYTES} column with the provided {@link Codec}, such as a
+	 * {@link org.springframework.integration.codec.kryo.MessageCodec}, which is usually
+	 * faster and more compact than Java serialization. Rows written with Java
+	 * serialization before the switch are still read, provided their classes match the
+	 * {@link #addWhiteListPatterns(String...) white list}.
+	 * Overrides the {@link #setSerializer(Serializer) serializer} and
+	 * {@link #setDeserializer(Deserializer) deserializer}.
+	 * @param codec the codec.
+	 * @since 5.1
+	 * @see CodecSerializer
+	 */
+	public void setCodec(Codec codec) {
+		CodecSerializer codecSerializer = new CodecSerializer(codec);
+		this.serializer = new SerializingConverter(codecSerializer);
+		this.deserializer = new WhiteListDeserializingConverter(codecSerializer, true);
+	}
+
 	/**
 	 * Add patterns for packages/classes that are allowed to be deserialized. A class can
 	 * be fully qualified or a wildcard '*' is allowed at the beginning or end of the
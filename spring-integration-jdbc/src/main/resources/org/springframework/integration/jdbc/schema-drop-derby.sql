@@ -9,3 +9,4 @@ DROP TABLE  INT_GROUP_TO_MESSAGE ;
 DROP TABLE  INT_LOCK ;
 DROP TABLE  INT_CHANNEL_MESSAGE ;
 DROP TABLE  INT_METADATA_STORE ;
+DROP TABLE  INT_RATE_LIMIT ;
@@ -9,4 +9,5 @@ DROP TABLE  INT_GROUP_TO_MESSAGE IF EXISTS;
 DROP TABLE  INT_LOCK IF EXISTS;
 DROP TABLE  INT_CHANNEL_MESSAGE IF EXISTS;
 DROP TABLE  INT_METADATA_STORE IF EXISTS;
+DROP TABLE  INT_RATE_LIMIT IF EXISTS;
 DROP SEQUENCE INT_MESSAGE_SEQ IF EXISTS;
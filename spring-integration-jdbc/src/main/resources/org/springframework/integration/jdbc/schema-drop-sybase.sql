@@ -9,4 +9,5 @@ DROP TABLE  INT_GROUP_TO_MESSAGE ;
 DROP TABLE  INT_LOCK ;
 DROP TABLE  INT_CHANNEL_MESSAGE ;
 DROP TABLE  INT_METADATA_STORE ;
+DROP TABLE  INT_RATE_LIMIT ;
 DROP SEQUENCE INT_MESSAGE_SEQ ;
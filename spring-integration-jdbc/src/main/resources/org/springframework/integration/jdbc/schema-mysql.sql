@@ -59,3 +59,10 @@ CREATE TABLE INT_METADATA_STORE  (
 	REGION VARCHAR(100) NOT NULL,
 	constraint METADATA_STORE primary key (METADATA_KEY, REGION)
 ) ENGINE=InnoDB;
+
+CREATE TABLE INT_RATE_LIMIT  (
+	LIMIT_KEY VARCHAR(255) NOT NULL,
+	REGION VARCHAR(100) NOT NULL,
+	REFILL_TIME BIGINT NOT NULL,
+	constraint RATE_LIMIT_PK primary key (LIMIT_KEY, REGION)
+) ENGINE=InnoDB;
@@ -59,3 +59,10 @@ CREATE TABLE INT_METADATA_STORE  (
 	REGION VARCHAR2(100) NOT NULL,
 	constraint METADATA_STORE primary key (METADATA_KEY, REGION)
 );
+
+CREATE TABLE INT_RATE_LIMIT  (
+	LIMIT_KEY VARCHAR2(255) NOT NULL,
+	REGION VARCHAR2(100) NOT NULL,
+	REFILL_TIME NUMBER(19,0) NOT NULL,
+	constraint RATE_LIMIT_PK primary key (LIMIT_KEY, REGION)
+);
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.jdbc.ratelimit;
+
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.integration.support.ratelimit.RateLimit;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+/**
+ * @since 5.1
+ */
+@ContextConfiguration
+@RunWith(SpringJUnit4ClassRunner.class)
+@DirtiesContext
+public class JdbcRateLimiterTests {
+
+	@Autowired
+	private DataSource dataSource;
+
+	@Test
+	public void testSharedBucket() {
+		JdbcRateLimiter limiter1 = createLimiter("shared");
+		JdbcRateLimiter limiter2 = createLimiter("shared");
+		JdbcRateLimiter other = createLimiter("other");
+		RateLimit limit = new RateLimit(3, Duration.ofMinutes(1));
+
+		assertEquals(0, limiter1.tryAcquire("foo", limit, 1));
+		assertEquals(0, limiter2.tryAcquire("foo", limit, 2));
+		long wait = limiter1.tryAcquire("foo", limit, 1);
+		assertThat(wait, greaterThan(0L));
+		assertThat(wait, lessThanOrEqualTo(20000L));
+		assertThat(limiter2.tryAcquire("foo", limit, 1), greaterThan(0L));
+
+		assertEquals(0, limiter1.tryAcquire("bar", limit, 3));
+		assertEquals(0, other.tryAcquire("foo", limit, 3));
+	}
+
+	@Test
+	public void testConcurrentAcquire() throws Exception {
+		RateLimit limit = new RateLimit(20, Duration.ofMinutes(1));
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		List<Future<Integer>> futures = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			JdbcRateLimiter limiter = createLimiter("concurrent");
+			futures.add(executor.submit(() -> {
+				int acquired = 0;
+				for (int j = 0; j < 10; j++) {
+					if (limiter.tryAcquire("foo", limit, 1) == 0) {
+						acquired++;
+					}
+				}
+				return acquired;
+			}));
+		}
+		int acquired = 0;
+		for (Future<Integer> future : futures) {
+			acquired += future.get(30, TimeUnit.SECONDS);
+		}
+		executor.shutdown();
+		assertEquals(20, acquired);
+	}
+
+	private JdbcRateLimiter createLimiter(String region) {
+		JdbcRateLimiter limiter = new JdbcRateLimiter(this.dataSource);
+		limiter.setRegion(region);
+		limiter.afterPropertiesSet();
+		return limiter;
+	}
+
+}
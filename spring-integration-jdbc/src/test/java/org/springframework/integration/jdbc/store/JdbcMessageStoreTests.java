@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -22,6 +22,7 @@ import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.springframework.integration.test.matcher.PayloadAndHeaderMatcher.sameExceptIgnorableHeaders;
 
 import java.io.BufferedReader;
@@ -43,6 +44,7 @@ import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.integration.IntegrationMessageHeaderAccessor;
 import org.springframework.integration.channel.DirectChannel;
+import org.springframework.integration.codec.kryo.MessageCodec;
 import org.springframework.integration.history.MessageHistory;
 import org.springframework.integration.store.MessageGroup;
 import org.springframework.integration.support.MessageBuilder;
@@ -96,6 +98,32 @@ public class JdbcMessageStoreTests {
 		assertThat(saved, sameExceptIgnorableHeaders(result));
 	}
 
+	@Test
+	public void testCodec() throws Exception {
+		Message<String> legacy = MessageBuilder.withPayload("foo").setHeader("bar", "baz").build();
+		this.messageStore.addMessage(legacy);
+
+		JdbcMessageStore codecStore = new JdbcMessageStore(this.dataSource);
+		codecStore.setCodec(new MessageCodec());
+		Message<?> result = codecStore.getMessage(legacy.getHeaders().getId());
+		assertNotNull(result);
+		assertThat(legacy, sameExceptIgnorableHeaders(result));
+
+		Message<String> message = MessageBuilder.withPayload("qux").setHeader("bar", "baz").build();
+		codecStore.addMessage(message);
+		result = codecStore.getMessage(message.getHeaders().getId());
+		assertNotNull(result);
+		assertEquals(message.getHeaders().getId(), result.getHeaders().getId());
+		assertThat(message, sameExceptIgnorableHeaders(result));
+		try {
+			this.messageStore.getMessage(message.getHeaders().getId());
+			fail("Expected the codec data not to be Java serialized");
+		}
+		catch (RuntimeException e) {
+			// expected
+		}
+	}
+
 	@Test
 	public void testWithMessageHistory() throws Exception {
 
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -31,6 +31,7 @@ import org.junit.runner.RunWith;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.serializer.support.SerializingConverter;
+import org.springframework.integration.codec.kryo.MessageCodec;
 import org.springframework.integration.jdbc.store.JdbcChannelMessageStore;
 import org.springframework.integration.support.MessageBuilder;
 import org.springframework.jdbc.support.lob.DefaultLobHandler;
@@ -111,6 +112,31 @@ public abstract class AbstractJdbcChannelMessageStoreTests {
 		assertEquals(message.getHeaders().getId(), messageFromDb.getHeaders().getId());
 	}
 
+	@Test
+	public void testCodec() throws Exception {
+		Message<String> legacy = MessageBuilder.withPayload("foo").setHeader("bar", "baz").build();
+		Message<String> message = MessageBuilder.withPayload("qux").setHeader("bar", "baz").build();
+		JdbcChannelMessageStore codecStore = new JdbcChannelMessageStore(this.dataSource);
+		codecStore.setRegion(REGION);
+		codecStore.setChannelMessageStoreQueryProvider(this.queryProvider);
+		codecStore.setCodec(new MessageCodec());
+		codecStore.afterPropertiesSet();
+
+		TransactionTemplate transactionTemplate = new TransactionTemplate(this.transactionManager);
+		transactionTemplate.execute(status -> this.messageStore.addMessageToGroup(TEST_MESSAGE_GROUP, legacy));
+		transactionTemplate.execute(status -> codecStore.addMessageToGroup(TEST_MESSAGE_GROUP, message));
+
+		Message<?> messageFromDb = codecStore.pollMessageFromGroup(TEST_MESSAGE_GROUP);
+		assertNotNull(messageFromDb);
+		assertEquals(legacy.getHeaders().getId(), messageFromDb.getHeaders().getId());
+		assertEquals("baz", messageFromDb.getHeaders().get("bar"));
+		messageFromDb = codecStore.pollMessageFromGroup(TEST_MESSAGE_GROUP);
+		assertNotNull(messageFromDb);
+		assertEquals(message.getHeaders().getId(), messageFromDb.getHeaders().getId());
+		assertEquals("qux", messageFromDb.getPayload());
+		assertEquals("baz", messageFromDb.getHeaders().get("bar"));
+	}
+
 	@Test
 	public void testAddAndGetCustomStatementSetter() {
 		messageStore.setPreparedStatementSetter(getMessageGroupPreparedStatementSetter());
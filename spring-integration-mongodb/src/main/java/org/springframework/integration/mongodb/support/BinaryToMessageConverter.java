@@ -1,5 +1,5 @@
 /*
- * Copyright 2016-2017 the original author or authors.
+ * Copyright 2016-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -20,6 +20,8 @@ import org.bson.types.Binary;
 
 import org.springframework.core.convert.converter.Converter;
 import org.springframework.data.convert.ReadingConverter;
+import org.springframework.integration.codec.Codec;
+import org.springframework.integration.codec.CodecSerializer;
 import org.springframework.integration.support.converter.WhiteListDeserializingConverter;
 import org.springframework.messaging.Message;
 
@@ -31,7 +33,23 @@ import org.springframework.messaging.Message;
 @ReadingConverter
 public class BinaryToMessageConverter implements Converter<Binary, Message<?>> {
 
-	private final WhiteListDeserializingConverter deserializingConverter = new WhiteListDeserializingConverter();
+	private final WhiteListDeserializingConverter deserializingConverter;
+
+	public BinaryToMessageConverter() {
+		this.deserializingConverter = new WhiteListDeserializingConverter();
+	}
+
+	/**
+	 * Create an instance that decodes messages with the provided {@link Codec}
+	 * instead of Java serialization; messages stored with Java serialization can
+	 * still be read.
+	 * @param codec the codec.
+	 * @since 5.1
+	 * @see CodecSerializer
+	 */
+	public BinaryToMessageConverter(Codec codec) {
+		this.deserializingConverter = new WhiteListDeserializingConverter(new CodecSerializer(codec), true);
+	}
 
 	@Override
 	public Message<?> convert(Binary source) {
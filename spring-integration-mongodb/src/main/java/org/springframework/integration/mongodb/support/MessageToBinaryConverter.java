@@ -1,5 +1,5 @@
 /*
- * Copyright 2016-2017 the original author or authors.
+ * Copyright 2016-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -21,6 +21,8 @@ import org.bson.types.Binary;
 import org.springframework.core.convert.converter.Converter;
 import org.springframework.core.serializer.support.SerializingConverter;
 import org.springframework.data.convert.WritingConverter;
+import org.springframework.integration.codec.Codec;
+import org.springframework.integration.codec.CodecSerializer;
 import org.springframework.messaging.Message;
 
 /**
@@ -30,7 +32,22 @@ import org.springframework.messaging.Message;
 @WritingConverter
 public class MessageToBinaryConverter implements Converter<Message<?>, Binary> {
 
-	private final Converter<Object, byte[]> serializingConverter = new SerializingConverter();
+	private final Converter<Object, byte[]> serializingConverter;
+
+	public MessageToBinaryConverter() {
+		this.serializingConverter = new SerializingConverter();
+	}
+
+	/**
+	 * Create an instance that encodes messages with the provided {@link Codec}
+	 * instead of Java serialization.
+	 * @param codec the codec.
+	 * @since 5.1
+	 * @see CodecSerializer
+	 */
+	public MessageToBinaryConverter(Codec codec) {
+		this.serializingConverter = new SerializingConverter(new CodecSerializer(codec));
+	}
 
 	@Override
 	public Binary convert(Message<?> source) {
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,12 +16,20 @@
 
 package org.springframework.integration.mongodb.store;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import org.junit.Test;
 
 import org.springframework.context.support.GenericApplicationContext;
 import org.springframework.data.mongodb.MongoDbFactory;
 import org.springframework.data.mongodb.core.SimpleMongoDbFactory;
+import org.springframework.integration.codec.kryo.MessageCodec;
+import org.springframework.integration.mongodb.rules.MongoDbAvailable;
 import org.springframework.integration.store.MessageStore;
+import org.springframework.integration.support.MessageBuilder;
 import org.springframework.integration.test.util.TestUtils;
+import org.springframework.messaging.Message;
 
 import com.mongodb.MongoClient;
 
@@ -42,4 +50,34 @@ public class ConfigurableMongoDbMessageStoreTests extends AbstractMongoDbMessage
 		return mongoDbMessageStore;
 	}
 
+	@Test
+	@MongoDbAvailable
+	public void testCodec() throws Exception {
+		MongoDbFactory mongoDbFactory = new SimpleMongoDbFactory(new MongoClient(), "test");
+		cleanupCollections(mongoDbFactory);
+		MessageStore legacyStore = getMessageStore();
+		Message<String> legacy = MessageBuilder.withPayload("foo").setHeader("bar", "baz").build();
+		legacyStore.addMessage(legacy);
+
+		ConfigurableMongoDbMessageStore codecStore = new ConfigurableMongoDbMessageStore(mongoDbFactory);
+		codecStore.setCodec(new MessageCodec());
+		GenericApplicationContext testApplicationContext = TestUtils.createTestApplicationContext();
+		testApplicationContext.refresh();
+		codecStore.setApplicationContext(testApplicationContext);
+		codecStore.afterPropertiesSet();
+		Message<?> result = codecStore.getMessage(legacy.getHeaders().getId());
+		assertNotNull(result);
+		assertEquals("foo", result.getPayload());
+		assertEquals("baz", result.getHeaders().get("bar"));
+
+		Message<String> message = MessageBuilder.withPayload("qux").setHeader("bar", "baz").build();
+		codecStore.addMessage(message);
+		result = codecStore.getMessage(message.getHeaders().getId());
+		assertNotNull(result);
+		assertEquals(message.getHeaders().getId(), result.getHeaders().getId());
+		assertEquals("qux", result.getPayload());
+		assertEquals("baz", result.getHeaders().get("bar"));
+		testApplicationContext.close();
+	}
+
 }
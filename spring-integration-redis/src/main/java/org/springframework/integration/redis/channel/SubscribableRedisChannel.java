@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2016 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,6 +17,7 @@
 package org.springframework.integration.redis.channel;
 
 import java.util.concurrent.Executor;
+import java.util.function.Function;
 
 import org.springframework.beans.factory.BeanFactoryAware;
 import org.springframework.beans.factory.DisposableBean;
@@ -33,8 +34,10 @@ import org.springframework.data.redis.serializer.StringRedisSerializer;
 import org.springframework.integration.MessageDispatchingException;
 import org.springframework.integration.channel.AbstractMessageChannel;
 import org.springframework.integration.channel.MessagePublishingErrorHandler;
+import org.springframework.integration.channel.OverflowPolicy;
 import org.springframework.integration.context.IntegrationProperties;
 import org.springframework.integration.dispatcher.BroadcastingDispatcher;
+import org.springframework.integration.redis.support.PartitionedDispatcher;
 import org.springframework.integration.support.channel.BeanFactoryChannelResolver;
 import org.springframework.integration.support.converter.SimpleMessageConverter;
 import org.springframework.integration.util.ErrorHandlingTaskExecutor;
@@ -57,6 +60,8 @@ import org.springframework.util.StringUtils;
 public class SubscribableRedisChannel extends AbstractMessageChannel
 		implements SubscribableChannel, SmartLifecycle, DisposableBean {
 
+	private static final long DISPATCHER_STOP_TIMEOUT = 10000;
+
 	private final RedisMessageListenerContainer container = new RedisMessageListenerContainer();
 
 	private final RedisConnectionFactory connectionFactory;
@@ -78,6 +83,16 @@ public class SubscribableRedisChannel extends AbstractMessageChannel
 
 	private volatile MessageConverter messageConverter = new SimpleMessageConverter();
 
+	private int dispatchPartitions;
+
+	private int dispatchQueueCapacity = 1000;
+
+	private Function<Message<?>, ?> partitionFunction;
+
+	private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+
+	private volatile PartitionedDispatcher partitionedDispatcher;
+
 	public SubscribableRedisChannel(RedisConnectionFactory connectionFactory, String topicName) {
 		Assert.notNull(connectionFactory, "'connectionFactory' must not be null");
 		Assert.hasText(topicName, "'topicName' must not be empty");
@@ -113,6 +128,77 @@ public class SubscribableRedisChannel extends AbstractMessageChannel
 		this.dispatcher.setMaxSubscribers(maxSubscribers);
 	}
 
+	/**
+	 * Set the number of partitions the received messages are dispatched to; each
+	 * partition has a bounded queue and its own thread invoking the subscribers,
+	 * so that the listener thread only converts the messages.
+	 * Messages with the same {@link #setPartitionFunction(Function) partition key}
+	 * are dispatched in order. Default 0 - the subscribers are invoked on the listener thread.
+	 * @param dispatchPartitions the number of partitions.
+	 * @since 5.1
+	 */
+	public void setDispatchPartitions(int dispatchPartitions) {
+		Assert.isTrue(dispatchPartitions >= 0, "'dispatchPartitions' must not be negative");
+		this.dispatchPartitions = dispatchPartitions;
+	}
+
+	/**
+	 * Set the capacity of the queue of each dispatch partition. Default 1000.
+	 * @param dispatchQueueCapacity the queue capacity.
+	 * @since 5.1
+	 * @see #setDispatchPartitions(int)
+	 */
+	public void setDispatchQueueCapacity(int dispatchQueueCapacity) {
+		Assert.isTrue(dispatchQueueCapacity > 0, "'dispatchQueueCapacity' must be greater than 0");
+		this.dispatchQueueCapacity = dispatchQueueCapacity;
+	}
+
+	/**
+	 * Set the function returning the partition key of a received message.
+	 * By default, the key is the topic of the channel, so all the messages are handed to
+	 * the same partition and the subscribers receive them in order; provide a function
+	 * returning a message key to spread the messages over the partitions while keeping the
+	 * order per key. A function returning {@code null} distributes the messages
+	 * round-robin, without any ordering.
+	 * @param partitionFunction the partition function.
+	 * @since 5.1
+	 * @see #setDispatchPartitions(int)
+	 */
+	public void setPartitionFunction(Function<Message<?>, ?> partitionFunction) {
+		this.partitionFunction = partitionFunction;
+	}
+
+	/**
+	 * Set the policy applied when the queue of a dispatch partition is full.
+	 * Default {@link OverflowPolicy#BLOCK}.
+	 * @param overflowPolicy the overflow policy.
+	 * @since 5.1
+	 * @see #setDispatchPartitions(int)
+	 */
+	public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+		Assert.notNull(overflowPolicy, "'overflowPolicy' must not be null");
+		this.overflowPolicy = overflowPolicy;
+	}
+
+	/**
+	 * Return the number of received messages waiting in the dispatch partition queues.
+	 * @return the number of queued messages.
+	 * @since 5.1
+	 */
+	public int getDispatchQueueSize() {
+		return this.partitionedDispatcher != null ? this.partitionedDispatcher.getQueueSize() : 0;
+	}
+
+	/**
+	 * Return the number of received messages dropped because a dispatch partition
+	 * queue was full.
+	 * @return the number of dropped messages.
+	 * @since 5.1
+	 */
+	public long getDispatchDroppedCount() {
+		return this.partitionedDispatcher != null ? this.partitionedDispatcher.getDroppedCount() : 0;
+	}
+
 	@Override
 	public boolean subscribe(MessageHandler handler) {
 		return this.dispatcher.addHandler(handler);
@@ -147,11 +233,22 @@ public class SubscribableRedisChannel extends AbstractMessageChannel
 			((BeanFactoryAware) this.messageConverter).setBeanFactory(this.getBeanFactory());
 		}
 		this.container.setConnectionFactory(this.connectionFactory);
+		ErrorHandler errorHandler = new MessagePublishingErrorHandler(
+				new BeanFactoryChannelResolver(this.getBeanFactory()));
 		if (!(this.taskExecutor instanceof ErrorHandlingTaskExecutor)) {
-			ErrorHandler errorHandler = new MessagePublishingErrorHandler(
-					new BeanFactoryChannelResolver(this.getBeanFactory()));
 			this.taskExecutor = new ErrorHandlingTaskExecutor(this.taskExecutor, errorHandler);
 		}
+		if (this.dispatchPartitions > 0) {
+			PartitionedDispatcher partitionedDispatcher = new PartitionedDispatcher(this.dispatchPartitions,
+					this.dispatchQueueCapacity, this::dispatch);
+			String topicName = this.topicName;
+			partitionedDispatcher.setPartitionFunction(
+					this.partitionFunction != null ? this.partitionFunction : m -> topicName);
+			partitionedDispatcher.setOverflowPolicy(this.overflowPolicy);
+			partitionedDispatcher.setErrorHandler(errorHandler);
+			partitionedDispatcher.setTaskExecutor(new SimpleAsyncTaskExecutor(this.topicName + "-dispatcher-"));
+			this.partitionedDispatcher = partitionedDispatcher;
+		}
 		this.container.setTaskExecutor(this.taskExecutor);
 		MessageListenerAdapter adapter = new MessageListenerAdapter(new MessageListenerDelegate());
 		adapter.setSerializer(this.serializer);
@@ -183,6 +280,9 @@ public class SubscribableRedisChannel extends AbstractMessageChannel
 
 	@Override
 	public void start() {
+		if (this.partitionedDispatcher != null) {
+			this.partitionedDispatcher.start();
+		}
 		if (this.container != null) {
 			this.container.start();
 		}
@@ -193,12 +293,20 @@ public class SubscribableRedisChannel extends AbstractMessageChannel
 		if (this.container != null) {
 			this.container.stop();
 		}
+		stopPartitionedDispatcher();
 	}
 
 	@Override
 	public void stop(Runnable callback) {
 		if (this.container != null) {
-			this.container.stop(callback);
+			this.container.stop(() -> {
+				stopPartitionedDispatcher();
+				callback.run();
+			});
+		}
+		else {
+			stopPartitionedDispatcher();
+			callback.run();
 		}
 	}
 
@@ -207,6 +315,26 @@ public class SubscribableRedisChannel extends AbstractMessageChannel
 		if (this.container != null) {
 			this.container.destroy();
 		}
+		stopPartitionedDispatcher();
+	}
+
+	private void stopPartitionedDispatcher() {
+		if (this.partitionedDispatcher != null) {
+			this.partitionedDispatcher.stop(DISPATCHER_STOP_TIMEOUT);
+		}
+	}
+
+	private void dispatch(Message<?> message) {
+		try {
+			this.dispatcher.dispatch(message);
+		}
+		catch (MessageDispatchingException e) {
+			String topicName = StringUtils.hasText(this.topicName) ? this.topicName : "unknown";
+			throw new MessageDeliveryException(message, e.getMessage()
+					+ " for redis-channel '"
+					+ topicName
+					+ "' (" + getFullChannelName() + ").", e);
+		}
 	}
 
 	private class MessageListenerDelegate {
@@ -218,16 +346,12 @@ public class SubscribableRedisChannel extends AbstractMessageChannel
 		@SuppressWarnings({ "unused" })
 		public void handleMessage(Object payload) {
 			Message<?> siMessage = SubscribableRedisChannel.this.messageConverter.toMessage(payload, null);
-			try {
-				SubscribableRedisChannel.this.dispatcher.dispatch(siMessage);
+			PartitionedDispatcher partitionedDispatcher = SubscribableRedisChannel.this.partitionedDispatcher;
+			if (partitionedDispatcher != null) {
+				partitionedDispatcher.dispatch(siMessage);
 			}
-			catch (MessageDispatchingException e) {
-				String topicName = SubscribableRedisChannel.this.topicName;
-				topicName = StringUtils.hasText(topicName) ? topicName : "unknown";
-				throw new MessageDeliveryException(siMessage, e.getMessage()
-						+ " for redis-channel '"
-						+ topicName
-						+ "' (" + SubscribableRedisChannel.this.getFullChannelName() + ").", e);
+			else {
+				dispatch(siMessage);
 			}
 		}
 	}
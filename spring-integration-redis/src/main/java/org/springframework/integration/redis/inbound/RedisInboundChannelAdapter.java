@@ -1,5 +1,5 @@
 /*
- * Copyright 2007-2017 the original author or authors.
+ * Copyright 2007-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -20,8 +20,10 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.Executor;
+import java.util.function.Function;
 
 import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.listener.ChannelTopic;
 import org.springframework.data.redis.listener.PatternTopic;
@@ -30,7 +32,9 @@ import org.springframework.data.redis.listener.Topic;
 import org.springframework.data.redis.listener.adapter.MessageListenerAdapter;
 import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.integration.channel.OverflowPolicy;
 import org.springframework.integration.endpoint.MessageProducerSupport;
+import org.springframework.integration.redis.support.PartitionedDispatcher;
 import org.springframework.integration.redis.support.RedisHeaders;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageHeaders;
@@ -50,6 +54,8 @@ import org.springframework.util.StringUtils;
  */
 public class RedisInboundChannelAdapter extends MessageProducerSupport {
 
+	private static final long DISPATCHER_STOP_TIMEOUT = 10000;
+
 	private final RedisMessageListenerContainer container = new RedisMessageListenerContainer();
 
 	private volatile MessageConverter messageConverter = new SimpleMessageConverter();
@@ -60,6 +66,16 @@ public class RedisInboundChannelAdapter extends MessageProducerSupport {
 
 	private volatile RedisSerializer<?> serializer = new StringRedisSerializer();
 
+	private int dispatchPartitions;
+
+	private int dispatchQueueCapacity = 1000;
+
+	private Function<Message<?>, ?> partitionFunction;
+
+	private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+
+	private volatile PartitionedDispatcher partitionedDispatcher;
+
 	public RedisInboundChannelAdapter(RedisConnectionFactory connectionFactory) {
 		Assert.notNull(connectionFactory, "connectionFactory must not be null");
 		this.container.setConnectionFactory(connectionFactory);
@@ -92,6 +108,74 @@ public class RedisInboundChannelAdapter extends MessageProducerSupport {
 		this.container.setTaskExecutor(taskExecutor);
 	}
 
+	/**
+	 * Set the number of partitions the received messages are dispatched to; each
+	 * partition has a bounded queue and its own thread sending the messages to the
+	 * output channel, so that the listener thread only converts the messages.
+	 * Messages with the same {@link #setPartitionFunction(Function) partition key}
+	 * are sent in order. Default 0 - messages are sent on the listener thread.
+	 * @param dispatchPartitions the number of partitions.
+	 * @since 5.1
+	 */
+	public void setDispatchPartitions(int dispatchPartitions) {
+		Assert.isTrue(dispatchPartitions >= 0, "'dispatchPartitions' must not be negative");
+		this.dispatchPartitions = dispatchPartitions;
+	}
+
+	/**
+	 * Set the capacity of the queue of each dispatch partition. Default 1000.
+	 * @param dispatchQueueCapacity the queue capacity.
+	 * @since 5.1
+	 * @see #setDispatchPartitions(int)
+	 */
+	public void setDispatchQueueCapacity(int dispatchQueueCapacity) {
+		Assert.isTrue(dispatchQueueCapacity > 0, "'dispatchQueueCapacity' must be greater than 0");
+		this.dispatchQueueCapacity = dispatchQueueCapacity;
+	}
+
+	/**
+	 * Set the function returning the partition key of a received message.
+	 * Default is the {@link RedisHeaders#MESSAGE_SOURCE} header, so that the messages
+	 * of each topic are sent in order.
+	 * @param partitionFunction the partition function.
+	 * @since 5.1
+	 * @see #setDispatchPartitions(int)
+	 */
+	public void setPartitionFunction(Function<Message<?>, ?> partitionFunction) {
+		this.partitionFunction = partitionFunction;
+	}
+
+	/**
+	 * Set the policy applied when the queue of a dispatch partition is full.
+	 * Default {@link OverflowPolicy#BLOCK}.
+	 * @param overflowPolicy the overflow policy.
+	 * @since 5.1
+	 * @see #setDispatchPartitions(int)
+	 */
+	public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+		Assert.notNull(overflowPolicy, "'overflowPolicy' must not be null");
+		this.overflowPolicy = overflowPolicy;
+	}
+
+	/**
+	 * Return the number of received messages waiting in the dispatch partition queues.
+	 * @return the number of queued messages.
+	 * @since 5.1
+	 */
+	public int getDispatchQueueSize() {
+		return this.partitionedDispatcher != null ? this.partitionedDispatcher.getQueueSize() : 0;
+	}
+
+	/**
+	 * Return the number of received messages dropped because a dispatch partition
+	 * queue was full.
+	 * @return the number of dropped messages.
+	 * @since 5.1
+	 */
+	public long getDispatchDroppedCount() {
+		return this.partitionedDispatcher != null ? this.partitionedDispatcher.getDroppedCount() : 0;
+	}
+
 	@Override
 	public String getComponentType() {
 		return "redis:inbound-channel-adapter";
@@ -133,11 +217,25 @@ public class RedisInboundChannelAdapter extends MessageProducerSupport {
 		adapter.afterPropertiesSet();
 		this.container.addMessageListener(adapter, topicList);
 		this.container.afterPropertiesSet();
+		if (this.dispatchPartitions > 0) {
+			PartitionedDispatcher partitionedDispatcher = new PartitionedDispatcher(this.dispatchPartitions,
+					this.dispatchQueueCapacity, this::sendMessage);
+			if (this.partitionFunction != null) {
+				partitionedDispatcher.setPartitionFunction(this.partitionFunction);
+			}
+			partitionedDispatcher.setOverflowPolicy(this.overflowPolicy);
+			String prefix = getComponentName() != null ? getComponentName() : "redis-inbound";
+			partitionedDispatcher.setTaskExecutor(new SimpleAsyncTaskExecutor(prefix + "-dispatcher-"));
+			this.partitionedDispatcher = partitionedDispatcher;
+		}
 	}
 
 	@Override
 	protected void doStart() {
 		super.doStart();
+		if (this.partitionedDispatcher != null) {
+			this.partitionedDispatcher.start();
+		}
 		this.container.start();
 	}
 
@@ -146,6 +244,9 @@ public class RedisInboundChannelAdapter extends MessageProducerSupport {
 	protected void doStop() {
 		super.doStop();
 		this.container.stop();
+		if (this.partitionedDispatcher != null) {
+			this.partitionedDispatcher.stop(DISPATCHER_STOP_TIMEOUT);
+		}
 	}
 
 	private Message<?> convertMessage(Object object, String source) {
@@ -166,7 +267,14 @@ public class RedisInboundChannelAdapter extends MessageProducerSupport {
 
 		@SuppressWarnings("unused")
 		public void handleMessage(Object message, String source) {
-			sendMessage(convertMessage(message, source));
+			Message<?> siMessage = convertMessage(message, source);
+			PartitionedDispatcher partitionedDispatcher = RedisInboundChannelAdapter.this.partitionedDispatcher;
+			if (partitionedDispatcher != null) {
+				partitionedDispatcher.dispatch(siMessage);
+			}
+			else {
+				sendMessage(siMessage);
+			}
 		}
 
 	}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2013-2017 the original author or authors.
+ * Copyright 2013-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,6 +16,11 @@
 
 package org.springframework.integration.redis.inbound;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 
@@ -25,6 +30,8 @@ import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.BoundListOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
@@ -61,6 +68,61 @@ public class RedisQueueMessageDrivenEndpoint extends MessageProducerSupport impl
 
 	public static final long DEFAULT_RECOVERY_INTERVAL = 5000;
 
+	@SuppressWarnings("rawtypes")
+	private static final RedisScript<List> MULTI_POP_SCRIPT = new DefaultRedisScript<>(
+			"local n = tonumber(ARGV[1])\n" +
+			"if ARGV[2] == 'right' then\n" +
+			"  local items = redis.call('LRANGE', KEYS[1], -n, -1)\n" +
+			"  if #items > 0 then redis.call('LTRIM', KEYS[1], 0, -#items - 1) end\n" +
+			"  local reversed = {}\n" +
+			"  for i = #items, 1, -1 do reversed[#reversed + 1] = items[i] end\n" +
+			"  return reversed\n" +
+			"end\n" +
+			"local items = redis.call('LRANGE', KEYS[1], 0, n - 1)\n" +
+			"if #items > 0 then redis.call('LTRIM', KEYS[1], #items, -1) end\n" +
+			"return items", List.class);
+
+	@SuppressWarnings("rawtypes")
+	private static final RedisScript<List> MULTI_POP_PUSH_SCRIPT = new DefaultRedisScript<>(
+			"local items = {}\n" +
+			"for i = 1, tonumber(ARGV[1]) do\n" +
+			"  local item = redis.call('RPOPLPUSH', KEYS[1], KEYS[2])\n" +
+			"  if not item then break end\n" +
+			"  items[#items + 1] = item\n" +
+			"end\n" +
+			"return items", List.class);
+
+	private static final RedisScript<Long> RETURN_IN_FLIGHT_SCRIPT = new DefaultRedisScript<>(
+			"for i = 1, #ARGV do\n" +
+			"  redis.call('LREM', KEYS[2], 1, ARGV[i])\n" +
+			"  redis.call('RPUSH', KEYS[1], ARGV[i])\n" +
+			"end\n" +
+			"return #ARGV", Long.class);
+
+	private static final RedisScript<Long> RECOVER_IN_FLIGHT_SCRIPT = new DefaultRedisScript<>(
+			"local n = 0\n" +
+			"local item = redis.call('LPOP', KEYS[2])\n" +
+			"while item do\n" +
+			"  redis.call('RPUSH', KEYS[1], item)\n" +
+			"  n = n + 1\n" +
+			"  item = redis.call('LPOP', KEYS[2])\n" +
+			"end\n" +
+			"return n", Long.class);
+
+	private static final RedisSerializer<byte[]> BYTES_SERIALIZER = new RedisSerializer<byte[]>() {
+
+		@Override
+		public byte[] serialize(byte[] bytes) {
+			return bytes;
+		}
+
+		@Override
+		public byte[] deserialize(byte[] bytes) {
+			return bytes;
+		}
+
+	};
+
 	private final BoundListOperations<String, byte[]> boundListOperations;
 
 	private volatile ApplicationEventPublisher applicationEventPublisher;
@@ -85,6 +147,12 @@ public class RedisQueueMessageDrivenEndpoint extends MessageProducerSupport impl
 
 	private volatile boolean rightPop = true;
 
+	private volatile int batchSize = 1;
+
+	private volatile String inFlightQueueName;
+
+	private volatile boolean inFlightRecovered;
+
 	/**
 	 * @param queueName         Must not be an empty String
 	 * @param connectionFactory Must not be null
@@ -161,12 +229,41 @@ public class RedisQueueMessageDrivenEndpoint extends MessageProducerSupport impl
 		this.rightPop = rightPop;
 	}
 
+	/**
+	 * Set the maximum number of elements to drain from the queue per wakeup. After a
+	 * blocking pop returns an element, up to {@code batchSize - 1} further elements
+	 * are removed with a single Lua script and sent in order.
+	 * @param batchSize the batch size. Defaults to 1.
+	 * @since 5.1
+	 */
+	public void setBatchSize(int batchSize) {
+		Assert.isTrue(batchSize > 0, "'batchSize' must be > 0.");
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Enable reliable-queue semantics: elements are atomically moved to the provided
+	 * in-flight list ({@code BRPOPLPUSH}) and only removed from it once the message has
+	 * been sent successfully. Elements left in the in-flight list (for example after a
+	 * crash or a failed send) are returned to the queue when this endpoint starts; each
+	 * endpoint instance should therefore use its own in-flight list. Requires
+	 * {@link #setRightPop(boolean) rightPop}.
+	 * @param inFlightQueueName the name of the in-flight list.
+	 * @since 5.1
+	 */
+	public void setInFlightQueueName(String inFlightQueueName) {
+		Assert.hasText(inFlightQueueName, "'inFlightQueueName' must not be empty");
+		this.inFlightQueueName = inFlightQueueName;
+	}
+
 	@Override
 	protected void onInit() {
 		super.onInit();
 		if (this.expectMessage) {
 			Assert.notNull(this.serializer, "'serializer' has to be provided where 'expectMessage == true'.");
 		}
+		Assert.isTrue(this.inFlightQueueName == null || this.rightPop,
+				"'inFlightQueueName' requires 'rightPop == true'.");
 		if (this.taskExecutor == null) {
 			String beanName = this.getComponentName();
 			this.taskExecutor = new SimpleAsyncTaskExecutor((beanName == null ? "" : beanName + "-")
@@ -185,18 +282,10 @@ public class RedisQueueMessageDrivenEndpoint extends MessageProducerSupport impl
 		return "redis:queue-inbound-channel-adapter";
 	}
 
-	@SuppressWarnings("unchecked")
 	private void popMessageAndSend() {
-		Message<Object> message = null;
-
-		byte[] value = null;
+		List<byte[]> values;
 		try {
-			if (this.rightPop) {
-				value = this.boundListOperations.rightPop(this.receiveTimeout, TimeUnit.MILLISECONDS);
-			}
-			else {
-				value = this.boundListOperations.leftPop(this.receiveTimeout, TimeUnit.MILLISECONDS);
-			}
+			values = pop();
 		}
 		catch (Exception e) {
 			this.listening = false;
@@ -212,29 +301,88 @@ public class RedisQueueMessageDrivenEndpoint extends MessageProducerSupport impl
 			return;
 		}
 
-		if (value != null) {
-			if (this.expectMessage) {
-				try {
-					message = (Message<Object>) this.serializer.deserialize(value);
+		int sent = 0;
+		try {
+			for (byte[] value : values) {
+				if (!this.listening) {
+					break;
 				}
-				catch (Exception e) {
-					throw new MessagingException("Deserialization of Message failed.", e);
+				sent++;
+				this.sendMessage(createMessage(value));
+				if (this.inFlightQueueName != null) {
+					this.boundListOperations.getOperations().opsForList().remove(this.inFlightQueueName, 1, value);
 				}
 			}
-			else {
-				Object payload = value;
-				if (this.serializer != null) {
-					payload = this.serializer.deserialize(value);
-				}
-				message = this.getMessageBuilderFactory().withPayload(payload).build();
+		}
+		finally {
+			if (sent < values.size()) {
+				pushBack(values.subList(sent, values.size()));
 			}
 		}
+	}
 
-		if (message != null) {
-			if (this.listening) {
-				this.sendMessage(message);
+	private List<byte[]> pop() {
+		if (this.inFlightQueueName != null && !this.inFlightRecovered) {
+			Long recovered = executeScript(RECOVER_IN_FLIGHT_SCRIPT, inFlightKeys());
+			if (recovered != null && recovered > 0 && logger.isInfoEnabled()) {
+				logger.info("Returned " + recovered + " in-flight element(s) from '" + this.inFlightQueueName
+						+ "' to the queue");
 			}
-			else {
+			this.inFlightRecovered = true;
+		}
+
+		byte[] value;
+		if (this.inFlightQueueName != null) {
+			value = this.boundListOperations.getOperations().opsForList()
+					.rightPopAndLeftPush(this.boundListOperations.getKey(), this.inFlightQueueName,
+							this.receiveTimeout, TimeUnit.MILLISECONDS);
+		}
+		else if (this.rightPop) {
+			value = this.boundListOperations.rightPop(this.receiveTimeout, TimeUnit.MILLISECONDS);
+		}
+		else {
+			value = this.boundListOperations.leftPop(this.receiveTimeout, TimeUnit.MILLISECONDS);
+		}
+		if (value == null) {
+			return Collections.emptyList();
+		}
+		if (this.batchSize == 1) {
+			return Collections.singletonList(value);
+		}
+
+		List<byte[]> values = new ArrayList<>(this.batchSize);
+		values.add(value);
+		List<?> more;
+		byte[] count = bytes(Integer.toString(this.batchSize - 1));
+		if (this.inFlightQueueName != null) {
+			more = executeScript(MULTI_POP_PUSH_SCRIPT, inFlightKeys(), count);
+		}
+		else {
+			more = executeScript(MULTI_POP_SCRIPT, Collections.singletonList(this.boundListOperations.getKey()), count,
+					bytes(this.rightPop ? "right" : "left"));
+		}
+		if (more == null) {
+			return values;
+		}
+		for (Object item : more) {
+			values.add(item instanceof byte[] ? (byte[]) item : bytes(item.toString()));
+		}
+		return values;
+	}
+
+	/**
+	 * Return elements that were popped but not sent to the head of the queue, so that
+	 * they are popped again in the same order.
+	 * @param values the elements in the order they were popped.
+	 */
+	private void pushBack(List<byte[]> values) {
+		List<byte[]> reversed = new ArrayList<>(values);
+		Collections.reverse(reversed);
+		if (this.inFlightQueueName != null) {
+			executeScript(RETURN_IN_FLIGHT_SCRIPT, inFlightKeys(), reversed.toArray(new byte[reversed.size()][]));
+		}
+		else {
+			for (byte[] value : reversed) {
 				if (this.rightPop) {
 					this.boundListOperations.rightPush(value);
 				}
@@ -245,10 +393,48 @@ public class RedisQueueMessageDrivenEndpoint extends MessageProducerSupport impl
 		}
 	}
 
+	private List<String> inFlightKeys() {
+		return Arrays.asList(this.boundListOperations.getKey(), this.inFlightQueueName);
+	}
+
+	/*
+	 * Run the script with EVALSHA (EVAL only the first time), passing the raw bytes of the
+	 * elements as arguments and returning them as is.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private <T> T executeScript(RedisScript<T> script, List<String> keys, byte[]... args) {
+		return (T) this.boundListOperations.getOperations().execute(script, BYTES_SERIALIZER,
+				(RedisSerializer) BYTES_SERIALIZER, keys, (Object[]) args);
+	}
+
+	@SuppressWarnings("unchecked")
+	private Message<Object> createMessage(byte[] value) {
+		if (this.expectMessage) {
+			try {
+				return (Message<Object>) this.serializer.deserialize(value);
+			}
+			catch (Exception e) {
+				throw new MessagingException("Deserialization of Message failed.", e);
+			}
+		}
+		else {
+			Object payload = value;
+			if (this.serializer != null) {
+				payload = this.serializer.deserialize(value);
+			}
+			return this.getMessageBuilderFactory().withPayload(payload).build();
+		}
+	}
+
+	private static byte[] bytes(String value) {
+		return value.getBytes(StandardCharsets.UTF_8);
+	}
+
 	@Override
 	protected void doStart() {
 		if (!this.active) {
 			this.active = true;
+			this.inFlightRecovered = false;
 			this.restart();
 		}
 	}
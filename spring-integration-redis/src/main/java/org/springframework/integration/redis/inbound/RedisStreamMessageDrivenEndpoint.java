@@ -0,0 +1,722 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.redis.inbound;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.ApplicationEventPublisherAware;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.integration.channel.MessagePublishingErrorHandler;
+import org.springframework.integration.endpoint.MessageProducerSupport;
+import org.springframework.integration.redis.event.RedisExceptionEvent;
+import org.springframework.integration.redis.outbound.RedisStreamOutboundChannelAdapter;
+import org.springframework.integration.redis.support.RedisHeaders;
+import org.springframework.integration.support.channel.BeanFactoryChannelResolver;
+import org.springframework.integration.support.management.IntegrationManagedResource;
+import org.springframework.integration.util.ErrorHandlingTaskExecutor;
+import org.springframework.jmx.export.annotation.ManagedMetric;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessagingException;
+import org.springframework.scheduling.SchedulingAwareRunnable;
+import org.springframework.util.Assert;
+
+/**
+ * A message-driven endpoint that consumes a Redis Stream through a consumer group
+ * ({@code XREADGROUP}).
+ * <p>
+ * Each of the {@link #setConcurrency(int) concurrency} consumers reads up to
+ * {@link #setBatchSize(int) batchSize} entries at a time and acknowledges
+ * ({@code XACK}) an entry only after it has been sent to the output channel
+ * successfully (or handed to the error channel); entries that fail remain in the
+ * group's pending entries list. Pending entries that have been idle for longer than
+ * {@link #setClaimMinIdleTime(long) claimMinIdleTime} - for example because their
+ * consumer crashed - are periodically transferred to one of this endpoint's
+ * consumers ({@code XCLAIM}) and redelivered. On start, each consumer first
+ * redelivers the entries still pending for its own name.
+ * <p>
+ * An entry claimed more than {@link #setMaxDeliveries(int) maxDeliveries} times is
+ * not redelivered again: it is sent to the {@link #setDeadLetterChannel(MessageChannel)
+ * deadLetterChannel}, if any, and acknowledged.
+ * <p>
+ * The commands are issued through Lua scripts (cached on the server and invoked with
+ * {@code EVALSHA}) so that they work with any Redis client supported by Spring Data
+ * Redis. Since earlier versions reject {@code XREADGROUP} within scripts, a Redis server
+ * version 7.0 or later is required; the version is checked when the endpoint starts
+ * reading. Since blocking commands do not block within scripts, a consumer that
+ * finds no new entries waits for {@link #setReceiveTimeout(long) receiveTimeout}
+ * before polling the stream again.
+ *
+ * @since 5.1
+ */
+@ManagedResource
+@IntegrationManagedResource
+public class RedisStreamMessageDrivenEndpoint extends MessageProducerSupport
+		implements ApplicationEventPublisherAware {
+
+	public static final long DEFAULT_RECEIVE_TIMEOUT = 1000;
+
+	public static final long DEFAULT_RECOVERY_INTERVAL = 5000;
+
+	public static final int DEFAULT_BATCH_SIZE = 10;
+
+	public static final long DEFAULT_CLAIM_MIN_IDLE_TIME = 60000;
+
+	public static final int DEFAULT_MAX_DELIVERIES = 10;
+
+	private static final int MIN_SERVER_VERSION = 7;
+
+	private static final RedisScript<Long> CREATE_GROUP_SCRIPT = new DefaultRedisScript<>(
+			"local ok = redis.pcall('XGROUP', 'CREATE', KEYS[1], ARGV[1], ARGV[2], 'MKSTREAM')\n" +
+			"if type(ok) == 'table' and ok.err and not string.find(ok.err, 'BUSYGROUP') then\n" +
+			"  return redis.error_reply(ok.err)\n" +
+			"end\n" +
+			"return 1", Long.class);
+
+	@SuppressWarnings("rawtypes")
+	private static final RedisScript<List> READ_SCRIPT = new DefaultRedisScript<>(
+			"local r = redis.call('XREADGROUP', 'GROUP', ARGV[1], ARGV[2], 'COUNT', ARGV[3], " +
+					"'STREAMS', KEYS[1], ARGV[4])\n" +
+			"if not r then return {} end\n" +
+			"return r[1][2]", List.class);
+
+	/*
+	 * Claimed entries are returned as {id, fields, deliveryCount}.
+	 */
+	@SuppressWarnings("rawtypes")
+	private static final RedisScript<List> CLAIM_SCRIPT = new DefaultRedisScript<>(
+			"local pending = redis.call('XPENDING', KEYS[1], ARGV[1], '-', '+', ARGV[3])\n" +
+			"local ids = {}\n" +
+			"local counts = {}\n" +
+			"for _, p in ipairs(pending) do\n" +
+			"  if p[3] >= tonumber(ARGV[4]) then\n" +
+			"    ids[#ids + 1] = p[1]\n" +
+			"    counts[p[1]] = p[4]\n" +
+			"  end\n" +
+			"end\n" +
+			"if #ids == 0 then return {} end\n" +
+			"local claimed = redis.call('XCLAIM', KEYS[1], ARGV[1], ARGV[2], ARGV[4], unpack(ids))\n" +
+			"local entries = {}\n" +
+			"for _, e in ipairs(claimed) do\n" +
+			"  if e then entries[#entries + 1] = {e[1], e[2], counts[e[1]] + 1} end\n" +
+			"end\n" +
+			"return entries", List.class);
+
+	private static final RedisScript<Long> ACK_SCRIPT = new DefaultRedisScript<>(
+			"return redis.call('XACK', KEYS[1], ARGV[1], unpack(ARGV, 2))", Long.class);
+
+	private static final RedisScript<Long> LENGTH_SCRIPT = new DefaultRedisScript<>(
+			"return redis.call('XLEN', KEYS[1])", Long.class);
+
+	private static final RedisScript<Long> PENDING_SCRIPT = new DefaultRedisScript<>(
+			"local ok, r = pcall(redis.call, 'XPENDING', KEYS[1], ARGV[1])\n" +
+			"if not ok then return 0 end\n" +
+			"return r[1]", Long.class);
+
+	private static final byte[] NEW_ENTRIES = encode(">");
+
+	private final RedisSerializer<String> stringSerializer = new StringRedisSerializer();
+
+	private final RedisTemplate<String, byte[]> template;
+
+	private final String streamKey;
+
+	private final List<String> streamKeys;
+
+	private final String groupName;
+
+	private final byte[] groupNameBytes;
+
+	private final AtomicInteger consumersRunning = new AtomicInteger();
+
+	private final AtomicLong lastClaim = new AtomicLong();
+
+	private volatile ApplicationEventPublisher applicationEventPublisher;
+
+	private volatile MessageChannel errorChannel;
+
+	private volatile MessageChannel deadLetterChannel;
+
+	private volatile Executor taskExecutor;
+
+	private volatile RedisSerializer<?> serializer = new JdkSerializationRedisSerializer();
+
+	private volatile boolean expectMessage = false;
+
+	private volatile String consumerName = UUID.randomUUID().toString();
+
+	private volatile int concurrency = 1;
+
+	private volatile int batchSize = DEFAULT_BATCH_SIZE;
+
+	private volatile String startId = "$";
+
+	private volatile long receiveTimeout = DEFAULT_RECEIVE_TIMEOUT;
+
+	private volatile long recoveryInterval = DEFAULT_RECOVERY_INTERVAL;
+
+	private volatile long claimMinIdleTime = DEFAULT_CLAIM_MIN_IDLE_TIME;
+
+	private volatile long claimInterval = DEFAULT_CLAIM_MIN_IDLE_TIME / 2;
+
+	private volatile int maxDeliveries = DEFAULT_MAX_DELIVERIES;
+
+	private volatile boolean serverVersionChecked;
+
+	private volatile boolean groupCreated;
+
+	private volatile boolean active;
+
+	private volatile boolean listening;
+
+	private volatile Runnable stopCallback;
+
+	/**
+	 * @param streamKey         Must not be an empty String
+	 * @param groupName         Must not be an empty String
+	 * @param connectionFactory Must not be null
+	 */
+	public RedisStreamMessageDrivenEndpoint(String streamKey, String groupName,
+			RedisConnectionFactory connectionFactory) {
+
+		Assert.hasText(streamKey, "'streamKey' is required");
+		Assert.hasText(groupName, "'groupName' is required");
+		Assert.notNull(connectionFactory, "'connectionFactory' must not be null");
+		this.template = new RedisTemplate<String, byte[]>();
+		this.template.setConnectionFactory(connectionFactory);
+		this.template.setEnableDefaultSerializer(false);
+		this.template.setKeySerializer(new StringRedisSerializer());
+		this.template.afterPropertiesSet();
+		this.streamKey = streamKey;
+		this.streamKeys = Collections.singletonList(streamKey);
+		this.groupName = groupName;
+		this.groupNameBytes = encode(groupName);
+	}
+
+	@Override
+	public void setApplicationEventPublisher(ApplicationEventPublisher applicationEventPublisher) {
+		this.applicationEventPublisher = applicationEventPublisher;
+	}
+
+	public void setSerializer(RedisSerializer<?> serializer) {
+		this.serializer = serializer;
+	}
+
+	/**
+	 * When data is retrieved from the stream, does the {@code payload} field represent
+	 * just the payload for a Message, or does it represent a serialized
+	 * {@link Message}?. {@code expectMessage} defaults to false.
+	 * @param expectMessage Defaults to false
+	 */
+	public void setExpectMessage(boolean expectMessage) {
+		this.expectMessage = expectMessage;
+	}
+
+	/**
+	 * Set the consumer name within the group; with a {@link #setConcurrency(int)
+	 * concurrency} greater than one, consumers are named {@code consumerName-n}.
+	 * A stable name lets a restarted application redeliver its own pending entries
+	 * immediately rather than waiting for them to be claimed.
+	 * @param consumerName the consumer name. Defaults to a random UUID.
+	 */
+	public void setConsumerName(String consumerName) {
+		Assert.hasText(consumerName, "'consumerName' must not be empty");
+		this.consumerName = consumerName;
+	}
+
+	/**
+	 * Set the number of concurrent consumers, each reading from the stream on its own
+	 * thread of the {@link #setTaskExecutor(Executor) taskExecutor}.
+	 * @param concurrency the number of consumers. Defaults to 1.
+	 */
+	public void setConcurrency(int concurrency) {
+		Assert.isTrue(concurrency > 0, "'concurrency' must be > 0.");
+		this.concurrency = concurrency;
+	}
+
+	/**
+	 * Set the maximum number of entries read ({@code COUNT}) or claimed per round trip.
+	 * @param batchSize the batch size. Defaults to 10.
+	 */
+	public void setBatchSize(int batchSize) {
+		Assert.isTrue(batchSize > 0, "'batchSize' must be > 0.");
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Set the id from which a newly created consumer group starts reading; {@code $}
+	 * for entries added after the group is created, {@code 0} for the whole stream.
+	 * Ignored if the group already exists.
+	 * @param startId the start id. Defaults to {@code $}.
+	 */
+	public void setStartId(String startId) {
+		Assert.hasText(startId, "'startId' must not be empty");
+		this.startId = startId;
+	}
+
+	/**
+	 * The time (milliseconds) a consumer waits before polling the stream again after
+	 * a read returned no entries.
+	 * @param receiveTimeout Must be non-negative. Defaults to {@code 1000}.
+	 */
+	public void setReceiveTimeout(long receiveTimeout) {
+		Assert.isTrue(receiveTimeout >= 0, "'receiveTimeout' must be >= 0.");
+		this.receiveTimeout = receiveTimeout;
+	}
+
+	/**
+	 * Set the time (milliseconds) an entry must have been pending, without being
+	 * acknowledged, before it is claimed from its consumer and redelivered.
+	 * @param claimMinIdleTime the minimum idle time; 0 disables claiming.
+	 * Defaults to {@code 60000}.
+	 */
+	public void setClaimMinIdleTime(long claimMinIdleTime) {
+		Assert.isTrue(claimMinIdleTime >= 0, "'claimMinIdleTime' must be >= 0.");
+		this.claimMinIdleTime = claimMinIdleTime;
+	}
+
+	/**
+	 * Set how often (milliseconds) the pending entries list is inspected for entries
+	 * to claim.
+	 * @param claimInterval the interval. Defaults to {@code 30000}.
+	 */
+	public void setClaimInterval(long claimInterval) {
+		Assert.isTrue(claimInterval > 0, "'claimInterval' must be > 0.");
+		this.claimInterval = claimInterval;
+	}
+
+	/**
+	 * Set the maximum number of times an entry is delivered before it is considered a
+	 * poison entry; when a pending entry is claimed more than this number of times, it is
+	 * sent to the {@link #setDeadLetterChannel(MessageChannel) deadLetterChannel}
+	 * (or logged, if there is none) and acknowledged.
+	 * @param maxDeliveries the maximum number of deliveries; 0 means no limit.
+	 * Defaults to {@code 10}.
+	 */
+	public void setMaxDeliveries(int maxDeliveries) {
+		Assert.isTrue(maxDeliveries >= 0, "'maxDeliveries' must be >= 0.");
+		this.maxDeliveries = maxDeliveries;
+	}
+
+	/**
+	 * Set the channel to send entries exceeding {@link #setMaxDeliveries(int)
+	 * maxDeliveries} to. The message carries the {@link RedisHeaders#STREAM_DELIVERY_COUNT}
+	 * header; if the entry cannot be converted to a message, the payload is the raw
+	 * {@code byte[]} value.
+	 * @param deadLetterChannel the dead letter channel.
+	 */
+	public void setDeadLetterChannel(MessageChannel deadLetterChannel) {
+		this.deadLetterChannel = deadLetterChannel;
+	}
+
+	public void setTaskExecutor(Executor taskExecutor) {
+		this.taskExecutor = taskExecutor;
+	}
+
+	@Override
+	public void setErrorChannel(MessageChannel errorChannel) {
+		super.setErrorChannel(errorChannel);
+		this.errorChannel = errorChannel;
+	}
+
+	public void setRecoveryInterval(long recoveryInterval) {
+		this.recoveryInterval = recoveryInterval;
+	}
+
+	@Override
+	protected void onInit() {
+		super.onInit();
+		if (this.expectMessage) {
+			Assert.notNull(this.serializer, "'serializer' has to be provided where 'expectMessage == true'.");
+		}
+		if (this.taskExecutor == null) {
+			String beanName = this.getComponentName();
+			this.taskExecutor = new SimpleAsyncTaskExecutor((beanName == null ? "" : beanName + "-")
+					+ this.getComponentType());
+		}
+		if (!(this.taskExecutor instanceof ErrorHandlingTaskExecutor) && this.getBeanFactory() != null) {
+			MessagePublishingErrorHandler errorHandler =
+					new MessagePublishingErrorHandler(new BeanFactoryChannelResolver(this.getBeanFactory()));
+			errorHandler.setDefaultErrorChannel(this.errorChannel);
+			this.taskExecutor = new ErrorHandlingTaskExecutor(this.taskExecutor, errorHandler);
+		}
+	}
+
+	@Override
+	public String getComponentType() {
+		return "redis:stream-inbound-channel-adapter";
+	}
+
+	@Override
+	protected void doStart() {
+		if (!this.active) {
+			this.active = true;
+			for (int i = 0; i < this.concurrency; i++) {
+				this.consumersRunning.incrementAndGet();
+				this.restart(this.concurrency > 1 ? this.consumerName + "-" + i : this.consumerName);
+			}
+		}
+	}
+
+	@Override
+	protected void doStop(Runnable callback) {
+		this.stopCallback = callback;
+		doStop();
+	}
+
+	@Override
+	protected void doStop() {
+		super.doStop();
+		this.active = this.listening = false;
+	}
+
+	public boolean isListening() {
+		return this.listening;
+	}
+
+	/**
+	 * Return the number of entries in the stream (including acknowledged entries that
+	 * have not been trimmed). See also https://redis.io/commands/xlen
+	 * @return the length of the stream.
+	 */
+	@ManagedMetric
+	public long getStreamLength() {
+		Long length = this.template.execute(LENGTH_SCRIPT, this.streamKeys);
+		return length == null ? 0 : length;
+	}
+
+	/**
+	 * Return the number of entries delivered to the group's consumers but not yet
+	 * acknowledged. See also https://redis.io/commands/xpending
+	 * @return the number of pending entries.
+	 */
+	@ManagedMetric
+	public long getPendingCount() {
+		Long pending = this.template.execute(PENDING_SCRIPT, this.streamKeys, (Object) this.groupNameBytes);
+		return pending == null ? 0 : pending;
+	}
+
+	private void restart(String consumer) {
+		this.taskExecutor.execute(new ListenerTask(consumer));
+	}
+
+	private void createGroupIfNecessary() {
+		if (!this.serverVersionChecked) {
+			checkServerVersion();
+			this.serverVersionChecked = true;
+		}
+		if (!this.groupCreated) {
+			this.template.execute(CREATE_GROUP_SCRIPT, this.streamKeys, this.groupNameBytes, encode(this.startId));
+			this.groupCreated = true;
+		}
+	}
+
+	private void checkServerVersion() {
+		Properties info = this.template.execute((RedisCallback<Properties>) connection -> connection.info("server"));
+		String version = info != null ? info.getProperty("redis_version") : null;
+		if (version != null) {
+			int major;
+			try {
+				major = Integer.parseInt(version.substring(0, version.indexOf('.')));
+			}
+			catch (RuntimeException e) {
+				return;
+			}
+			Assert.state(major >= MIN_SERVER_VERSION, () -> "The Redis server version is " + version + "; "
+					+ getComponentType() + " requires version " + MIN_SERVER_VERSION + ".0 or later");
+		}
+	}
+
+	private List<?> claim(byte[] consumer) {
+		long now = System.currentTimeMillis();
+		long last = this.lastClaim.get();
+		if (this.claimMinIdleTime > 0 && now - last >= this.claimInterval && this.lastClaim.compareAndSet(last, now)) {
+			return read(CLAIM_SCRIPT, consumer, encode(Long.toString(this.claimMinIdleTime)));
+		}
+		return Collections.emptyList();
+	}
+
+	@SuppressWarnings("rawtypes")
+	private List<?> read(RedisScript<List> script, byte[] consumer, byte[] id) {
+		List<?> entries = this.template.execute(script, this.streamKeys, this.groupNameBytes, consumer,
+				encode(Integer.toString(this.batchSize)), id);
+		return entries == null ? Collections.emptyList() : entries;
+	}
+
+	/**
+	 * Send each entry downstream and acknowledge those that were sent successfully.
+	 * @param entries the {@code [id, [field, value, ...]]} entries.
+	 * @return the id of the last entry, or null if there were no entries.
+	 */
+	private byte[] sendAndAcknowledge(List<?> entries) {
+		List<byte[]> acknowledged = new ArrayList<>(entries.size());
+		byte[] lastId = null;
+		try {
+			for (Object entry : entries) {
+				if (!this.listening) {
+					// the remaining entries stay pending and will be redelivered
+					break;
+				}
+				List<?> fields = (List<?>) entry;
+				byte[] id = bytes(fields.get(0));
+				lastId = id;
+				Object value = fields.get(1) instanceof List ? payloadField((List<?>) fields.get(1)) : null;
+				if (value == null) {
+					// the entry was deleted from the stream, or was not written by the outbound adapter
+					if (logger.isWarnEnabled()) {
+						logger.warn("Acknowledging stream entry " + string(id) + " without a '"
+								+ RedisStreamOutboundChannelAdapter.PAYLOAD_FIELD + "' field");
+					}
+					acknowledged.add(id);
+					continue;
+				}
+				if (this.maxDeliveries > 0 && fields.size() > 2
+						&& ((Number) fields.get(2)).longValue() > this.maxDeliveries) {
+					deadLetter(bytes(value), string(id), ((Number) fields.get(2)).longValue());
+					acknowledged.add(id);
+					continue;
+				}
+				try {
+					this.sendMessage(createMessage(bytes(value), string(id)));
+					acknowledged.add(id);
+				}
+				catch (RuntimeException e) {
+					logger.error("Failed to send stream entry " + string(id)
+							+ "; it remains pending until it is claimed again", e);
+				}
+			}
+		}
+		finally {
+			if (!acknowledged.isEmpty()) {
+				acknowledge(acknowledged);
+			}
+		}
+		return lastId;
+	}
+
+	private void deadLetter(byte[] value, String id, long deliveries) {
+		MessageChannel deadLetterChannel = this.deadLetterChannel;
+		if (deadLetterChannel == null) {
+			logger.error("Discarding stream entry " + id + " after " + deliveries + " deliveries");
+			return;
+		}
+		Message<?> message;
+		try {
+			message = this.getMessageBuilderFactory().fromMessage(createMessage(value, id))
+					.setHeader(RedisHeaders.STREAM_DELIVERY_COUNT, deliveries)
+					.build();
+		}
+		catch (RuntimeException e) {
+			message = this.getMessageBuilderFactory().withPayload(value)
+					.setHeader(RedisHeaders.STREAM_KEY, this.streamKey)
+					.setHeader(RedisHeaders.STREAM_MESSAGE_ID, id)
+					.setHeader(RedisHeaders.STREAM_DELIVERY_COUNT, deliveries)
+					.build();
+		}
+		try {
+			deadLetterChannel.send(message);
+		}
+		catch (RuntimeException e) {
+			logger.error("Failed to send stream entry " + id + " to the dead letter channel; discarding it", e);
+		}
+	}
+
+	private void acknowledge(List<byte[]> ids) {
+		Object[] args = new Object[ids.size() + 1];
+		args[0] = this.groupNameBytes;
+		for (int i = 0; i < ids.size(); i++) {
+			args[i + 1] = ids.get(i);
+		}
+		this.template.execute(ACK_SCRIPT, this.streamKeys, args);
+	}
+
+	@SuppressWarnings("unchecked")
+	private Message<Object> createMessage(byte[] value, String id) {
+		if (this.expectMessage) {
+			Message<Object> message;
+			try {
+				message = (Message<Object>) this.serializer.deserialize(value);
+			}
+			catch (Exception e) {
+				throw new MessagingException("Deserialization of Message failed.", e);
+			}
+			return this.getMessageBuilderFactory().fromMessage(message)
+					.setHeader(RedisHeaders.STREAM_KEY, this.streamKey)
+					.setHeader(RedisHeaders.STREAM_MESSAGE_ID, id)
+					.build();
+		}
+		else {
+			Object payload = value;
+			if (this.serializer != null) {
+				payload = this.serializer.deserialize(value);
+			}
+			return this.getMessageBuilderFactory().withPayload(payload)
+					.setHeader(RedisHeaders.STREAM_KEY, this.streamKey)
+					.setHeader(RedisHeaders.STREAM_MESSAGE_ID, id)
+					.build();
+		}
+	}
+
+	private Object payloadField(List<?> fields) {
+		for (int i = 0; i + 1 < fields.size(); i += 2) {
+			if (RedisStreamOutboundChannelAdapter.PAYLOAD_FIELD.equals(string(fields.get(i)))) {
+				return fields.get(i + 1);
+			}
+		}
+		return null;
+	}
+
+	private void handleFailure(Exception e) {
+		this.listening = false;
+		this.groupCreated = false;
+		if (this.active) {
+			logger.error("Failed to execute listening task. Will attempt to resubmit in " + this.recoveryInterval
+					+ " milliseconds.", e);
+			this.publishException(e);
+			this.sleep(this.recoveryInterval);
+		}
+		else {
+			logger.debug("Failed to execute listening task. " + e.getClass() + ": " + e.getMessage());
+		}
+	}
+
+	private void sleep(long millis) {
+		if (millis > 0) {
+			try {
+				Thread.sleep(millis);
+			}
+			catch (InterruptedException e) {
+				logger.debug("Thread interrupted while sleeping");
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private void publishException(Exception e) {
+		if (this.applicationEventPublisher != null) {
+			this.applicationEventPublisher.publishEvent(new RedisExceptionEvent(this, e));
+		}
+		else {
+			if (logger.isDebugEnabled()) {
+				logger.debug("No application event publisher for exception: " + e.getMessage());
+			}
+		}
+	}
+
+	private static byte[] encode(String value) {
+		return value.getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static byte[] bytes(Object value) {
+		return value instanceof byte[] ? (byte[]) value : encode(value.toString());
+	}
+
+	private static String string(Object value) {
+		return value instanceof byte[] ? new String((byte[]) value, StandardCharsets.UTF_8) : value.toString();
+	}
+
+
+	private class ListenerTask implements SchedulingAwareRunnable {
+
+		private final String consumer;
+
+		private final byte[] consumerBytes;
+
+		/**
+		 * Where to read this consumer's own pending entries from; null once they have
+		 * all been redelivered, after which only new entries are read.
+		 */
+		private byte[] pendingCursor = encode("0");
+
+		ListenerTask(String consumer) {
+			this.consumer = consumer;
+			this.consumerBytes = encode(consumer);
+		}
+
+		@Override
+		public boolean isLongLived() {
+			return true;
+		}
+
+		@Override
+		public void run() {
+			RedisStreamMessageDrivenEndpoint endpoint = RedisStreamMessageDrivenEndpoint.this;
+			try {
+				while (endpoint.active) {
+					endpoint.listening = true;
+					List<?> entries;
+					boolean ownPending = false;
+					try {
+						endpoint.createGroupIfNecessary();
+						entries = endpoint.claim(this.consumerBytes);
+						if (entries.isEmpty()) {
+							ownPending = this.pendingCursor != null;
+							entries = endpoint.read(READ_SCRIPT, this.consumerBytes,
+									ownPending ? this.pendingCursor : NEW_ENTRIES);
+						}
+					}
+					catch (Exception e) {
+						endpoint.handleFailure(e);
+						continue;
+					}
+					if (entries.isEmpty()) {
+						if (ownPending) {
+							this.pendingCursor = null;
+						}
+						else {
+							endpoint.sleep(endpoint.receiveTimeout);
+						}
+						continue;
+					}
+					byte[] lastId = endpoint.sendAndAcknowledge(entries);
+					if (ownPending && lastId != null) {
+						this.pendingCursor = lastId;
+					}
+				}
+			}
+			finally {
+				if (endpoint.active) {
+					endpoint.restart(this.consumer);
+				}
+				else if (endpoint.consumersRunning.decrementAndGet() == 0 && endpoint.stopCallback != null) {
+					endpoint.stopCallback.run();
+					endpoint.stopCallback = null;
+				}
+			}
+		}
+
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2013-2016 the original author or authors.
+ * Copyright 2013-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,6 +16,8 @@
 
 package org.springframework.integration.redis.outbound;
 
+import java.util.Collection;
+
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
@@ -54,6 +56,8 @@ public class RedisQueueOutboundChannelAdapter extends AbstractMessageHandler {
 
 	private volatile boolean leftPush = true;
 
+	private volatile boolean batchPush;
+
 	public RedisQueueOutboundChannelAdapter(String queueName, RedisConnectionFactory connectionFactory) {
 		this(new LiteralExpression(queueName), connectionFactory);
 	}
@@ -89,6 +93,19 @@ public class RedisQueueOutboundChannelAdapter extends AbstractMessageHandler {
 		this.leftPush = leftPush;
 	}
 
+	/**
+	 * When the payload is a {@link Collection} (and {@code extractPayload} is
+	 * {@code true}), push each element as a separate list entry, using a single
+	 * multi-value {@code LPUSH} ({@code RPUSH}) command for the whole collection.
+	 * This allows a burst of messages (for example the output of an aggregator) to be
+	 * written in one round trip.
+	 * @param batchPush the batch push flag. Defaults to {@code false}.
+	 * @since 5.1
+	 */
+	public void setBatchPush(boolean batchPush) {
+		this.batchPush = batchPush;
+	}
+
 	public void setIntegrationEvaluationContext(EvaluationContext evaluationContext) {
 		this.evaluationContext = evaluationContext;
 	}
@@ -107,7 +124,6 @@ public class RedisQueueOutboundChannelAdapter extends AbstractMessageHandler {
 	}
 
 	@Override
-	@SuppressWarnings("unchecked")
 	protected void handleMessageInternal(Message<?> message) throws Exception {
 		Object value = message;
 
@@ -115,16 +131,24 @@ public class RedisQueueOutboundChannelAdapter extends AbstractMessageHandler {
 			value = message.getPayload();
 		}
 
-		if (!(value instanceof byte[])) {
-			if (value instanceof String && !this.serializerExplicitlySet) {
-				value = this.stringSerializer.serialize((String) value);
-			}
-			else {
-				value = ((RedisSerializer<Object>) this.serializer).serialize(value);
+		String queueName = this.queueNameExpression.getValue(this.evaluationContext, message, String.class);
+		if (this.batchPush && value instanceof Collection) {
+			Collection<?> elements = (Collection<?>) value;
+			if (!elements.isEmpty()) {
+				Object[] values = elements.stream()
+						.map(this::serialize)
+						.toArray();
+				if (this.leftPush) {
+					this.template.boundListOps(queueName).leftPushAll(values);
+				}
+				else {
+					this.template.boundListOps(queueName).rightPushAll(values);
+				}
 			}
+			return;
 		}
 
-		String queueName = this.queueNameExpression.getValue(this.evaluationContext, message, String.class);
+		value = serialize(value);
 		if (this.leftPush) {
 			this.template.boundListOps(queueName).leftPush(value);
 		}
@@ -133,4 +157,15 @@ public class RedisQueueOutboundChannelAdapter extends AbstractMessageHandler {
 		}
 	}
 
+	@SuppressWarnings("unchecked")
+	private Object serialize(Object value) {
+		if (value instanceof byte[]) {
+			return value;
+		}
+		if (value instanceof String && !this.serializerExplicitlySet) {
+			return this.stringSerializer.serialize((String) value);
+		}
+		return ((RedisSerializer<Object>) this.serializer).serialize(value);
+	}
+
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2007-2017 the original author or authors.
+ * Copyright 2007-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,28 +16,32 @@
 
 package org.springframework.integration.redis.outbound;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.data.redis.connection.RedisConnection;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
-import org.springframework.data.redis.core.BoundSetOperations;
 import org.springframework.data.redis.core.BoundZSetOperations;
+import org.springframework.data.redis.core.DefaultTypedTuple;
 import org.springframework.data.redis.core.RedisConnectionUtils;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations.TypedTuple;
 import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
-import org.springframework.data.redis.support.collections.RedisCollectionFactoryBean;
 import org.springframework.data.redis.support.collections.RedisCollectionFactoryBean.CollectionType;
-import org.springframework.data.redis.support.collections.RedisList;
-import org.springframework.data.redis.support.collections.RedisMap;
-import org.springframework.data.redis.support.collections.RedisProperties;
-import org.springframework.data.redis.support.collections.RedisSet;
-import org.springframework.data.redis.support.collections.RedisStore;
-import org.springframework.data.redis.support.collections.RedisZSet;
 import org.springframework.expression.Expression;
 import org.springframework.expression.common.LiteralExpression;
 import org.springframework.expression.spel.support.StandardEvaluationContext;
@@ -66,6 +70,9 @@ import org.springframework.util.NumberUtils;
  * You can instead choose to persist such a payload as a single item if the
  * {@link #extractPayloadElements} property is set to false (default is true).
  *
+ * Data for one key is written with a single multi-value command; the data of several
+ * messages can be buffered and written together, see {@link #setBufferSize(int)}.
+ *
  * @author Oleg Zhurakousky
  * @author Gary Russell
  * @author Mark Fisher
@@ -73,7 +80,7 @@ import org.springframework.util.NumberUtils;
  *
  * @since 2.2
  */
-public class RedisStoreWritingMessageHandler extends AbstractMessageHandler {
+public class RedisStoreWritingMessageHandler extends AbstractMessageHandler implements DisposableBean {
 
 	private Expression zsetIncrementScoreExpression =
 			new FunctionExpression<Message<?>>(m ->
@@ -101,6 +108,18 @@ public class RedisStoreWritingMessageHandler extends AbstractMessageHandler {
 
 	private RedisConnectionFactory connectionFactory;
 
+	private final Map<String, KeyWrites> buffer = new LinkedHashMap<>();
+
+	private final Lock bufferLock = new ReentrantLock();
+
+	private int bufferSize;
+
+	private long flushInterval = 1000;
+
+	private int bufferedMessages;
+
+	private volatile ScheduledFuture<?> flushTask;
+
 	private volatile boolean initialized;
 
 
@@ -234,6 +253,36 @@ public class RedisStoreWritingMessageHandler extends AbstractMessageHandler {
 		this.zsetIncrementScoreExpression = zsetIncrementScoreExpression;
 	}
 
+	/**
+	 * Set the number of messages to buffer before their data is written to Redis.
+	 * Buffered data is merged per key and written with one multi-value command per
+	 * key ({@code RPUSH}, {@code SADD}, {@code ZADD}, {@code HMSET}), all in a single
+	 * pipeline. Buffered data is also written every {@link #setFlushInterval(long)
+	 * flushInterval} and when the handler is destroyed. Default 0 - no buffering;
+	 * each message is written as it is handled.
+	 * <p>Buffered data is lost if the application terminates abnormally, and a failure
+	 * of a timed flush can only be logged; use this only when that is acceptable.
+	 * @param bufferSize the number of messages to buffer.
+	 * @since 5.1
+	 * @see #flush()
+	 */
+	public void setBufferSize(int bufferSize) {
+		Assert.isTrue(bufferSize >= 0, "'bufferSize' must not be negative");
+		this.bufferSize = bufferSize;
+	}
+
+	/**
+	 * Set the interval in milliseconds at which buffered data is written to Redis
+	 * regardless of the {@link #setBufferSize(int) bufferSize}. Default 1000.
+	 * Ignored when buffering is not enabled; 0 disables timed flushes.
+	 * @param flushInterval the flush interval.
+	 * @since 5.1
+	 */
+	public void setFlushInterval(long flushInterval) {
+		Assert.isTrue(flushInterval >= 0, "'flushInterval' must not be negative");
+		this.flushInterval = flushInterval;
+	}
+
 	@Override
 	public String getComponentType() {
 		return "redis:store-outbound-channel-adapter";
@@ -257,6 +306,9 @@ public class RedisStoreWritingMessageHandler extends AbstractMessageHandler {
 			this.redisTemplate.setConnectionFactory(this.connectionFactory);
 			this.redisTemplate.afterPropertiesSet();
 		}
+		if (this.bufferSize > 1 && this.flushInterval > 0) {
+			this.flushTask = getTaskScheduler().scheduleWithFixedDelay(this::flushQuietly, this.flushInterval);
+		}
 		this.initialized = true;
 	}
 
@@ -287,70 +339,118 @@ public class RedisStoreWritingMessageHandler extends AbstractMessageHandler {
 	 * If the payload itself needs to be stored as a value of the map/property then the map key
 	 * must be specified via the mapKeyExpression (default {@link RedisHeaders#MAP_KEY} Message header).
 	 */
-	@SuppressWarnings("unchecked")
 	@Override
 	protected void handleMessageInternal(Message<?> message) throws Exception {
 		String key = this.keyExpression.getValue(this.evaluationContext, message, String.class);
 		Assert.hasText(key, () -> "Failed to determine a key for the Redis store based on the message: " + message);
 
-		RedisStore store = this.createStoreView(key);
-
 		Assert.state(this.initialized,
 				"handler not initialized - afterPropertiesSet() must be called before the first use");
-		try {
-			if (this.collectionType == CollectionType.ZSET) {
-				writeToZset((RedisZSet<Object>) store, message);
-			}
-			else if (this.collectionType == CollectionType.SET) {
-				writeToSet((RedisSet<Object>) store, message);
+		KeyWrites writes = new KeyWrites(key);
+		if (this.collectionType == CollectionType.ZSET) {
+			writeToZset(writes, message);
+		}
+		else if (this.collectionType == CollectionType.SET || this.collectionType == CollectionType.LIST) {
+			writeToListOrSet(writes, message);
+		}
+		else if (this.collectionType == CollectionType.MAP) {
+			writeToMap(writes, message);
+		}
+		else if (this.collectionType == CollectionType.PROPERTIES) {
+			writeToProperties(writes, message);
+		}
+
+		if (this.bufferSize > 1) {
+			this.bufferLock.lock();
+			try {
+				this.buffer.computeIfAbsent(key, KeyWrites::new).merge(writes);
+				if (++this.bufferedMessages >= this.bufferSize) {
+					try {
+						flushBuffer();
+					}
+					catch (Exception e) {
+						throw new MessageHandlingException(message,
+								"Failed to store buffered Message data in Redis collection", e);
+					}
+				}
 			}
-			else if (this.collectionType == CollectionType.LIST) {
-				writeToList((RedisList<Object>) store, message);
+			finally {
+				this.bufferLock.unlock();
 			}
-			else if (this.collectionType == CollectionType.MAP) {
-				writeToMap((RedisMap<Object, Object>) store, message);
+		}
+		else {
+			try {
+				write(Collections.singletonList(writes));
 			}
-			else if (this.collectionType == CollectionType.PROPERTIES) {
-				writeToProperties((RedisProperties) store, message);
+			catch (Exception e) {
+				throw new MessageHandlingException(message, "Failed to store Message data in Redis collection", e);
 			}
 		}
+	}
+
+	/**
+	 * Write the data of all buffered messages to Redis.
+	 * @since 5.1
+	 * @see #setBufferSize(int)
+	 */
+	public void flush() {
+		this.bufferLock.lock();
+		try {
+			flushBuffer();
+		}
+		finally {
+			this.bufferLock.unlock();
+		}
+	}
+
+	@Override
+	public void destroy() throws Exception {
+		if (this.flushTask != null) {
+			this.flushTask.cancel(false);
+			this.flushTask = null;
+		}
+		flush();
+	}
+
+	private void flushBuffer() {
+		if (this.buffer.isEmpty()) {
+			return;
+		}
+		List<KeyWrites> writes = new ArrayList<>(this.buffer.values());
+		this.buffer.clear();
+		this.bufferedMessages = 0;
+		write(writes);
+	}
+
+	private void flushQuietly() {
+		try {
+			flush();
+		}
 		catch (Exception e) {
-			throw new MessageHandlingException(message, "Failed to store Message data in Redis collection", e);
+			this.logger.error("Failed to store buffered Message data in Redis collection; the data is discarded", e);
 		}
 	}
 
-	@SuppressWarnings("unchecked")
-	private void writeToZset(RedisZSet<Object> zset, final Message<?> message) throws Exception {
-		final Object payload = message.getPayload();
-		final BoundZSetOperations<String, Object> ops =
-				(BoundZSetOperations<String, Object>) this.redisTemplate.boundZSetOps(zset.getKey());
+	private void writeToZset(KeyWrites writes, Message<?> message) {
+		Object payload = message.getPayload();
 		boolean zsetIncrementHeader = extractZsetIncrementHeader(message);
-		if (this.extractPayloadElements) {
-			if ((payload instanceof Map<?, ?> && this.verifyAllMapValuesOfTypeNumber((Map<?, ?>) payload))) {
-				Map<Object, Number> payloadAsMap = (Map<Object, Number>) payload;
-				processInPipeline(() -> {
-					for (Entry<Object, Number> entry : payloadAsMap.entrySet()) {
-						Number d = entry.getValue();
-						incrementOrOverwrite(ops, entry.getKey(), d == null ?
-										determineScore(message) :
-										NumberUtils.convertNumberToTargetClass(d, Double.class),
-								zsetIncrementHeader);
-					}
-				});
-			}
-			else if (payload instanceof Collection<?>) {
-				processInPipeline(() -> {
-					for (Object object : ((Collection<?>) payload)) {
-						incrementOrOverwrite(ops, object, determineScore(message), zsetIncrementHeader);
-					}
-				});
+		if (this.extractPayloadElements
+				&& payload instanceof Map<?, ?> && this.verifyAllMapValuesOfTypeNumber((Map<?, ?>) payload)) {
+			for (Entry<?, ?> entry : ((Map<?, ?>) payload).entrySet()) {
+				Number d = (Number) entry.getValue();
+				writes.score(entry.getKey(), d == null ?
+								determineScore(message) :
+								NumberUtils.convertNumberToTargetClass(d, Double.class),
+						zsetIncrementHeader);
 			}
-			else {
-				incrementOrOverwrite(ops, payload, this.determineScore(message), zsetIncrementHeader);
+		}
+		else if (this.extractPayloadElements && payload instanceof Collection<?>) {
+			for (Object object : ((Collection<?>) payload)) {
+				writes.score(object, determineScore(message), zsetIncrementHeader);
 			}
 		}
 		else {
-			incrementOrOverwrite(ops, payload, this.determineScore(message), zsetIncrementHeader);
+			writes.score(payload, determineScore(message), zsetIncrementHeader);
 		}
 	}
 
@@ -359,59 +459,87 @@ public class RedisStoreWritingMessageHandler extends AbstractMessageHandler {
 		return value != null ? value : false;
 	}
 
-	private void writeToList(RedisList<Object> list, Message<?> message) {
+	private void writeToListOrSet(KeyWrites writes, Message<?> message) {
 		Object payload = message.getPayload();
-		if (this.extractPayloadElements) {
-			if (payload instanceof Collection<?>) {
-				list.addAll((Collection<?>) payload);
-			}
-			else {
-				list.add(payload);
-			}
-		}
-		else {
-			list.add(payload);
-		}
-	}
-
-	@SuppressWarnings("unchecked")
-	private void writeToSet(final RedisSet<Object> set, Message<?> message) {
-		final Object payload = message.getPayload();
 		if (this.extractPayloadElements && payload instanceof Collection<?>) {
-			BoundSetOperations<String, Object> ops =
-					(BoundSetOperations<String, Object>) this.redisTemplate.boundSetOps(set.getKey());
-
-			processInPipeline(() -> {
-				for (Object object : ((Collection<?>) payload)) {
-					ops.add(object);
-				}
-			});
+			writes.values.addAll((Collection<?>) payload);
 		}
 		else {
-			set.add(payload);
+			writes.values.add(payload);
 		}
 	}
 
-	private void writeToMap(final RedisMap<Object, Object> map, Message<?> message) {
-		final Object payload = message.getPayload();
+	private void writeToMap(KeyWrites writes, Message<?> message) {
+		Object payload = message.getPayload();
 		if (this.extractPayloadElements && payload instanceof Map<?, ?>) {
-			processInPipeline(() -> map.putAll((Map<?, ?>) payload));
+			writes.entries.putAll((Map<?, ?>) payload);
 		}
 		else {
 			Object key = this.determineMapKey(message, false);
-			map.put(key, payload);
+			writes.entries.put(key, payload);
 		}
 	}
 
-	private void writeToProperties(final RedisProperties properties, Message<?> message) {
-		final Object payload = message.getPayload();
+	private void writeToProperties(KeyWrites writes, Message<?> message) {
+		Object payload = message.getPayload();
 		if (this.extractPayloadElements && payload instanceof Properties) {
-			processInPipeline(() -> properties.putAll((Properties) payload));
+			writes.entries.putAll((Properties) payload);
 		}
 		else {
 			Assert.isInstanceOf(String.class, payload, "For property, payload must be a String.");
 			Object key = this.determineMapKey(message, true);
-			properties.put(key, payload);
+			writes.entries.put(key, payload);
+		}
+	}
+
+	/**
+	 * Write with one multi-value command per key ({@code RPUSH}, {@code SADD},
+	 * {@code ZADD}, {@code HMSET}); several commands are sent in a single pipeline.
+	 * @param writes the writes per key.
+	 */
+	private void write(List<KeyWrites> writes) {
+		int commands = 0;
+		for (KeyWrites keyWrites : writes) {
+			commands += keyWrites.commandCount();
+		}
+		if (commands > 1) {
+			processInPipeline(() -> writes.forEach(this::doWrite));
+		}
+		else {
+			writes.forEach(this::doWrite);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void doWrite(KeyWrites writes) {
+		RedisTemplate<String, Object> template = (RedisTemplate<String, Object>) this.redisTemplate;
+		if (this.collectionType == CollectionType.LIST) {
+			if (!writes.values.isEmpty()) {
+				template.boundListOps(writes.key).rightPushAll(writes.values.toArray());
+			}
+		}
+		else if (this.collectionType == CollectionType.SET) {
+			if (!writes.values.isEmpty()) {
+				template.boundSetOps(writes.key).add(writes.values.toArray());
+			}
+		}
+		else if (this.collectionType == CollectionType.ZSET) {
+			BoundZSetOperations<String, Object> ops = template.boundZSetOps(writes.key);
+			for (Object operation : writes.zsetOperations) {
+				if (operation instanceof ZSetIncrement) {
+					ZSetIncrement increment = (ZSetIncrement) operation;
+					ops.incrementScore(increment.member, increment.score);
+				}
+				else {
+					Set<TypedTuple<Object>> tuples = new LinkedHashSet<>();
+					((Map<Object, Double>) operation).forEach((member, score) ->
+							tuples.add(new DefaultTypedTuple<>(member, score)));
+					ops.add(tuples);
+				}
+			}
+		}
+		else if (!writes.entries.isEmpty()) {
+			template.boundHashOps(writes.key).putAll(writes.entries);
 		}
 	}
 
@@ -437,27 +565,6 @@ public class RedisStoreWritingMessageHandler extends AbstractMessageHandler {
 		return mapKey;
 	}
 
-	private void incrementOrOverwrite(BoundZSetOperations<String, Object> ops, Object object, Double score,
-			boolean zsetIncrementScore) {
-		if (score != null) {
-			doIncrementOrOverwrite(ops, object, score, zsetIncrementScore);
-		}
-		else {
-			this.logger.debug("Zset Score could not be determined. Using default score of 1");
-			doIncrementOrOverwrite(ops, object, 1d, zsetIncrementScore);
-		}
-	}
-
-	private void doIncrementOrOverwrite(BoundZSetOperations<String, Object> ops, Object object, Double score,
-			boolean increment) {
-		if (increment) {
-			ops.incrementScore(object, score);
-		}
-		else {
-			ops.add(object, score);
-		}
-	}
-
 	private boolean verifyAllMapValuesOfTypeNumber(Map<?, ?> map) {
 		for (Object value : map.values()) {
 			if (!(value instanceof Number)) {
@@ -471,15 +578,6 @@ public class RedisStoreWritingMessageHandler extends AbstractMessageHandler {
 		return true;
 	}
 
-	private RedisStore createStoreView(String key) {
-		RedisCollectionFactoryBean fb = new RedisCollectionFactoryBean();
-		fb.setKey(key);
-		fb.setTemplate(this.redisTemplate);
-		fb.setType(this.collectionType);
-		fb.afterPropertiesSet();
-		return fb.getObject();
-	}
-
 	private double determineScore(Message<?> message) {
 		Object scoreHeader = message.getHeaders().get(RedisHeaders.ZSET_SCORE);
 		if (scoreHeader == null) {
@@ -498,4 +596,79 @@ public class RedisStoreWritingMessageHandler extends AbstractMessageHandler {
 
 	}
 
+	/**
+	 * The data to write to one key, accumulated from one or more messages.
+	 */
+	private static final class KeyWrites {
+
+		private final String key;
+
+		private final List<Object> values = new ArrayList<>();
+
+		private final Map<Object, Object> entries = new LinkedHashMap<>();
+
+		/**
+		 * In order: {@code Map<Object, Double>} segments of members to add, merged
+		 * while no increment intervenes, and {@link ZSetIncrement}s.
+		 */
+		private final List<Object> zsetOperations = new ArrayList<>();
+
+		KeyWrites(String key) {
+			this.key = key;
+		}
+
+		@SuppressWarnings("unchecked")
+		void score(Object member, double score, boolean increment) {
+			if (increment) {
+				this.zsetOperations.add(new ZSetIncrement(member, score));
+			}
+			else {
+				Object last = this.zsetOperations.isEmpty() ? null
+						: this.zsetOperations.get(this.zsetOperations.size() - 1);
+				Map<Object, Double> scores;
+				if (last instanceof Map) {
+					scores = (Map<Object, Double>) last;
+				}
+				else {
+					scores = new LinkedHashMap<>();
+					this.zsetOperations.add(scores);
+				}
+				scores.remove(member);
+				scores.put(member, score);
+			}
+		}
+
+		@SuppressWarnings("unchecked")
+		void merge(KeyWrites other) {
+			this.values.addAll(other.values);
+			this.entries.putAll(other.entries);
+			for (Object operation : other.zsetOperations) {
+				if (operation instanceof ZSetIncrement) {
+					this.zsetOperations.add(operation);
+				}
+				else {
+					((Map<Object, Double>) operation).forEach((member, score) -> score(member, score, false));
+				}
+			}
+		}
+
+		int commandCount() {
+			return (this.values.isEmpty() ? 0 : 1) + (this.entries.isEmpty() ? 0 : 1) + this.zsetOperations.size();
+		}
+
+	}
+
+	private static final class ZSetIncrement {
+
+		private final Object member;
+
+		private final double score;
+
+		ZSetIncrement(Object member, double score) {
+			this.member = member;
+			this.score = score;
+		}
+
+	}
+
 }
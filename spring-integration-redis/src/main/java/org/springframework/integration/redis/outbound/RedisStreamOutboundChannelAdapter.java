@@ -0,0 +1,159 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.redis.outbound;
+
+import java.util.Collections;
+
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.Expression;
+import org.springframework.expression.common.LiteralExpression;
+import org.springframework.integration.expression.ExpressionUtils;
+import org.springframework.integration.handler.AbstractMessageHandler;
+import org.springframework.messaging.Message;
+import org.springframework.util.Assert;
+
+/**
+ * A {@link org.springframework.messaging.MessageHandler} that appends messages to a
+ * Redis Stream using {@code XADD}. Each entry carries a single {@code payload} field
+ * holding the serialized payload (or the whole message when
+ * {@link #setExtractPayload(boolean) extractPayload} is {@code false}), which is the
+ * format expected by the
+ * {@link org.springframework.integration.redis.inbound.RedisStreamMessageDrivenEndpoint}.
+ * <p>
+ * The command is issued through a Lua script (cached on the server and invoked with
+ * {@code EVALSHA}) so that it works with any Redis client supported by Spring Data Redis;
+ * a Redis server version 5.0 or later is required (7.0 or later for the inbound endpoint).
+ *
+ * @since 5.1
+ */
+public class RedisStreamOutboundChannelAdapter extends AbstractMessageHandler {
+
+	/**
+	 * The name of the stream entry field holding the serialized payload.
+	 */
+	public static final String PAYLOAD_FIELD = "payload";
+
+	private static final RedisScript<byte[]> XADD_SCRIPT = new DefaultRedisScript<>(
+			"if tonumber(ARGV[1]) > 0 then\n" +
+			"  return redis.call('XADD', KEYS[1], 'MAXLEN', '~', ARGV[1], '*', '" + PAYLOAD_FIELD + "', ARGV[2])\n" +
+			"end\n" +
+			"return redis.call('XADD', KEYS[1], '*', '" + PAYLOAD_FIELD + "', ARGV[2])", byte[].class);
+
+	private final RedisSerializer<String> stringSerializer = new StringRedisSerializer();
+
+	private final RedisTemplate<String, Object> template;
+
+	private final Expression streamKeyExpression;
+
+	private volatile EvaluationContext evaluationContext;
+
+	private volatile boolean extractPayload = true;
+
+	private volatile RedisSerializer<?> serializer = new JdkSerializationRedisSerializer();
+
+	private volatile boolean serializerExplicitlySet;
+
+	private volatile long maxLength;
+
+	public RedisStreamOutboundChannelAdapter(String streamKey, RedisConnectionFactory connectionFactory) {
+		this(new LiteralExpression(streamKey), connectionFactory);
+	}
+
+	public RedisStreamOutboundChannelAdapter(Expression streamKeyExpression,
+			RedisConnectionFactory connectionFactory) {
+
+		Assert.notNull(streamKeyExpression, "'streamKeyExpression' is required");
+		Assert.hasText(streamKeyExpression.getExpressionString(),
+				"'streamKeyExpression.getExpressionString()' is required");
+		Assert.notNull(connectionFactory, "'connectionFactory' must not be null");
+		this.streamKeyExpression = streamKeyExpression;
+		this.template = new RedisTemplate<String, Object>();
+		this.template.setConnectionFactory(connectionFactory);
+		this.template.setEnableDefaultSerializer(false);
+		this.template.setKeySerializer(new StringRedisSerializer());
+		this.template.afterPropertiesSet();
+	}
+
+	public void setExtractPayload(boolean extractPayload) {
+		this.extractPayload = extractPayload;
+	}
+
+	public void setSerializer(RedisSerializer<?> serializer) {
+		Assert.notNull(serializer, "'serializer' must not be null");
+		this.serializer = serializer;
+		this.serializerExplicitlySet = true;
+	}
+
+	/**
+	 * Cap the stream at approximately this number of entries ({@code MAXLEN ~}) on
+	 * each append; older entries are trimmed by the server.
+	 * @param maxLength the approximate maximum length; 0 (default) means no trimming.
+	 */
+	public void setMaxLength(long maxLength) {
+		Assert.isTrue(maxLength >= 0, "'maxLength' must be >= 0.");
+		this.maxLength = maxLength;
+	}
+
+	public void setIntegrationEvaluationContext(EvaluationContext evaluationContext) {
+		this.evaluationContext = evaluationContext;
+	}
+
+	@Override
+	public String getComponentType() {
+		return "redis:stream-outbound-channel-adapter";
+	}
+
+	@Override
+	protected void onInit() throws Exception {
+		super.onInit();
+		if (this.evaluationContext == null) {
+			this.evaluationContext = ExpressionUtils.createStandardEvaluationContext(getBeanFactory());
+		}
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	protected void handleMessageInternal(Message<?> message) throws Exception {
+		Object value = message;
+
+		if (this.extractPayload) {
+			value = message.getPayload();
+		}
+
+		if (!(value instanceof byte[])) {
+			if (value instanceof String && !this.serializerExplicitlySet) {
+				value = this.stringSerializer.serialize((String) value);
+			}
+			else {
+				value = ((RedisSerializer<Object>) this.serializer).serialize(value);
+			}
+		}
+
+		String streamKey = this.streamKeyExpression.getValue(this.evaluationContext, message, String.class);
+		Assert.hasText(streamKey, "'streamKeyExpression' must not evaluate to an empty key");
+		this.template.execute(XADD_SCRIPT, Collections.singletonList(streamKey),
+				this.stringSerializer.serialize(Long.toString(this.maxLength)), value);
+	}
+
+}
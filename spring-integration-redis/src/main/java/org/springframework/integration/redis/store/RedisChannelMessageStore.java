@@ -1,5 +1,5 @@
 /*
- * Copyright 2014-2016 the original author or authors.
+ * Copyright 2014-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,20 +16,27 @@
 
 package org.springframework.integration.redis.store;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 
 import org.springframework.beans.factory.BeanNameAware;
 import org.springframework.beans.factory.InitializingBean;
+import org.springframework.core.serializer.support.SerializingConverter;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.integration.codec.Codec;
+import org.springframework.integration.codec.CodecSerializer;
 import org.springframework.integration.store.ChannelMessageStore;
 import org.springframework.integration.store.MessageGroup;
 import org.springframework.integration.store.MessageGroupFactory;
 import org.springframework.integration.store.SimpleMessageGroupFactory;
+import org.springframework.integration.support.converter.WhiteListDeserializingConverter;
 import org.springframework.jmx.export.annotation.ManagedAttribute;
 import org.springframework.messaging.Message;
 import org.springframework.util.Assert;
@@ -46,6 +53,16 @@ import org.springframework.util.Assert;
  */
 public class RedisChannelMessageStore implements ChannelMessageStore, BeanNameAware, InitializingBean {
 
+	@SuppressWarnings("rawtypes")
+	private static final RedisScript<List> MULTI_POP_SCRIPT = new DefaultRedisScript<>(
+			"local items = redis.call('LRANGE', KEYS[1], -tonumber(ARGV[1]), -1)\n" +
+			"if #items > 0 then redis.call('LTRIM', KEYS[1], 0, -#items - 1) end\n" +
+			"local reversed = {}\n" +
+			"for i = #items, 1, -1 do reversed[#reversed + 1] = items[i] end\n" +
+			"return reversed", List.class);
+
+	private final StringRedisSerializer argsSerializer = new StringRedisSerializer();
+
 	private final RedisTemplate<Object, Message<?>> redisTemplate;
 
 	private volatile MessageGroupFactory messageGroupFactory = new SimpleMessageGroupFactory();
@@ -76,6 +93,22 @@ public class RedisChannelMessageStore implements ChannelMessageStore, BeanNameAw
 		this.redisTemplate.setValueSerializer(valueSerializer);
 	}
 
+	/**
+	 * Push the messages to the Redis lists backing the channels encoded with the
+	 * provided {@link Codec} (a
+	 * {@link org.springframework.integration.codec.kryo.MessageCodec}, for instance).
+	 * List entries pushed with Java serialization are still popped and decoded.
+	 * Overrides any {@link #setValueSerializer(RedisSerializer) valueSerializer}.
+	 * @param codec the codec.
+	 * @since 5.1
+	 * @see CodecSerializer
+	 */
+	public void setCodec(Codec codec) {
+		CodecSerializer codecSerializer = new CodecSerializer(codec);
+		setValueSerializer(new JdkSerializationRedisSerializer(new SerializingConverter(codecSerializer),
+				new WhiteListDeserializingConverter(codecSerializer, true)));
+	}
+
 	/**
 	 * Specify the {@link MessageGroupFactory} to create {@link MessageGroup} object where
 	 * it is necessary.
@@ -129,6 +162,19 @@ public class RedisChannelMessageStore implements ChannelMessageStore, BeanNameAw
 		return null;
 	}
 
+	/**
+	 * Add several messages to the group with a single multi-value {@code LPUSH}; they
+	 * are polled in the order provided.
+	 * @param groupId the group id.
+	 * @param messages the messages.
+	 * @since 5.1
+	 */
+	public void addMessagesToGroup(Object groupId, Message<?>... messages) {
+		if (messages.length > 0) {
+			this.redisTemplate.boundListOps(groupId).leftPushAll(messages);
+		}
+	}
+
 	public void removeMessageGroup(Object groupId) {
 		this.redisTemplate.boundListOps(groupId).trim(1, 0);
 	}
@@ -138,6 +184,23 @@ public class RedisChannelMessageStore implements ChannelMessageStore, BeanNameAw
 		return this.redisTemplate.boundListOps(groupId).rightPop();
 	}
 
+	/**
+	 * Poll up to {@code maxMessages} messages from the group in one round trip (a Lua
+	 * script combining {@code LRANGE} and {@code LTRIM}).
+	 * @param groupId the group id.
+	 * @param maxMessages the maximum number of messages to poll.
+	 * @return the messages, oldest first; empty if the group is empty.
+	 * @since 5.1
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public List<Message<?>> pollMessagesFromGroup(Object groupId, int maxMessages) {
+		Assert.isTrue(maxMessages > 0, "'maxMessages' must be > 0");
+		List<Message<?>> messages = this.redisTemplate.execute(MULTI_POP_SCRIPT, this.argsSerializer,
+				(RedisSerializer<List>) this.redisTemplate.getValueSerializer(), Collections.singletonList(groupId),
+				Integer.toString(maxMessages));
+		return messages == null ? Collections.emptyList() : messages;
+	}
+
 	@ManagedAttribute
 	public int getMessageCountForAllMessageGroups() {
 		Set<?> keys = this.redisTemplate.keys(this.beanName + ":*");
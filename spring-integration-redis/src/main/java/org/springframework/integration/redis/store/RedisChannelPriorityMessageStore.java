@@ -1,5 +1,5 @@
 /*
- * Copyright 2014-2016 the original author or authors.
+ * Copyright 2014-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,6 +16,7 @@
 
 package org.springframework.integration.redis.store;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
@@ -94,6 +95,27 @@ public class RedisChannelPriorityMessageStore extends RedisChannelMessageStore
 		return super.addMessageToGroup(key, message);
 	}
 
+	@Override
+	public void addMessagesToGroup(Object groupId, Message<?>... messages) {
+		for (Message<?> message : messages) {
+			addMessageToGroup(groupId, message);
+		}
+	}
+
+	@Override
+	public List<Message<?>> pollMessagesFromGroup(Object groupId, int maxMessages) {
+		Assert.isInstanceOf(String.class, groupId);
+		Assert.isTrue(maxMessages > 0, "'maxMessages' must be > 0");
+		List<Message<?>> messages = new ArrayList<Message<?>>();
+		for (String key : sortedKeys((String) groupId)) {
+			messages.addAll(super.pollMessagesFromGroup(key, maxMessages - messages.size()));
+			if (messages.size() == maxMessages) {
+				break;
+			}
+		}
+		return messages;
+	}
+
 	@Override
 	public Message<?> pollMessageFromGroup(Object groupId) {
 		Assert.isInstanceOf(String.class, groupId);
@@ -1,5 +1,5 @@
 /*
- * Copyright 2007-2017 the original author or authors.
+ * Copyright 2007-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,19 +16,39 @@
 
 package org.springframework.integration.redis.store;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
 
 import org.springframework.beans.factory.BeanClassLoaderAware;
+import org.springframework.core.serializer.support.SerializingConverter;
+import org.springframework.dao.DataAccessException;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.BoundValueOperations;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.GenericToStringSerializer;
 import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.SerializationException;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.integration.codec.Codec;
+import org.springframework.integration.codec.CodecSerializer;
 import org.springframework.integration.store.AbstractKeyValueMessageStore;
 import org.springframework.integration.store.MessageGroupStore;
 import org.springframework.integration.store.MessageStore;
+import org.springframework.integration.support.converter.WhiteListDeserializingConverter;
 import org.springframework.util.Assert;
 
 /**
@@ -42,6 +62,25 @@ import org.springframework.util.Assert;
  */
 public class RedisMessageStore extends AbstractKeyValueMessageStore implements BeanClassLoaderAware {
 
+	private static final String MEMBER_SEQUENCE_SUFFIX = "_SEQUENCE";
+
+	private static final RedisScript<Long> ADD_MEMBERS_SCRIPT = new DefaultRedisScript<>(
+			"local last = redis.call('INCRBY', KEYS[2], #ARGV)\n" +
+			"for i = 1, #ARGV do\n" +
+			"  redis.call('ZADD', KEYS[1], 'NX', last - #ARGV + i, ARGV[i])\n" +
+			"end\n" +
+			"return last", Long.class);
+
+	private static final RedisScript<String> POLL_MEMBER_SCRIPT = new DefaultRedisScript<>(
+			"local members = redis.call('ZRANGE', KEYS[1], 0, 0)\n" +
+			"if #members == 0 then\n" +
+			"  return false\n" +
+			"end\n" +
+			"redis.call('ZREM', KEYS[1], members[1])\n" +
+			"return members[1]", String.class);
+
+	private static final RedisSerializer<Long> SEQUENCE_SERIALIZER = new GenericToStringSerializer<>(Long.class);
+
 	private final RedisTemplate<Object, Object> redisTemplate;
 
 	private boolean valueSerializerSet;
@@ -86,6 +125,23 @@ public class RedisMessageStore extends AbstractKeyValueMessageStore implements B
 		this.valueSerializerSet = true;
 	}
 
+	/**
+	 * Use the provided {@link Codec}, such as a
+	 * {@link org.springframework.integration.codec.kryo.MessageCodec}, to encode the
+	 * message and group metadata values, instead of the default
+	 * {@link JdkSerializationRedisSerializer}. Keys written with Java serialization
+	 * before the switch remain readable, so a running store can be migrated.
+	 * Overrides any {@link #setValueSerializer(RedisSerializer) valueSerializer}.
+	 * @param codec the codec.
+	 * @since 5.1
+	 * @see CodecSerializer
+	 */
+	public void setCodec(Codec codec) {
+		CodecSerializer codecSerializer = new CodecSerializer(codec);
+		setValueSerializer(new JdkSerializationRedisSerializer(new SerializingConverter(codecSerializer),
+				new WhiteListDeserializingConverter(codecSerializer, true)));
+	}
+
 	@Override
 	protected Object doRetrieve(Object id) {
 		Assert.notNull(id, "'id' must not be null");
@@ -93,6 +149,21 @@ public class RedisMessageStore extends AbstractKeyValueMessageStore implements B
 		return ops.get();
 	}
 
+	@Override
+	protected Map<Object, Object> doRetrieveAll(Collection<?> ids) {
+		List<Object> keys = new ArrayList<>(ids);
+		List<Object> values = this.redisTemplate.opsForValue().multiGet(keys);
+		Map<Object, Object> result = new HashMap<>();
+		if (values != null) {
+			for (int i = 0; i < keys.size(); i++) {
+				Object value = values.get(i);
+				if (value != null) {
+					result.put(keys.get(i), value);
+				}
+			}
+		}
+		return result;
+	}
 
 	@Override
 	protected void doStore(Object id, Object objectToStore) {
@@ -125,6 +196,26 @@ public class RedisMessageStore extends AbstractKeyValueMessageStore implements B
 		}
 	}
 
+	@Override
+	protected void doStoreAll(final Map<Object, Object> objectsToStore) {
+		try {
+			this.redisTemplate.executePipelined(new SessionCallback<Object>() {
+
+				@Override
+				@SuppressWarnings("unchecked")
+				public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+					ValueOperations<Object, Object> ops = (ValueOperations<Object, Object>) operations.opsForValue();
+					objectsToStore.forEach(ops::setIfAbsent);
+					return null;
+				}
+
+			});
+		}
+		catch (SerializationException e) {
+			rethrowAsIllegalArgumentException(e);
+		}
+	}
+
 	@Override
 	protected Object doRemove(Object id) {
 		Assert.notNull(id, "'id' must not be null");
@@ -135,6 +226,83 @@ public class RedisMessageStore extends AbstractKeyValueMessageStore implements B
 		return removedObject;
 	}
 
+	@Override
+	protected void doRemoveAll(Collection<?> ids) {
+		this.redisTemplate.delete(new ArrayList<Object>(ids));
+	}
+
+	/**
+	 * Group members are stored in a sorted set, scored by a sequence of the group
+	 * (incremented under the key of the members with a {@code _SEQUENCE} suffix), so
+	 * that they are ordered by arrival, across application instances too.
+	 */
+	@Override
+	protected void doAddGroupMembers(Object key, Collection<UUID> messageIds) {
+		Object[] members = messageIds.stream()
+				.map(UUID::toString)
+				.toArray();
+		this.redisTemplate.execute(ADD_MEMBERS_SCRIPT, this.redisTemplate.getStringSerializer(),
+				SEQUENCE_SERIALIZER, Arrays.asList(key, key + MEMBER_SEQUENCE_SUFFIX), members);
+	}
+
+	@Override
+	protected void doRemoveGroupMembers(Object key, Collection<UUID> messageIds) {
+		byte[][] members = messageIds.stream()
+				.map(this::rawMember)
+				.toArray(byte[][]::new);
+		this.redisTemplate.execute((RedisCallback<Object>) connection -> connection.zRem(rawKey(key), members));
+	}
+
+	@Override
+	protected void doRemoveAllGroupMembers(Object key) {
+		this.redisTemplate.delete(Arrays.asList(key, key + MEMBER_SEQUENCE_SUFFIX));
+	}
+
+	@Override
+	protected List<UUID> doRetrieveGroupMembers(Object key) {
+		return retrieveGroupMembers(key, -1);
+	}
+
+	@Override
+	protected UUID doRetrieveFirstGroupMember(Object key) {
+		List<UUID> members = retrieveGroupMembers(key, 0);
+		return members.isEmpty() ? null : members.get(0);
+	}
+
+	@Override
+	protected UUID doPollGroupMember(Object key) {
+		String member = this.redisTemplate.execute(POLL_MEMBER_SCRIPT, this.redisTemplate.getStringSerializer(),
+				this.redisTemplate.getStringSerializer(), Collections.singletonList(key));
+		return member != null ? UUID.fromString(member) : null;
+	}
+
+	private List<UUID> retrieveGroupMembers(Object key, long end) {
+		Set<byte[]> members =
+				this.redisTemplate.execute((RedisCallback<Set<byte[]>>) connection ->
+						connection.zRange(rawKey(key), 0, end));
+		List<UUID> messageIds = new ArrayList<>();
+		if (members != null) {
+			for (byte[] member : members) {
+				messageIds.add(UUID.fromString(this.redisTemplate.getStringSerializer().deserialize(member)));
+			}
+		}
+		return messageIds;
+	}
+
+	@Override
+	protected int doCountGroupMembers(Object key) {
+		Long count = this.redisTemplate.opsForZSet().zCard(key);
+		return count != null ? count.intValue() : 0;
+	}
+
+	private byte[] rawKey(Object key) {
+		return this.redisTemplate.getStringSerializer().serialize((String) key);
+	}
+
+	private byte[] rawMember(UUID messageId) {
+		return this.redisTemplate.getStringSerializer().serialize(messageId.toString());
+	}
+
 	@Override
 	protected Collection<?> doListKeys(String keyPattern) {
 		Assert.hasText(keyPattern, "'keyPattern' must not be empty");
@@ -0,0 +1,236 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.redis.store;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.integration.store.MessageGroup;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.messaging.Message;
+import org.springframework.util.Assert;
+
+/**
+ * A {@link RedisChannelMessageStore} that spreads each logical group (for example the
+ * queue of a {@code QueueChannel}) over several Redis lists, so that a single logical
+ * queue is not pinned to one Redis Cluster slot (and one server).
+ * <p>
+ * A group with id {@code store:channel} is stored in the lists
+ * {@code store:channel:shard0} .. {@code store:channel:shardN}. If the group id
+ * contains a hash tag (such as {@code store:{orders}}), the shard index is added
+ * inside the tag ({@code store:{orders:shard0}}) so that the shards still hash to
+ * different slots.
+ * <p>
+ * Messages are placed on the shards round-robin by default or, when a
+ * {@link #setShardKeyFunction(Function) shardKeyFunction} is provided, by the hash
+ * of the key it returns. Polling visits the shards in rotation, so that all of them
+ * are drained fairly. Messages are consumed in FIFO order within a shard; there is
+ * no ordering across shards, except that messages with the same shard key remain
+ * ordered.
+ *
+ * @since 5.1
+ */
+public class RedisShardedChannelMessageStore extends RedisChannelMessageStore {
+
+	public static final int DEFAULT_SHARDS = 4;
+
+	private static final Pattern SHARD_SUFFIX = Pattern.compile(":shard\\d+");
+
+	private final AtomicInteger placementCounter = new AtomicInteger();
+
+	private final Map<Object, AtomicInteger> pollCounters = new ConcurrentHashMap<>();
+
+	private final Map<Object, String[]> shardKeys = new ConcurrentHashMap<>();
+
+	private volatile int shards = DEFAULT_SHARDS;
+
+	private volatile Function<Message<?>, ?> shardKeyFunction;
+
+	public RedisShardedChannelMessageStore(RedisConnectionFactory connectionFactory) {
+		super(connectionFactory);
+	}
+
+	/**
+	 * Set the number of Redis lists each group is spread over. Changing the number of
+	 * shards while groups contain messages leaves the messages in the extra shards
+	 * unreachable.
+	 * @param shards the number of shards. Defaults to 4.
+	 */
+	public void setShards(int shards) {
+		Assert.isTrue(shards > 0, "'shards' must be > 0");
+		this.shards = shards;
+		this.shardKeys.clear();
+	}
+
+	public int getShards() {
+		return this.shards;
+	}
+
+	/**
+	 * Provide a function to select the shard of a message by the hash of its result
+	 * (for example the correlation id); messages with the same key stay in FIFO order.
+	 * By default, messages are placed round-robin.
+	 * @param shardKeyFunction the function.
+	 */
+	public void setShardKeyFunction(Function<Message<?>, ?> shardKeyFunction) {
+		this.shardKeyFunction = shardKeyFunction;
+	}
+
+	@Override
+	@ManagedAttribute
+	public int messageGroupSize(Object groupId) {
+		int size = 0;
+		for (String key : shardKeys(groupId)) {
+			size += super.messageGroupSize(key);
+		}
+		return size;
+	}
+
+	@Override
+	public MessageGroup getMessageGroup(Object groupId) {
+		List<Message<?>> messages = new ArrayList<>();
+		for (String key : shardKeys(groupId)) {
+			messages.addAll(getRedisTemplate().boundListOps(key).range(0, -1));
+		}
+		return getMessageGroupFactory().create(messages, groupId);
+	}
+
+	@Override
+	public MessageGroup addMessageToGroup(Object groupId, Message<?> message) {
+		return super.addMessageToGroup(shardKeys(groupId)[shardFor(message)], message);
+	}
+
+	@Override
+	public void addMessagesToGroup(Object groupId, Message<?>... messages) {
+		String[] keys = shardKeys(groupId);
+		List<List<Message<?>>> byShard = new ArrayList<>(keys.length);
+		for (int i = 0; i < keys.length; i++) {
+			byShard.add(new ArrayList<>());
+		}
+		for (Message<?> message : messages) {
+			byShard.get(shardFor(message)).add(message);
+		}
+		for (int i = 0; i < keys.length; i++) {
+			List<Message<?>> shard = byShard.get(i);
+			if (!shard.isEmpty()) {
+				super.addMessagesToGroup(keys[i], shard.toArray(new Message<?>[shard.size()]));
+			}
+		}
+	}
+
+	@Override
+	public Message<?> pollMessageFromGroup(Object groupId) {
+		String[] keys = shardKeys(groupId);
+		int start = nextPollIndex(groupId, keys.length);
+		for (int i = 0; i < keys.length; i++) {
+			Message<?> message = super.pollMessageFromGroup(keys[(start + i) % keys.length]);
+			if (message != null) {
+				return message;
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public List<Message<?>> pollMessagesFromGroup(Object groupId, int maxMessages) {
+		Assert.isTrue(maxMessages > 0, "'maxMessages' must be > 0");
+		String[] keys = shardKeys(groupId);
+		int start = nextPollIndex(groupId, keys.length);
+		List<Message<?>> messages = new ArrayList<>();
+		for (int i = 0; i < keys.length && messages.size() < maxMessages; i++) {
+			messages.addAll(super.pollMessagesFromGroup(keys[(start + i) % keys.length],
+					maxMessages - messages.size()));
+		}
+		return messages;
+	}
+
+	@Override
+	public void removeMessageGroup(Object groupId) {
+		for (String key : shardKeys(groupId)) {
+			super.removeMessageGroup(key);
+		}
+		this.pollCounters.remove(groupId);
+	}
+
+	@Override
+	@ManagedAttribute
+	public int getMessageCountForAllMessageGroups() {
+		int count = 0;
+		for (Object key : getRedisTemplate().keys(getBeanName() + ":*")) {
+			count += super.messageGroupSize(key);
+		}
+		return count;
+	}
+
+	@Override
+	@ManagedAttribute
+	public int getMessageGroupCount() {
+		Set<String> groups = new HashSet<>();
+		for (Object key : getRedisTemplate().keys(getBeanName() + ":*")) {
+			groups.add(SHARD_SUFFIX.matcher(key.toString()).replaceFirst(""));
+		}
+		return groups.size();
+	}
+
+	/**
+	 * Return the keys of the lists backing the group.
+	 * @param groupId the group id.
+	 * @return the shard keys.
+	 */
+	public String[] getShardKeys(Object groupId) {
+		return shardKeys(groupId).clone();
+	}
+
+	private String[] shardKeys(Object groupId) {
+		return this.shardKeys.computeIfAbsent(groupId, id -> {
+			String group = id.toString();
+			int open = group.indexOf('{');
+			int close = open < 0 ? -1 : group.indexOf('}', open + 1);
+			boolean hashTag = close > open + 1;
+			String[] keys = new String[this.shards];
+			for (int i = 0; i < keys.length; i++) {
+				keys[i] = hashTag
+						? group.substring(0, close) + ":shard" + i + group.substring(close)
+						: group + ":shard" + i;
+			}
+			return keys;
+		});
+	}
+
+	private int shardFor(Message<?> message) {
+		Function<Message<?>, ?> function = this.shardKeyFunction;
+		Object key = function == null ? null : function.apply(message);
+		if (key == null) {
+			return (this.placementCounter.getAndIncrement() & Integer.MAX_VALUE) % this.shards;
+		}
+		return (key.hashCode() & Integer.MAX_VALUE) % this.shards;
+	}
+
+	private int nextPollIndex(Object groupId, int shardCount) {
+		AtomicInteger counter = this.pollCounters.computeIfAbsent(groupId, id -> new AtomicInteger());
+		return (counter.getAndIncrement() & Integer.MAX_VALUE) % shardCount;
+	}
+
+}
@@ -0,0 +1,284 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.redis.support;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.integration.channel.OverflowPolicy;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.support.GenericMessage;
+import org.springframework.util.Assert;
+import org.springframework.util.ErrorHandler;
+
+/**
+ * Hands messages received on a listener thread off to a fixed number of partitions,
+ * each with a bounded queue drained by its own worker thread.
+ * <p>
+ * The partition of a message is determined by the hash of the key returned by the
+ * {@link #setPartitionFunction(Function) partition function}, so messages with the same
+ * key are handled in order; messages with a {@code null} key are distributed round-robin
+ * and their order is not preserved. By default, the key is the
+ * {@link RedisHeaders#MESSAGE_SOURCE} header (the topic the message was received from).
+ * <p>
+ * When the queue of a partition is full, the {@link OverflowPolicy} is applied. Note that
+ * with {@link OverflowPolicy#BLOCK}, Redis keeps buffering the published messages for the
+ * blocked subscriber; the server may close the connection when its client output buffer
+ * limit is exceeded.
+ *
+ * @since 5.1
+ */
+public class PartitionedDispatcher {
+
+	private static final Message<?> WAKE_UP = new GenericMessage<>("wake up");
+
+	private static final Log logger = LogFactory.getLog(PartitionedDispatcher.class);
+
+	private final Consumer<Message<?>> handler;
+
+	private final BlockingQueue<Message<?>>[] queues;
+
+	private final AtomicInteger roundRobin = new AtomicInteger();
+
+	private final AtomicLong dropped = new AtomicLong();
+
+	private Function<Message<?>, ?> partitionFunction = m -> m.getHeaders().get(RedisHeaders.MESSAGE_SOURCE);
+
+	private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+
+	private Executor taskExecutor = new SimpleAsyncTaskExecutor("redis-dispatcher-");
+
+	private ErrorHandler errorHandler = t -> logger.error("Failed to handle a dispatched message", t);
+
+	private volatile CountDownLatch stopLatch;
+
+	private volatile boolean running;
+
+	/**
+	 * Construct an instance with the provided number of partitions and queue capacity.
+	 * @param partitions the number of partitions, each with its own worker thread.
+	 * @param queueCapacity the capacity of the queue of each partition.
+	 * @param handler the handler invoked for each message on the partition's worker thread.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public PartitionedDispatcher(int partitions, int queueCapacity, Consumer<Message<?>> handler) {
+		Assert.isTrue(partitions > 0, "'partitions' must be greater than 0");
+		Assert.isTrue(queueCapacity > 0, "'queueCapacity' must be greater than 0");
+		Assert.notNull(handler, "'handler' must not be null");
+		this.handler = handler;
+		this.queues = new BlockingQueue[partitions];
+		for (int i = 0; i < partitions; i++) {
+			this.queues[i] = new LinkedBlockingQueue<>(queueCapacity);
+		}
+	}
+
+	/**
+	 * Set the function determining the key of a message; messages with the same key
+	 * are dispatched to the same partition and handled in order.
+	 * @param partitionFunction the partition function.
+	 */
+	public void setPartitionFunction(Function<Message<?>, ?> partitionFunction) {
+		Assert.notNull(partitionFunction, "'partitionFunction' must not be null");
+		this.partitionFunction = partitionFunction;
+	}
+
+	/**
+	 * Set the policy applied when the queue of a partition is full.
+	 * Default {@link OverflowPolicy#BLOCK}.
+	 * @param overflowPolicy the overflow policy.
+	 */
+	public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+		Assert.notNull(overflowPolicy, "'overflowPolicy' must not be null");
+		this.overflowPolicy = overflowPolicy;
+	}
+
+	/**
+	 * Set the executor running the worker of each partition; it must be able to run
+	 * a long-lived task for each partition concurrently.
+	 * Default a {@link SimpleAsyncTaskExecutor}.
+	 * @param taskExecutor the executor.
+	 */
+	public void setTaskExecutor(Executor taskExecutor) {
+		Assert.notNull(taskExecutor, "'taskExecutor' must not be null");
+		this.taskExecutor = taskExecutor;
+	}
+
+	/**
+	 * Set the {@link ErrorHandler} invoked with exceptions thrown by the handler.
+	 * By default, the exceptions are logged.
+	 * @param errorHandler the error handler.
+	 */
+	public void setErrorHandler(ErrorHandler errorHandler) {
+		Assert.notNull(errorHandler, "'errorHandler' must not be null");
+		this.errorHandler = errorHandler;
+	}
+
+	/**
+	 * Return the number of messages queued in all partitions.
+	 * @return the number of queued messages.
+	 */
+	public int getQueueSize() {
+		int size = 0;
+		for (BlockingQueue<Message<?>> queue : this.queues) {
+			size += queue.size();
+		}
+		return size;
+	}
+
+	/**
+	 * Return the number of messages dropped by the {@link OverflowPolicy#DROP}
+	 * and {@link OverflowPolicy#LATEST} policies.
+	 * @return the number of dropped messages.
+	 */
+	public long getDroppedCount() {
+		return this.dropped.get();
+	}
+
+	public boolean isRunning() {
+		return this.running;
+	}
+
+	/**
+	 * Start a worker for each partition.
+	 */
+	public synchronized void start() {
+		if (!this.running) {
+			this.running = true;
+			CountDownLatch latch = new CountDownLatch(this.queues.length);
+			this.stopLatch = latch;
+			for (BlockingQueue<Message<?>> queue : this.queues) {
+				this.taskExecutor.execute(() -> drain(queue, latch));
+			}
+		}
+	}
+
+	/**
+	 * Stop the workers once they have handled the queued messages, waiting up to
+	 * the provided timeout for them to do so.
+	 * @param timeout the time to wait in milliseconds.
+	 */
+	public synchronized void stop(long timeout) {
+		if (this.running) {
+			this.running = false;
+			for (BlockingQueue<Message<?>> queue : this.queues) {
+				// wake up an idle worker; a worker with queued messages does not block
+				queue.offer(WAKE_UP);
+			}
+			try {
+				if (!this.stopLatch.await(timeout, TimeUnit.MILLISECONDS)) {
+					logger.warn("Partition workers did not stop within " + timeout + "ms; "
+							+ getQueueSize() + " messages remain queued");
+				}
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			for (BlockingQueue<Message<?>> queue : this.queues) {
+				queue.remove(WAKE_UP);
+			}
+		}
+	}
+
+	/**
+	 * Queue the message on its partition, applying the {@link OverflowPolicy} if the
+	 * queue is full.
+	 * @param message the message.
+	 */
+	public void dispatch(Message<?> message) {
+		Assert.state(this.running, "The dispatcher is not running");
+		BlockingQueue<Message<?>> queue = this.queues[partition(message)];
+		if (queue.offer(message)) {
+			return;
+		}
+		switch (this.overflowPolicy) {
+			case DROP:
+				drop(message);
+				break;
+			case LATEST:
+				while (!queue.offer(message)) {
+					Message<?> oldest = queue.poll();
+					if (oldest != null) {
+						drop(oldest);
+					}
+				}
+				break;
+			case ERROR:
+				throw new MessageDeliveryException(message, "The dispatcher partition queue is full");
+			default:
+				try {
+					while (!queue.offer(message, 100, TimeUnit.MILLISECONDS)) {
+						Assert.state(this.running, "The dispatcher is not running");
+					}
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new MessageDeliveryException(message, "Interrupted while waiting for the partition queue", e);
+				}
+		}
+	}
+
+	private int partition(Message<?> message) {
+		Object key = this.partitionFunction.apply(message);
+		int hash = key != null ? key.hashCode() : this.roundRobin.getAndIncrement();
+		return (hash & Integer.MAX_VALUE) % this.queues.length;
+	}
+
+	private void drop(Message<?> message) {
+		this.dropped.incrementAndGet();
+		if (logger.isDebugEnabled()) {
+			logger.debug("The dispatcher partition queue is full; dropped: " + message);
+		}
+	}
+
+	private void drain(BlockingQueue<Message<?>> queue, CountDownLatch latch) {
+		try {
+			while (true) {
+				Message<?> message = this.running ? queue.take() : queue.poll();
+				if (message == null) {
+					break;
+				}
+				if (message != WAKE_UP) {
+					try {
+						this.handler.accept(message);
+					}
+					catch (Throwable t) {
+						this.errorHandler.handleError(t);
+					}
+				}
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		finally {
+			latch.countDown();
+		}
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2014-2017 the original author or authors.
+ * Copyright 2014-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -46,4 +46,23 @@ public final class RedisHeaders {
 
 	public static final String MESSAGE_SOURCE = PREFIX + "messageSource";
 
+	/**
+	 * The key of the Redis Stream a message was read from.
+	 * @since 5.1
+	 */
+	public static final String STREAM_KEY = PREFIX + "streamKey";
+
+	/**
+	 * The id of the Redis Stream entry a message was read from.
+	 * @since 5.1
+	 */
+	public static final String STREAM_MESSAGE_ID = PREFIX + "streamMessageId";
+
+	/**
+	 * The number of times a Redis Stream entry was delivered, for an entry sent to the
+	 * dead letter channel.
+	 * @since 5.1
+	 */
+	public static final String STREAM_DELIVERY_COUNT = PREFIX + "streamDeliveryCount";
+
 }
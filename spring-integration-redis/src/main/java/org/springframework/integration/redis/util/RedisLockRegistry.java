@@ -1,5 +1,5 @@
 /*
- * Copyright 2014-2017 the original author or authors.
+ * Copyright 2014-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,6 +16,7 @@
 
 package org.springframework.integration.redis.util;
 
+import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
 import java.util.Collections;
 import java.util.Date;
@@ -23,6 +24,8 @@ import java.util.Iterator;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
@@ -31,13 +34,18 @@ import java.util.concurrent.locks.ReentrantLock;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.dao.CannotAcquireLockException;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.integration.support.locks.ExpirableLockRegistry;
 import org.springframework.integration.support.locks.LockRegistry;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import org.springframework.util.Assert;
 
 /**
@@ -59,6 +67,12 @@ import org.springframework.util.Assert;
  * for resource locking across multiple JVMs.
  * <p>
  * {@link Condition}s are not supported.
+ * <p>
+ * Starting with version 5.1, {@link #setUnlockNotifications(boolean) unlock
+ * notifications} let threads waiting for a lock held elsewhere wake up as soon as it is
+ * released (Redis pub/sub) instead of polling every 100 milliseconds, and
+ * {@link #setLeaseRenewal(boolean) lease renewal} keeps extending the expiration of
+ * locks that are held for longer than {@code expireAfter}.
  *
  * @author Gary Russell
  * @author Konstantin Yakimov
@@ -68,7 +82,7 @@ import org.springframework.util.Assert;
  * @since 4.0
  *
  */
-public final class RedisLockRegistry implements ExpirableLockRegistry {
+public final class RedisLockRegistry implements ExpirableLockRegistry, DisposableBean {
 
 	private static final Log logger = LogFactory.getLog(RedisLockRegistry.class);
 
@@ -85,6 +99,27 @@ public final class RedisLockRegistry implements ExpirableLockRegistry {
 					"end\n" +
 					"return false";
 
+	private static final String RENEW_LOCK_SCRIPT =
+			"if redis.call('GET', KEYS[1]) == ARGV[1] then\n" +
+					"  redis.call('PEXPIRE', KEYS[1], ARGV[2])\n" +
+					"  return true\n" +
+					"end\n" +
+					"return false";
+
+	private static final String RELEASE_LOCK_SCRIPT =
+			"if redis.call('GET', KEYS[1]) == ARGV[1] then\n" +
+					"  redis.call('DEL', KEYS[1])\n" +
+					"  redis.call('PUBLISH', ARGV[2], KEYS[1])\n" +
+					"  return true\n" +
+					"end\n" +
+					"return false";
+
+	/**
+	 * How long a waiting thread sleeps between attempts when unlock notifications are
+	 * enabled; a fallback for locks that expire rather than being released.
+	 */
+	private static final long NOTIFICATION_WAIT_INTERVAL = 1000;
+
 	private final Map<String, RedisLock> locks = new ConcurrentHashMap<>();
 
 	private final String clientId = UUID.randomUUID().toString();
@@ -95,8 +130,24 @@ public final class RedisLockRegistry implements ExpirableLockRegistry {
 
 	private final RedisScript<Boolean> obtainLockScript;
 
+	private final RedisScript<Boolean> renewLockScript;
+
+	private final RedisScript<Boolean> releaseLockScript;
+
 	private final long expireAfter;
 
+	private final String unlockChannel;
+
+	private volatile boolean unlockNotifications;
+
+	private volatile RedisMessageListenerContainer listenerContainer;
+
+	private volatile boolean leaseRenewal;
+
+	private volatile TaskScheduler taskScheduler;
+
+	private volatile ThreadPoolTaskScheduler internalTaskScheduler;
+
 	/**
 	 * Constructs a lock registry with the default (60 second) lock expiration.
 	 * @param connectionFactory The connection factory.
@@ -117,14 +168,102 @@ public final class RedisLockRegistry implements ExpirableLockRegistry {
 		Assert.notNull(registryKey, "'registryKey' cannot be null");
 		this.redisTemplate = new StringRedisTemplate(connectionFactory);
 		this.obtainLockScript = new DefaultRedisScript<>(OBTAIN_LOCK_SCRIPT, Boolean.class);
+		this.renewLockScript = new DefaultRedisScript<>(RENEW_LOCK_SCRIPT, Boolean.class);
+		this.releaseLockScript = new DefaultRedisScript<>(RELEASE_LOCK_SCRIPT, Boolean.class);
 		this.registryKey = registryKey;
 		this.expireAfter = expireAfter;
+		this.unlockChannel = registryKey + ":unlocked";
+	}
+
+	/**
+	 * Publish a notification (on the {@code registryKey:unlocked} channel) when a lock
+	 * is released and let threads waiting for a lock wake up on it, rather than
+	 * polling every 100 milliseconds. Waiting threads still retry every second in case
+	 * a lock expires without being released. All registries sharing the
+	 * {@code registryKey} should use the same setting. A lock that has expired in the
+	 * store can no longer be released by its former owner; {@link Lock#unlock()} then
+	 * throws an {@link IllegalStateException}.
+	 * @param unlockNotifications true to enable notifications.
+	 * @since 5.1
+	 */
+	public void setUnlockNotifications(boolean unlockNotifications) {
+		this.unlockNotifications = unlockNotifications;
+	}
+
+	/**
+	 * Periodically (every third of {@code expireAfter}) extend the expiration of the
+	 * locks held by this registry, so that a lock held longer than
+	 * {@code expireAfter} is not lost while its owner is alive; the lock still expires
+	 * if the process dies.
+	 * @param leaseRenewal true to renew leases.
+	 * @since 5.1
+	 * @see #setTaskScheduler(TaskScheduler)
+	 */
+	public void setLeaseRenewal(boolean leaseRenewal) {
+		this.leaseRenewal = leaseRenewal;
+	}
+
+	/**
+	 * Set the {@link TaskScheduler} used for {@link #setLeaseRenewal(boolean) lease
+	 * renewal}; by default a single-threaded scheduler is created on demand.
+	 * @param taskScheduler the task scheduler.
+	 * @since 5.1
+	 */
+	public void setTaskScheduler(TaskScheduler taskScheduler) {
+		this.taskScheduler = taskScheduler;
+	}
+
+	@Override
+	public void destroy() throws Exception {
+		if (this.listenerContainer != null) {
+			this.listenerContainer.destroy();
+			this.listenerContainer = null;
+		}
+		if (this.internalTaskScheduler != null) {
+			this.internalTaskScheduler.destroy();
+			this.internalTaskScheduler = null;
+		}
+	}
+
+	private synchronized void subscribeIfNecessary() {
+		if (this.listenerContainer == null) {
+			RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+			container.setConnectionFactory(this.redisTemplate.getConnectionFactory());
+			String prefix = this.registryKey + ":";
+			container.addMessageListener((message, pattern) -> {
+				String lockKey = new String(message.getBody(), StandardCharsets.UTF_8);
+				if (lockKey.startsWith(prefix)) {
+					RedisLock lock = this.locks.get(lockKey.substring(prefix.length()));
+					if (lock != null) {
+						lock.released.release();
+					}
+				}
+			}, new ChannelTopic(this.unlockChannel));
+			container.afterPropertiesSet();
+			container.start();
+			this.listenerContainer = container;
+		}
+	}
+
+	private synchronized TaskScheduler obtainTaskScheduler() {
+		if (this.taskScheduler == null) {
+			ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+			scheduler.setThreadNamePrefix("redis-lock-renewal-");
+			scheduler.setDaemon(true);
+			scheduler.afterPropertiesSet();
+			this.internalTaskScheduler = scheduler;
+			this.taskScheduler = scheduler;
+		}
+		return this.taskScheduler;
 	}
 
 	@Override
 	public Lock obtain(Object lockKey) {
 		Assert.isInstanceOf(String.class, lockKey);
 		String path = (String) lockKey;
+		if (this.unlockNotifications && this.listenerContainer == null) {
+			subscribeIfNecessary();
+		}
 		return this.locks.computeIfAbsent(path, RedisLock::new);
 	}
 
@@ -147,8 +286,15 @@ public final class RedisLockRegistry implements ExpirableLockRegistry {
 
 		private final ReentrantLock localLock = new ReentrantLock();
 
+		/**
+		 * Permits are released by unlock notifications for this key.
+		 */
+		private final Semaphore released = new Semaphore(0);
+
 		private volatile long lockedAt;
 
+		private volatile ScheduledFuture<?> renewal;
+
 		private RedisLock(String path) {
 			this.lockKey = constructLockKey(path);
 		}
@@ -167,7 +313,7 @@ public final class RedisLockRegistry implements ExpirableLockRegistry {
 			while (true) {
 				try {
 					while (!obtainLock()) {
-						Thread.sleep(100); //NOSONAR
+						waitForRelease(NOTIFICATION_WAIT_INTERVAL);
 					}
 					break;
 				}
@@ -194,7 +340,7 @@ public final class RedisLockRegistry implements ExpirableLockRegistry {
 			this.localLock.lockInterruptibly();
 			try {
 				while (!obtainLock()) {
-					Thread.sleep(100); //NOSONAR
+					waitForRelease(NOTIFICATION_WAIT_INTERVAL);
 				}
 			}
 			catch (InterruptedException ie) {
@@ -229,7 +375,7 @@ public final class RedisLockRegistry implements ExpirableLockRegistry {
 				long expire = now + TimeUnit.MILLISECONDS.convert(time, unit);
 				boolean acquired;
 				while (!(acquired = obtainLock()) && System.currentTimeMillis() < expire) { //NOSONAR
-					Thread.sleep(100); //NOSONAR
+					waitForRelease(expire - System.currentTimeMillis());
 				}
 				if (!acquired) {
 					this.localLock.unlock();
@@ -243,16 +389,57 @@ public final class RedisLockRegistry implements ExpirableLockRegistry {
 			return false;
 		}
 
+		private void waitForRelease(long maxWait) throws InterruptedException {
+			if (RedisLockRegistry.this.unlockNotifications) {
+				this.released.tryAcquire(Math.max(0, Math.min(maxWait, NOTIFICATION_WAIT_INTERVAL)), //NOSONAR
+						TimeUnit.MILLISECONDS);
+			}
+			else {
+				Thread.sleep(100); //NOSONAR
+			}
+		}
+
 		private boolean obtainLock() {
+			if (RedisLockRegistry.this.unlockNotifications) {
+				// a notification arriving from now on must wake up the next wait
+				this.released.drainPermits();
+			}
 			boolean success = RedisLockRegistry.this.redisTemplate.execute(RedisLockRegistry.this.obtainLockScript,
 					Collections.singletonList(this.lockKey), RedisLockRegistry.this.clientId,
 					String.valueOf(RedisLockRegistry.this.expireAfter));
 			if (success) {
 				this.lockedAt = System.currentTimeMillis();
+				if (RedisLockRegistry.this.leaseRenewal && this.renewal == null) {
+					long period = Math.max(1, RedisLockRegistry.this.expireAfter / 3);
+					this.renewal = obtainTaskScheduler().scheduleAtFixedRate(this::renew, period);
+				}
 			}
 			return success;
 		}
 
+		private void renew() {
+			try {
+				boolean renewed = RedisLockRegistry.this.redisTemplate.execute(
+						RedisLockRegistry.this.renewLockScript, Collections.singletonList(this.lockKey),
+						RedisLockRegistry.this.clientId, String.valueOf(RedisLockRegistry.this.expireAfter));
+				if (!renewed) {
+					logger.error("Lost lock " + this + " before it was released; the lease can no longer be renewed");
+					cancelRenewal();
+				}
+			}
+			catch (Exception e) {
+				logger.error("Failed to renew the lease of " + this, e);
+			}
+		}
+
+		private void cancelRenewal() {
+			ScheduledFuture<?> renewal = this.renewal;
+			if (renewal != null) {
+				renewal.cancel(false);
+				this.renewal = null;
+			}
+		}
+
 		@Override
 		public void unlock() {
 			if (!this.localLock.isHeldByCurrentThread()) {
@@ -263,7 +450,19 @@ public final class RedisLockRegistry implements ExpirableLockRegistry {
 				return;
 			}
 			try {
-				RedisLockRegistry.this.redisTemplate.delete(this.lockKey);
+				cancelRenewal();
+				if (RedisLockRegistry.this.unlockNotifications) {
+					boolean released = RedisLockRegistry.this.redisTemplate.execute(
+							RedisLockRegistry.this.releaseLockScript, Collections.singletonList(this.lockKey),
+							RedisLockRegistry.this.clientId, RedisLockRegistry.this.unlockChannel);
+					if (!released) {
+						throw new IllegalStateException("Lock was released in the store due to expiration. " +
+								"The integrity of data protected by this lock may have been compromised.");
+					}
+				}
+				else {
+					RedisLockRegistry.this.redisTemplate.delete(this.lockKey);
+				}
 				if (logger.isDebugEnabled()) {
 					logger.debug("Released lock; " + this);
 				}
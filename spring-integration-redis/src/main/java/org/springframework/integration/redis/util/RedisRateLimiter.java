@@ -0,0 +1,83 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.redis.util;
+
+import java.util.Collections;
+
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.integration.support.ratelimit.RateLimit;
+import org.springframework.integration.support.ratelimit.RateLimiter;
+import org.springframework.util.Assert;
+
+/**
+ * A {@link RateLimiter} keeping the buckets in Redis, so that the limits apply to all
+ * the instances sharing the same {@code registryKey}.
+ * <p>
+ * The refill time of a bucket is stored under the key {@code registryKey:key} and is
+ * updated atomically by a Lua script, using the Redis server clock; keys expire once
+ * their bucket is full again. Requires Redis 3.2 or later.
+ *
+ * @since 5.1
+ */
+public class RedisRateLimiter implements RateLimiter {
+
+	private static final String ACQUIRE_SCRIPT =
+			"redis.replicate_commands()\n" +
+					"local time = redis.call('TIME')\n" +
+					"local now = tonumber(time[1]) * 1000000 + tonumber(time[2])\n" +
+					"local refill = tonumber(redis.call('GET', KEYS[1]) or 0)\n" +
+					"if refill < now then refill = now end\n" +
+					"local nextRefill = refill + tonumber(ARGV[1]) * tonumber(ARGV[3])\n" +
+					"local excess = nextRefill - now - tonumber(ARGV[2])\n" +
+					"if excess > 0 then\n" +
+					"  return math.ceil(excess / 1000)\n" +
+					"end\n" +
+					"redis.call('SET', KEYS[1], string.format('%d', nextRefill), 'PX', " +
+					"math.ceil((nextRefill - now) / 1000) + 1)\n" +
+					"return 0";
+
+	private final StringRedisTemplate redisTemplate;
+
+	private final String registryKey;
+
+	private final RedisScript<Long> acquireScript = new DefaultRedisScript<>(ACQUIRE_SCRIPT, Long.class);
+
+	/**
+	 * Construct an instance with the provided connection factory and key prefix.
+	 * @param connectionFactory the connection factory.
+	 * @param registryKey the key prefix for the buckets.
+	 */
+	public RedisRateLimiter(RedisConnectionFactory connectionFactory, String registryKey) {
+		Assert.notNull(connectionFactory, "'connectionFactory' cannot be null");
+		Assert.notNull(registryKey, "'registryKey' cannot be null");
+		this.redisTemplate = new StringRedisTemplate(connectionFactory);
+		this.registryKey = registryKey;
+	}
+
+	@Override
+	public long tryAcquire(String key, RateLimit limit, int permits) {
+		Long wait = this.redisTemplate.execute(this.acquireScript,
+				Collections.singletonList(this.registryKey + ":" + key),
+				Long.toString(limit.getIntervalMicros()), Long.toString(limit.getCapacityMicros()),
+				Integer.toString(permits));
+		return wait != null ? wait : 0;
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2007-2017 the original author or authors.
+ * Copyright 2007-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -22,6 +22,11 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Mockito.mock;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 import org.hamcrest.Matchers;
 import org.junit.Test;
 
@@ -54,6 +59,51 @@ public class RedisInboundChannelAdapterTests extends RedisAvailableTests {
 		}
 	}
 
+	@Test
+	@RedisAvailable
+	public void testPartitionedDispatch() throws Exception {
+		QueueChannel channel = new QueueChannel();
+		RedisConnectionFactory connectionFactory = this.getConnectionFactoryForTest();
+
+		RedisInboundChannelAdapter adapter = new RedisInboundChannelAdapter(connectionFactory);
+		adapter.setTopics("partitionedFoo", "partitionedBar");
+		adapter.setDispatchPartitions(4);
+		adapter.setOutputChannel(channel);
+		adapter.setBeanFactory(mock(BeanFactory.class));
+		adapter.afterPropertiesSet();
+		adapter.start();
+
+		StringRedisTemplate redisTemplate = new StringRedisTemplate(connectionFactory);
+		redisTemplate.afterPropertiesSet();
+
+		awaitFullySubscribed(TestUtils.getPropertyValue(adapter, "container", RedisMessageListenerContainer.class),
+				redisTemplate, "partitionedFoo", channel, "foo");
+
+		for (int i = 0; i < 100; i++) {
+			redisTemplate.convertAndSend(i % 2 == 0 ? "partitionedFoo" : "partitionedBar", "" + i);
+		}
+		Map<Object, List<Integer>> received = new HashMap<>();
+		int count = 0;
+		while (count < 100) {
+			Message<?> message = channel.receive(10000);
+			assertNotNull(message);
+			if (!"foo".equals(message.getPayload())) {
+				received.computeIfAbsent(message.getHeaders().get(RedisHeaders.MESSAGE_SOURCE),
+						k -> new ArrayList<>())
+						.add(Integer.valueOf((String) message.getPayload()));
+				count++;
+			}
+		}
+		for (List<Integer> payloads : received.values()) {
+			assertEquals(50, payloads.size());
+			for (int i = 1; i < payloads.size(); i++) {
+				assertEquals(payloads.get(i - 1) + 2, payloads.get(i).intValue());
+			}
+		}
+		assertEquals(0, adapter.getDispatchDroppedCount());
+		adapter.stop();
+	}
+
 	private void testRedisInboundChannelAdapterGuts(int iteration) throws Exception {
 		int numToTest = 10;
 		String redisChannelName = "testRedisInboundChannelAdapterChannel";
@@ -1,5 +1,5 @@
 /*
- * Copyright 2013-2017 the original author or authors.
+ * Copyright 2013-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -376,6 +376,45 @@ public class RedisQueueMessageDrivenEndpointTests extends RedisAvailableTests {
 		endpoint.stop();
 	}
 
+	@Test
+	@RedisAvailable
+	public void testBatchAndInFlight() throws Exception {
+		String queueName = "si.test.redisQueueInboundChannelAdapterTestsBatch";
+		String inFlightName = queueName + ".inFlight";
+
+		StringRedisTemplate redisTemplate = createStringRedisTemplate(this.connectionFactory);
+		redisTemplate.delete(Arrays.asList(queueName, inFlightName));
+		redisTemplate.boundListOps(inFlightName).leftPush("recovered");
+		for (int i = 0; i < 20; i++) {
+			redisTemplate.boundListOps(queueName).leftPush("foo" + i);
+		}
+
+		QueueChannel channel = new QueueChannel();
+		RedisQueueMessageDrivenEndpoint endpoint =
+				new RedisQueueMessageDrivenEndpoint(queueName, this.connectionFactory);
+		endpoint.setBeanFactory(Mockito.mock(BeanFactory.class));
+		endpoint.setSerializer(new StringRedisSerializer());
+		endpoint.setOutputChannel(channel);
+		endpoint.setReceiveTimeout(10);
+		endpoint.setBatchSize(8);
+		endpoint.setInFlightQueueName(inFlightName);
+		endpoint.afterPropertiesSet();
+		endpoint.start();
+
+		Message<?> receive = channel.receive(10000);
+		assertNotNull(receive);
+		assertEquals("recovered", receive.getPayload());
+		for (int i = 0; i < 20; i++) {
+			receive = channel.receive(10000);
+			assertNotNull(receive);
+			assertEquals("foo" + i, receive.getPayload());
+		}
+
+		endpoint.stop();
+		assertEquals(Long.valueOf(0), redisTemplate.boundListOps(queueName).size());
+		assertEquals(Long.valueOf(0), redisTemplate.boundListOps(inFlightName).size());
+	}
+
 	private void waitListening(RedisQueueMessageDrivenEndpoint endpoint) throws InterruptedException {
 		int n = 0;
 		do {
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.redis.inbound;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.integration.channel.DirectChannel;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.redis.outbound.RedisStreamOutboundChannelAdapter;
+import org.springframework.integration.redis.rules.RedisAvailable;
+import org.springframework.integration.redis.rules.RedisAvailableTests;
+import org.springframework.integration.redis.support.RedisHeaders;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.support.GenericMessage;
+
+/**
+ * @since 5.1
+ */
+public class RedisStreamMessageDrivenEndpointTests extends RedisAvailableTests {
+
+	@Test
+	@RedisAvailable
+	public void testConcurrentConsumers() throws Exception {
+		String streamKey = "si.test.redisStreamConcurrent";
+		RedisConnectionFactory connectionFactory = getConnectionFactoryForTest();
+		deleteKey(connectionFactory, streamKey);
+
+		RedisStreamOutboundChannelAdapter handler = new RedisStreamOutboundChannelAdapter(streamKey,
+				connectionFactory);
+		handler.setBeanFactory(mock(BeanFactory.class));
+		handler.afterPropertiesSet();
+
+		QueueChannel out = new QueueChannel();
+		RedisStreamMessageDrivenEndpoint endpoint = new RedisStreamMessageDrivenEndpoint(streamKey, "group",
+				connectionFactory);
+		endpoint.setStartId("0");
+		endpoint.setConcurrency(3);
+		endpoint.setBatchSize(5);
+		endpoint.setReceiveTimeout(100);
+		endpoint.setBeanFactory(mock(BeanFactory.class));
+		endpoint.setOutputChannel(out);
+		endpoint.afterPropertiesSet();
+
+		for (int i = 0; i < 50; i++) {
+			handler.handleMessage(new GenericMessage<>("foo" + i));
+		}
+		endpoint.start();
+
+		Set<Object> payloads = new HashSet<>();
+		for (int i = 0; i < 50; i++) {
+			Message<?> received = out.receive(10000);
+			assertNotNull(received);
+			assertEquals(streamKey, received.getHeaders().get(RedisHeaders.STREAM_KEY));
+			assertNotNull(received.getHeaders().get(RedisHeaders.STREAM_MESSAGE_ID));
+			payloads.add(received.getPayload());
+		}
+		assertEquals(50, payloads.size());
+		assertNull(out.receive(100));
+		assertEquals(0, endpoint.getPendingCount());
+		assertEquals(50, endpoint.getStreamLength());
+		endpoint.stop();
+		deleteKey(connectionFactory, streamKey);
+	}
+
+	@Test
+	@RedisAvailable
+	public void testFailedEntriesAreClaimed() throws Exception {
+		String streamKey = "si.test.redisStreamClaim";
+		RedisConnectionFactory connectionFactory = getConnectionFactoryForTest();
+		deleteKey(connectionFactory, streamKey);
+
+		RedisStreamOutboundChannelAdapter handler = new RedisStreamOutboundChannelAdapter(streamKey,
+				connectionFactory);
+		handler.setBeanFactory(mock(BeanFactory.class));
+		handler.setExtractPayload(false);
+		handler.afterPropertiesSet();
+
+		AtomicInteger failures = new AtomicInteger();
+		DirectChannel failing = new DirectChannel();
+		failing.subscribe(message -> {
+			failures.incrementAndGet();
+			throw new MessagingException(message, "planned failure");
+		});
+		RedisStreamMessageDrivenEndpoint failingEndpoint = new RedisStreamMessageDrivenEndpoint(streamKey, "group",
+				connectionFactory);
+		failingEndpoint.setConsumerName("failing");
+		failingEndpoint.setExpectMessage(true);
+		failingEndpoint.setClaimMinIdleTime(0);
+		failingEndpoint.setReceiveTimeout(100);
+		failingEndpoint.setBeanFactory(mock(BeanFactory.class));
+		failingEndpoint.setOutputChannel(failing);
+		failingEndpoint.afterPropertiesSet();
+		failingEndpoint.start();
+
+		handler.handleMessage(new GenericMessage<>("foo"));
+		int n = 0;
+		while (failures.get() == 0 && n++ < 100) {
+			Thread.sleep(100);
+		}
+		failingEndpoint.stop();
+		assertEquals(1, failures.get());
+		assertEquals(1, failingEndpoint.getPendingCount());
+
+		QueueChannel out = new QueueChannel();
+		RedisStreamMessageDrivenEndpoint endpoint = new RedisStreamMessageDrivenEndpoint(streamKey, "group",
+				connectionFactory);
+		endpoint.setExpectMessage(true);
+		endpoint.setClaimMinIdleTime(100);
+		endpoint.setClaimInterval(100);
+		endpoint.setReceiveTimeout(100);
+		endpoint.setBeanFactory(mock(BeanFactory.class));
+		endpoint.setOutputChannel(out);
+		endpoint.afterPropertiesSet();
+		endpoint.start();
+
+		Message<?> received = out.receive(10000);
+		assertNotNull(received);
+		assertEquals("foo", received.getPayload());
+		endpoint.stop();
+		assertEquals(0, endpoint.getPendingCount());
+		deleteKey(connectionFactory, streamKey);
+	}
+
+	@Test
+	@RedisAvailable
+	public void testPoisonEntryIsDeadLettered() throws Exception {
+		String streamKey = "si.test.redisStreamDeadLetter";
+		RedisConnectionFactory connectionFactory = getConnectionFactoryForTest();
+		deleteKey(connectionFactory, streamKey);
+
+		RedisStreamOutboundChannelAdapter handler = new RedisStreamOutboundChannelAdapter(streamKey,
+				connectionFactory);
+		handler.setBeanFactory(mock(BeanFactory.class));
+		handler.setExtractPayload(false);
+		handler.afterPropertiesSet();
+
+		AtomicInteger failures = new AtomicInteger();
+		DirectChannel failing = new DirectChannel();
+		failing.subscribe(message -> {
+			failures.incrementAndGet();
+			throw new MessagingException(message, "planned failure");
+		});
+		QueueChannel deadLetters = new QueueChannel();
+		RedisStreamMessageDrivenEndpoint endpoint = new RedisStreamMessageDrivenEndpoint(streamKey, "group",
+				connectionFactory);
+		endpoint.setExpectMessage(true);
+		endpoint.setMaxDeliveries(2);
+		endpoint.setDeadLetterChannel(deadLetters);
+		endpoint.setClaimMinIdleTime(50);
+		endpoint.setClaimInterval(50);
+		endpoint.setReceiveTimeout(50);
+		endpoint.setBeanFactory(mock(BeanFactory.class));
+		endpoint.setOutputChannel(failing);
+		endpoint.afterPropertiesSet();
+		endpoint.start();
+
+		handler.handleMessage(new GenericMessage<>("foo"));
+		Message<?> deadLetter = deadLetters.receive(10000);
+		assertNotNull(deadLetter);
+		assertEquals("foo", deadLetter.getPayload());
+		assertEquals(3L, deadLetter.getHeaders().get(RedisHeaders.STREAM_DELIVERY_COUNT));
+		assertEquals(2, failures.get());
+		endpoint.stop();
+		assertEquals(0, endpoint.getPendingCount());
+		deleteKey(connectionFactory, streamKey);
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2013-2016 the original author or authors.
+ * Copyright 2013-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -101,6 +101,24 @@ public class RedisQueueOutboundChannelAdapterTests extends RedisAvailableTests {
 		assertEquals(payload2, result2);
 	}
 
+	@Test
+	@RedisAvailable
+	public void testBatchPush() throws Exception {
+		final String queueName = "si.test.testRedisQueueOutboundChannelAdapterBatch";
+
+		final RedisQueueOutboundChannelAdapter handler = new RedisQueueOutboundChannelAdapter(queueName,
+				this.connectionFactory);
+		handler.setBatchPush(true);
+
+		handler.handleMessage(new GenericMessage<>(Arrays.asList("foo", "bar", "baz")));
+
+		StringRedisTemplate redisTemplate = createStringRedisTemplate(this.connectionFactory);
+		assertEquals("foo", redisTemplate.boundListOps(queueName).rightPop(5000, TimeUnit.MILLISECONDS));
+		assertEquals("bar", redisTemplate.boundListOps(queueName).rightPop(5000, TimeUnit.MILLISECONDS));
+		assertEquals("baz", redisTemplate.boundListOps(queueName).rightPop(5000, TimeUnit.MILLISECONDS));
+		assertEquals(Long.valueOf(0), redisTemplate.boundListOps(queueName).size());
+	}
+
 	@Test
 	@RedisAvailable
 	public void testInt3015ExtractPayloadFalse() throws Exception {
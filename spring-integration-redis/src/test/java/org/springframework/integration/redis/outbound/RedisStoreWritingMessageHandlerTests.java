@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2017 the original author or authors.
+ * Copyright 2002-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -23,6 +23,7 @@ import static org.mockito.Mockito.mock;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -31,6 +32,7 @@ import java.util.Set;
 import org.junit.Test;
 
 import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.StringRedisTemplate;
@@ -42,6 +44,7 @@ import org.springframework.data.redis.support.collections.RedisCollectionFactory
 import org.springframework.data.redis.support.collections.RedisList;
 import org.springframework.data.redis.support.collections.RedisZSet;
 import org.springframework.expression.common.LiteralExpression;
+import org.springframework.integration.context.IntegrationContextUtils;
 import org.springframework.integration.redis.rules.RedisAvailable;
 import org.springframework.integration.redis.rules.RedisAvailableTests;
 import org.springframework.integration.redis.support.RedisHeaders;
@@ -49,6 +52,7 @@ import org.springframework.integration.support.MessageBuilder;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageHandlingException;
 import org.springframework.messaging.support.GenericMessage;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 
 /**
  * @author Oleg Zhurakousky
@@ -554,6 +558,80 @@ public class RedisStoreWritingMessageHandlerTests extends RedisAvailableTests {
 		this.deleteKey(jcf, "foo");
 	}
 
+	@Test
+	@RedisAvailable
+	public void testBufferedList() throws Exception {
+		RedisConnectionFactory jcf = this.getConnectionFactoryForTest();
+		this.deleteKey(jcf, "foo");
+		this.deleteKey(jcf, "bar");
+		RedisList<String> foo = new DefaultRedisList<>("foo", this.initTemplate(jcf, new StringRedisTemplate()));
+		RedisList<String> bar = new DefaultRedisList<>("bar", this.initTemplate(jcf, new StringRedisTemplate()));
+
+		RedisStoreWritingMessageHandler handler = new RedisStoreWritingMessageHandler(jcf);
+		handler.setBufferSize(4);
+		handler.setFlushInterval(0);
+		handler.setBeanFactory(mock(BeanFactory.class));
+		handler.afterPropertiesSet();
+
+		handler.handleMessage(MessageBuilder.withPayload("Manny").setHeader(RedisHeaders.KEY, "foo").build());
+		handler.handleMessage(MessageBuilder.withPayload(Arrays.asList("Moe", "Jack"))
+				.setHeader(RedisHeaders.KEY, "foo")
+				.build());
+		handler.handleMessage(MessageBuilder.withPayload("Larry").setHeader(RedisHeaders.KEY, "bar").build());
+		assertEquals(0, foo.size());
+		assertEquals(0, bar.size());
+
+		handler.handleMessage(MessageBuilder.withPayload("Curly").setHeader(RedisHeaders.KEY, "bar").build());
+		assertEquals("[Manny, Moe, Jack]", foo.toString());
+		assertEquals("[Larry, Curly]", bar.toString());
+
+		handler.handleMessage(MessageBuilder.withPayload("Shemp").setHeader(RedisHeaders.KEY, "bar").build());
+		assertEquals(2, bar.size());
+		handler.destroy();
+		assertEquals("[Larry, Curly, Shemp]", bar.toString());
+		this.deleteKey(jcf, "foo");
+		this.deleteKey(jcf, "bar");
+	}
+
+	@Test
+	@RedisAvailable
+	public void testBufferedZsetWithIncrement() throws Exception {
+		RedisConnectionFactory jcf = this.getConnectionFactoryForTest();
+		this.deleteKey(jcf, "foo");
+		RedisZSet<String> redisZset =
+				new DefaultRedisZSet<>("foo", this.initTemplate(jcf, new StringRedisTemplate()));
+
+		RedisStoreWritingMessageHandler handler = new RedisStoreWritingMessageHandler(jcf);
+		handler.setKey("foo");
+		handler.setCollectionType(CollectionType.ZSET);
+		handler.setBufferSize(10);
+		handler.setFlushInterval(100);
+		ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+		scheduler.initialize();
+		DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+		beanFactory.registerSingleton(IntegrationContextUtils.TASK_SCHEDULER_BEAN_NAME, scheduler);
+		handler.setBeanFactory(beanFactory);
+		handler.afterPropertiesSet();
+
+		handler.handleMessage(MessageBuilder.withPayload("Manny").setHeader(RedisHeaders.ZSET_SCORE, 2).build());
+		handler.handleMessage(MessageBuilder.withPayload("Manny")
+				.setHeader(RedisHeaders.ZSET_SCORE, 3)
+				.setHeader(RedisHeaders.ZSET_INCREMENT_SCORE, true)
+				.build());
+		handler.handleMessage(MessageBuilder.withPayload("Moe").setHeader(RedisHeaders.ZSET_SCORE, 1).build());
+
+		int n = 0;
+		while (n++ < 100 && redisZset.size() < 2) {
+			Thread.sleep(100);
+		}
+		assertEquals(2, redisZset.size());
+		assertEquals(Double.valueOf(5), redisZset.score("Manny"));
+		assertEquals(Double.valueOf(1), redisZset.score("Moe"));
+		handler.destroy();
+		scheduler.destroy();
+		this.deleteKey(jcf, "foo");
+	}
+
 	private <K, V> RedisTemplate<K, V> initTemplate(RedisConnectionFactory rcf, RedisTemplate<K, V> redisTemplate) {
 		redisTemplate.setConnectionFactory(rcf);
 		redisTemplate.setKeySerializer(new StringRedisSerializer());
@@ -1,5 +1,5 @@
 /*
- * Copyright 2014-2016 the original author or authors.
+ * Copyright 2014-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -21,6 +21,9 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
 
+import java.util.List;
+import java.util.stream.Collectors;
+
 import org.hamcrest.Matchers;
 import org.junit.After;
 import org.junit.Before;
@@ -29,6 +32,7 @@ import org.junit.runner.RunWith;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.integration.IntegrationMessageHeaderAccessor;
+import org.springframework.integration.codec.kryo.MessageCodec;
 import org.springframework.integration.redis.rules.RedisAvailable;
 import org.springframework.integration.redis.rules.RedisAvailableTests;
 import org.springframework.integration.support.MessageBuilder;
@@ -73,6 +77,29 @@ public class RedisChannelMessageStoreTests extends RedisAvailableTests {
 		this.cms.removeMessageGroup("cms:testChannel2");
 		this.priorityCms.removeMessageGroup("priorityCms:testChannel3");
 		this.priorityCms.removeMessageGroup("priorityCms:testChannel4");
+		this.cms.removeMessageGroup("cms:codec");
+	}
+
+	@Test
+	@RedisAvailable
+	public void testCodec() {
+		Message<String> legacy = MessageBuilder.withPayload("foo").setHeader("bar", "baz").build();
+		Message<String> message = MessageBuilder.withPayload("qux").setHeader("bar", "baz").build();
+		RedisChannelMessageStore codecStore = new RedisChannelMessageStore(getConnectionFactoryForTest());
+		codecStore.setBeanName("codecCms");
+		codecStore.setCodec(new MessageCodec());
+		this.cms.addMessageToGroup("cms:codec", legacy);
+		codecStore.addMessageToGroup("cms:codec", message);
+
+		Message<?> out = codecStore.pollMessageFromGroup("cms:codec");
+		assertNotNull(out);
+		assertEquals(legacy.getHeaders().getId(), out.getHeaders().getId());
+		assertEquals("baz", out.getHeaders().get("bar"));
+		out = codecStore.pollMessageFromGroup("cms:codec");
+		assertNotNull(out);
+		assertEquals(message.getHeaders().getId(), out.getHeaders().getId());
+		assertEquals("qux", out.getPayload());
+		assertEquals("baz", out.getHeaders().get("bar"));
 	}
 
 	@Test
@@ -174,4 +201,30 @@ public class RedisChannelMessageStoreTests extends RedisAvailableTests {
 		assertEquals(0, this.priorityCms.messageGroupSize("priorityCms:testChannel3"));
 	}
 
+	@Test
+	@RedisAvailable
+	public void testBatch() {
+		this.cms.addMessagesToGroup("cms:testChannel1", new GenericMessage<>(0), new GenericMessage<>(1),
+				new GenericMessage<>(2));
+		this.cms.addMessageToGroup("cms:testChannel1", new GenericMessage<>(3));
+		assertEquals(4, this.cms.messageGroupSize("cms:testChannel1"));
+		assertEquals("[0, 1, 2]", payloads(this.cms.pollMessagesFromGroup("cms:testChannel1", 3)));
+		assertEquals("[3]", payloads(this.cms.pollMessagesFromGroup("cms:testChannel1", 3)));
+		assertEquals("[]", payloads(this.cms.pollMessagesFromGroup("cms:testChannel1", 3)));
+
+		this.priorityCms.addMessagesToGroup("priorityCms:testChannel3",
+				MessageBuilder.withPayload(1).setPriority(1).build(),
+				new GenericMessage<>(0),
+				MessageBuilder.withPayload(5).setPriority(5).build());
+		assertEquals("[5, 1]", payloads(this.priorityCms.pollMessagesFromGroup("priorityCms:testChannel3", 2)));
+		assertEquals("[0]", payloads(this.priorityCms.pollMessagesFromGroup("priorityCms:testChannel3", 2)));
+	}
+
+	private static String payloads(List<Message<?>> messages) {
+		return messages.stream()
+				.map(Message::getPayload)
+				.collect(Collectors.toList())
+				.toString();
+	}
+
 }
@@ -79,6 +79,7 @@ public class RedisMessageGroupStoreTests extends RedisAvailableTests {
 	public void setUpTearDown() {
 		StringRedisTemplate template = createStringRedisTemplate(getConnectionFactoryForTest());
 		template.delete(template.keys("MESSAGE_GROUP_*"));
+		template.delete(template.keys("GROUP_MEMBERS_*"));
 	}
 
 	@Test
@@ -136,6 +137,41 @@ public class RedisMessageGroupStoreTests extends RedisAvailableTests {
 		assertEquals(1, messageGroup.size());
 	}
 
+	@Test
+	@RedisAvailable
+	public void testIncrementalGroupMembership() {
+		RedisConnectionFactory jcf = getConnectionFactoryForTest();
+		RedisMessageStore store = new RedisMessageStore(jcf);
+		store.setIncrementalGroupMembership(true);
+
+		List<Message<?>> messages = new ArrayList<>();
+		for (int i = 0; i < 2000; i++) {
+			messages.add(new GenericMessage<>(i));
+		}
+		store.addMessagesToGroup(this.groupId, messages.subList(0, 1000).toArray(new Message<?>[0]));
+		for (Message<?> message : messages.subList(1000, 2000)) {
+			store.addMessagesToGroup(this.groupId, message);
+		}
+		store.addMessagesToGroup(this.groupId, messages.get(0));
+		assertEquals(2000, store.messageGroupSize(this.groupId));
+
+		// a second instance shares the group members
+		RedisMessageStore otherStore = new RedisMessageStore(jcf);
+		otherStore.setIncrementalGroupMembership(true);
+		assertEquals(messages, new ArrayList<>(otherStore.getMessagesForGroup(this.groupId)));
+		assertEquals(messages.get(0), otherStore.getOneMessageFromGroup(this.groupId));
+
+		assertEquals(messages.get(0), store.pollMessageFromGroup(this.groupId));
+		assertEquals(messages.get(1), otherStore.pollMessageFromGroup(this.groupId));
+		store.removeMessagesFromGroup(this.groupId, messages.get(2));
+		assertEquals(messages.get(3), store.getOneMessageFromGroup(this.groupId));
+		assertEquals(1997, otherStore.messageGroupSize(this.groupId));
+
+		store.removeMessageGroup(this.groupId);
+		assertEquals(0, otherStore.messageGroupSize(this.groupId));
+		assertEquals(0, createStringRedisTemplate(jcf).keys("GROUP_MEMBERS_*").size());
+	}
+
 	@Test
 	@RedisAvailable
 	public void testRemoveMessageGroup() {
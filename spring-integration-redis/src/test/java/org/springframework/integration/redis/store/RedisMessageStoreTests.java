@@ -1,5 +1,5 @@
 /*
- * Copyright 2007-2016 the original author or authors.
+ * Copyright 2007-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -35,6 +35,7 @@ import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.BoundValueOperations;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.integration.channel.DirectChannel;
+import org.springframework.integration.codec.kryo.MessageCodec;
 import org.springframework.integration.history.MessageHistory;
 import org.springframework.integration.redis.rules.RedisAvailable;
 import org.springframework.integration.redis.rules.RedisAvailableTests;
@@ -100,6 +101,33 @@ public class RedisMessageStoreTests extends RedisAvailableTests {
 		assertEquals("Barak Obama", storedMessage.getPayload().getName());
 	}
 
+	@Test
+	@RedisAvailable
+	public void testCodec() {
+		RedisConnectionFactory jcf = this.getConnectionFactoryForTest();
+		RedisMessageStore store = new RedisMessageStore(jcf);
+		Message<String> legacy = MessageBuilder.withPayload("foo").setHeader("bar", "baz").build();
+		store.addMessage(legacy);
+		store.addMessagesToGroup("codecGroup", legacy);
+
+		RedisMessageStore codecStore = new RedisMessageStore(jcf);
+		codecStore.setCodec(new MessageCodec());
+		Message<?> result = codecStore.getMessage(legacy.getHeaders().getId());
+		assertNotNull(result);
+		assertEquals("foo", result.getPayload());
+		assertEquals("baz", result.getHeaders().get("bar"));
+
+		Message<String> message = MessageBuilder.withPayload("qux").setHeader("bar", "baz").build();
+		codecStore.addMessagesToGroup("codecGroup", message);
+		MessageGroup group = codecStore.getMessageGroup("codecGroup");
+		assertEquals(2, group.size());
+		result = codecStore.getMessage(message.getHeaders().getId());
+		assertNotNull(result);
+		assertEquals(message.getHeaders().getId(), result.getHeaders().getId());
+		assertEquals("qux", result.getPayload());
+		codecStore.removeMessageGroup("codecGroup");
+	}
+
 	@Test(expected = IllegalArgumentException.class)
 	@RedisAvailable
 	public void testAddNonSerializableObjectMessage() {
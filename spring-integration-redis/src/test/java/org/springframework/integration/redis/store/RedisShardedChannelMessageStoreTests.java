@@ -0,0 +1,119 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.redis.store;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.integration.IntegrationMessageHeaderAccessor;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.redis.rules.RedisAvailable;
+import org.springframework.integration.redis.rules.RedisAvailableTests;
+import org.springframework.integration.store.MessageGroupQueue;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.GenericMessage;
+
+/**
+ * @since 5.1
+ */
+public class RedisShardedChannelMessageStoreTests extends RedisAvailableTests {
+
+	@Test
+	public void testShardKeys() {
+		RedisShardedChannelMessageStore store = new RedisShardedChannelMessageStore(
+				mock(RedisConnectionFactory.class));
+		store.setShards(2);
+		assertArrayEquals(new String[] { "store:channel:shard0", "store:channel:shard1" },
+				store.getShardKeys("store:channel"));
+		assertArrayEquals(new String[] { "store:{orders:shard0}", "store:{orders:shard1}" },
+				store.getShardKeys("store:{orders}"));
+		assertArrayEquals(new String[] { "store:{}:shard0", "store:{}:shard1" },
+				store.getShardKeys("store:{}"));
+	}
+
+	@Test
+	@RedisAvailable
+	public void testShardedQueue() throws Exception {
+		RedisShardedChannelMessageStore store = new RedisShardedChannelMessageStore(getConnectionFactoryForTest());
+		store.setBeanName("shardedCms");
+		store.setShards(3);
+		store.afterPropertiesSet();
+		String groupId = "shardedCms:queue";
+		store.removeMessageGroup(groupId);
+
+		QueueChannel channel = new QueueChannel(new MessageGroupQueue(store, groupId));
+		for (int i = 0; i < 9; i++) {
+			channel.send(new GenericMessage<>(i));
+		}
+		assertEquals(9, store.messageGroupSize(groupId));
+		assertEquals(1, store.getMessageGroupCount());
+		assertEquals(9, store.getMessageCountForAllMessageGroups());
+		for (String key : store.getShardKeys(groupId)) {
+			assertEquals(3, store.getRedisTemplate().boundListOps(key).size().intValue());
+		}
+		List<Object> payloads = new ArrayList<>();
+		for (int i = 0; i < 9; i++) {
+			payloads.add(channel.receive(0).getPayload());
+		}
+		assertEquals("[0, 1, 2, 3, 4, 5, 6, 7, 8]", payloads.toString());
+		assertNull(channel.receive(0));
+
+		store.removeMessageGroup(groupId);
+	}
+
+	@Test
+	@RedisAvailable
+	public void testShardKeyFunction() throws Exception {
+		RedisShardedChannelMessageStore store = new RedisShardedChannelMessageStore(getConnectionFactoryForTest());
+		store.setBeanName("shardedCms");
+		store.setShardKeyFunction(m -> new IntegrationMessageHeaderAccessor(m).getCorrelationId());
+		store.afterPropertiesSet();
+		String groupId = "shardedCms:keyed";
+		store.removeMessageGroup(groupId);
+
+		for (int i = 0; i < 10; i++) {
+			store.addMessagesToGroup(groupId,
+					MessageBuilder.withPayload("a" + i).setCorrelationId("a").build(),
+					MessageBuilder.withPayload("b" + i).setCorrelationId("b").build());
+		}
+		assertEquals(20, store.messageGroupSize(groupId));
+		List<Message<?>> messages = store.pollMessagesFromGroup(groupId, 20);
+		assertEquals(20, messages.size());
+		int a = 0;
+		int b = 0;
+		for (Message<?> message : messages) {
+			String payload = (String) message.getPayload();
+			if (payload.startsWith("a")) {
+				assertEquals("a" + a++, payload);
+			}
+			else {
+				assertEquals("b" + b++, payload);
+			}
+		}
+		assertEquals(0, store.messageGroupSize(groupId));
+	}
+
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.redis.support;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import org.springframework.integration.channel.OverflowPolicy;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.support.GenericMessage;
+
+/**
+ * @since 5.1
+ */
+public class PartitionedDispatcherTests {
+
+	@Test
+	public void testOrderPerKey() {
+		Map<Object, List<Object>> received = new ConcurrentHashMap<>();
+		Map<Object, Set<String>> threads = new ConcurrentHashMap<>();
+		PartitionedDispatcher dispatcher = new PartitionedDispatcher(4, 10, m -> {
+			String topic = m.getHeaders().get(RedisHeaders.MESSAGE_SOURCE, String.class);
+			received.computeIfAbsent(topic, k -> new ArrayList<>()).add(m.getPayload());
+			threads.computeIfAbsent(topic, k -> ConcurrentHashMap.newKeySet()).add(Thread.currentThread().getName());
+		});
+		dispatcher.start();
+		for (int i = 0; i < 100; i++) {
+			dispatcher.dispatch(MessageBuilder.withPayload(i)
+					.setHeader(RedisHeaders.MESSAGE_SOURCE, "topic" + (i % 5))
+					.build());
+		}
+		dispatcher.stop(10000);
+		assertEquals(5, received.size());
+		for (int t = 0; t < 5; t++) {
+			List<Object> payloads = received.get("topic" + t);
+			assertEquals(20, payloads.size());
+			for (int i = 0; i < 20; i++) {
+				assertEquals(i * 5 + t, payloads.get(i));
+			}
+			assertEquals(1, threads.get("topic" + t).size());
+		}
+		assertEquals(0, dispatcher.getQueueSize());
+	}
+
+	@Test
+	public void testOverflowPolicies() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch handling = new CountDownLatch(1);
+		List<Object> received = new ArrayList<>();
+		PartitionedDispatcher dispatcher = new PartitionedDispatcher(1, 2, m -> {
+			handling.countDown();
+			try {
+				release.await(10, TimeUnit.SECONDS);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			synchronized (received) {
+				received.add(m.getPayload());
+			}
+		});
+		dispatcher.start();
+		dispatcher.dispatch(new GenericMessage<>(0));
+		assertTrue(handling.await(10, TimeUnit.SECONDS));
+		dispatcher.dispatch(new GenericMessage<>(1));
+		dispatcher.dispatch(new GenericMessage<>(2));
+
+		dispatcher.setOverflowPolicy(OverflowPolicy.ERROR);
+		try {
+			dispatcher.dispatch(new GenericMessage<>(3));
+			fail("expected MessageDeliveryException");
+		}
+		catch (MessageDeliveryException e) {
+			assertTrue(e.getMessage().contains("queue is full"));
+		}
+
+		dispatcher.setOverflowPolicy(OverflowPolicy.DROP);
+		dispatcher.dispatch(new GenericMessage<>(4));
+		assertEquals(1, dispatcher.getDroppedCount());
+
+		dispatcher.setOverflowPolicy(OverflowPolicy.LATEST);
+		dispatcher.dispatch(new GenericMessage<>(5));
+		assertEquals(2, dispatcher.getDroppedCount());
+		assertEquals(2, dispatcher.getQueueSize());
+
+		release.countDown();
+		dispatcher.stop(10000);
+		assertEquals("[0, 2, 5]", received.toString());
+	}
+
+	@Test
+	public void testErrorHandler() {
+		List<Throwable> errors = new ArrayList<>();
+		PartitionedDispatcher dispatcher = new PartitionedDispatcher(2, 10, m -> {
+			throw new IllegalStateException("failed " + m.getPayload());
+		});
+		dispatcher.setErrorHandler(t -> {
+			synchronized (errors) {
+				errors.add(t);
+			}
+		});
+		dispatcher.start();
+		dispatcher.dispatch(new GenericMessage<>("foo"));
+		dispatcher.dispatch(new GenericMessage<>("bar"));
+		dispatcher.stop(10000);
+		assertEquals(2, errors.size());
+		try {
+			dispatcher.dispatch(new GenericMessage<>("baz"));
+			fail("expected IllegalStateException");
+		}
+		catch (IllegalStateException e) {
+			assertTrue(e.getMessage().contains("not running"));
+		}
+	}
+
+	@Test
+	public void testBlock() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		List<Message<?>> received = new ArrayList<>();
+		PartitionedDispatcher dispatcher = new PartitionedDispatcher(1, 1, m -> {
+			try {
+				release.await(10, TimeUnit.SECONDS);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			synchronized (received) {
+				received.add(m);
+			}
+		});
+		dispatcher.start();
+		CountDownLatch sent = new CountDownLatch(1);
+		new Thread(() -> {
+			for (int i = 0; i < 3; i++) {
+				dispatcher.dispatch(new GenericMessage<>(i));
+			}
+			sent.countDown();
+		}).start();
+		assertFalse(sent.await(500, TimeUnit.MILLISECONDS));
+		release.countDown();
+		assertTrue(sent.await(10, TimeUnit.SECONDS));
+		dispatcher.stop(10000);
+		assertEquals(3, received.size());
+		assertEquals(0, dispatcher.getDroppedCount());
+	}
+
+}
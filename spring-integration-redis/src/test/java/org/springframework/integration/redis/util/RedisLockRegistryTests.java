@@ -1,5 +1,5 @@
 /*
- * Copyright 2014-2017 the original author or authors.
+ * Copyright 2014-2018 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,7 +17,9 @@
 package org.springframework.integration.redis.util;
 
 import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.lessThan;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
@@ -433,6 +435,56 @@ public class RedisLockRegistryTests extends RedisAvailableTests {
 		lock.unlock();
 	}
 
+	@Test
+	@RedisAvailable
+	public void testUnlockNotification() throws Exception {
+		RedisConnectionFactory connectionFactory = this.getConnectionFactoryForTest();
+		RedisLockRegistry registry = new RedisLockRegistry(connectionFactory, this.registryKey);
+		registry.setUnlockNotifications(true);
+		RedisLockRegistry registry2 = new RedisLockRegistry(connectionFactory, this.registryKey);
+		registry2.setUnlockNotifications(true);
+		Lock lock = registry.obtain("foo");
+		Lock lock2 = registry2.obtain("foo");
+		// let the listener containers subscribe
+		Thread.sleep(1000);
+		lock.lock();
+
+		CountDownLatch waiting = new CountDownLatch(1);
+		Future<Long> result = Executors.newSingleThreadExecutor().submit(() -> {
+			waiting.countDown();
+			assertTrue(lock2.tryLock(10, TimeUnit.SECONDS));
+			long acquired = System.currentTimeMillis();
+			lock2.unlock();
+			return acquired;
+		});
+		assertTrue(waiting.await(10, TimeUnit.SECONDS));
+		Thread.sleep(200);
+		long released = System.currentTimeMillis();
+		lock.unlock();
+		assertThat(result.get(10, TimeUnit.SECONDS) - released, lessThan(500L));
+		registry.destroy();
+		registry2.destroy();
+	}
+
+	@Test
+	@RedisAvailable
+	public void testLeaseRenewal() throws Exception {
+		RedisConnectionFactory connectionFactory = this.getConnectionFactoryForTest();
+		RedisLockRegistry registry = new RedisLockRegistry(connectionFactory, this.registryKey, 300);
+		registry.setLeaseRenewal(true);
+		registry.setUnlockNotifications(true);
+		Lock lock = registry.obtain("foo");
+		lock.lock();
+		Thread.sleep(1000);
+		assertThat(getExpire(registry, "foo"), greaterThan(-2L));
+		RedisLockRegistry registry2 = new RedisLockRegistry(connectionFactory, this.registryKey);
+		assertFalse(registry2.obtain("foo").tryLock());
+		lock.unlock();
+		assertTrue(registry2.obtain("foo").tryLock());
+		registry2.obtain("foo").unlock();
+		registry.destroy();
+	}
+
 	private Long getExpire(RedisLockRegistry registry, String lockKey) {
 		StringRedisTemplate template = this.createTemplate();
 		String registryKey = TestUtils.getPropertyValue(registry, "registryKey", String.class);
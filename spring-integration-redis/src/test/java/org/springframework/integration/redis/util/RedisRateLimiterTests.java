@@ -0,0 +1,120 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.redis.util;
+
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.integration.redis.rules.RedisAvailable;
+import org.springframework.integration.redis.rules.RedisAvailableTests;
+import org.springframework.integration.support.ratelimit.RateLimit;
+
+/**
+ * @since 5.1
+ */
+public class RedisRateLimiterTests extends RedisAvailableTests {
+
+	private final String registryKey = UUID.randomUUID().toString();
+
+	@Before
+	@After
+	public void setupShutDown() {
+		StringRedisTemplate template = createTemplate();
+		Set<String> keys = template.keys(this.registryKey + ":*");
+		if (keys != null && !keys.isEmpty()) {
+			template.delete(keys);
+		}
+	}
+
+	private StringRedisTemplate createTemplate() {
+		return new StringRedisTemplate(getConnectionFactoryForTest());
+	}
+
+	@Test
+	@RedisAvailable
+	public void testBurstAcquisition() {
+		RedisRateLimiter limiter1 = new RedisRateLimiter(getConnectionFactoryForTest(), this.registryKey);
+		RedisRateLimiter limiter2 = new RedisRateLimiter(getConnectionFactoryForTest(), this.registryKey);
+		RateLimit limit = new RateLimit(3, Duration.ofMinutes(1));
+
+		assertEquals(0, limiter1.tryAcquire("foo", limit, 1));
+		assertEquals(0, limiter2.tryAcquire("foo", limit, 2));
+		long wait = limiter1.tryAcquire("foo", limit, 1);
+		// one permit every 20 seconds
+		assertThat(wait, greaterThan(0L));
+		assertThat(wait, lessThanOrEqualTo(20000L));
+		assertThat(limiter2.tryAcquire("foo", limit, 1), greaterThan(0L));
+		assertThat(limiter1.tryAcquire("foo", limit, 3), greaterThan(40000L));
+
+		assertEquals(0, limiter1.tryAcquire("bar", limit, 3));
+		RedisRateLimiter other = new RedisRateLimiter(getConnectionFactoryForTest(), this.registryKey + "-other");
+		assertEquals(0, other.tryAcquire("foo", limit, 3));
+		createTemplate().delete(this.registryKey + "-other:foo");
+	}
+
+	@Test
+	@RedisAvailable
+	public void testRefillAfterInterval() throws Exception {
+		RedisRateLimiter limiter = new RedisRateLimiter(getConnectionFactoryForTest(), this.registryKey);
+		RateLimit limit = new RateLimit(2, Duration.ofMillis(400));
+
+		assertEquals(0, limiter.tryAcquire("foo", limit, 2));
+		long wait = limiter.tryAcquire("foo", limit, 1);
+		assertThat(wait, greaterThan(0L));
+		assertThat(wait, lessThanOrEqualTo(200L));
+		Thread.sleep(wait + 50);
+		assertEquals(0, limiter.tryAcquire("foo", limit, 1));
+		assertThat(limiter.tryAcquire("foo", limit, 1), greaterThan(0L));
+	}
+
+	@Test
+	@RedisAvailable
+	public void testKeyExpiry() throws Exception {
+		RedisRateLimiter limiter = new RedisRateLimiter(getConnectionFactoryForTest(), this.registryKey);
+		RateLimit limit = new RateLimit(1, Duration.ofMillis(200));
+		StringRedisTemplate template = createTemplate();
+		String key = this.registryKey + ":foo";
+
+		assertEquals(0, limiter.tryAcquire("foo", limit, 1));
+		assertTrue(template.hasKey(key));
+		// the key expires once the bucket is full again
+		Long ttl = template.getExpire(key, TimeUnit.MILLISECONDS);
+		assertThat(ttl, greaterThan(0L));
+		assertThat(ttl, lessThanOrEqualTo(201L));
+		int n = 0;
+		while (template.hasKey(key) && n++ < 100) {
+			Thread.sleep(50);
+		}
+		assertFalse(template.hasKey(key));
+		assertEquals(0, limiter.tryAcquire("foo", limit, 1));
+	}
+
+}